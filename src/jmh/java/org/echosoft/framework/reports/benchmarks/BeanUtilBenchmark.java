@@ -0,0 +1,48 @@
+package org.echosoft.framework.reports.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.echosoft.framework.reports.common.utils.BeanUtil;
+import org.echosoft.framework.reports.test.SyntheticData;
+import org.echosoft.framework.reports.test.model.Repository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Получение значений свойств объектов по их имени ({@link BeanUtil#getProperty(Object, String)}).
+ * Покрывает обращение к полям, к методам-аксессорам и к вложенным свойствам.
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BeanUtilBenchmark {
+
+    @Param({"name", "ownerName", "active", "owner.login", "owner.type.title", "license.name"})
+    public String property;
+
+    private Repository bean;
+
+    @Setup
+    public void setup() {
+        bean = SyntheticData.makeRepositories(1, 1, 1, 20).get(0);
+    }
+
+    @Benchmark
+    public Object getProperty() throws Exception {
+        return BeanUtil.getProperty(bean, property);
+    }
+}
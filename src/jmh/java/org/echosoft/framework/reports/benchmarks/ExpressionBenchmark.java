@@ -0,0 +1,62 @@
+package org.echosoft.framework.reports.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.echosoft.framework.reports.model.el.BaseExpression;
+import org.echosoft.framework.reports.model.el.ELContext;
+import org.echosoft.framework.reports.test.SyntheticData;
+import org.echosoft.framework.reports.test.model.Repository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Вычисление выражений, используемых в ячейках шаблонов отчетов ({@link BaseExpression#getValue(ELContext)}).
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpressionBenchmark {
+
+    @Param({
+            "${row:name}",
+            "${row:owner.login}",
+            "${row:owner.type.title}",
+            "${(date,dd.MM.yyyy)row:createdAt}",
+            "${row:fullName} (${row:license.name})",
+            "${record}",
+            "${env:p31}"
+    })
+    public String expression;
+
+    private BaseExpression expr;
+    private ELContext ctx;
+
+    @Setup
+    public void setup() {
+        final List<Repository> repos = SyntheticData.makeRepositories(100, 3, 3, 20);
+        expr = new BaseExpression(expression);
+        ctx = SyntheticData.makeContext(repos, null);
+        ctx.setRowModel(repos.get(repos.size() / 2));
+        ctx.getVariables().put("record", 42);
+    }
+
+    @Benchmark
+    public Object getValue() throws Exception {
+        return expr.getValue(ctx);
+    }
+}
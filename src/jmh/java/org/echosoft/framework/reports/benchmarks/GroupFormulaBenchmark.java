@@ -0,0 +1,87 @@
+package org.echosoft.framework.reports.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.echosoft.framework.reports.model.GroupModel;
+import org.echosoft.framework.reports.model.GroupingSection;
+import org.echosoft.framework.reports.processor.ExecutionContext;
+import org.echosoft.framework.reports.processor.Group;
+import org.echosoft.framework.reports.processor.GroupManager;
+import org.echosoft.framework.reports.test.SyntheticData;
+import org.echosoft.framework.reports.util.POIUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Формирование формул для итоговых строк группировок ({@link POIUtils#makeGroupFormula(GroupManager, String, String)}) в больших группах.
+ * <ul>
+ *  <li><code>children</code> - группа содержит указанное количество вложенных групп;</li>
+ *  <li><code>range</code> - группа содержит записи одинаковой высоты (формула ссылается на диапазон ячеек);</li>
+ *  <li><code>records</code> - группа содержит записи разной высоты (формула перечисляет все записи группы).</li>
+ * </ul>
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupFormulaBenchmark {
+
+    @Param({"children", "range", "records"})
+    public String layout;
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private GroupManager gm;
+
+    @Setup
+    public void setup() throws Exception {
+        final GroupingSection section = (GroupingSection) SyntheticData.loadReport("excel-02").findSectionById("s12");
+        final GroupModel model = section.getGroups().get(section.getGroups().size() - 1);
+        gm = new GroupManager(Collections.singletonList(model)) {
+            {
+                final Group group = new Group(model, null, 10, 0);
+                int row = 11;
+                for (int i = 0; i < size; i++) {
+                    switch (layout) {
+                        case "children":
+                            group.children.add(new Group(model, null, row, 1));
+                            row += 3;
+                            break;
+                        case "range":
+                            group.records.add(row++);
+                            group.recordsHeight = 1;
+                            break;
+                        default:
+                            group.records.add(row);
+                            row += 1 + i % 2;
+                    }
+                }
+                groups.add(group);
+            }
+
+            @Override
+            protected void renderCurrentGroup(final ExecutionContext ctx) {
+            }
+        };
+    }
+
+    @Benchmark
+    public String makeGroupFormula() {
+        return POIUtils.makeGroupFormula(gm, "AB", "SUM");
+    }
+}
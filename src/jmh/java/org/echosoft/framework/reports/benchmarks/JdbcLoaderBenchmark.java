@@ -0,0 +1,80 @@
+package org.echosoft.framework.reports.benchmarks;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.echosoft.framework.reports.common.data.JdbcBeanLoader;
+import org.echosoft.framework.reports.test.SyntheticData;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Преобразование записей из {@link ResultSet} в объекты с помощью {@link JdbcBeanLoader} на базе данных H2 в памяти.
+ * Одна операция - полный просмотр результатов запроса, аналогичного используемому в отчете <code>excel-01</code>.
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JdbcLoaderBenchmark {
+
+    private static final String SQL = "" +
+            "SELECT s.id as subj_id, s.type as subj_type, s.login, s.url as subj_url, s.avatar_url as subj_avatar_url, \n" +
+            " l.id as lic_id, l.name as lic_name, l.url as lic_url, \n" +
+            " r.id, r.name, r.full_name, r.is_private, r.is_fork, r.url, r.description, r.created_at, r.updated_at, r.pushed_at, \n" +
+            " r.homepage, r.lang, r.size, r.stars, r.forks, r.watchers, r.open_issues, r.archived, not r.archived as active, r.disabled, r.default_branch \n" +
+            "FROM repository r \n" +
+            "JOIN subject s ON r.owner_id = s.id \n" +
+            "LEFT OUTER JOIN license l ON r.license_id = l.id \n" +
+            "ORDER BY subj_type, login";
+
+    @Param({"10000"})
+    public int rows;
+
+    private Connection conn;
+
+    @Setup
+    public void setup() throws SQLException {
+        final JdbcDataSource ds = SyntheticData.makeDataSource("jmh-loader");
+        SyntheticData.populate(ds, SyntheticData.makeRepositories(rows, 10, 5, 40));
+        conn = ds.getConnection();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Benchmark
+    public int load(final Blackhole bh) throws Exception {
+        int count = 0;
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(SQL)) {
+            final JdbcBeanLoader<Map<String, Object>> loader = new JdbcBeanLoader<>(rs);
+            while (rs.next()) {
+                bh.consume(loader.load(rs));
+                count++;
+            }
+        }
+        return count;
+    }
+}
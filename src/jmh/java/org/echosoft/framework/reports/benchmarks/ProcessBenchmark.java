@@ -0,0 +1,96 @@
+package org.echosoft.framework.reports.benchmarks;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.processor.ExcelReportProcessor;
+import org.echosoft.framework.reports.test.SyntheticData;
+import org.echosoft.framework.reports.test.model.Repository;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Полный цикл построения отчетов <code>excel-01</code> .. <code>excel-03</code> для каждого из поддерживаемых форматов документа,
+ * включая сохранение сформированного документа. Одна операция - построение и сохранение одного отчета по набору из <code>rows</code> записей.
+ * Для измерения на больших наборах данных используйте, например, <code>-p rows=10000,100000,1000000 -p target=SXSSF</code>
+ * (формат XLS ограничен 65536 строками на листе).
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class ProcessBenchmark {
+
+    @Param({"excel-01", "excel-02", "excel-03"})
+    public String report;
+
+    @Param({"HSSF", "XSSF", "SXSSF"})
+    public String target;
+
+    @Param({"10000"})
+    public int rows;
+
+    @Param({"20"})
+    public int owners;
+
+    private final ExcelReportProcessor processor = new ExcelReportProcessor();
+    private Report model;
+    private List<Repository> repos;
+    private JdbcDataSource ds;
+
+    @Setup
+    public void setup() throws Exception {
+        model = SyntheticData.loadReport(report);
+        model.setTarget(Report.TargetType.valueOf(target));
+        repos = SyntheticData.makeRepositories(rows, owners, 5, 40);
+        ds = SyntheticData.makeDataSource("jmh-process");
+        SyntheticData.populate(ds, repos);
+    }
+
+    @Benchmark
+    public long process() throws Exception {
+        final Workbook wb = processor.process(model, SyntheticData.makeContext(repos, ds));
+        try {
+            final CountingOutputStream out = new CountingOutputStream();
+            wb.write(out);
+            return out.count;
+        } finally {
+            if (wb instanceof SXSSFWorkbook)
+                ((SXSSFWorkbook) wb).dispose();
+            wb.close();
+        }
+    }
+
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(final int b) {
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.echosoft.framework.reports.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.model.Section;
+import org.echosoft.framework.reports.model.SheetModel;
+import org.echosoft.framework.reports.processor.ExcelReportProcessor;
+import org.echosoft.framework.reports.processor.ExecutionContext;
+import org.echosoft.framework.reports.test.SyntheticData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Отрисовка одной секции отчета (и, соответственно, шаблонов ее строк) на новом листе уже подготовленного документа,
+ * без затрат на создание документа, применение стилей и сохранение результата.
+ * <ul>
+ *  <li><code>plain</code> - простая секция <code>s12</code> отчета <code>excel-01</code>;</li>
+ *  <li><code>grouping</code> - секция <code>s12</code> отчета <code>excel-02</code> с трехуровневой группировкой записей.</li>
+ * </ul>
+ * Одна операция - отрисовка секции для <code>rows</code> записей.
+ *
+ * @author Anton Sharapov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmark {
+
+    @Param({"plain", "grouping"})
+    public String section;
+
+    @Param({"HSSF", "XSSF", "SXSSF"})
+    public String target;
+
+    @Param({"1000"})
+    public int rows;
+
+    private SectionRenderer renderer;
+    private ExecutionContext ectx;
+    private SheetModel sheetModel;
+    private Section sectionModel;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        final Report report = SyntheticData.loadReport("plain".equals(section) ? "excel-01" : "excel-02");
+        report.setTarget(Report.TargetType.valueOf(target));
+        renderer = new SectionRenderer();
+        renderer.process(report, SyntheticData.makeContext(SyntheticData.makeRepositories(rows, 10, 5, 40), null));
+        ectx = renderer.ectx;
+        sectionModel = ectx.report.findSectionById("s12");
+        sheetModel = ectx.report.findSheetById("sheet-1");
+    }
+
+    @Setup(Level.Invocation)
+    public void newSheet() {
+        if (ectx.wsheet != null)
+            ectx.wb.removeSheetAt(ectx.wb.getSheetIndex(ectx.wsheet));
+        ectx.sheet = sheetModel;
+        ectx.wsheet = ectx.wb.createSheet();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (ectx.wb instanceof SXSSFWorkbook)
+            ((SXSSFWorkbook) ectx.wb).dispose();
+        ectx.wb.close();
+    }
+
+    @Benchmark
+    public int render() throws Exception {
+        renderer.render(ectx, sectionModel);
+        return ectx.getLastRowNum();
+    }
+
+
+    /**
+     * Подготавливает документ и контекст построения отчета, но не обрабатывает листы отчета.
+     */
+    private static final class SectionRenderer extends ExcelReportProcessor {
+        private ExecutionContext ectx;
+
+        @Override
+        protected void processSheet(final ExecutionContext ectx, final SheetModel sheet) {
+            if (this.ectx == null)
+                this.ectx = ectx;
+        }
+
+        private void render(final ExecutionContext ectx, final Section section) throws Exception {
+            processSection(ectx, section);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package org.echosoft.framework.reports.common.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Описания событий JDK Flight Recorder. Данный класс компилируется только при сборке проекта на JDK 11 и выше
+ * и загружается только в том случае если JVM поддерживает JFR (см. {@link JfrEvents}).
+ *
+ * @author Anton Sharapov
+ */
+final class JfrEventTypes implements JfrEvents.Recorder {
+
+    private static final String CATEGORY = "Spreadsheet Reports";
+
+    JfrEventTypes() {
+    }
+
+    @Override
+    public Object beginReport(final String reportId) {
+        final ReportEvent event = new ReportEvent();
+        if (!event.isEnabled())
+            return null;
+        event.reportId = reportId;
+        event.begin();
+        return event;
+    }
+    @Override
+    public void endReport(final Object obj, final int sheets) {
+        final ReportEvent event = (ReportEvent) obj;
+        event.sheets = sheets;
+        event.commit();
+    }
+
+    @Override
+    public Object beginSheet(final String reportId, final String sheetId) {
+        final SheetEvent event = new SheetEvent();
+        if (!event.isEnabled())
+            return null;
+        event.reportId = reportId;
+        event.sheetId = sheetId;
+        event.begin();
+        return event;
+    }
+    @Override
+    public void endSheet(final Object obj, final int lastRow) {
+        final SheetEvent event = (SheetEvent) obj;
+        event.lastRow = lastRow;
+        event.commit();
+    }
+
+    @Override
+    public Object beginSection(final String reportId, final String sheetId, final String sectionId, final int firstRow) {
+        final SectionEvent event = new SectionEvent();
+        if (!event.isEnabled())
+            return null;
+        event.reportId = reportId;
+        event.sheetId = sheetId;
+        event.sectionId = sectionId;
+        event.firstRow = firstRow;
+        event.begin();
+        return event;
+    }
+    @Override
+    public void endSection(final Object obj, final int records, final int lastRow) {
+        final SectionEvent event = (SectionEvent) obj;
+        event.records = records;
+        event.lastRow = lastRow;
+        event.commit();
+    }
+
+    @Override
+    public Object beginProvider(final String reportId, final String sectionId, final String providerId) {
+        final ProviderEvent event = new ProviderEvent();
+        if (!event.isEnabled())
+            return null;
+        event.reportId = reportId;
+        event.sectionId = sectionId;
+        event.providerId = providerId;
+        event.begin();
+        return event;
+    }
+    @Override
+    public void endProvider(final Object obj) {
+        ((ProviderEvent) obj).commit();
+    }
+
+    @Override
+    public Object beginFetch(final String reportId, final String sheetId, final String sectionId) {
+        final FetchEvent event = new FetchEvent();
+        if (!event.isEnabled())
+            return null;
+        event.reportId = reportId;
+        event.sheetId = sheetId;
+        event.sectionId = sectionId;
+        event.begin();
+        return event;
+    }
+    @Override
+    public void endFetch(final Object obj, final long records) {
+        final FetchEvent event = (FetchEvent) obj;
+        event.records = records;
+        event.commit();
+    }
+
+
+    @Name("org.echosoft.reports.Report")
+    @Label("Report")
+    @Description("Построение отчета")
+    @Category(CATEGORY)
+    static final class ReportEvent extends Event {
+        @Label("Report")
+        String reportId;
+        @Label("Sheets")
+        int sheets;
+    }
+
+    @Name("org.echosoft.reports.Sheet")
+    @Label("Report Sheet")
+    @Description("Обработка листа отчета")
+    @Category(CATEGORY)
+    static final class SheetEvent extends Event {
+        @Label("Report")
+        String reportId;
+        @Label("Sheet")
+        String sheetId;
+        @Label("Last Row")
+        int lastRow;
+    }
+
+    @Name("org.echosoft.reports.Section")
+    @Label("Report Section")
+    @Description("Обработка секции отчета")
+    @Category(CATEGORY)
+    static final class SectionEvent extends Event {
+        @Label("Report")
+        String reportId;
+        @Label("Sheet")
+        String sheetId;
+        @Label("Section")
+        String sectionId;
+        @Label("Records")
+        int records;
+        @Label("First Row")
+        int firstRow;
+        @Label("Last Row")
+        int lastRow;
+    }
+
+    @Name("org.echosoft.reports.DataProvider")
+    @Label("Report Data Provider")
+    @Description("Подготовка данных поставщиком данных секции (для SQL запросов - выполнение запроса)")
+    @Category(CATEGORY)
+    static final class ProviderEvent extends Event {
+        @Label("Report")
+        String reportId;
+        @Label("Section")
+        String sectionId;
+        @Label("Provider")
+        String providerId;
+    }
+
+    @Name("org.echosoft.reports.JdbcFetch")
+    @Label("JDBC Fetch")
+    @Description("Чтение записей из курсора базы данных, от первой записи до исчерпания курсора или его закрытия")
+    @Category(CATEGORY)
+    static final class FetchEvent extends Event {
+        @Label("Report")
+        String reportId;
+        @Label("Sheet")
+        String sheetId;
+        @Label("Section")
+        String sectionId;
+        @Label("Records")
+        long records;
+    }
+}
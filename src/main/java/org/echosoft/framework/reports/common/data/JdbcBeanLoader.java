@@ -1,47 +1,91 @@
 package org.echosoft.framework.reports.common.data;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.Clob;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.echosoft.framework.reports.common.utils.StreamUtil;
-
 /**
+ * Загружает очередную запись из результата SQL запроса в виде ассоциативного массива, где ключами выступают метки колонок
+ * запроса в верхнем регистре. Если при создании загрузчика указан перечень требуемых колонок, то содержимое остальных колонок
+ * запроса не загружается.
+ * Содержимое колонок типа BLOB и CLOB не загружается вместе с записью, вместо него в запись помещается объект {@link LobValue},
+ * обеспечивающий отложенный доступ к содержимому колонки.
+ *
  * @author Anton Sharapov
  */
 public final class JdbcBeanLoader<T> implements Loader<Map<String, Object>> {
 
-    private final ResultSetMetaData meta;
-    private final int cols;
+    private final int[] indexes;
+    private final String[] names;
+    private final int[] types;
+    private final long maxLobSize;
 
     public JdbcBeanLoader(final ResultSet rs) throws SQLException {
-        this.meta = rs.getMetaData();
-        this.cols = meta.getColumnCount();
+        this(rs, null, 0);
     }
 
-    @Override
-    public Map<String, Object> load(final ResultSet rs) throws SQLException, IOException {
-        final HashMap<String, Object> result = new HashMap<>(cols);
+    /**
+     * @param rs      результат SQL запроса.
+     * @param columns метки колонок запроса (в верхнем регистре), которые должны загружаться, или <code>null</code> если
+     *                должны загружаться все колонки запроса.
+     */
+    public JdbcBeanLoader(final ResultSet rs, final Collection<String> columns) throws SQLException {
+        this(rs, columns, 0);
+    }
+
+    /**
+     * @param rs         результат SQL запроса.
+     * @param columns    метки колонок запроса (в верхнем регистре), которые должны загружаться, или <code>null</code> если
+     *                   должны загружаться все колонки запроса.
+     * @param maxLobSize максимальный размер содержимого колонок типа BLOB и CLOB, которое может быть целиком загружено в память,
+     *                   или <code>0</code> если размер не ограничен (см. {@link LobValue#getMaxSize()}).
+     */
+    public JdbcBeanLoader(final ResultSet rs, final Collection<String> columns, final long maxLobSize) throws SQLException {
+        final ResultSetMetaData meta = rs.getMetaData();
+        final int cols = meta.getColumnCount();
+        final int[] indexes = new int[cols];
+        final String[] names = new String[cols];
+        final int[] types = new int[cols];
+        int size = 0;
         for (int i = 1; i <= cols; i++) {
             final String name = meta.getColumnLabel(i).toUpperCase();
+            if (columns != null && !columns.contains(name))
+                continue;
+            indexes[size] = i;
+            names[size] = name;
+            types[size] = meta.getColumnType(i);
+            size++;
+        }
+        this.indexes = Arrays.copyOf(indexes, size);
+        this.names = Arrays.copyOf(names, size);
+        this.types = Arrays.copyOf(types, size);
+        this.maxLobSize = maxLobSize;
+    }
+
+    @Override
+    public Map<String, Object> load(final ResultSet rs) throws SQLException, IOException {
+        final HashMap<String, Object> result = new HashMap<>(indexes.length * 4 / 3 + 1);
+        for (int c = 0; c < indexes.length; c++) {
+            final int i = indexes[c];
             final Object value;
-            switch (meta.getColumnType(i)) {
+            switch (types[c]) {
                 case Types.BLOB: {
-                    byte[] data = null;
-                    final InputStream in = rs.getBinaryStream(i);
-                    if (in != null) {
-                        try {
-                            data = StreamUtil.streamToBytes(in);
-                        } finally {
-                            in.close();
-                        }
-                    }
-                    value = data;
+                    final Blob blob = rs.getBlob(i);
+                    value = blob != null ? new LobValue(blob, maxLobSize) : null;
+                    break;
+                }
+                case Types.CLOB:
+                case Types.NCLOB: {
+                    final Clob clob = rs.getClob(i);
+                    value = clob != null ? new LobValue(clob, maxLobSize) : null;
                     break;
                 }
                 case Types.DATE:
@@ -57,7 +101,7 @@ public final class JdbcBeanLoader<T> implements Loader<Map<String, Object>> {
                     value = rs.getObject(i);
                 }
             }
-            result.put(name, value);
+            result.put(names[c], value);
         }
         return result;
     }
@@ -6,6 +6,7 @@ import java.sql.Statement;
 import java.util.NoSuchElementException;
 
 import org.echosoft.framework.reports.common.collections.issuers.ReadAheadIssuer;
+import org.echosoft.framework.reports.common.utils.JfrEvents;
 
 /**
  * Итератор по курсору данных читаемых из базы данных.<br/>
@@ -43,7 +44,15 @@ public class JdbcIssuer<T> implements ReadAheadIssuer<T> {
     private final Loader<T> loader;
     private T next;
     private boolean scanned;
+    private Object fetchEvent;
+    private long fetched;
 
+    /**
+     * @param conn   соединение с базой данных, которое должно быть закрыто вместе с итератором, или <code>null</code>.
+     * @param stmt   выражение, которое должно быть закрыто вместе с итератором, или <code>null</code>.
+     * @param rs     курсор данных.
+     * @param loader загружает очередную запись из курсора.
+     */
     public JdbcIssuer(final Connection conn, final Statement stmt, final ResultSet rs, final Loader<T> loader) {
         this.conn = conn;
         this.stmt = stmt;
@@ -53,6 +62,21 @@ public class JdbcIssuer<T> implements ReadAheadIssuer<T> {
         this.scanned = false;
     }
 
+    /**
+     * Начинает регистрацию события JFR о чтении записей из курсора (см. {@link JfrEvents}). Событие завершается по исчерпании
+     * курсора или при закрытии итератора.
+     *
+     * @param reportId  идентификатор отчета, для которого выполнялся запрос.
+     * @param sheetId   идентификатор листа отчета.
+     * @param sectionId идентификатор секции отчета.
+     * @return данный итератор.
+     */
+    public JdbcIssuer<T> traceFetch(final String reportId, final String sheetId, final String sectionId) {
+        if (fetchEvent == null)
+            fetchEvent = JfrEvents.beginFetch(reportId, sheetId, sectionId);
+        return this;
+    }
+
     @Override
     public boolean hasNext() throws Exception {
         ensureScanned();
@@ -80,22 +104,38 @@ public class JdbcIssuer<T> implements ReadAheadIssuer<T> {
 
     @Override
     public void close() throws Exception {
+        endFetch();
         try {
             rs.close();
         } finally {
             try {
-                stmt.close();
+                if (stmt != null)
+                    stmt.close();
             } finally {
-                conn.close();
+                if (conn != null)
+                    conn.close();
             }
         }
     }
 
     private void ensureScanned() throws Exception {
         if (!scanned) {
-            next = rs.next() ? loader.load(rs) : null;
+            if (rs.next()) {
+                next = loader.load(rs);
+                fetched++;
+            } else {
+                next = null;
+                endFetch();
+            }
             scanned = true;
         }
     }
 
+    private void endFetch() {
+        if (fetchEvent != null) {
+            JfrEvents.endFetch(fetchEvent, fetched);
+            fetchEvent = null;
+        }
+    }
+
 }
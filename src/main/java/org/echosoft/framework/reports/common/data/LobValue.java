@@ -0,0 +1,174 @@
+package org.echosoft.framework.reports.common.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+
+/**
+ * Отложенный доступ к содержимому колонок типа BLOB и CLOB в результате SQL запроса.
+ * Содержимое объекта считывается из базы данных только при первом обращении к нему (например, из el-выражения
+ * <code>${row:PHOTO.bytes}</code> или из макрофункции), что позволяет не загружать в память содержимое тех объектов,
+ * которые при построении отчета не используются.
+ * <p><strong>Важно!</strong> Содержимое объекта доступно только до тех пор, пока не закрыт курсор, из которого был получен данный объект
+ * (см. {@link JdbcIssuer#close()}).</p>
+ *
+ * @author Anton Sharapov
+ */
+public final class LobValue {
+
+    private final Blob blob;
+    private final Clob clob;
+    private final long maxSize;
+    private long length;
+    private Object content;
+
+    /**
+     * @param blob    объект BLOB, полученный из результата SQL запроса.
+     * @param maxSize максимальный размер (в байтах) содержимого, которое может быть целиком загружено в память,
+     *                или <code>0</code> если размер не ограничен.
+     */
+    public LobValue(final Blob blob, final long maxSize) {
+        if (blob == null)
+            throw new IllegalArgumentException("BLOB must be specified");
+        this.blob = blob;
+        this.clob = null;
+        this.maxSize = maxSize;
+        this.length = -1;
+    }
+
+    /**
+     * @param clob    объект CLOB (или NCLOB), полученный из результата SQL запроса.
+     * @param maxSize максимальный размер (в символах) содержимого, которое может быть целиком загружено в память,
+     *                или <code>0</code> если размер не ограничен.
+     */
+    public LobValue(final Clob clob, final long maxSize) {
+        if (clob == null)
+            throw new IllegalArgumentException("CLOB must be specified");
+        this.blob = null;
+        this.clob = clob;
+        this.maxSize = maxSize;
+        this.length = -1;
+    }
+
+    /**
+     * @return <code>true</code> для объектов типа BLOB, <code>false</code> для объектов типа CLOB.
+     */
+    public boolean isBinary() {
+        return blob != null;
+    }
+
+    /**
+     * @return максимальный размер содержимого, которое может быть целиком загружено в память, или <code>0</code> если размер не ограничен.
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return размер содержимого объекта (в байтах для BLOB, в символах для CLOB).
+     * @throws SQLException в случае ошибок при обращении к базе данных.
+     */
+    public long getLength() throws SQLException {
+        if (length < 0)
+            length = blob != null ? blob.length() : clob.length();
+        return length;
+    }
+
+    /**
+     * Возвращает содержимое объекта в виде массива байт. Содержимое объектов типа CLOB возвращается в кодировке UTF-8.
+     *
+     * @return содержимое объекта.
+     * @throws IOException  если размер содержимого превышает установленный лимит.
+     * @throws SQLException в случае ошибок при обращении к базе данных.
+     */
+    public byte[] getBytes() throws IOException, SQLException {
+        if (blob == null)
+            return getString().getBytes(StandardCharsets.UTF_8);
+        if (content == null)
+            content = blob.getBytes(1, checkLength());
+        return (byte[]) content;
+    }
+
+    /**
+     * Возвращает содержимое объекта в виде строки. Содержимое объектов типа BLOB декодируется из кодировки UTF-8.
+     *
+     * @return содержимое объекта.
+     * @throws IOException  если размер содержимого превышает установленный лимит.
+     * @throws SQLException в случае ошибок при обращении к базе данных.
+     */
+    public String getString() throws IOException, SQLException {
+        if (clob == null)
+            return new String(getBytes(), StandardCharsets.UTF_8);
+        if (content == null)
+            content = clob.getSubString(1, checkLength());
+        return (String) content;
+    }
+
+    /**
+     * Возвращает поток для чтения содержимого объекта типа BLOB. В отличие от {@link #getBytes()}, ограничение на размер содержимого здесь не применяется.
+     *
+     * @return поток для чтения содержимого объекта. Поток должен быть закрыт вызывающим кодом.
+     * @throws SQLException в случае ошибок при обращении к базе данных.
+     * @throws IllegalStateException для объектов типа CLOB.
+     */
+    public InputStream getBinaryStream() throws SQLException {
+        if (blob == null)
+            throw new IllegalStateException("Binary stream is not available for CLOB");
+        return blob.getBinaryStream();
+    }
+
+    /**
+     * Возвращает поток для чтения содержимого объекта типа CLOB. В отличие от {@link #getString()}, ограничение на размер содержимого здесь не применяется.
+     *
+     * @return поток для чтения содержимого объекта. Поток должен быть закрыт вызывающим кодом.
+     * @throws SQLException в случае ошибок при обращении к базе данных.
+     * @throws IllegalStateException для объектов типа BLOB.
+     */
+    public Reader getCharacterStream() throws SQLException {
+        if (clob == null)
+            throw new IllegalStateException("Character stream is not available for BLOB");
+        return clob.getCharacterStream();
+    }
+
+    /**
+     * Освобождает ресурсы, связанные с данным объектом. После вызова этого метода содержимое объекта становится недоступным.
+     *
+     * @throws SQLException в случае ошибок при обращении к базе данных.
+     */
+    public void free() throws SQLException {
+        content = null;
+        if (blob != null) {
+            blob.free();
+        } else
+            clob.free();
+    }
+
+    /**
+     * Для объектов типа CLOB возвращает их содержимое (не более установленного лимита символов), для объектов типа BLOB - их краткое описание.
+     */
+    @Override
+    public String toString() {
+        try {
+            if (blob != null)
+                return "BLOB[" + getLength() + " bytes]";
+            if (content == null && maxSize > 0 && getLength() > maxSize)
+                return clob.getSubString(1, (int) Math.min(maxSize, Integer.MAX_VALUE));
+            return getString();
+        } catch (IOException | SQLException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    private int checkLength() throws IOException, SQLException {
+        final long length = getLength();
+        if (maxSize > 0 && length > maxSize)
+            throw new IOException("LOB size (" + length + ") exceeds the limit (" + maxSize + ")");
+        if (length > Integer.MAX_VALUE)
+            throw new IOException("LOB size (" + length + ") is too large");
+        return (int) length;
+    }
+}
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -21,6 +22,7 @@ import org.echosoft.framework.reports.common.utils.StringUtil;
  * </pre>
  * Класс корректно обработает содержимое текстовых идентификаторов и примечаний разных видов.
  * В качестве символа-указателя предшествующего имени параметра могут использоваться символы <b><code>&amp;</code></b> или <b><code>:</code></b>.
+ * Экземпляры класса неизменяемы и могут совместно использоваться разными потоками.
  *
  * @author Anton Sharapov
  */
@@ -33,8 +35,9 @@ public class ParameterizedSQL implements Serializable {
      * @param namedSql текст SQL запроса в котором возможно есть именованные параметры. Параметр не может быть <code>null</code>.
      */
     public ParameterizedSQL(final String namedSql) {
-        this.paramNames = new ArrayList<>();
+        final List<String> paramNames = new ArrayList<>();
         this.sql = transform(namedSql, paramNames);
+        this.paramNames = Collections.unmodifiableList(paramNames);
     }
 
     /**
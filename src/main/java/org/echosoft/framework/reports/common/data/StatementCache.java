@@ -0,0 +1,211 @@
+package org.echosoft.framework.reports.common.data;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Кэш подготовленных SQL выражений, используемый в рамках построения одного экземпляра отчета.
+ * Позволяет многократно выполнять один и тот же запрос (например, запрос вложенной секции, выполняемый для каждой записи родительской секции)
+ * без повторного получения соединения с базой данных и подготовки выражения.
+ * <p>Для каждого текста запроса и источника данных кэш хранит одно подготовленное выражение. Выражения готовятся в соединениях
+ * с базой данных, которые кэш удерживает до своего закрытия, причем количество таких соединений для каждого источника данных
+ * ограничено (см. {@link #getMaxConnections()}): новые выражения по возможности готовятся в уже полученных соединениях.
+ * Выражение может быть выполнено только если в его соединении нет открытых курсоров, полученных при предыдущих выполнениях
+ * этого или других закэшированных выражений, поскольку не все драйверы JDBC поддерживают несколько одновременно открытых курсоров
+ * в одном соединении. Все соединения закрываются при закрытии кэша.</p>
+ *
+ * @author Anton Sharapov
+ */
+public final class StatementCache implements AutoCloseable {
+
+    /**
+     * Максимальное количество соединений с каждым источником данных, удерживаемых кэшем, по умолчанию.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 2;
+
+    /**
+     * Устанавливает параметры выполнения подготовленного выражения.
+     */
+    @FunctionalInterface
+    public interface Binder {
+        void bind(PreparedStatement pstmt) throws SQLException;
+    }
+
+    /**
+     * Соединение с базой данных и подготовленные в нем выражения.
+     */
+    private static final class Link {
+        private final Connection conn;
+        private final Map<String, Entry> statements;
+
+        private Link(final Connection conn) {
+            this.conn = conn;
+            this.statements = new HashMap<>();
+        }
+
+        /**
+         * @return <code>true</code> если в соединении есть открытый курсор одного из подготовленных в нем выражений.
+         */
+        private boolean isBusy() throws SQLException {
+            for (Entry entry : statements.values()) {
+                if (entry.rs != null && !entry.rs.isClosed())
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class Entry {
+        private final PreparedStatement pstmt;
+        private ResultSet rs;
+
+        private Entry(final PreparedStatement pstmt) {
+            this.pstmt = pstmt;
+        }
+    }
+
+    private final Map<DataSource, List<Link>> links;
+    private final int maxConnections;
+    private int prepared;
+    private int reused;
+    private boolean closed;
+
+    public StatementCache() {
+        this(DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * @param maxConnections максимальное количество соединений с каждым источником данных, удерживаемых кэшем. Не может быть меньше 1.
+     */
+    public StatementCache(final int maxConnections) {
+        if (maxConnections < 1)
+            throw new IllegalArgumentException("Invalid connections limit: " + maxConnections);
+        this.links = new IdentityHashMap<>();
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * @return максимальное количество соединений с каждым источником данных, удерживаемых кэшем.
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Выполняет запрос с помощью закэшированного подготовленного выражения, при необходимости подготавливая его.
+     * Полученный курсор должен быть закрыт вызывающим кодом, соединение и выражение закрываются только при закрытии кэша.
+     *
+     * @param ds     источник данных.
+     * @param query  текст запроса (с анонимными параметрами).
+     * @param binder устанавливает параметры выполнения выражения и значения параметров запроса.
+     * @return курсор с результатами запроса или <code>null</code> если выражение для данного запроса в настоящий момент
+     * не может быть выполнено: в его соединении еще не закрыт курсор предыдущего выполнения этого или другого выражения,
+     * либо для подготовки нового выражения нет свободного соединения, а количество удерживаемых кэшем соединений
+     * с данным источником данных уже достигло ограничения. В этом случае запрос следует выполнить без использования кэша.
+     * @throws SQLException в случае ошибок при обращении к базе данных.
+     */
+    public synchronized ResultSet executeQuery(final DataSource ds, final String query, final Binder binder) throws SQLException {
+        if (closed)
+            throw new IllegalStateException("Statement cache is already closed");
+        final List<Link> connections = links.computeIfAbsent(ds, k -> new ArrayList<>(maxConnections));
+        Entry entry = null;
+        for (Link link : connections) {
+            entry = link.statements.get(query);
+            if (entry != null) {
+                if (link.isBusy())
+                    return null;
+                break;
+            }
+        }
+        if (entry == null) {
+            Link link = null;
+            for (Link candidate : connections) {
+                if (!candidate.isBusy()) {
+                    link = candidate;
+                    break;
+                }
+            }
+            if (link == null) {
+                if (connections.size() >= maxConnections)
+                    return null;
+                final Connection conn = ds.getConnection();
+                link = new Link(conn);
+                connections.add(link);
+            }
+            entry = new Entry(link.conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY));
+            link.statements.put(query, entry);
+            prepared++;
+        } else {
+            entry.pstmt.clearParameters();
+            reused++;
+        }
+        entry.rs = null;
+        binder.bind(entry.pstmt);
+        entry.rs = entry.pstmt.executeQuery();
+        return entry.rs;
+    }
+
+    /**
+     * @return количество выражений, подготовленных с момента создания кэша.
+     */
+    public synchronized int getPreparedCount() {
+        return prepared;
+    }
+
+    /**
+     * @return количество повторных использований ранее подготовленных выражений.
+     */
+    public synchronized int getReusedCount() {
+        return reused;
+    }
+
+    /**
+     * @param ds источник данных.
+     * @return количество соединений с указанным источником данных, удерживаемых кэшем в настоящий момент.
+     */
+    public synchronized int getConnectionsCount(final DataSource ds) {
+        final List<Link> connections = links.get(ds);
+        return connections != null ? connections.size() : 0;
+    }
+
+    /**
+     * Закрывает все подготовленные выражения и соответствующие им соединения с базой данных.
+     *
+     * @throws SQLException первая из ошибок, возникших при закрытии выражений и соединений (остальные ошибки добавляются к ней как подавленные).
+     */
+    @Override
+    public synchronized void close() throws SQLException {
+        closed = true;
+        SQLException error = null;
+        for (List<Link> connections : links.values()) {
+            for (Link link : connections) {
+                final List<AutoCloseable> resources = new ArrayList<>(link.statements.size() + 1);
+                for (Entry entry : link.statements.values()) {
+                    resources.add(entry.pstmt);
+                }
+                resources.add(link.conn);
+                for (AutoCloseable resource : resources) {
+                    try {
+                        resource.close();
+                    } catch (Exception e) {
+                        if (error == null) {
+                            error = e instanceof SQLException ? (SQLException) e : new SQLException(e.getMessage(), e);
+                        } else
+                            error.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        links.clear();
+        if (error != null)
+            throw error;
+    }
+}
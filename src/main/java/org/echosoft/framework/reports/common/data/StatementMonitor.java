@@ -0,0 +1,21 @@
+package org.echosoft.framework.reports.common.data;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Получает SQL выражения, которые используются для получения данных отчета, непосредственно перед их выполнением.
+ * Позволяет, например, прервать выполнение этих выражений при отмене построения отчета или ограничить время их выполнения.
+ *
+ * @author Anton Sharapov
+ */
+public interface StatementMonitor {
+
+    /**
+     * Регистрирует SQL выражение перед его выполнением.
+     *
+     * @param stmt SQL выражение.
+     * @throws SQLException в случае ошибок при настройке выражения.
+     */
+    public void register(Statement stmt) throws SQLException;
+}
@@ -102,6 +102,28 @@ public class BeanUtil {
         return result;
     }
 
+    /**
+     * Проверяет может ли быть вычислено выражение <code>expr</code> для объектов указанного класса, т.е. имеется ли в классе свойство
+     * (или метод) на которое ссылается первый элемент выражения. Для классов, реализующих интерфейс {@link Map}, всегда возвращает <code>true</code>.
+     * В отличие от попытки вычисления выражения с помощью {@link #getProperty(Object, String)} не поднимает исключений в случае отсутствия такого свойства,
+     * а использует закэшированные метаданные класса.
+     *
+     * @param cls  класс объекта относительно которого будет вычисляться выражение.
+     * @param expr вычисляемое выражение.
+     * @return <code>true</code> если класс имеет свойство, на которое ссылается первый элемент выражения.
+     */
+    public static boolean hasProperty(final Class<?> cls, final String expr) {
+        int end = 0;
+        final int length = expr.length();
+        while (end < length) {
+            final char c = expr.charAt(end);
+            if (c == '.' || c == '[' || c == '(')
+                break;
+            end++;
+        }
+        return end == 0 || getMetadata(cls).hasProperty(expr.substring(0, end));
+    }
+
     /**
      * Устанавливает новое значение свойства объекта. Допускается использование вложенных свойств.
      * <p><strong>Важно: </strong> Если в процессе установки значения для выражения вида <code>a.b.c</code> значение подвыражения <code>a</code> или <code>a.b</code> было вычислено как <code>null</code> то
@@ -318,6 +340,10 @@ public class BeanUtil {
             }
         }
 
+        public boolean hasProperty(final String name) {
+            return inheritsMapInterface || getters.containsKey(name);
+        }
+
         public Object getValue(final Object bean, final String name) throws InvocationTargetException, IllegalAccessException {
             final Getter getter = getters.get(name);
             if (getter != null) {
@@ -0,0 +1,95 @@
+package org.echosoft.framework.reports.common.utils;
+
+/**
+ * <p>Регистрирует события JDK Flight Recorder для основных этапов построения отчетов: построение отчета в целом,
+ * обработка листа, обработка секции, получение данных от поставщика и чтение записей из курсора базы данных.
+ * Это позволяет сопоставлять медленные отчеты с событиями сборщика мусора, ввода-вывода и блокировок в одной записи JFR.</p>
+ * <p>Описания событий требуют JDK 11 и выше, поэтому вынесены в отдельный набор исходных текстов (<code>src/main/java-jfr</code>),
+ * который компилируется только при сборке проекта на соответствующей версии JDK, и загружаются динамически.
+ * Если описания событий отсутствуют или используемая JVM не поддерживает JFR, то все методы данного класса ничего не делают.
+ * Если JFR поддерживается, но соответствующие события не записываются, то методы <code>begin*</code> возвращают <code>null</code>,
+ * а методы <code>end*</code> при получении <code>null</code> сразу завершают свою работу.</p>
+ *
+ * @author Anton Sharapov
+ */
+public final class JfrEvents {
+
+    private static final Recorder recorder = makeRecorder();
+
+    private JfrEvents() {
+    }
+
+    /**
+     * @return <code>true</code> если используемая JVM поддерживает регистрацию событий JFR.
+     */
+    public static boolean isSupported() {
+        return recorder != null;
+    }
+
+    public static Object beginReport(final String reportId) {
+        return recorder != null ? recorder.beginReport(reportId) : null;
+    }
+    public static void endReport(final Object event, final int sheets) {
+        if (event != null)
+            recorder.endReport(event, sheets);
+    }
+
+    public static Object beginSheet(final String reportId, final String sheetId) {
+        return recorder != null ? recorder.beginSheet(reportId, sheetId) : null;
+    }
+    public static void endSheet(final Object event, final int lastRow) {
+        if (event != null)
+            recorder.endSheet(event, lastRow);
+    }
+
+    public static Object beginSection(final String reportId, final String sheetId, final String sectionId, final int firstRow) {
+        return recorder != null ? recorder.beginSection(reportId, sheetId, sectionId, firstRow) : null;
+    }
+    public static void endSection(final Object event, final int records, final int lastRow) {
+        if (event != null)
+            recorder.endSection(event, records, lastRow);
+    }
+
+    public static Object beginProvider(final String reportId, final String sectionId, final String providerId) {
+        return recorder != null ? recorder.beginProvider(reportId, sectionId, providerId) : null;
+    }
+    public static void endProvider(final Object event) {
+        if (event != null)
+            recorder.endProvider(event);
+    }
+
+    public static Object beginFetch(final String reportId, final String sheetId, final String sectionId) {
+        return recorder != null ? recorder.beginFetch(reportId, sheetId, sectionId) : null;
+    }
+    public static void endFetch(final Object event, final long records) {
+        if (event != null)
+            recorder.endFetch(event, records);
+    }
+
+    private static Recorder makeRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            final Class<?> cls = Class.forName(JfrEvents.class.getPackage().getName() + ".JfrEventTypes");
+            return (Recorder) cls.getDeclaredConstructor().newInstance();
+        } catch (Throwable th) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Регистрирует события JFR. Реализуется классом <code>JfrEventTypes</code> (см. <code>src/main/java-jfr</code>).
+     */
+    interface Recorder {
+        public Object beginReport(String reportId);
+        public void endReport(Object event, int sheets);
+        public Object beginSheet(String reportId, String sheetId);
+        public void endSheet(Object event, int lastRow);
+        public Object beginSection(String reportId, String sheetId, String sectionId, int firstRow);
+        public void endSection(Object event, int records, int lastRow);
+        public Object beginProvider(String reportId, String sectionId, String providerId);
+        public void endProvider(Object event);
+        public Object beginFetch(String reportId, String sheetId, String sectionId);
+        public void endFetch(Object event, long records);
+    }
+}
@@ -7,8 +7,10 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -277,6 +279,23 @@ public class ObjectUtil {
         }
     }
 
+    /**
+     * Проверяет, что экземпляры указанного класса не имеют собственного состояния, т.е. ни сам класс, ни его предки
+     * не объявляют нестатических полей. Один экземпляр такого класса может многократно использоваться вместо новых экземпляров.
+     *
+     * @param cls проверяемый класс.
+     * @return <code>true</code> если экземпляры класса не имеют собственного состояния.
+     */
+    public static boolean isStateless(final Class<?> cls) {
+        for (Class<?> c = cls; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()))
+                    return false;
+            }
+        }
+        return true;
+    }
+
     @SuppressWarnings("unchecked")
     public static <T> Class<T> loadClass(final String name) throws ClassNotFoundException {
         try {
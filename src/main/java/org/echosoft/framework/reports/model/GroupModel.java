@@ -1,6 +1,8 @@
 package org.echosoft.framework.reports.model;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.TreeMap;
 
 /**
@@ -162,6 +164,15 @@ public class GroupModel implements Serializable, Cloneable {
         return styles.size();
     }
 
+    /**
+     * Возвращает все зарегистрированные варианты оформления данной группировки.
+     *
+     * @return варианты оформления группировки, упорядоченные по их уровню.
+     */
+    public Collection<GroupStyle> getStyles() {
+        return Collections.unmodifiableCollection(styles.values());
+    }
+
     /**
      * Регистрирует новый стиль оформления данной группы.
      *
@@ -44,6 +44,36 @@ public class Report implements Serializable {
         }
     }
 
+    /**
+     * Перечень возможных способов записи строковых значений ячеек при генерации отчета в формате {@link TargetType#SXSSF}.
+     */
+    public static enum StringsStrategy {
+        /**
+         * Все строки записываются непосредственно в ячейки (inline strings). Минимальные затраты памяти, но повторяющиеся
+         * значения многократно дублируются в итоговом документе.
+         */
+        INLINE,
+        /**
+         * Все строки записываются в общую для всей книги таблицу строк (shared strings table), которая целиком хранится в памяти
+         * до завершения формирования отчета. Минимальный размер документа, но затраты памяти растут с количеством уникальных строк.
+         */
+        SHARED,
+        /**
+         * В общую таблицу строк попадают только повторяющиеся значения (не более заданного количества), все прочие строки
+         * записываются непосредственно в ячейки. Подходит для отчетов с большим количеством повторяющихся значений (статусы,
+         * наименования регионов, коды продукции и т.д.).
+         */
+        BOUNDED;
+
+        public static StringsStrategy findByName(final String name, final StringsStrategy defaultStrategy) {
+            for (StringsStrategy strategy : values()) {
+                if (strategy.name().equals(name))
+                    return strategy;
+            }
+            return defaultStrategy;
+        }
+    }
+
     /**
      * Идентификатор отчета.
      */
@@ -97,6 +127,29 @@ public class Report implements Serializable {
      */
     private boolean streamUseCompression;
 
+    /**
+     * Используется при генерации отчета в формате {@link TargetType#SXSSF}.
+     * Определяет способ записи в документ строковых значений ячеек.
+     */
+    private StringsStrategy streamStrings;
+
+    /**
+     * Используется при генерации отчета в формате {@link TargetType#SXSSF} со способом записи строк {@link StringsStrategy#BOUNDED}.
+     * Задает максимальное количество строк которые могут быть добавлены в общую таблицу строк документа.
+     */
+    private int streamStringsLimit;
+
+    /**
+     * Идентификатор поставщика данных, записи которого используются для разделения отчета на отдельные экземпляры
+     * (см. {@link org.echosoft.framework.reports.processor.ExcelReportProcessor#processBurst}). Может быть <code>null</code>.
+     */
+    private String burstProvider;
+
+    /**
+     * Имя свойства записей поставщика данных {@link #burstProvider}, по значениям которого отчет разделяется на отдельные экземпляры.
+     */
+    private String burstKey;
+
     /**
      * Дополнительное описание отчета.
      */
@@ -135,6 +188,8 @@ public class Report implements Serializable {
         this.id = id;
         this.target = TargetType.HSSF;
         this.streamWindowSize = 1000;
+        this.streamStrings = StringsStrategy.INLINE;
+        this.streamStringsLimit = 10000;
         this.description = new ReportDescription();
         this.sheets = new ArrayList<>();
         this.palette = new StylePalette(wb);
@@ -162,6 +217,10 @@ public class Report implements Serializable {
         template = src.template;
         streamWindowSize = src.streamWindowSize;
         streamUseCompression = src.streamUseCompression;
+        streamStrings = src.streamStrings;
+        streamStringsLimit = src.streamStringsLimit;
+        burstProvider = src.burstProvider;
+        burstKey = src.burstKey;
         description = (ReportDescription) src.description.clone();
         palette = (StylePalette) src.palette.clone();
         macros = new HashMap<>();
@@ -310,6 +369,51 @@ public class Report implements Serializable {
         this.streamUseCompression = streamUseCompression;
     }
 
+    /**
+     * Используется при генерации отчета в формате {@link TargetType#SXSSF}.
+     * Определяет способ записи в документ строковых значений ячеек. По умолчанию используется {@link StringsStrategy#INLINE}.
+     */
+    public StringsStrategy getStreamStrings() {
+        return streamStrings;
+    }
+    public void setStreamStrings(final StringsStrategy streamStrings) {
+        this.streamStrings = streamStrings != null ? streamStrings : StringsStrategy.INLINE;
+    }
+
+    /**
+     * Используется при генерации отчета в формате {@link TargetType#SXSSF} со способом записи строк {@link StringsStrategy#BOUNDED}.
+     * Задает максимальное количество строк которые могут быть добавлены в общую таблицу строк документа.
+     * Значения меньше или равные 0 не допустимы (будет установлено значение по умолчанию).
+     */
+    public int getStreamStringsLimit() {
+        return streamStringsLimit;
+    }
+    public void setStreamStringsLimit(final int streamStringsLimit) {
+        this.streamStringsLimit = streamStringsLimit > 0 ? streamStringsLimit : 10000;
+    }
+
+    /**
+     * Идентификатор поставщика данных, записи которого используются для разделения отчета на отдельные экземпляры
+     * по значениям свойства {@link #getBurstKey()}. Записи поставщика должны быть упорядочены по значениям этого свойства.
+     * Для каждого значения строится отдельный экземпляр отчета, в котором этот поставщик возвращает только записи с данным значением.
+     */
+    public String getBurstProvider() {
+        return burstProvider;
+    }
+    public void setBurstProvider(final String burstProvider) {
+        this.burstProvider = StringUtil.trim(burstProvider);
+    }
+
+    /**
+     * Имя свойства записей поставщика данных {@link #getBurstProvider()}, по значениям которого отчет разделяется на отдельные экземпляры.
+     */
+    public String getBurstKey() {
+        return burstKey;
+    }
+    public void setBurstKey(final String burstKey) {
+        this.burstKey = StringUtil.trim(burstKey);
+    }
+
     /**
      * Возвращает дополнительную информацию, которая при построении отчета будет транслирована в соответствующие
      * свойства документа excel.
@@ -1,8 +1,13 @@
 package org.echosoft.framework.reports.model;
 
 import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 import org.apache.poi.hssf.record.PaletteRecord;
 import org.apache.poi.hssf.usermodel.HSSFCellStyle;
@@ -218,42 +223,167 @@ public class StylePalette implements Serializable, Cloneable {
 
 
     /**
-     * Копирует все стили из данной модели в целевой документ.
+     * Переносит стили из данной модели в целевой документ.
+     * Цвета палитры регистрируются в документе сразу, а шрифты, форматы данных и стили ячеек создаются в документе
+     * только при первом обращении к соответствующему стилю через возвращаемую методом таблицу трансляции.
+     * Благодаря этому в итоговый документ попадают только те стили, которые действительно используются в нем.
      *
      * @param wb целевой документ куда должны быть перенесены все цвета, шрифты и стили данной модели.
      * @return таблица трансляции кодой стилей модели в стили целевого документа (в процессе создания стилей в целевом документе у них меняется индекс).
      */
     public Map<Short, CellStyle> applyTo(final Workbook wb) {
         if (wb instanceof HSSFWorkbook) {
-            return applyTo((HSSFWorkbook) wb);
+            applyColors((HSSFWorkbook) wb);
+            return new AppliedStyles(wb);
         } else
         if (wb instanceof XSSFWorkbook) {
-            return applyTo((XSSFWorkbook) wb);
+            return new AppliedStyles(wb);
         } else
         if (wb instanceof SXSSFWorkbook) {
-            return applyTo(((SXSSFWorkbook) wb).getXSSFWorkbook());
+            return new AppliedStyles(((SXSSFWorkbook) wb).getXSSFWorkbook());
         } else
             throw new IllegalArgumentException("Unknown workbook implementation: " + wb);
     }
 
-    private Map<Short, CellStyle> applyTo(final HSSFWorkbook wb) {
-        final Map<Short, CellStyle> result = new HashMap<>();
-
+    private void applyColors(final HSSFWorkbook wb) {
         if (colors.size() > PaletteRecord.STANDARD_PALETTE_SIZE)
             throw new RuntimeException("Too many colors in report for HSSF format");
         final HSSFPalette pal = wb.getCustomPalette();
         for (final ColorModel color : colors.values()) {
             pal.setColorAtIndex(color.getId(), color.getRed(), color.getGreen(), color.getBlue());
         }
+    }
+
+
+    /**
+     * Таблица трансляции кодов стилей модели в стили целевого документа.
+     * Стили (и используемые ими шрифты и форматы данных) создаются в целевом документе при первом обращении к ним.
+     */
+    private final class AppliedStyles extends AbstractMap<Short, CellStyle> {
+        private final Workbook wb;
+        private final Map<Short, CellStyle> cache;
+        private final Map<Integer, Font> fontsmap;
+        private DataFormat formatter;
+
+        private AppliedStyles(final Workbook wb) {
+            this.wb = wb;
+            this.cache = new HashMap<>();
+            this.fontsmap = new HashMap<>();
+        }
+
+        @Override
+        public CellStyle get(final Object key) {
+            CellStyle result = cache.get(key);
+            if (result == null) {
+                final CellStyleModel style = styles.get(key);
+                if (style == null)
+                    return null;
+                result = wb instanceof HSSFWorkbook ? makeStyle((HSSFWorkbook) wb, style) : makeStyle((XSSFWorkbook) wb, style);
+                cache.put(style.getId(), result);
+            }
+            return result;
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return styles.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return styles.size();
+        }
 
-        final Map<Integer, Font> fontsmap = new HashMap<>();
-        for (final FontModel font : fonts.values()) {
-            final Font f = POIUtils.ensureFontExists(wb, font);
-            fontsmap.put(font.getId(), f);
+        /**
+         * Возвращает представление таблицы трансляции в виде набора пар. Перебор элементов набора не создает стилей в документе:
+         * стиль создается только при обращении к значению соответствующей пары.
+         */
+        @Override
+        public Set<Entry<Short, CellStyle>> entrySet() {
+            return new AbstractSet<Entry<Short, CellStyle>>() {
+                @Override
+                public Iterator<Entry<Short, CellStyle>> iterator() {
+                    final Iterator<Short> keys = styles.keySet().iterator();
+                    return new Iterator<Entry<Short, CellStyle>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return keys.hasNext();
+                        }
+
+                        @Override
+                        public Entry<Short, CellStyle> next() {
+                            return new LazyEntry(keys.next());
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return styles.size();
+                }
+            };
         }
 
-        final DataFormat formatter = wb.createDataFormat();
-        for (final CellStyleModel style : styles.values()) {
+        /**
+         * Пара из таблицы трансляции, стиль для которой создается в документе при первом обращении к значению.
+         */
+        private final class LazyEntry implements Entry<Short, CellStyle> {
+            private final Short key;
+
+            private LazyEntry(final Short key) {
+                this.key = key;
+            }
+
+            @Override
+            public Short getKey() {
+                return key;
+            }
+
+            @Override
+            public CellStyle getValue() {
+                return get(key);
+            }
+
+            @Override
+            public CellStyle setValue(final CellStyle value) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public boolean equals(final Object obj) {
+                if (!(obj instanceof Entry))
+                    return false;
+                final Entry<?, ?> other = (Entry<?, ?>) obj;
+                return key.equals(other.getKey()) && Objects.equals(getValue(), other.getValue());
+            }
+
+            @Override
+            public int hashCode() {
+                return key.hashCode() ^ Objects.hashCode(getValue());
+            }
+
+            @Override
+            public String toString() {
+                return key + "=" + getValue();
+            }
+        }
+
+        private DataFormat getFormatter() {
+            if (formatter == null)
+                formatter = wb.createDataFormat();
+            return formatter;
+        }
+
+        private Font getFont(final FontModel font) {
+            Font result = fontsmap.get(font.getId());
+            if (result == null) {
+                result = wb instanceof HSSFWorkbook ? POIUtils.ensureFontExists((HSSFWorkbook) wb, font) : POIUtils.ensureFontExists((XSSFWorkbook) wb, font);
+                fontsmap.put(font.getId(), result);
+            }
+            return result;
+        }
+
+        private CellStyle makeStyle(final HSSFWorkbook wb, final CellStyleModel style) {
             final short tbc = style.getTopBorderColor() != null ? style.getTopBorderColor().getId() : 0;
             final short rbc = style.getRightBorderColor() != null ? style.getRightBorderColor().getId() : 0;
             final short bbc = style.getBottomBorderColor() != null ? style.getBottomBorderColor().getId() : 0;
@@ -264,7 +394,7 @@ public class StylePalette implements Serializable, Cloneable {
             final CellStyle s = wb.createCellStyle();
             s.setAlignment(style.getAlignment());
             s.setVerticalAlignment(style.getVerticalAlignment());
-            s.setDataFormat(formatter.getFormat(style.getDataFormat()));
+            s.setDataFormat(getFormatter().getFormat(style.getDataFormat()));
             s.setHidden(style.isHidden());
             s.setIndention(style.getIndention());
             s.setLocked(style.isLocked());
@@ -281,24 +411,11 @@ public class StylePalette implements Serializable, Cloneable {
             s.setRightBorderColor(rbc);
             s.setBottomBorderColor(bbc);
             s.setLeftBorderColor(lbc);
-            s.setFont(fontsmap.get(style.getFont().getId()));
-            result.put(style.getId(), s);
-        }
-
-        return result;
-    }
-
-    private Map<Short, CellStyle> applyTo(final XSSFWorkbook wb) {
-        final Map<Short, CellStyle> result = new HashMap<>();
-
-        final Map<Integer, Font> fontsmap = new HashMap<>();
-        for (final FontModel font : fonts.values()) {
-            final Font f = POIUtils.ensureFontExists(wb, font);
-            fontsmap.put(font.getId(), f);
+            s.setFont(getFont(style.getFont()));
+            return s;
         }
 
-        final DataFormat formatter = wb.createDataFormat();
-        for (final CellStyleModel style : styles.values()) {
+        private CellStyle makeStyle(final XSSFWorkbook wb, final CellStyleModel style) {
             final XSSFColor tbc = style.getTopBorderColor() != null ? POIUtils.makeXSSFColor(style.getTopBorderColor()) : null;
             final XSSFColor rbc = style.getRightBorderColor() != null ? POIUtils.makeXSSFColor(style.getRightBorderColor()) : null;
             final XSSFColor bbc = style.getBottomBorderColor() != null ? POIUtils.makeXSSFColor(style.getBottomBorderColor()) : null;
@@ -309,7 +426,7 @@ public class StylePalette implements Serializable, Cloneable {
             final XSSFCellStyle s = wb.createCellStyle();
             s.setAlignment(style.getAlignment());
             s.setVerticalAlignment(style.getVerticalAlignment());
-            s.setDataFormat(formatter.getFormat(style.getDataFormat()));
+            s.setDataFormat(getFormatter().getFormat(style.getDataFormat()));
             s.setHidden(style.isHidden());
             s.setIndention(style.getIndention());
             s.setLocked(style.isLocked());
@@ -334,11 +451,9 @@ public class StylePalette implements Serializable, Cloneable {
                 s.setBottomBorderColor(bbc);
             if (lbc != null)
                 s.setLeftBorderColor(lbc);
-            s.setFont(fontsmap.get(style.getFont().getId()));
-            result.put(style.getId(), s);
+            s.setFont(getFont(style.getFont()));
+            return s;
         }
-
-        return result;
     }
 
 
@@ -1,8 +1,9 @@
 package org.echosoft.framework.reports.model.el;
 
-import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 
 import org.apache.poi.ss.usermodel.RichTextString;
 import org.echosoft.framework.reports.common.utils.BeanUtil;
@@ -70,6 +71,28 @@ public class BaseExpression implements Expression {
     }
 
 
+    /**
+     * Добавляет в указанную коллекцию имена всех свойств модели данных текущей строки отчета (см. {@link ELContext#getRowModel()}),
+     * на которые ссылается данное выражение. Учитываются ссылки как из пространства имен {@link ELContext.Scope#ROW}, так и ссылки
+     * без явного указания пространства имен, поскольку последние в первую очередь разрешаются через модель данных текущей строки.
+     * Для вложенных свойств (например, <code>${row:OWNER.login}</code>) добавляется только имя свойства верхнего уровня.
+     *
+     * @param properties коллекция в которую добавляются имена свойств.
+     */
+    public void collectRowProperties(final Collection<String> properties) {
+        for (Chunk chunk : chunks) {
+            if (chunk instanceof PatternChunk) {
+                for (ParsedExpression expr : ((PatternChunk) chunk).expressions) {
+                    if (expr.scope == null || expr.scope == ELContext.Scope.ROW) {
+                        final int i = expr.attrName.indexOf('[');
+                        properties.add(i > 0 ? expr.attrName.substring(0, i) : expr.attrName);
+                    }
+                }
+            }
+        }
+    }
+
+
     protected void init(final Object expression) {
         final String text;
         if (expression instanceof String) {
@@ -96,12 +119,12 @@ public class BaseExpression implements Expression {
                     chunks.add(new StaticChunk(text.substring(a, i)));
 
                 String expr = text.substring(i + START_MARK_LEN, j).trim();
-                MessageFormat formatter = null;
+                PatternFormat formatter = null;
                 if (expr.indexOf('(') == 0) {
                     final int endPos = expr.indexOf(')', 0);
                     String pattern = expr.substring(1, endPos).trim();
                     if (pattern.length() > 0)
-                        formatter = new MessageFormat("{0," + pattern + "}");
+                        formatter = PatternFormat.getInstance(pattern, Locale.getDefault());
                     expr = expr.substring(endPos + 1).trim();
                 }
                 chunks.add(new PatternChunk(formatter, expr));
@@ -153,10 +176,10 @@ public class BaseExpression implements Expression {
 
 
     private static final class PatternChunk implements Chunk {
-        private final MessageFormat formatter;
+        private volatile PatternFormat formatter;     // форматтер для локали, использованной при последнем вычислении
         private final ArrayList<ParsedExpression> expressions;
 
-        public PatternChunk(final MessageFormat formatter, final String expression) {
+        public PatternChunk(final PatternFormat formatter, final String expression) {
             this.formatter = formatter;
             this.expressions = new ArrayList<>(2);
 
@@ -198,7 +221,13 @@ public class BaseExpression implements Expression {
         public Object evaluate(final ELContext context) throws Exception {
             Object result = null;
             for (ParsedExpression expr : expressions) {
-                result = context.getAttribute(expr.attrName, expr.scope);
+                if (expr.scope == ELContext.Scope.VAR) {
+                    result = context.getVariable(expr.getSlot(), expr.attrName);
+                } else
+                if (expr.scope != null) {
+                    result = context.getAttribute(expr.attrName, expr.scope);
+                } else
+                    result = context.getAttribute(expr.attrName, expr.isRowProperty(context.getRowModel()));
                 if (expr.property != null) {
                     result = BeanUtil.getProperty(result, expr.property);
                 }
@@ -207,10 +236,12 @@ public class BaseExpression implements Expression {
             }
 
             if (formatter != null && result != null) {
-                formatter.setLocale(context.getLocale());
-                if (!(result instanceof Object[]))
-                    result = new Object[]{result};
-                return formatter.format(result);
+                PatternFormat f = formatter;
+                if (!f.locale.equals(context.getLocale())) {
+                    f = PatternFormat.getInstance(f.pattern, context.getLocale());
+                    formatter = f;
+                }
+                return f.format(result);
             } else
                 return result;
         }
@@ -223,12 +254,50 @@ public class BaseExpression implements Expression {
         public final String attrName;
         public final String property;
 
+        /**
+         * Для атрибутов без явно указанного пространства имен: класс модели данных строки, для которого в последний раз
+         * определялось пространство имен атрибута, и результат этого определения.
+         */
+        private transient volatile Binding binding;
+
+        /**
+         * Для атрибутов из пространства имен {@link ELContext.Scope#VAR}: порядковый номер слота переменной
+         * (см. {@link ELContext#registerSlot(String)}) или <code>-1</code> если для переменной слот не зарегистрирован.
+         */
+        private int slot;
+
         public ParsedExpression(final ELContext.Scope scope, final String attrName, final String property) {
             if (attrName == null || attrName.length() == 0)
                 throw new IllegalArgumentException("attr name must be specified");
             this.scope = scope;
             this.attrName = attrName;
             this.property = property;
+            this.slot = scope == ELContext.Scope.VAR ? ELContext.getSlot(attrName) : -1;
+        }
+
+        /**
+         * Возвращает слот переменной. Если на момент разбора выражения слот для переменной еще не был зарегистрирован,
+         * то проверяет не был ли он зарегистрирован с тех пор.
+         */
+        private int getSlot() {
+            if (slot < 0)
+                slot = ELContext.getSlot(attrName);
+            return slot;
+        }
+
+        /**
+         * Определяет следует ли разрешать данный атрибут (указанный без пространства имен) как свойство модели данных текущей строки.
+         * Результат запоминается и пересчитывается только при смене класса модели данных.
+         */
+        private boolean isRowProperty(final Object bean) {
+            if (bean == null)
+                return false;
+            Binding b = binding;
+            if (b == null || b.cls != bean.getClass()) {
+                b = new Binding(bean.getClass(), BeanUtil.hasProperty(bean.getClass(), attrName));
+                binding = b;
+            }
+            return b.rowProperty;
         }
 
         @Override
@@ -236,5 +305,16 @@ public class BaseExpression implements Expression {
             return "{scope:" + scope + ", attr:" + attrName + ", property:" + property + "}";
         }
     }
+
+
+    private static final class Binding {
+        private final Class<?> cls;
+        private final boolean rowProperty;
+
+        private Binding(final Class<?> cls, final boolean rowProperty) {
+            this.cls = cls;
+            this.rowProperty = rowProperty;
+        }
+    }
 }
 
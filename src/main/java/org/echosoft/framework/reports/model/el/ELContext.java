@@ -1,13 +1,18 @@
 package org.echosoft.framework.reports.model.el;
 
 import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import org.echosoft.framework.reports.common.utils.BeanUtil;
+import org.echosoft.framework.reports.processor.ExecutionControl;
 
 /**
  * Содержит информацию используемую при вычислении выражений в ячейках отчета.
@@ -19,6 +24,43 @@ public class ELContext {
 
     public static enum Scope {ROW, VAR, ENV, CONST}
 
+    /**
+     * Зарегистрированные слоты переменных (см. {@link #registerSlot(String)}). Изменяется только путем замены экземпляра целиком.
+     */
+    private static volatile Map<String, Integer> slots = Collections.emptyMap();
+
+    /**
+     * Регистрирует слот для целочисленной переменной с указанным именем. Значения таких переменных хранятся в контексте
+     * без упаковки в объекты и без обращения к хэш-таблице (см. {@link #setSlotValue(int, int)}), что существенно для переменных,
+     * изменяемых при отрисовке каждой строки отчета (например, номер текущей строки или записи). При этом переменная остается
+     * доступной под своим именем и через {@link #getVariables()}.
+     *
+     * @param name имя переменной.
+     * @return порядковый номер слота переменной. Повторная регистрация того же имени возвращает тот же номер.
+     */
+    public static synchronized int registerSlot(final String name) {
+        if (name == null)
+            throw new IllegalArgumentException("Variable name must be specified");
+        final Integer slot = slots.get(name);
+        if (slot != null)
+            return slot;
+        final Map<String, Integer> result = new HashMap<>(slots);
+        result.put(name, result.size());
+        slots = result;
+        return result.size() - 1;
+    }
+
+    /**
+     * Возвращает порядковый номер слота переменной с указанным именем.
+     *
+     * @param name имя переменной.
+     * @return порядковый номер слота или <code>-1</code> если для переменной с таким именем слот не зарегистрирован.
+     */
+    public static int getSlot(final String name) {
+        final Integer slot = slots.get(name);
+        return slot != null ? slot : -1;
+    }
+
     /**
      * Некоторый объект, описывающий одну строку данных (ту, которая в настоящий момент формируется в
      * выходном документе Excel).
@@ -33,6 +75,16 @@ public class ELContext {
      */
     protected final Map<String, Object> var;
 
+    /**
+     * Значения переменных, для которых были зарегистрированы слоты (см. {@link #registerSlot(String)}).
+     */
+    private int[] slotValues;
+
+    /**
+     * Признаки наличия значений в соответствующих слотах из {@link #slotValues}.
+     */
+    private boolean[] slotAssigned;
+
     /**
      * Переменные окружения, для которых выполняется построение отчета.
      * Задаются программистом перед построением отчета.
@@ -46,6 +98,23 @@ public class ELContext {
 
     protected final Map<Scope, Map<String, Object>> scopes;
 
+    /**
+     * Максимальное количество записей, получаемых каждой секцией отчета от своего поставщика данных.
+     * Значение <code>0</code> означает отсутствие ограничений.
+     */
+    protected int maxRecords;
+
+    /**
+     * Максимальное количество строк на каждом листе отчета, после достижения которого обработка записей от поставщиков данных прекращается.
+     * Значение <code>0</code> означает отсутствие ограничений.
+     */
+    protected int maxRows;
+
+    /**
+     * Объект управления построением отчета или <code>null</code> если построение отчета не может быть прервано и не имеет ограничений по времени и объему.
+     */
+    protected ExecutionControl control;
+
     /**
      * Инициализируем контекст перед началом формирования очередного отчета значениями по умолчанию.
      */
@@ -62,7 +131,9 @@ public class ELContext {
     public ELContext(final Locale locale, final Map<String, Object> env) {
         this.locale = locale != null ? locale : Locale.getDefault();
         this.env = env != null ? env : new HashMap<String, Object>();
-        var = new HashMap<>();
+        var = new Variables();
+        slotValues = new int[Math.max(slots.size(), 4)];
+        slotAssigned = new boolean[slotValues.length];
         scopes = new HashMap<>(4);
         scopes.put(Scope.ENV, this.env);
         scopes.put(Scope.VAR, this.var);
@@ -122,10 +193,144 @@ public class ELContext {
         this.bean = bean;
     }
 
+    /**
+     * Возвращает максимальное количество записей, которое каждая секция отчета получит от своего поставщика данных.
+     * Используется при построении сокращенных версий отчета (например, для предварительного просмотра).
+     *
+     * @return максимальное количество записей или <code>0</code> если количество записей не ограничено.
+     */
+    public int getMaxRecords() {
+        return maxRecords;
+    }
+
+    /**
+     * Ограничивает количество записей, которое каждая секция отчета получит от своего поставщика данных.
+     * Поставщики данных, поддерживающие такую возможность, передают это ограничение своему источнику данных
+     * (см. {@link org.echosoft.framework.reports.model.providers.SQLDataProvider}).
+     *
+     * @param maxRecords максимальное количество записей или <code>0</code> если количество записей не ограничено.
+     */
+    public void setMaxRecords(final int maxRecords) {
+        if (maxRecords < 0)
+            throw new IllegalArgumentException("Invalid max records limit: " + maxRecords);
+        this.maxRecords = maxRecords;
+    }
+
+    /**
+     * Возвращает максимальное количество строк на каждом листе отчета, после достижения которого обработка записей
+     * от поставщиков данных на этом листе прекращается.
+     *
+     * @return максимальное количество строк или <code>0</code> если количество строк не ограничено.
+     */
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * Ограничивает количество строк на каждом листе отчета. Строки, содержимое которых не зависит от поставщиков данных
+     * (заголовки, итоговые строки секций), формируются и после достижения этого ограничения, поэтому фактическое
+     * количество строк на листе может его несколько превышать.
+     *
+     * @param maxRows максимальное количество строк или <code>0</code> если количество строк не ограничено.
+     */
+    public void setMaxRows(final int maxRows) {
+        if (maxRows < 0)
+            throw new IllegalArgumentException("Invalid max rows limit: " + maxRows);
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Возвращает объект управления построением отчета, позволяющий прервать построение отчета из другого потока,
+     * а также ограничить время построения отчета и его объем.
+     *
+     * @return объект управления построением отчета или <code>null</code> если он не был указан.
+     */
+    public ExecutionControl getControl() {
+        return control;
+    }
+
+    /**
+     * Передает построителю отчетов объект управления построением отчета (см. {@link ExecutionControl}).
+     * В отличие от переменных контекста, данный объект недоступен из выражений в ячейках отчета.
+     *
+     * @param control объект управления построением отчета или <code>null</code>.
+     */
+    public void setControl(final ExecutionControl control) {
+        this.control = control;
+    }
+
+    /**
+     * Возвращает переменные контекста. Значения переменных, для которых были зарегистрированы слоты, также доступны и через данную таблицу.
+     *
+     * @return переменные контекста.
+     */
     public Map<String, Object> getVariables() {
         return var;
     }
 
+    /**
+     * Проверяет присвоено ли значение переменной в указанном слоте.
+     *
+     * @param slot порядковый номер слота (см. {@link #registerSlot(String)}).
+     * @return <code>true</code> если переменной в данном слоте присвоено целочисленное значение.
+     */
+    public boolean hasSlotValue(final int slot) {
+        return slot < slotAssigned.length && slotAssigned[slot];
+    }
+
+    /**
+     * Возвращает значение переменной в указанном слоте.
+     *
+     * @param slot порядковый номер слота (см. {@link #registerSlot(String)}).
+     * @return значение переменной или <code>0</code> если значение переменной не было присвоено.
+     */
+    public int getSlotValue(final int slot) {
+        return slot < slotValues.length ? slotValues[slot] : 0;
+    }
+
+    /**
+     * Присваивает значение переменной в указанном слоте.
+     *
+     * @param slot  порядковый номер слота (см. {@link #registerSlot(String)}).
+     * @param value новое значение переменной.
+     */
+    public void setSlotValue(final int slot, final int value) {
+        if (slot >= slotValues.length) {
+            final int length = Math.max(slot + 1, slotValues.length * 2);
+            slotValues = Arrays.copyOf(slotValues, length);
+            slotAssigned = Arrays.copyOf(slotAssigned, length);
+        }
+        if (!slotAssigned[slot]) {
+            ((Variables) var).data.remove(((Variables) var).nameOf(slot));
+            slotAssigned[slot] = true;
+        }
+        slotValues[slot] = value;
+    }
+
+    /**
+     * Отменяет присвоенное переменной в указанном слоте значение. Если переменная не имела значения, то вызов игнорируется.
+     *
+     * @param slot порядковый номер слота (см. {@link #registerSlot(String)}).
+     */
+    public void clearSlotValue(final int slot) {
+        if (slot < slotAssigned.length)
+            slotAssigned[slot] = false;
+    }
+
+    /**
+     * Возвращает значение переменной по ее слоту, а если значение слоту не присвоено - по ее имени.
+     * Используется при вычислении выражений, заранее связанных со слотами переменных.
+     *
+     * @param slot порядковый номер слота переменной или <code>-1</code>.
+     * @param name имя переменной.
+     * @return значение переменной.
+     */
+    public Object getVariable(final int slot, final String name) {
+        if (slot >= 0 && slot < slotAssigned.length && slotAssigned[slot])
+            return slotValues[slot];
+        return ((Variables) var).data.get(name);
+    }
+
     public Map<String, Object> getEnvironment() {
         return env;
     }
@@ -144,16 +349,29 @@ public class ELContext {
             final Map<String, Object> data = scopes.get(scope);
             return data.get(attrName);
         } else {
+            return getAttribute(attrName, bean != null && BeanUtil.hasProperty(bean.getClass(), attrName));
+        }
+    }
+
+    /**
+     * Возвращает значение атрибута, указанного без явного указания пространства имен. Такие атрибуты в первую очередь разрешаются
+     * как свойства модели данных текущей строки, а если у нее нет такого свойства - как переменные из пространств имен
+     * {@link Scope#VAR} и {@link Scope#ENV} (именно в таком порядке).
+     *
+     * @param attrName    имя атрибута.
+     * @param rowProperty <code>true</code> если модель данных текущей строки имеет свойство с таким именем
+     *                    (см. {@link BeanUtil#hasProperty(Class, String)}).
+     * @return значение атрибута.
+     */
+    public Object getAttribute(final String attrName, final boolean rowProperty) {
+        if (rowProperty || bean == null) {
             try {
                 return BeanUtil.getProperty(bean, attrName);
             } catch (Exception e) {
-                if (var.containsKey(attrName)) {
-                    return var.get(attrName);
-                } else {
-                    return env.get(attrName);
-                }
+                // ошибка при вычислении свойства модели, используем переменные ...
             }
         }
+        return var.containsKey(attrName) ? var.get(attrName) : env.get(attrName);
     }
 
     /**
@@ -184,10 +402,196 @@ public class ELContext {
         for (Map.Entry<String, Object> entry : env.entrySet()) {
             result.env.put(entry.getKey(), entry.getValue());
         }
-        for (Map.Entry<String, Object> entry : var.entrySet()) {
-            result.var.put(entry.getKey(), entry.getValue());
-        }
+        result.var.putAll(var);
         result.setRowModel(bean);
+        result.maxRecords = maxRecords;
+        result.maxRows = maxRows;
+        result.control = control;
         return result;
     }
+
+
+    /**
+     * Таблица переменных контекста. Значения переменных, для которых зарегистрированы слоты, хранятся в {@link #slotValues}
+     * (если это целые числа), значения остальных переменных - в обычной хэш-таблице. Набор элементов таблицы
+     * (а значит и наборы ее ключей и значений) отражает текущее состояние переменных и поддерживает их удаление.
+     */
+    private final class Variables extends AbstractMap<String, Object> {
+        private final HashMap<String, Object> data = new HashMap<>();
+        private final Set<Map.Entry<String, Object>> entries = new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+            @Override
+            public int size() {
+                int result = data.size();
+                for (boolean assigned : slotAssigned) {
+                    if (assigned)
+                        result++;
+                }
+                return result;
+            }
+            @Override
+            public void clear() {
+                Variables.this.clear();
+            }
+        };
+
+        private String nameOf(final int slot) {
+            for (Map.Entry<String, Integer> e : slots.entrySet()) {
+                if (e.getValue() == slot)
+                    return e.getKey();
+            }
+            return null;
+        }
+
+        private int assignedSlot(final Object key) {
+            final int slot = key instanceof String ? getSlot((String) key) : -1;
+            return slot >= 0 && hasSlotValue(slot) ? slot : -1;
+        }
+
+        @Override
+        public Object get(final Object key) {
+            final int slot = assignedSlot(key);
+            return slot >= 0 ? (Object) slotValues[slot] : data.get(key);
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return assignedSlot(key) >= 0 || data.containsKey(key);
+        }
+
+        @Override
+        public Object put(final String key, final Object value) {
+            final int slot = key != null ? getSlot(key) : -1;
+            if (slot < 0)
+                return data.put(key, value);
+            final Object prev = get(key);
+            if (value instanceof Integer) {
+                setSlotValue(slot, (Integer) value);
+            } else {
+                if (hasSlotValue(slot))
+                    slotAssigned[slot] = false;
+                data.put(key, value);
+            }
+            return prev;
+        }
+
+        @Override
+        public Object remove(final Object key) {
+            final int slot = assignedSlot(key);
+            if (slot < 0)
+                return data.remove(key);
+            slotAssigned[slot] = false;
+            return slotValues[slot];
+        }
+
+        @Override
+        public void clear() {
+            Arrays.fill(slotAssigned, false);
+            data.clear();
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return entries;
+        }
+
+        /**
+         * Перебирает сначала переменные из хэш-таблицы, затем переменные, значения которых присвоены их слотам.
+         */
+        private final class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+            private final Iterator<Map.Entry<String, Object>> it = data.entrySet().iterator();
+            private final Iterator<Map.Entry<String, Integer>> sit = slots.entrySet().iterator();
+            private SlotEntry next;
+            private int last = -2;      // слот последнего возвращенного элемента, -1 для элементов хэш-таблицы, -2 если элемент не возвращался или уже удален
+
+            @Override
+            public boolean hasNext() {
+                if (it.hasNext())
+                    return true;
+                while (next == null && sit.hasNext()) {
+                    final Map.Entry<String, Integer> e = sit.next();
+                    if (hasSlotValue(e.getValue()))
+                        next = new SlotEntry(e.getKey(), e.getValue());
+                }
+                return next != null;
+            }
+
+            @Override
+            public Map.Entry<String, Object> next() {
+                if (it.hasNext()) {
+                    last = -1;
+                    return it.next();
+                }
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                final SlotEntry result = next;
+                next = null;
+                last = result.slot;
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                if (last == -2)
+                    throw new IllegalStateException();
+                if (last == -1) {
+                    it.remove();
+                } else {
+                    clearSlotValue(last);
+                }
+                last = -2;
+            }
+        }
+
+        /**
+         * Элемент таблицы переменных для переменной, значение которой присвоено ее слоту.
+         */
+        private final class SlotEntry implements Map.Entry<String, Object> {
+            private final String name;
+            private final int slot;
+
+            private SlotEntry(final String name, final int slot) {
+                this.name = name;
+                this.slot = slot;
+            }
+
+            @Override
+            public String getKey() {
+                return name;
+            }
+
+            @Override
+            public Object getValue() {
+                return hasSlotValue(slot) ? (Object) slotValues[slot] : data.get(name);
+            }
+
+            @Override
+            public Object setValue(final Object value) {
+                return put(name, value);
+            }
+
+            @Override
+            public boolean equals(final Object obj) {
+                if (!(obj instanceof Map.Entry))
+                    return false;
+                final Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+                final Object value = getValue();
+                return name.equals(other.getKey()) && (value == null ? other.getValue() == null : value.equals(other.getValue()));
+            }
+
+            @Override
+            public int hashCode() {
+                final Object value = getValue();
+                return name.hashCode() ^ (value == null ? 0 : value.hashCode());
+            }
+
+            @Override
+            public String toString() {
+                return name + "=" + getValue();
+            }
+        }
+    }
 }
@@ -0,0 +1,148 @@
+package org.echosoft.framework.reports.model.el;
+
+import java.text.ChoiceFormat;
+import java.text.Format;
+import java.text.MessageFormat;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Форматирование значений согласно шаблону, указанному в выражении вида <code>${(date,dd.MM.yyyy)row:born}</code>.
+ * Шаблон имеет тот же синтаксис что и описание формата одного аргумента в {@link MessageFormat} (<code>{0,date,dd.MM.yyyy}</code>).
+ * <p>Экземпляры данного класса создаются однократно для каждой пары (шаблон, локаль), хранятся в общем для всех выражений пуле
+ * и могут безопасно использоваться из разных потоков. Шаблоны дат, состоящие только из числовых полей, форматируются с помощью
+ * неизменяемого {@link DateTimeFormatter}, прочие шаблоны - с помощью соответствующего {@link Format}, доступ к которому синхронизирован.</p>
+ *
+ * @author Anton Sharapov
+ */
+final class PatternFormat {
+
+    private static final ConcurrentHashMap<String, PatternFormat> pool = new ConcurrentHashMap<>();
+
+    /**
+     * Начало действия григорианского календаря. Более ранние даты {@link java.util.GregorianCalendar} трактует по юлианскому календарю,
+     * а {@link java.time} - по пролептическому григорианскому, поэтому такие даты форматируются только с помощью {@link java.text.SimpleDateFormat}.
+     */
+    private static final long GREGORIAN_CUTOVER = -12219292800000L;
+
+    /**
+     * Возвращает форматтер для указанного шаблона и локали.
+     *
+     * @param pattern шаблон форматирования, например: <code>date,dd.MM.yyyy</code> или <code>number,#,##0.00</code>.
+     * @param locale  локаль.
+     * @return форматтер для указанных шаблона и локали.
+     * @throws IllegalArgumentException если шаблон некорректен.
+     */
+    static PatternFormat getInstance(final String pattern, final Locale locale) {
+        final String key = pattern + '\u0000' + locale;
+        PatternFormat result = pool.get(key);
+        if (result == null) {
+            result = new PatternFormat(pattern, locale);
+            final PatternFormat prev = pool.putIfAbsent(key, result);
+            if (prev != null)
+                result = prev;
+        }
+        return result;
+    }
+
+
+    final String pattern;
+    final Locale locale;
+    private final MessageFormat message;
+    private final Format format;
+    private final DateTimeFormatter dateTimeFormatter;
+
+    private PatternFormat(final String pattern, final Locale locale) {
+        this.pattern = pattern;
+        this.locale = locale;
+        this.message = new MessageFormat("{0," + pattern + "}", locale);
+        this.format = message.getFormats()[0];
+        this.dateTimeFormatter = makeDateTimeFormatter(pattern, locale);
+    }
+
+    /**
+     * Форматирует значение.
+     *
+     * @param value значение, не может быть <code>null</code>. Если значение является массивом, то форматируется его первый элемент.
+     * @return отформатированное значение.
+     */
+    String format(final Object value) {
+        if (dateTimeFormatter != null) {
+            if (value instanceof Date && ((Date) value).getTime() >= GREGORIAN_CUTOVER)
+                return dateTimeFormatter.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(((Date) value).getTime()), ZoneId.systemDefault()));
+            if (value instanceof TemporalAccessor)
+                return dateTimeFormatter.format((TemporalAccessor) value);
+        }
+        if (value instanceof Object[] || format == null || format instanceof ChoiceFormat) {
+            // результат ChoiceFormat может сам являться шаблоном MessageFormat ...
+            final Object[] args = value instanceof Object[] ? (Object[]) value : new Object[]{value};
+            synchronized (message) {
+                return message.format(args);
+            }
+        }
+        synchronized (format) {
+            return format.format(value);
+        }
+    }
+
+    /**
+     * Для шаблонов дат, содержащих только числовые поля (год, месяц, день, часы, минуты, секунды), результат форматирования
+     * с помощью {@link java.text.SimpleDateFormat} и {@link DateTimeFormatter} совпадает. Для таких шаблонов возвращается
+     * эквивалентный экземпляр {@link DateTimeFormatter}, для всех прочих - <code>null</code>.
+     */
+    private static DateTimeFormatter makeDateTimeFormatter(final String pattern, final Locale locale) {
+        final int sep = pattern.indexOf(',');
+        if (sep < 0)
+            return null;
+        final String type = pattern.substring(0, sep).trim().toLowerCase(Locale.ROOT);
+        if (!"date".equals(type) && !"time".equals(type))
+            return null;
+        final String style = pattern.substring(sep + 1);   // как и в MessageFormat, пользовательский шаблон используется без изменений
+        switch (style.trim().toLowerCase(Locale.ROOT)) {
+            case "":
+            case "short":
+            case "medium":
+            case "long":
+            case "full":
+                return null;
+            default:
+        }
+        char prev = 0;
+        int count = 0;
+        for (int i = 0; i < style.length(); i++) {
+            final char c = style.charAt(i);
+            count = c == prev ? count + 1 : 1;
+            prev = c;
+            switch (c) {
+                case 'y':
+                    break;
+                case 'M':
+                case 'd':
+                case 'H':
+                case 'h':
+                case 'm':
+                case 's':
+                    if (count > 2)
+                        return null;
+                    break;
+                case '\'':
+                case '[':
+                case ']':
+                case '{':
+                case '}':
+                case '#':
+                    return null;
+                default:
+                    if (Character.isLetter(c))
+                        return null;
+            }
+        }
+        return DateTimeFormatter.ofPattern(style, locale);
+    }
+}
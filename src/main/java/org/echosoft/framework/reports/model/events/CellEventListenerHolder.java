@@ -1,13 +1,21 @@
 package org.echosoft.framework.reports.model.events;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
+import org.apache.poi.ss.util.CellReference;
 import org.echosoft.framework.reports.common.utils.ObjectUtil;
+import org.echosoft.framework.reports.model.CellModel;
+import org.echosoft.framework.reports.model.el.BaseExpression;
 import org.echosoft.framework.reports.model.el.ELContext;
 import org.echosoft.framework.reports.model.el.Expression;
 
 /**
  * Предназначен для динамического конструирования обработчиков событий на основе контекста выполнения отчета.
+ * <p>Обработчик может быть ограничен определенными ячейками секции: перечнем колонок, перечнем ячеек шаблона или
+ * ячейками шаблона, в выражении которых присутствует заданный маркер. Если ни одно из этих ограничений не задано,
+ * то обработчик вызывается для каждой ячейки секции. Если задано несколько ограничений, то обработчик будет вызван
+ * для ячейки, удовлетворяющей хотя бы одному из них.</p>
  *
  * @author Anton Sharapov
  */
@@ -15,29 +23,161 @@ public class CellEventListenerHolder implements Serializable, Cloneable {
 
     private final Expression classExpr;
     private final Expression instanceExpr;
+    private transient volatile Class<CellEventListener> listenerClass;
+    private transient volatile CellEventListener sharedListener;
+    private transient volatile boolean sharedResolved;
+    private int[] columns;
+    private int[][] cells;
+    private String marker;
 
     public CellEventListenerHolder(Expression classExpr, Expression instanceExpr) {
         this.classExpr = classExpr;
         this.instanceExpr = instanceExpr;
     }
 
+    /**
+     * Возвращает порядковые номера (начиная с 0) колонок секции, для ячеек которых должен вызываться данный обработчик.
+     *
+     * @return перечень колонок или <code>null</code> если обработчик не ограничен определенными колонками.
+     */
+    public int[] getColumns() {
+        return columns;
+    }
+    public void setColumns(final int... columns) {
+        this.columns = columns != null && columns.length > 0 ? columns : null;
+    }
+
+    /**
+     * Возвращает перечень ячеек шаблона, для которых должен вызываться данный обработчик. Каждая ячейка описывается
+     * парой чисел: порядковым номером строки относительно начала области шаблона и порядковым номером колонки (начиная с 0).
+     *
+     * @return перечень ячеек или <code>null</code> если обработчик не ограничен определенными ячейками.
+     */
+    public int[][] getCells() {
+        return cells;
+    }
+
+    /**
+     * Ограничивает обработчик перечнем ячеек шаблона.
+     *
+     * @param cells адреса ячеек в формате ALPHA-26 (пример: <code>C1</code>), где номер строки указывается относительно
+     *              начала области шаблона (первая строка области имеет номер 1).
+     */
+    public void setCells(final String... cells) {
+        if (cells == null || cells.length == 0) {
+            this.cells = null;
+            return;
+        }
+        final int[][] result = new int[cells.length][];
+        for (int i = 0; i < cells.length; i++) {
+            final CellReference ref = new CellReference(cells[i]);
+            if (ref.getRow() < 0 || ref.getCol() < 0)
+                throw new IllegalArgumentException("Illegal cell reference: " + cells[i]);
+            result[i] = new int[]{ref.getRow(), ref.getCol()};
+        }
+        this.cells = result;
+    }
+
+    /**
+     * Возвращает маркер, присутствие которого в выражении ячейки шаблона означает что для данной ячейки должен вызываться данный обработчик.
+     *
+     * @return маркер или <code>null</code> если обработчик не ограничен ячейками с маркером.
+     */
+    public String getMarker() {
+        return marker;
+    }
+    public void setMarker(final String marker) {
+        this.marker = marker != null && !marker.isEmpty() ? marker : null;
+    }
+
+    /**
+     * @return <code>true</code> если обработчик должен вызываться не для всех ячеек секции а только для некоторых из них.
+     */
+    public boolean isTargeted() {
+        return columns != null || cells != null || marker != null;
+    }
+
+    /**
+     * Проверяет, должен ли обработчик вызываться для указанной ячейки шаблона.
+     *
+     * @param row    порядковый номер строки шаблона относительно начала его области (начиная с 0).
+     * @param column порядковый номер колонки (начиная с 0).
+     * @param cell   модель ячейки шаблона.
+     * @return <code>true</code> если обработчик должен вызываться для указанной ячейки.
+     */
+    public boolean accepts(final int row, final int column, final CellModel cell) {
+        if (!isTargeted())
+            return true;
+        if (columns != null) {
+            for (int c : columns) {
+                if (c == column)
+                    return true;
+            }
+        }
+        if (cells != null) {
+            for (int[] c : cells) {
+                if (c[0] == row && c[1] == column)
+                    return true;
+            }
+        }
+        if (marker != null && cell != null && cell.getExpression() instanceof BaseExpression) {
+            final Object raw = ((BaseExpression) cell.getExpression()).getRawValue();
+            return raw != null && raw.toString().contains(marker);
+        }
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> если обработчик задан статичным выражением, указывающим на конкретный экземпляр обработчика,
+     * либо статичным именем класса обработчика, не имеющего собственного состояния (см. {@link ObjectUtil#isStateless(Class)}).
+     * В этом случае при каждом вызове {@link #getListener(ELContext)} будет возвращаться один и тот же экземпляр обработчика.
+     */
+    public boolean isConstant() {
+        if (instanceExpr instanceof BaseExpression && instanceExpr.isStatic() && ((BaseExpression) instanceExpr).getRawValue() != null)
+            return true;
+        try {
+            return getSharedListener() != null;
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Возвращает обработчик, соответствующий текущему контексту выполнения отчета. Если обработчик задан именем своего класса,
+     * то при каждом вызове метода конструируется новый экземпляр обработчика (класс, заданный статичным выражением, загружается только один раз).
+     * Исключение составляют обработчики без собственного состояния, класс которых задан статичным выражением: для них
+     * однократно сконструированный экземпляр возвращается при всех последующих вызовах (см. {@link #isConstant()}).
+     *
+     * @param context текущий контекст выполнения.
+     * @return обработчик события или <code>null</code>.
+     */
+    @SuppressWarnings("unchecked")
     public CellEventListener getListener(ELContext context) {
         try {
-            CellEventListener result = null;
+            CellEventListener result = getSharedListener();
+            if (result!=null)
+                return result;
             if (instanceExpr!=null) {
                 final Object value = instanceExpr.getValue(context);
                 result = (CellEventListener)value;
             }
             if (result==null && classExpr!=null) {
-                final Object value = classExpr.getValue(context);
-                if (value instanceof String) {
-                    result = ObjectUtil.makeInstance((String)value, CellEventListener.class);
-                } else
-                if (value instanceof Class) {
-                    result = ObjectUtil.makeInstance(((Class)value).getCanonicalName(), CellEventListener.class);
-                } else
-                if (value!=null)
-                    throw new RuntimeException("Unsupported type of listener's class: "+classExpr+" = "+value.getClass());
+                Class<CellEventListener> cls = listenerClass;
+                if (cls==null) {
+                    final Object value = classExpr.getValue(context);
+                    if (value instanceof String) {
+                        cls = ObjectUtil.loadClass((String)value);
+                    } else
+                    if (value instanceof Class) {
+                        cls = (Class<CellEventListener>)value;
+                    } else
+                    if (value!=null)
+                        throw new RuntimeException("Unsupported type of listener's class: "+classExpr+" = "+value.getClass());
+                    if (cls!=null && classExpr.isStatic())
+                        listenerClass = cls;
+                }
+                if (cls!=null)
+                    result = ObjectUtil.makeInstance(cls, CellEventListener.class);
             }
             return result;
         } catch (Exception e) {
@@ -45,9 +185,38 @@ public class CellEventListenerHolder implements Serializable, Cloneable {
         }
     }
 
+    /**
+     * Возвращает единственный экземпляр обработчика, если обработчик задан только статичным именем своего класса
+     * и этот класс не имеет собственного состояния. Экземпляр конструируется при первом обращении.
+     */
+    @SuppressWarnings("unchecked")
+    private CellEventListener getSharedListener() throws Exception {
+        if (!sharedResolved) {
+            CellEventListener listener = null;
+            if (instanceExpr==null && classExpr!=null && classExpr.isStatic()) {
+                final Object value = classExpr.getValue(null);
+                final Class<?> cls = value instanceof String ? ObjectUtil.loadClass((String)value) : value instanceof Class ? (Class<?>)value : null;
+                if (cls!=null && ObjectUtil.isStateless(cls))
+                    listener = ObjectUtil.makeInstance((Class<CellEventListener>)cls, CellEventListener.class);
+            }
+            sharedListener = listener;
+            sharedResolved = true;
+        }
+        return sharedListener;
+    }
+
     @Override
     public Object clone() throws CloneNotSupportedException {
-        return super.clone();
+        final CellEventListenerHolder result = (CellEventListenerHolder) super.clone();
+        if (columns != null)
+            result.columns = columns.clone();
+        if (cells != null) {
+            result.cells = new int[cells.length][];
+            for (int i = 0; i < cells.length; i++) {
+                result.cells[i] = cells[i].clone();
+            }
+        }
+        return result;
     }
 
     @Override
@@ -61,12 +230,15 @@ public class CellEventListenerHolder implements Serializable, Cloneable {
             return false;
         final CellEventListenerHolder other = (CellEventListenerHolder)obj;
         return (classExpr!=null ? classExpr.equals(other.classExpr) : other.classExpr==null) &&
-               (instanceExpr!=null ? instanceExpr.equals(other.instanceExpr) : other.instanceExpr==null);
+               (instanceExpr!=null ? instanceExpr.equals(other.instanceExpr) : other.instanceExpr==null) &&
+               Arrays.equals(columns, other.columns) &&
+               Arrays.deepEquals(cells, other.cells) &&
+               (marker!=null ? marker.equals(other.marker) : other.marker==null);
     }
 
     @Override
     public String toString() {
-        return "[CellEventListenerHolder{class:"+classExpr+", instance:"+instanceExpr+"}]";
+        return "[CellEventListenerHolder{class:"+classExpr+", instance:"+instanceExpr+(isTargeted() ? ", columns:"+Arrays.toString(columns)+", cells:"+Arrays.deepToString(cells)+", marker:"+marker : "")+"}]";
     }
 
 }
\ No newline at end of file
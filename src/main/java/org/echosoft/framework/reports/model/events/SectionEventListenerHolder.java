@@ -3,6 +3,7 @@ package org.echosoft.framework.reports.model.events;
 import java.io.Serializable;
 
 import org.echosoft.framework.reports.common.utils.ObjectUtil;
+import org.echosoft.framework.reports.model.el.BaseExpression;
 import org.echosoft.framework.reports.model.el.ELContext;
 import org.echosoft.framework.reports.model.el.Expression;
 
@@ -15,29 +16,66 @@ public class SectionEventListenerHolder implements Serializable, Cloneable {
 
     private final Expression classExpr;
     private final Expression instanceExpr;
+    private transient volatile Class<SectionEventListener> listenerClass;
+    private transient volatile SectionEventListener sharedListener;
+    private transient volatile boolean sharedResolved;
 
     public SectionEventListenerHolder(Expression classExpr, Expression instanceExpr) {
         this.classExpr = classExpr;
         this.instanceExpr = instanceExpr;
     }
 
+    /**
+     * @return <code>true</code> если обработчик задан статичным выражением, указывающим на конкретный экземпляр обработчика,
+     * либо статичным именем класса обработчика, не имеющего собственного состояния (см. {@link ObjectUtil#isStateless(Class)}).
+     * В этом случае при каждом вызове {@link #getListener(ELContext)} будет возвращаться один и тот же экземпляр обработчика.
+     */
+    public boolean isConstant() {
+        if (instanceExpr instanceof BaseExpression && instanceExpr.isStatic() && ((BaseExpression) instanceExpr).getRawValue() != null)
+            return true;
+        try {
+            return getSharedListener() != null;
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Возвращает обработчик, соответствующий текущему контексту выполнения отчета. Если обработчик задан именем своего класса,
+     * то при каждом вызове метода конструируется новый экземпляр обработчика (класс, заданный статичным выражением, загружается только один раз).
+     * Исключение составляют обработчики без собственного состояния, класс которых задан статичным выражением: для них
+     * однократно сконструированный экземпляр возвращается при всех последующих вызовах (см. {@link #isConstant()}).
+     *
+     * @param context текущий контекст выполнения.
+     * @return обработчик события или <code>null</code>.
+     */
+    @SuppressWarnings("unchecked")
     public SectionEventListener getListener(ELContext context) {
         try {
-            SectionEventListener result = null;
+            SectionEventListener result = getSharedListener();
+            if (result!=null)
+                return result;
             if (instanceExpr!=null) {
                 final Object value = instanceExpr.getValue(context);
                 result = (SectionEventListener)value;
             }
             if (result==null && classExpr!=null) {
-                final Object value = classExpr.getValue(context);
-                if (value instanceof String) {
-                    result = ObjectUtil.makeInstance((String)value, SectionEventListener.class);
-                } else
-                if (value instanceof Class) {
-                    result = ObjectUtil.makeInstance(((Class)value).getCanonicalName(), SectionEventListener.class);
-                } else
-                if (value!=null)
-                    throw new RuntimeException("Unsupported type of listener's class: "+classExpr+" = "+value.getClass());
+                Class<SectionEventListener> cls = listenerClass;
+                if (cls==null) {
+                    final Object value = classExpr.getValue(context);
+                    if (value instanceof String) {
+                        cls = ObjectUtil.loadClass((String)value);
+                    } else
+                    if (value instanceof Class) {
+                        cls = (Class<SectionEventListener>)value;
+                    } else
+                    if (value!=null)
+                        throw new RuntimeException("Unsupported type of listener's class: "+classExpr+" = "+value.getClass());
+                    if (cls!=null && classExpr.isStatic())
+                        listenerClass = cls;
+                }
+                if (cls!=null)
+                    result = ObjectUtil.makeInstance(cls, SectionEventListener.class);
             }
             return result;
         } catch (Exception e) {
@@ -45,6 +83,26 @@ public class SectionEventListenerHolder implements Serializable, Cloneable {
         }
     }
 
+    /**
+     * Возвращает единственный экземпляр обработчика, если обработчик задан только статичным именем своего класса
+     * и этот класс не имеет собственного состояния. Экземпляр конструируется при первом обращении.
+     */
+    @SuppressWarnings("unchecked")
+    private SectionEventListener getSharedListener() throws Exception {
+        if (!sharedResolved) {
+            SectionEventListener listener = null;
+            if (instanceExpr==null && classExpr!=null && classExpr.isStatic()) {
+                final Object value = classExpr.getValue(null);
+                final Class<?> cls = value instanceof String ? ObjectUtil.loadClass((String)value) : value instanceof Class ? (Class<?>)value : null;
+                if (cls!=null && ObjectUtil.isStateless(cls))
+                    listener = ObjectUtil.makeInstance((Class<SectionEventListener>)cls, SectionEventListener.class);
+            }
+            sharedListener = listener;
+            sharedResolved = true;
+        }
+        return sharedListener;
+    }
+
     @Override
     public Object clone() throws CloneNotSupportedException {
         return super.clone();
@@ -33,5 +33,18 @@ public interface DataProvider extends Serializable, Cloneable {
      */
     public ReadAheadIssuer getIssuer(ELContext ctx) throws Exception;
 
+    /**
+     * Получает данные от заданного поставшика по запросу построителя отчетов. Поставщик может не загружать те свойства записей,
+     * которые не входят в перечень {@link DataRequest#properties}, и использовать предоставленные построителем ресурсы.
+     * Реализация по умолчанию игнорирует параметры запроса и возвращает записи целиком.
+     *
+     * @param ctx     контекст выполнения отчета.
+     * @param request параметры обращения к поставщику данных или <code>null</code>.
+     * @return Итератор с данными от выбранного поставщика или <code>null</code>.
+     */
+    public default ReadAheadIssuer getIssuer(final ELContext ctx, final DataRequest request) throws Exception {
+        return getIssuer(ctx);
+    }
+
     public Object clone() throws CloneNotSupportedException;
 }
@@ -0,0 +1,58 @@
+package org.echosoft.framework.reports.model.providers;
+
+import java.util.Set;
+
+import org.echosoft.framework.reports.common.data.StatementCache;
+import org.echosoft.framework.reports.common.data.StatementMonitor;
+
+/**
+ * Параметры обращения построителя отчетов к поставщику данных (см. {@link DataProvider#getIssuer(org.echosoft.framework.reports.model.el.ELContext, DataRequest)}).
+ * Содержит сведения о секции, запросившей данные, и ресурсы, которые построитель отчетов предоставляет поставщикам данных
+ * на время построения одного экземпляра отчета. В отличие от переменных контекста отчета, эти сведения недоступны из выражений в шаблонах отчета.
+ *
+ * @author Anton Sharapov
+ */
+public final class DataRequest {
+
+    /**
+     * Идентификатор формируемого отчета.
+     */
+    public final String reportId;
+
+    /**
+     * Идентификатор листа отчета, на котором находится секция, запросившая данные, или <code>null</code>.
+     */
+    public final String sheetId;
+
+    /**
+     * Идентификатор секции, запросившей данные, или <code>null</code>.
+     */
+    public final String sectionId;
+
+    /**
+     * Имена свойств записей, которые будут использоваться при построении отчета, или <code>null</code> если могут потребоваться
+     * любые свойства записей. Поставщик может не загружать те свойства записей, которые не входят в данный перечень.
+     */
+    public Set<String> properties;
+
+    /**
+     * Кэш подготовленных SQL выражений, используемый при построении текущего экземпляра отчета, или <code>null</code>.
+     */
+    public StatementCache statements;
+
+    /**
+     * Получатель выполняемых поставщиком SQL выражений (см. {@link org.echosoft.framework.reports.processor.ExecutionControl}) или <code>null</code>.
+     */
+    public StatementMonitor monitor;
+
+    public DataRequest(final String reportId, final String sheetId, final String sectionId) {
+        this.reportId = reportId;
+        this.sheetId = sheetId;
+        this.sectionId = sectionId;
+    }
+
+    @Override
+    public String toString() {
+        return "[DataRequest{report:" + reportId + ", sheet:" + sheetId + ", section:" + sectionId + ", properties:" + properties + "}]";
+    }
+}
@@ -33,6 +33,11 @@ public class ProxyDataProvider implements DataProvider {
         return resolveProvider(ctx).getIssuer(ctx);
     }
 
+    @Override
+    public ReadAheadIssuer getIssuer(final ELContext ctx, final DataRequest request) throws Exception {
+        return resolveProvider(ctx).getIssuer(ctx, request);
+    }
+
     @Override
     public Object clone() throws CloneNotSupportedException {
         return super.clone();
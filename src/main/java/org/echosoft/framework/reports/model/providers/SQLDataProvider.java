@@ -2,17 +2,24 @@ package org.echosoft.framework.reports.model.providers;
 
 import javax.sql.DataSource;
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.echosoft.framework.reports.common.collections.issuers.ReadAheadIssuer;
 import org.echosoft.framework.reports.common.data.JdbcBeanLoader;
 import org.echosoft.framework.reports.common.data.JdbcIssuer;
 import org.echosoft.framework.reports.common.data.ParameterizedSQL;
+import org.echosoft.framework.reports.common.data.StatementCache;
+import org.echosoft.framework.reports.common.data.StatementMonitor;
 import org.echosoft.framework.reports.common.utils.StreamUtil;
 import org.echosoft.framework.reports.model.el.ELContext;
 import org.echosoft.framework.reports.model.el.Expression;
@@ -22,6 +29,11 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Предназначен для динамического конструирования поставщиков данных на основе контекста выполнения отчета.
+ * <p>Разобранные тексты запросов (см. {@link ParameterizedSQL}) кэшируются для всех поставщиков данных: повторные выполнения
+ * того же запроса (например, в дочерних секциях отчета) не требуют повторного чтения запроса из ресурсов и его разбора.
+ * Если установлено свойство {@link #isReuseStatements()}, то в рамках построения одного экземпляра отчета повторно используются
+ * также соединения с базой данных и подготовленные выражения из кэша, который построитель отчетов передает поставщику
+ * в параметрах запроса данных (см. {@link DataRequest#statements}).</p>
  *
  * @author Anton Sharapov
  */
@@ -29,6 +41,17 @@ public class SQLDataProvider implements DataProvider {
 
     private static final Logger log = LoggerFactory.getLogger(SQLDataProvider.class);
     public static final int DEFAULT_FETCH_SIZE = 1000;
+    private static final int QUERIES_CACHE_SIZE = 256;
+
+    /**
+     * Разобранные запросы, указанные в отчетах непосредственно.
+     */
+    private static final Map<String, ParameterizedSQL> queries = makeCache();
+
+    /**
+     * Разобранные запросы, загруженные из ресурсов (по их URL).
+     */
+    private static final Map<String, QueryResource> resources = makeCache();
 
     private final String id;
     private Expression datasource;
@@ -36,6 +59,8 @@ public class SQLDataProvider implements DataProvider {
     private Expression sqlref;
     private Expression paramsMap;
     private Map<Expression, Expression> params;
+    private long maxLobSize;
+    private boolean reuseStatements;
 
 
     public SQLDataProvider(final String id) {
@@ -81,6 +106,32 @@ public class SQLDataProvider implements DataProvider {
         this.paramsMap = paramsMap;
     }
 
+    /**
+     * Максимальный размер содержимого колонок типа BLOB (в байтах) и CLOB (в символах), которое может быть целиком загружено в память
+     * при обращении к нему из отчета, или <code>0</code> если размер не ограничен. Содержимое таких колонок загружается из базы данных
+     * только при обращении к нему (см. {@link org.echosoft.framework.reports.common.data.LobValue}).
+     */
+    public long getMaxLobSize() {
+        return maxLobSize;
+    }
+
+    public void setMaxLobSize(final long maxLobSize) {
+        this.maxLobSize = Math.max(maxLobSize, 0);
+    }
+
+    /**
+     * Указывает следует ли в рамках построения одного экземпляра отчета повторно использовать соединения с базой данных
+     * и подготовленные выражения при многократном выполнении запроса данного поставщика (например, для каждой записи родительской секции).
+     * По умолчанию <code>false</code>.
+     */
+    public boolean isReuseStatements() {
+        return reuseStatements;
+    }
+
+    public void setReuseStatements(final boolean reuseStatements) {
+        this.reuseStatements = reuseStatements;
+    }
+
     public void addParam(final Expression name, final Expression value) {
         if (name == null || value == null)
             throw new IllegalArgumentException("parameter key and value must be specified");
@@ -90,31 +141,32 @@ public class SQLDataProvider implements DataProvider {
 
     @Override
     public ReadAheadIssuer getIssuer(final ELContext ctx) throws Exception {
+        return getIssuer(ctx, null);
+    }
+
+    /**
+     * Выполняет SQL запрос поставщика. Из результата запроса загружаются только колонки с указанными в запросе именами
+     * (в верхнем регистре, см. {@link DataRequest#properties}), что позволяет не передавать по сети и не размещать в памяти
+     * содержимое неиспользуемых колонок запроса (в том числе BLOB и CLOB).
+     */
+    @Override
+    public ReadAheadIssuer getIssuer(final ELContext ctx, final DataRequest request) throws Exception {
         Object tmp = this.datasource != null ? this.datasource.getValue(ctx) : null;
         if (!(tmp instanceof DataSource))
             throw new ReportProcessingException("Invalid datasource type: " + tmp);
         final DataSource ds = (DataSource) tmp;
 
-        final String sql;
+        final ParameterizedSQL psql;
         tmp = this.sql != null ? this.sql.getValue(ctx) : null;
         if (tmp instanceof String) {
-            sql = (String) tmp;
+            psql = getQuery((String) tmp);
         } else if (tmp != null) {
             throw new ReportProcessingException("Can't resolve SQL from object: " + tmp);
         } else {
             tmp = this.sqlref != null ? this.sqlref.getValue(ctx) : null;
             if (!(tmp instanceof String))
                 throw new ReportProcessingException("Invalid sql URL: " + tmp);
-            final String url = (String) tmp;
-            final InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(url);
-            if (in == null)
-                throw new ReportProcessingException("Can't resolve sql by URL: " + url);
-            try {
-                final byte[] data = StreamUtil.streamToBytes(in);
-                sql = new String(data, StandardCharsets.UTF_8);
-            } finally {
-                in.close();
-            }
+            psql = getResourceQuery((String) tmp);
         }
 
         final Map<String, Object> params;
@@ -129,11 +181,25 @@ public class SQLDataProvider implements DataProvider {
             params.put(name, tmp);
         }
 
-        return getIssuer(ds, sql, params);
+        final Set<String> columns = request != null ? request.properties : null;
+        final StatementMonitor monitor = request != null ? request.monitor : null;
+        JdbcIssuer result = null;
+        if (reuseStatements && request != null && request.statements != null)
+            result = getIssuer(request.statements, ds, psql, params, ctx.getMaxRecords(), columns, monitor);
+        if (result == null)
+            result = getIssuer(ds, psql, params, ctx.getMaxRecords(), columns, monitor);
+        return request != null ? result.traceFetch(request.reportId, request.sheetId, request.sectionId) : result;
     }
 
-    private ReadAheadIssuer getIssuer(final DataSource ds, final String sql, final Map<String, Object> params) throws Exception {
-        final ParameterizedSQL psql = new ParameterizedSQL(sql);
+    /**
+     * Выполняет запрос к базе данных.
+     *
+     * @param maxRecords максимальное количество записей, которое потребуется от результата запроса, или <code>0</code>
+     *                   если требуются все записи. Передается драйверу JDBC чтобы ограничить объем выбираемых сервером данных.
+     * @param columns    имена колонок, которые должны быть загружены из результата запроса, или <code>null</code> если требуются все колонки.
+     * @param monitor    получатель выполняемых SQL выражений, позволяющий прервать выполнение запроса, или <code>null</code>.
+     */
+    private JdbcIssuer getIssuer(final DataSource ds, final ParameterizedSQL psql, final Map<String, Object> params, final int maxRecords, final Set<String> columns, final StatementMonitor monitor) throws Exception {
         if (log.isDebugEnabled()) {
             log.debug("Issuer query: \n" + psql.compileNonParameterizedQuery(params));
         }
@@ -143,11 +209,9 @@ public class SQLDataProvider implements DataProvider {
         try {
             conn = ds.getConnection();
             pstmt = conn.prepareStatement(psql.getQuery(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
-            pstmt.setFetchDirection(ResultSet.FETCH_FORWARD);
-            pstmt.setFetchSize(DEFAULT_FETCH_SIZE);
-            psql.applyParams(pstmt, params);
+            bind(pstmt, psql, params, maxRecords, monitor);
             rs = pstmt.executeQuery();
-            return new JdbcIssuer<>(conn, pstmt, rs, new JdbcBeanLoader<>(rs));
+            return new JdbcIssuer<>(conn, pstmt, rs, new JdbcBeanLoader<>(rs, columns, maxLobSize));
         } catch (Exception e) {
             if (rs != null)
                 try {
@@ -172,6 +236,91 @@ public class SQLDataProvider implements DataProvider {
     }
 
 
+    /**
+     * Выполняет запрос к базе данных с помощью подготовленного выражения из кэша, используемого при построении текущего экземпляра отчета.
+     *
+     * @return итератор по результатам запроса или <code>null</code> если закэшированное выражение для данного запроса в настоящий
+     * момент не может быть использовано (см. {@link StatementCache#executeQuery(DataSource, String, StatementCache.Binder)}).
+     */
+    private JdbcIssuer getIssuer(final StatementCache statements, final DataSource ds, final ParameterizedSQL psql, final Map<String, Object> params, final int maxRecords, final Set<String> columns, final StatementMonitor monitor) throws Exception {
+        if (log.isDebugEnabled()) {
+            log.debug("Issuer query (cached statement): \n" + psql.compileNonParameterizedQuery(params));
+        }
+        final ResultSet rs = statements.executeQuery(ds, psql.getQuery(), pstmt -> bind(pstmt, psql, params, maxRecords, monitor));
+        if (rs == null)
+            return null;
+        try {
+            return new JdbcIssuer<>(null, null, rs, new JdbcBeanLoader<>(rs, columns, maxLobSize));
+        } catch (Exception e) {
+            rs.close();
+            throw e;
+        }
+    }
+
+    private static void bind(final PreparedStatement pstmt, final ParameterizedSQL psql, final Map<String, Object> params, final int maxRecords, final StatementMonitor monitor) throws SQLException {
+        if (monitor != null)
+            monitor.register(pstmt);
+        pstmt.setFetchDirection(ResultSet.FETCH_FORWARD);
+        pstmt.setMaxRows(Math.max(maxRecords, 0));
+        pstmt.setFetchSize(maxRecords > 0 ? Math.min(maxRecords, DEFAULT_FETCH_SIZE) : DEFAULT_FETCH_SIZE);
+        psql.applyParams(pstmt, params);
+    }
+
+    /**
+     * Возвращает разобранный запрос по его тексту.
+     */
+    private static ParameterizedSQL getQuery(final String sql) {
+        ParameterizedSQL result = queries.get(sql);
+        if (result == null) {
+            result = new ParameterizedSQL(sql);
+            queries.put(sql, result);
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает разобранный запрос, загруженный из ресурса с указанным URL. Ресурс ищется с помощью загрузчика классов текущего потока.
+     */
+    private static ParameterizedSQL getResourceQuery(final String url) throws Exception {
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        final QueryResource resource = resources.get(url);
+        if (resource != null && resource.loader.get() == loader)
+            return resource.query;
+        final InputStream in = loader.getResourceAsStream(url);
+        if (in == null)
+            throw new ReportProcessingException("Can't resolve sql by URL: " + url);
+        final String sql;
+        try {
+            final byte[] data = StreamUtil.streamToBytes(in);
+            sql = new String(data, StandardCharsets.UTF_8);
+        } finally {
+            in.close();
+        }
+        final ParameterizedSQL result = new ParameterizedSQL(sql);
+        resources.put(url, new QueryResource(loader, result));
+        return result;
+    }
+
+    private static <V> Map<String, V> makeCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<String, V>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, V> eldest) {
+                return size() > QUERIES_CACHE_SIZE;
+            }
+        });
+    }
+
+    private static final class QueryResource {
+        private final WeakReference<ClassLoader> loader;
+        private final ParameterizedSQL query;
+
+        private QueryResource(final ClassLoader loader, final ParameterizedSQL query) {
+            this.loader = new WeakReference<>(loader);
+            this.query = query;
+        }
+    }
+
+
     @Override
     public Object clone() throws CloneNotSupportedException {
         final SQLDataProvider result = (SQLDataProvider) super.clone();
@@ -106,6 +106,16 @@ public class ReportModelParser {
             report.setPassword(new BaseExpression(StringUtil.trim(root.getAttribute("password"))));
             report.setStreamWindowSize(Any.asInt(StringUtil.trim(root.getAttribute("stream-window-size")), 1000));
             report.setStreamUseCompression(Any.asBoolean(StringUtil.trim(root.getAttribute("stream-use-compression")), false));
+            final String stringsName = StringUtil.trim(root.getAttribute("stream-strings"));
+            final Report.StringsStrategy strings = stringsName != null
+                    ? Report.StringsStrategy.findByName(stringsName, null)
+                    : Report.StringsStrategy.INLINE;
+            if (strings == null)
+                throw new RuntimeException("Unknown strings strategy: " + stringsName);
+            report.setStreamStrings(strings);
+            report.setStreamStringsLimit(Any.asInt(StringUtil.trim(root.getAttribute("stream-strings-limit")), 10000));
+            report.setBurstProvider(root.getAttribute("burst-provider"));
+            report.setBurstKey(root.getAttribute("burst-key"));
 
             for (Element element : XMLUtil.getChildElements(root)) {
                 final String tagName = element.getTagName();
@@ -243,6 +253,8 @@ public class ReportModelParser {
             throw new RuntimeException("Mandatory attributes not specified: " + element);
         final SQLDataProvider result = new SQLDataProvider(id);
         result.setDataSource(new BaseExpression(ds));
+        result.setMaxLobSize(Any.asLong(StringUtil.trim(element.getAttribute("max-lob-size")), 0));
+        result.setReuseStatements(Any.asBoolean(StringUtil.trim(element.getAttribute("reuse-statements")), false));
         for (Element el : XMLUtil.getChildElements(element)) {
             final String tagName = el.getTagName();
             switch (tagName) {
@@ -610,7 +622,28 @@ public class ReportModelParser {
         final String instance = StringUtil.trim(element.getAttribute("instance"));
         if (className == null && instance == null)
             throw new RuntimeException("Listener's class or instance must be specified");
-        section.getCellListeners().add(new CellEventListenerHolder(new BaseExpression(className), new BaseExpression(instance)));
+        final CellEventListenerHolder holder = new CellEventListenerHolder(new BaseExpression(className), new BaseExpression(instance));
+        final String[] colnames = Any.asStringArray(StringUtil.trim(element.getAttribute("columns")), null);
+        if (colnames != null) {
+            for (int i = 0; i < colnames.length; i++) {
+                colnames[i] = colnames[i].trim();
+            }
+            final int[] columns = POIUtils.getColumnsNumbers(colnames);
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i] < 0)
+                    throw new RuntimeException("Illegal column: " + colnames[i]);
+            }
+            holder.setColumns(columns);
+        }
+        final String[] cells = Any.asStringArray(StringUtil.trim(element.getAttribute("cells")), null);
+        if (cells != null) {
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = cells[i].trim();
+            }
+            holder.setCells(cells);
+        }
+        holder.setMarker(StringUtil.trim(element.getAttribute("marker")));
+        section.getCellListeners().add(holder);
     }
 
     private static void preserveTemplate(final Report report, final Workbook wb) throws IOException {
@@ -0,0 +1,169 @@
+package org.echosoft.framework.reports.processor;
+
+import java.io.OutputStream;
+
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.echosoft.framework.reports.model.CellStyleModel;
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.model.el.ELContext;
+
+/**
+ * Базовый класс для построителей отчетов, выгружающих содержимое отчета в поток в форматах, отличных от формата Excel.
+ * <p>Используются те же модели отчетов что и для построения документов Excel: секции, группировки и шаблоны строк
+ * обрабатываются так же как в {@link ExcelReportProcessor}, но в потоковом режиме (см. {@link ReportSink}) - листы рабочей книги
+ * не создаются, а каждая отрисованная строка отчета сразу же передается получателю содержимого отчета, который записывает ее
+ * в выходной поток. Сформировать отчет в виде рабочей книги такие построители не могут.</p>
+ *
+ * @author Anton Sharapov
+ */
+public abstract class BaseStreamingReportProcessor implements StreamingReportProcessor {
+
+    private final Engine engine;
+
+    protected BaseStreamingReportProcessor() {
+        engine = new Engine();
+    }
+
+    /**
+     * @return получатель статистики построения отчетов или <code>null</code> если сбор статистики не требуется.
+     */
+    public ReportMetricsCollector getMetricsCollector() {
+        return engine.getMetricsCollector();
+    }
+
+    /**
+     * Регистрирует получатель статистики построения отчетов. Если получатель не указан (по умолчанию), то статистика не собирается.
+     *
+     * @param metricsCollector получатель статистики или <code>null</code>.
+     */
+    public void setMetricsCollector(final ReportMetricsCollector metricsCollector) {
+        engine.setMetricsCollector(metricsCollector);
+    }
+
+    @Override
+    public void process(final Report report, final ELContext ctx, final OutputStream out) throws ReportProcessingException {
+        processReport(report, ctx, makeSink(out));
+    }
+
+    /**
+     * Формирует отдельный экземпляр отчета для каждого значения ключевого свойства записей поставщика данных {@link Report#getBurstProvider()}
+     * и записывает его в поток, полученный от <code>output</code> (см. {@link ExcelReportProcessor#processBurst(Report, ELContext, BurstOutput)}).
+     *
+     * @param report модель формируемого отчета.
+     * @param ctx    данные необходимые для формирования данного отчета.
+     * @param output предоставляет потоки для записи экземпляров отчета.
+     * @return количество построенных экземпляров отчета.
+     * @throws ReportProcessingException в случае каких-либо проблем.
+     */
+    public int processBurst(final Report report, final ELContext ctx, final BurstOutput output) throws ReportProcessingException {
+        return engine.processBurst(report, ctx, output);
+    }
+
+    /**
+     * Формирует отдельный экземпляр отчета для каждого значения ключевого свойства записей поставщика данных {@link Report#getBurstProvider()},
+     * в том числе если эти записи не упорядочены по значениям ключа (см. {@link ExcelReportProcessor#processBurst(Report, ELContext, BurstOutput, boolean)}).
+     *
+     * @param report    модель формируемого отчета.
+     * @param ctx       данные необходимые для формирования данного отчета.
+     * @param output    предоставляет потоки для записи экземпляров отчета.
+     * @param unordered <code>true</code> если записи поставщика могут быть не упорядочены по значениям ключа.
+     * @return количество построенных экземпляров отчета.
+     * @throws ReportProcessingException в случае каких-либо проблем.
+     */
+    public int processBurst(final Report report, final ELContext ctx, final BurstOutput output, final boolean unordered) throws ReportProcessingException {
+        return engine.processBurst(report, ctx, output, unordered);
+    }
+
+    /**
+     * Формирует отчет в потоковом режиме, передавая его содержимое указанному получателю.
+     *
+     * @param report модель формируемого отчета.
+     * @param ctx    данные необходимые для формирования данного отчета.
+     * @param sink   получатель содержимого отчета.
+     * @throws ReportProcessingException в случае каких-либо проблем.
+     */
+    protected void processReport(final Report report, final ELContext ctx, final ReportSink sink) throws ReportProcessingException {
+        if (sink == null)
+            throw new IllegalArgumentException("Report sink must be specified");
+        engine.processReport(report, ctx, sink);
+    }
+
+    /**
+     * Создает получателя содержимого отчета, записывающего отчет в указанный поток.
+     *
+     * @param out поток в который должен быть записан сформированный отчет. Поток не должен закрываться по окончании записи.
+     * @return новый экземпляр получателя содержимого отчета.
+     */
+    protected abstract ReportSink makeSink(OutputStream out);
+
+    /**
+     * Возвращает модель стиля, по которой оформляется ячейка отрисованной строки. Для ячеек, оформленных по стилям шаблона,
+     * используется соответствующая модель стиля из палитры отчета. Для ячеек с явно назначенными им стилями возвращается <code>null</code>.
+     *
+     * @param ectx контекст выполнения задачи.
+     * @param cell ячейка отрисованной строки.
+     * @return модель стиля ячейки из палитры отчета или <code>null</code>.
+     */
+    protected static CellStyleModel getStyleModel(final ExecutionContext ectx, final Cell cell) {
+        if (cell instanceof StreamCell) {
+            final StreamCell scell = (StreamCell) cell;
+            if (scell.getAssignedStyle() == null && scell.getTemplateStyle() >= 0)
+                return ectx.report.getPalette().getStyleModel(scell.getTemplateStyle());
+        }
+        return null;
+    }
+
+    /**
+     * Форматирует значение ячейки отрисованной строки согласно формату данных ее стиля. Стили шаблона при этом в рабочей книге не создаются.
+     *
+     * @param ectx      контекст выполнения задачи.
+     * @param formatter используемый для форматирования объект.
+     * @param cell      ячейка отрисованной строки.
+     * @return отформатированное значение ячейки или <code>null</code> для пустых ячеек и ячеек с формулами, значения которых не вычисляются.
+     */
+    protected static String formatValue(final ExecutionContext ectx, final DataFormatter formatter, final Cell cell) {
+        switch (cell.getCellType()) {
+            case NUMERIC: {
+                final CellStyleModel model = getStyleModel(ectx, cell);
+                String format;
+                if (model != null) {
+                    format = model.getDataFormat();
+                } else {
+                    final CellStyle style = cell.getCellStyle();
+                    format = style != null ? style.getDataFormatString() : null;
+                }
+                if (format == null)
+                    format = BuiltinFormats.getBuiltinFormat(0);
+                return formatter.formatRawCellContents(cell.getNumericCellValue(), BuiltinFormats.getBuiltinFormat(format), format);
+            }
+            case STRING:
+                return cell.getStringCellValue();
+            case BOOLEAN:
+                return cell.getBooleanCellValue() ? "TRUE" : "FALSE";
+            case ERROR:
+                return FormulaError.forInt(cell.getErrorCellValue()).getString();
+            default:
+                return null;
+        }
+    }
+
+
+    /**
+     * Построитель отчетов, передающий содержимое отчета получателю, созданному методом {@link #makeSink(OutputStream)}.
+     */
+    private final class Engine extends ExcelReportProcessor {
+        @Override
+        public void process(final Report report, final ELContext ctx, final OutputStream out) throws ReportProcessingException {
+            BaseStreamingReportProcessor.this.process(report, ctx, out);
+        }
+
+        @Override
+        void processBurstInstance(final BurstState burst, final ELContext ctx, final OutputStream out) throws ReportProcessingException {
+            processReport(burst.report, ctx, makeSink(out), burst);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.echosoft.framework.reports.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.streaming.GZIPSheetDataWriter;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.streaming.SheetDataWriter;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * Потоковая рабочая книга, реализующая способ записи строк {@link org.echosoft.framework.reports.model.Report.StringsStrategy#BOUNDED}.
+ * <p>Для каждой строки, записываемой в ячейку, книга ведет ограниченный по размеру словарь последних использованных значений (LRU).
+ * Строка, встреченная впервые, записывается непосредственно в ячейку (inline string). Если та же строка встречается повторно,
+ * пока она еще находится в словаре, то она добавляется в общую таблицу строк документа и все последующие ячейки с этим значением
+ * ссылаются на нее (такие строки в словаре последних значений уже не участвуют и из него не вытесняются). Количество строк,
+ * добавляемых в общую таблицу, ограничено; после достижения лимита новые значения записываются только непосредственно в ячейки. Таким образом часто повторяющиеся значения хранятся в документе однократно,
+ * а уникальные значения не расходуют память на протяжении всего формирования отчета.</p>
+ *
+ * @author Anton Sharapov
+ */
+final class BoundedStringsWorkbook extends SXSSFWorkbook {
+
+    private final SharedStringsTable sst;
+    private final int limit;
+    private final LinkedHashMap<String, Boolean> candidates;
+    private final HashMap<String, Integer> shared;
+    private int added;
+
+    /**
+     * @param wb                 рабочая книга, содержащая шаблон отчета.
+     * @param rowAccessWindowSize максимальное количество последних сгенерированных строк документа в оперативной памяти.
+     * @param compressTmpFiles   следует ли использовать компрессию временных файлов.
+     * @param limit              максимальное количество строк которые могут быть добавлены в общую таблицу строк документа.
+     */
+    BoundedStringsWorkbook(final XSSFWorkbook wb, final int rowAccessWindowSize, final boolean compressTmpFiles, final int limit) {
+        super(wb, rowAccessWindowSize, compressTmpFiles, false);
+        this.sst = wb.getSharedStringSource();
+        this.limit = limit;
+        this.candidates = new LinkedHashMap<String, Boolean>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                return size() > BoundedStringsWorkbook.this.limit;
+            }
+        };
+        this.shared = new HashMap<>();
+    }
+
+    /**
+     * @return количество строк, добавленных в общую таблицу строк документа при формировании отчета.
+     */
+    int getSharedStringsCount() {
+        return added;
+    }
+
+    @Override
+    protected SheetDataWriter createSheetDataWriter() throws IOException {
+        return isCompressTempFiles()
+                ? new GZIPWriter(this)
+                : new PlainWriter(this);
+    }
+
+    /**
+     * Определяет индекс строки в общей таблице строк документа.
+     *
+     * @param text строковое значение ячейки.
+     * @return индекс строки в общей таблице строк или <code>-1</code> если значение должно быть записано непосредственно в ячейку.
+     */
+    private int getIndex(final String text) {
+        final Integer index = shared.get(text);
+        if (index != null)
+            return index;
+        if (added >= limit)
+            return -1;
+        if (candidates.remove(text) == null) {
+            candidates.put(text, Boolean.TRUE);
+            return -1;
+        }
+        // строка уже может присутствовать в общей таблице строк (например, из шаблона отчета) ...
+        final int count = sst.getUniqueCount();
+        final int result = sst.addSharedStringItem(new XSSFRichTextString(text));
+        shared.put(text, result);
+        if (sst.getUniqueCount() > count)
+            added++;
+        return result;
+    }
+
+    /**
+     * Записывает строковое значение ячейки в виде ссылки на общую таблицу строк документа.
+     *
+     * @return <code>true</code> если ячейка была записана, <code>false</code> если ячейка должна быть записана стандартным образом.
+     */
+    private boolean writeCell(final Writer out, final Cell cell) throws IOException {
+        if (cell.getCellType() != CellType.STRING)
+            return false;
+        final String text = cell.getStringCellValue();
+        if (text == null || text.isEmpty())
+            return false;
+        final int index = getIndex(text);
+        if (index < 0)
+            return false;
+        out.write("<c r=\"");
+        out.write(new CellReference(cell.getRowIndex(), cell.getColumnIndex()).formatAsString());
+        out.write('"');
+        final int style = cell.getCellStyle().getIndex() & 0xFFFF;
+        if (style != 0) {
+            out.write(" s=\"");
+            out.write(Integer.toString(style));
+            out.write('"');
+        }
+        out.write(" t=\"s\"><v>");
+        out.write(Integer.toString(index));
+        out.write("</v></c>");
+        return true;
+    }
+
+
+    private static final class PlainWriter extends SheetDataWriter {
+        private final BoundedStringsWorkbook wb;
+
+        private PlainWriter(final BoundedStringsWorkbook wb) throws IOException {
+            super();
+            this.wb = wb;
+        }
+
+        @Override
+        public void writeCell(final int columnIndex, final Cell cell) throws IOException {
+            if (cell == null || !wb.writeCell(_out, cell))
+                super.writeCell(columnIndex, cell);
+        }
+    }
+
+    private static final class GZIPWriter extends GZIPSheetDataWriter {
+        private final BoundedStringsWorkbook wb;
+
+        private GZIPWriter(final BoundedStringsWorkbook wb) throws IOException {
+            super();
+            this.wb = wb;
+        }
+
+        @Override
+        public void writeCell(final int columnIndex, final Cell cell) throws IOException {
+            if (cell == null || !wb.writeCell(_out, cell))
+                super.writeCell(columnIndex, cell);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.echosoft.framework.reports.processor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Предоставляет потоки для записи отдельных экземпляров отчета, формируемых в режиме разделения (bursting)
+ * по значениям ключевого поля записей (см. {@link ExcelReportProcessor#processBurst(org.echosoft.framework.reports.model.Report, org.echosoft.framework.reports.model.el.ELContext, BurstOutput)}).
+ *
+ * @author Anton Sharapov
+ */
+public interface BurstOutput {
+
+    /**
+     * Вызывается перед построением экземпляра отчета для очередного значения ключа.
+     *
+     * @param key значение ключевого поля записей, включаемых в данный экземпляр отчета (может быть <code>null</code>).
+     * @return поток в который должен быть записан экземпляр отчета.
+     * @throws IOException в случае ошибок ввода-вывода.
+     */
+    public OutputStream open(Object key) throws IOException;
+
+    /**
+     * Вызывается после того как экземпляр отчета для очередного значения ключа был записан в поток (в том числе и в случае ошибки).
+     * Реализация по умолчанию закрывает поток.
+     *
+     * @param key    значение ключевого поля записей.
+     * @param out    поток полученный ранее с помощью метода {@link #open(Object)}.
+     * @param failed <code>true</code> если при построении экземпляра отчета возникла ошибка.
+     * @throws IOException в случае ошибок ввода-вывода.
+     */
+    public default void close(final Object key, final OutputStream out, final boolean failed) throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,189 @@
+package org.echosoft.framework.reports.processor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.TreeMap;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.echosoft.framework.reports.model.AreaModel;
+
+/**
+ * Построитель отчетов, выгружающий содержимое отчета в поток в виде текста с разделителями (CSV, TSV).
+ * <p>Используются те же модели отчетов что и для построения документов Excel: секции, группировки и шаблоны строк
+ * обрабатываются так же как в {@link ExcelReportProcessor}, но рабочая книга не создается - каждая полностью сформированная
+ * строка листа сразу же записывается в выходной поток (см. {@link BaseStreamingReportProcessor}). Благодаря этому объем используемой
+ * памяти не зависит от количества строк в отчете (за исключением строк внутри еще не завершенных группировок, которые
+ * удерживаются до завершения группы).</p>
+ * <p>Правила выгрузки:</p>
+ * <ul>
+ *  <li>значения ячеек форматируются согласно формату данных указанному в стиле ячейки шаблона (или в явно назначенном ячейке стиле);</li>
+ *  <li>ячейки с формулами выгружаются пустыми, так как значения формул в ходе построения отчета не вычисляются;</li>
+ *  <li>скрытые листы, скрытые секции и скрытые строки шаблонов не выгружаются;</li>
+ *  <li>содержимое разных листов отчета отделяется друг от друга пустой строкой.</li>
+ * </ul>
+ *
+ * @author Anton Sharapov
+ */
+public class CsvReportProcessor extends BaseStreamingReportProcessor {
+
+    private static final String EOL = "\r\n";
+
+    private final char separator;
+    private final Charset charset;
+
+    public CsvReportProcessor() {
+        this(',', StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param separator разделитель значений в строке (как правило <code>','</code>, <code>';'</code> или <code>'\t'</code>).
+     * @param charset   кодировка выгружаемого текста.
+     */
+    public CsvReportProcessor(final char separator, final Charset charset) {
+        if (separator == '"' || separator == '\r' || separator == '\n')
+            throw new IllegalArgumentException("Illegal separator character");
+        if (charset == null)
+            throw new IllegalArgumentException("Charset must be specified");
+        this.separator = separator;
+        this.charset = charset;
+    }
+
+    /**
+     * @return разделитель значений в строке.
+     */
+    public char getSeparator() {
+        return separator;
+    }
+
+    /**
+     * @return кодировка выгружаемого текста.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    @Override
+    protected ReportSink makeSink(final OutputStream out) {
+        return new CsvSink(new BufferedWriter(new OutputStreamWriter(out, charset), 65536));
+    }
+
+    /**
+     * Записывает значение в выходной поток, при необходимости заключая его в кавычки.
+     *
+     * @param out   выходной поток.
+     * @param value записываемое значение.
+     * @throws IOException в случае ошибок ввода-вывода.
+     */
+    protected void writeValue(final Writer out, final String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0, len = value.length(); i < len; i++) {
+            final char c = value.charAt(i);
+            if (c == separator || c == '"' || c == '\r' || c == '\n') {
+                quote = true;
+                break;
+            }
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        for (int i = 0, len = value.length(); i < len; i++) {
+            final char c = value.charAt(i);
+            if (c == '"')
+                out.write('"');
+            out.write(c);
+        }
+        out.write('"');
+    }
+
+
+    /**
+     * Записывает строки отчета в выходной поток в порядке их следования на листе.
+     * Строки, которые были отрисованы раньше предшествующих им строк (т.е. строки внутри незавершенных группировок), удерживаются
+     * до тех пор пока не будут отрисованы все предшествующие им строки.
+     */
+    private final class CsvSink implements ReportSink {
+        private final Writer out;
+        private final TreeMap<Integer, String[]> pending;
+        private DataFormatter formatter;
+        private boolean skipSheet;
+        private boolean sheetWritten;
+        private boolean separateSheet;
+
+        private CsvSink(final Writer out) {
+            this.out = out;
+            this.pending = new TreeMap<>();
+        }
+
+        @Override
+        public void beginReport(final ExecutionContext ectx) {
+            formatter = new DataFormatter(ectx.elctx.getLocale());
+        }
+
+        @Override
+        public void beginSheet(final ExecutionContext ectx) {
+            skipSheet = ectx.sheet.isHidden();
+            sheetWritten = false;
+        }
+
+        @Override
+        public void row(final ExecutionContext ectx, final Row row) throws IOException {
+            if (skipSheet || row.getZeroHeight())
+                return;
+            for (SectionContext sctx = ectx.sectionContext; sctx != null; sctx = sctx.parent) {
+                if (sctx.section.isHidden())
+                    return;
+            }
+            final int cells = Math.max(row.getLastCellNum(), 0);
+            final String[] values = new String[cells];
+            for (int i = 0; i < cells; i++) {
+                final Cell cell = row.getCell(i);
+                final String value = cell != null ? formatValue(ectx, formatter, cell) : null;
+                values[i] = value != null ? value : "";
+            }
+            pending.put(row.getRowNum(), values);
+        }
+
+        @Override
+        public void area(final ExecutionContext ectx, final AreaModel template, final int startRow) throws IOException {
+            flush(ectx.getFirstPendingRowNum());
+        }
+
+        @Override
+        public void endSheet(final ExecutionContext ectx) throws IOException {
+            flush(Integer.MAX_VALUE);
+            if (sheetWritten)
+                separateSheet = true;
+        }
+
+        @Override
+        public void endReport(final ExecutionContext ectx) throws IOException {
+            out.flush();
+        }
+
+        private void flush(final int limit) throws IOException {
+            while (!pending.isEmpty() && pending.firstKey() < limit) {
+                final String[] values = pending.pollFirstEntry().getValue();
+                if (separateSheet) {
+                    out.write(EOL);
+                    separateSheet = false;
+                }
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0)
+                        out.write(separator);
+                    writeValue(out, values[i]);
+                }
+                out.write(EOL);
+                sheetWritten = true;
+            }
+        }
+    }
+}
@@ -1,12 +1,18 @@
 package org.echosoft.framework.reports.processor;
 
 import java.io.ByteArrayInputStream;
-import java.util.Calendar;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 import org.apache.poi.hpsf.DocumentSummaryInformation;
 import org.apache.poi.hpsf.Property;
@@ -21,14 +27,18 @@ import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.PrintSetup;
-import org.apache.poi.ss.usermodel.RichTextString;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.echosoft.framework.reports.common.collections.issuers.IteratorIssuer;
+import org.echosoft.framework.reports.common.collections.issuers.ReadAheadIssuer;
+import org.echosoft.framework.reports.common.data.StatementCache;
 import org.echosoft.framework.reports.common.data.TreeNode;
+import org.echosoft.framework.reports.common.utils.BeanUtil;
+import org.echosoft.framework.reports.common.utils.JfrEvents;
 import org.echosoft.framework.reports.macros.Macros;
 import org.echosoft.framework.reports.model.AreaModel;
 import org.echosoft.framework.reports.model.CellModel;
@@ -50,8 +60,14 @@ import org.echosoft.framework.reports.model.events.CellEventListener;
 import org.echosoft.framework.reports.model.events.ReportEventListener;
 import org.echosoft.framework.reports.model.events.SectionEventListener;
 import org.echosoft.framework.reports.model.providers.DataProvider;
+import org.echosoft.framework.reports.model.providers.DataRequest;
 import org.echosoft.framework.reports.model.providers.ProviderUsage;
+import org.echosoft.framework.reports.util.CellValueWriters;
 import org.echosoft.framework.reports.util.POIUtils;
+import org.echosoft.framework.reports.util.StyleRegistry;
+import org.echosoft.framework.reports.util.WorkbookTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Формирует итоговый отчет по его модели и на основании данных указанных пользователем в качестве параметров.<br/>
@@ -61,20 +77,49 @@ import org.echosoft.framework.reports.util.POIUtils;
  */
 public class ExcelReportProcessor implements ReportProcessor {
 
+    private static final Logger log = LoggerFactory.getLogger(ExcelReportProcessor.class);
+
     public static final String VAR_CONTEXT = "context";
     public static final String VAR_RECORD = "record";
     public static final String VAR_PREV_ROW = "prevrow";
     public static final String VAR_ROW = "row";
     public static final String VAR_NEXT_ROW = "nextrow";
+    /**
+     * Имя переменной контекста, в которой при построении отчета в режиме разделения (см. {@link #processBurst(Report, ELContext, BurstOutput)})
+     * находится значение ключа записей, включаемых в текущий экземпляр отчета.
+     */
+    public static final String VAR_BURST_KEY = "burstkey";
+    private static final int SLOT_RECORD = ELContext.registerSlot(VAR_RECORD);
+    private static final int SLOT_PREV_ROW = ELContext.registerSlot(VAR_PREV_ROW);
+    private static final int SLOT_ROW = ELContext.registerSlot(VAR_ROW);
+    private static final int SLOT_NEXT_ROW = ELContext.registerSlot(VAR_NEXT_ROW);
     private static final String FORMULA = "$F=";
     private static final int FORMULA_LENGTH = FORMULA.length();
-    private static final String MACROS = "$M=";
+    static final String MACROS = "$M=";
     private static final int MACROS_LENGTH = MACROS.length();
 
 
+    private volatile ReportMetricsCollector metricsCollector;
+
     public ExcelReportProcessor() {
     }
 
+    /**
+     * @return получатель статистики построения отчетов или <code>null</code> если сбор статистики не требуется.
+     */
+    public ReportMetricsCollector getMetricsCollector() {
+        return metricsCollector;
+    }
+
+    /**
+     * Регистрирует получатель статистики построения отчетов. Если получатель не указан (по умолчанию), то статистика не собирается.
+     *
+     * @param metricsCollector получатель статистики или <code>null</code>.
+     */
+    public void setMetricsCollector(final ReportMetricsCollector metricsCollector) {
+        this.metricsCollector = metricsCollector;
+    }
+
     /**
      * Формирует отчет на основании его модели и указанных пользователем в контексте параметров.
      *
@@ -84,42 +129,278 @@ public class ExcelReportProcessor implements ReportProcessor {
      * @throws ReportProcessingException в случае каких-либо проблем.
      */
     @Override
-    public Workbook process(Report report, final ELContext ctx) throws ReportProcessingException {
+    public Workbook process(final Report report, final ELContext ctx) throws ReportProcessingException {
+        return processReport(report, ctx, null);
+    }
+
+    /**
+     * Формирует отчет на основании его модели и указанных пользователем в контексте параметров.
+     * Если указан получатель содержимого отчета, то отчет строится в потоковом режиме: листы рабочей книги не создаются,
+     * а каждая отрисованная строка отчета сразу же передается получателю (см. {@link ReportSink}).
+     *
+     * @param report модель формируемого отчета.
+     * @param ctx    данные необходимые для формирования данного отчета.
+     * @param sink   получатель содержимого отчета или <code>null</code> если отчет должен быть сформирован в виде рабочей книги.
+     * @return сформированный отчет или <code>null</code> если отчет строился в потоковом режиме.
+     * @throws ReportProcessingException в случае каких-либо проблем.
+     */
+    protected Workbook processReport(final Report report, final ELContext ctx, final ReportSink sink) throws ReportProcessingException {
+        return processReport(report, ctx, sink, null);
+    }
+
+    /**
+     * Формирует отчет или очередной экземпляр отчета, строящегося в режиме разделения (см. {@link #processBurst(Report, ELContext, BurstOutput)}).
+     *
+     * @param report модель формируемого отчета.
+     * @param ctx    данные необходимые для формирования данного отчета.
+     * @param sink   получатель содержимого отчета или <code>null</code> если отчет должен быть сформирован в виде рабочей книги.
+     * @param burst  общее для всех экземпляров отчета состояние построения в режиме разделения или <code>null</code>.
+     * @return сформированный отчет или <code>null</code> если отчет строился в потоковом режиме.
+     * @throws ReportProcessingException в случае каких-либо проблем.
+     */
+    Workbook processReport(Report report, final ELContext ctx, final ReportSink sink, final BurstState burst) throws ReportProcessingException {
+        final ReportMetricsCollector collector = metricsCollector;
+        final ReportMetrics metrics = collector != null ? new ReportMetrics(report.getId()) : null;
+        final Object event = JfrEvents.beginReport(report.getId());
+        final StatementCache statements = new StatementCache();
+        final ExecutionControl control = ctx.getControl();
         ExecutionContext ectx = null;
+        Workbook wb = null;
+        boolean failed = true;
         try {
-            report = new Report(null, report); // копируем модель отчета, т.к. в процессе формирования отчета она может измениться.
-            final Workbook wb = makeWorkbook(report, ctx);
-            final Map<Short, CellStyle> styles = applyStyles(report, wb);
-            ectx = new ExecutionContext(report, ctx, wb, styles);
+            if (control != null)
+                control.start();
+            // копируем модель отчета, т.к. в процессе формирования отчета она может измениться.
+            // в режиме разделения копия модели создается однократно для всех экземпляров отчета ...
+            report = burst != null ? burst.report : new Report(null, report);
+            final Map<Short, CellStyle> styles;
+            if (sink != null) {
+                // в потоковом режиме рабочая книга нужна только для стилей ячеек, которые создаются в ней по мере обращения к ним,
+                // поэтому в режиме разделения одна и та же книга со стилями палитры используется всеми экземплярами отчета ...
+                if (burst != null && burst.wb != null) {
+                    wb = burst.wb;
+                    styles = burst.styles;
+                } else {
+                    wb = new XSSFWorkbook();
+                    styles = report.getPalette().applyTo(wb);
+                    if (burst != null) {
+                        burst.wb = wb;
+                        burst.styles = styles;
+                        burst.styleRegistry = new StyleRegistry(wb);
+                    }
+                }
+            } else {
+                wb = makeWorkbook(report, ctx);
+                styles = applyStyles(report, wb);
+            }
+            final StyleRegistry styleRegistry = sink != null && burst != null ? burst.styleRegistry : new StyleRegistry(wb);
+            ectx = new ExecutionContext(report, ctx, wb, styles, styleRegistry, metrics);
+            if (burst != null)
+                burst.ectx = ectx;
+            if (metrics != null)
+                metrics.start(ectx);
+            ectx.sink = sink;
+            ectx.statements = statements;
+            ectx.burstRecords = burst != null ? burst.records : null;
+            if (control != null)
+                control.check(ectx);
             ctx.getVariables().put(VAR_CONTEXT, ectx);
             for (final ReportEventListener listener : ectx.listeners) {
                 listener.beforeReport(ectx);
             }
+            if (sink != null)
+                sink.beginReport(ectx);
             for (final SheetModel sheet : report.getSheets()) {
                 processSheet(ectx, sheet);
             }
-            boolean activeSheetSpecified = false;
-            for (int i = 0, cnt = wb.getNumberOfSheets(); i < cnt; i++) {
-                if (!wb.isSheetHidden(i) && !wb.isSheetVeryHidden(i)) {
-                    wb.setActiveSheet(i);
-                    wb.setSelectedTab(i);
-                    activeSheetSpecified = true;
-                    break;
-                }
-            }
-            if (!activeSheetSpecified) {
-                final Sheet sheet = wb.createSheet();
-                final int index = wb.getSheetIndex(sheet);
-                wb.setActiveSheet(index);
-                wb.setSelectedTab(index);
-            }
+            if (sink == null)
+                activateSheet(wb);
             for (final ReportEventListener listener : ectx.listeners) {
                 listener.afterReport(ectx);
             }
-            return wb;
+            if (sink != null)
+                sink.endReport(ectx);
+            failed = false;
+            return sink == null ? wb : null;
+        } catch (ReportCancelledException e) {
+            throw e;
         } catch (Exception e) {
+            if (control != null && control.isCancelled())
+                throw new ReportCancelledException("Report [" + report.getId() + "] was cancelled", e, ectx);
             throw new ReportProcessingException(e.getMessage() + "\n" + ectx, e, ectx);
+        } finally {
+            if (failed && wb instanceof SXSSFWorkbook)
+                ((SXSSFWorkbook) wb).dispose();    // удаляем временные файлы недостроенного отчета
+            try {
+                statements.close();
+            } catch (Exception e) {
+                log.warn("Unable to close cached statements of report [" + report.getId() + "]: " + e.getMessage(), e);
+            }
+            JfrEvents.endReport(event, ectx != null ? ectx.wb.getNumberOfSheets() : 0);
+            if (metrics != null) {
+                metrics.finish(ectx, failed);
+                try {
+                    collector.collect(metrics);
+                } catch (Exception e) {
+                    log.warn("Unable to collect metrics of report [" + metrics.getReportId() + "]: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Формирует отдельный экземпляр отчета для каждого значения ключевого свойства ({@link Report#getBurstKey()}) записей
+     * поставщика данных {@link Report#getBurstProvider()} и записывает его в поток, полученный от <code>output</code>.
+     * <p>Поставщик данных опрашивается однократно, его записи должны быть упорядочены по значениям ключевого свойства.
+     * Записи с очередным значением ключа накапливаются в памяти, после чего по ним строится экземпляр отчета, в котором секции,
+     * использующие данный поставщик, получают только эти записи. Значение ключа доступно при построении экземпляра отчета
+     * в переменной контекста {@link #VAR_BURST_KEY}. Прочие поставщики данных опрашиваются при построении каждого экземпляра отчета как обычно.
+     * Если записи поставщика не упорядочены по значениям ключа, то следует использовать метод
+     * {@link #processBurst(Report, ELContext, BurstOutput, boolean)}.</p>
+     *
+     * @param report модель формируемого отчета.
+     * @param ctx    данные необходимые для формирования данного отчета.
+     * @param output предоставляет потоки для записи экземпляров отчета.
+     * @return количество построенных экземпляров отчета.
+     * @throws ReportProcessingException в случае каких-либо проблем, в том числе если записи поставщика не упорядочены по значениям ключа.
+     */
+    public int processBurst(final Report report, final ELContext ctx, final BurstOutput output) throws ReportProcessingException {
+        return processBurst(report, ctx, output, false);
+    }
+
+    /**
+     * Формирует отдельный экземпляр отчета для каждого значения ключевого свойства ({@link Report#getBurstKey()}) записей
+     * поставщика данных {@link Report#getBurstProvider()} и записывает его в поток, полученный от <code>output</code>
+     * (см. {@link #processBurst(Report, ELContext, BurstOutput)}).
+     * <p>Если записи поставщика могут быть не упорядочены по значениям ключа (<code>unordered = true</code>), то все записи поставщика
+     * сначала считываются в память и группируются по значениям ключа (в порядке первого появления каждого значения), после чего
+     * курсор поставщика закрывается и для каждой группы записей строится экземпляр отчета. Объем используемой при этом памяти
+     * пропорционален количеству записей поставщика. Иначе в памяти удерживаются только записи строящегося экземпляра отчета,
+     * а курсор поставщика остается открытым до построения последнего экземпляра отчета.</p>
+     * <p>Копия модели отчета создается однократно и используется при построении всех его экземпляров, поэтому изменения модели,
+     * вносимые обработчиками событий при построении одного экземпляра, сохраняются и при построении последующих экземпляров.</p>
+     *
+     * @param report    модель формируемого отчета.
+     * @param ctx       данные необходимые для формирования данного отчета.
+     * @param output    предоставляет потоки для записи экземпляров отчета.
+     * @param unordered <code>true</code> если записи поставщика могут быть не упорядочены по значениям ключа.
+     * @return количество построенных экземпляров отчета.
+     * @throws ReportProcessingException в случае каких-либо проблем.
+     */
+    public int processBurst(final Report report, final ELContext ctx, final BurstOutput output, final boolean unordered) throws ReportProcessingException {
+        final String keyField = report.getBurstKey();
+        if (report.getBurstProvider() == null || keyField == null)
+            throw new ReportProcessingException("Burst provider and key must be specified for report [" + report.getId() + "]");
+        final DataProvider provider = report.getProviders().get(report.getBurstProvider());
+        if (provider == null)
+            throw new ReportProcessingException("Unknown burst provider [" + report.getBurstProvider() + "] in report [" + report.getId() + "]");
+        final ExecutionControl control = ctx.getControl();
+        final DataRequest request = new DataRequest(report.getId(), null, null);
+        request.monitor = control;
+        final BurstState burst = new BurstState();
+        int count = 0;
+        try {
+            burst.report = new Report(null, report);
+            if (unordered) {
+                final Map<Object, List<Object>> groups = new LinkedHashMap<>();
+                try (ReadAheadIssuer<?> issuer = provider.getIssuer(ctx, request)) {
+                    while (issuer != null && issuer.hasNext()) {
+                        final Object record = issuer.next();
+                        final Object key = BeanUtil.getProperty(record, keyField);
+                        List<Object> records = groups.get(key);
+                        if (records == null) {
+                            records = new ArrayList<>();
+                            groups.put(key, records);
+                        }
+                        records.add(record);
+                    }
+                }
+                for (final Map.Entry<Object, List<Object>> entry : groups.entrySet()) {
+                    final List<Object> records = entry.getValue();
+                    entry.setValue(null);   // записи уже построенных экземпляров отчета больше не нужны ...
+                    writeBurstInstance(burst, ctx, output, entry.getKey(), records);
+                    count++;
+                }
+            } else {
+                final Set<Object> keys = new HashSet<>();
+                try (ReadAheadIssuer<?> issuer = provider.getIssuer(ctx, request)) {
+                    while (issuer != null && issuer.hasNext()) {
+                        final Object key = BeanUtil.getProperty(issuer.readAhead(), keyField);
+                        if (!keys.add(key))
+                            throw new ReportProcessingException("Records of burst provider [" + provider.getId() + "] are not ordered by [" + keyField + "]: " + key, burst.ectx);
+                        final List<Object> records = new ArrayList<>();
+                        do {
+                            records.add(issuer.next());
+                        } while (issuer.hasNext() && Objects.equals(key, BeanUtil.getProperty(issuer.readAhead(), keyField)));
+                        writeBurstInstance(burst, ctx, output, key, records);
+                        count++;
+                    }
+                }
+            }
+        } catch (ReportProcessingException e) {
+            throw e;
+        } catch (Exception e) {
+            if (control != null && control.isCancelled())
+                throw new ReportCancelledException("Report [" + report.getId() + "] was cancelled", e, burst.ectx);
+            throw new ReportProcessingException(e.getMessage(), e, burst.ectx);
+        }
+        return count;
+    }
+
+    /**
+     * Формирует очередной экземпляр отчета, строящегося в режиме разделения, и записывает его в поток, полученный от <code>output</code>.
+     */
+    private void writeBurstInstance(final BurstState burst, final ELContext ctx, final BurstOutput output, final Object key,
+                                    final List<Object> records) throws Exception {
+        final ELContext kctx = ctx.cloneContext();
+        kctx.getVariables().put(VAR_BURST_KEY, key);
+        burst.records = records;
+        final OutputStream out = output.open(key);
+        boolean failed = true;
+        try {
+            processBurstInstance(burst, kctx, out);
+            failed = false;
+        } finally {
+            burst.records = null;
+            output.close(key, out, failed);
+        }
+    }
+
+    /**
+     * Формирует очередной экземпляр отчета, строящегося в режиме разделения, и записывает его в указанный поток.
+     *
+     * @param burst состояние построения отчета в режиме разделения с записями текущего экземпляра отчета.
+     * @param ctx   данные необходимые для формирования данного экземпляра отчета.
+     * @param out   поток в который должен быть записан сформированный экземпляр отчета.
+     * @throws ReportProcessingException в случае каких-либо проблем.
+     */
+    void processBurstInstance(final BurstState burst, final ELContext ctx, final OutputStream out) throws ReportProcessingException {
+        final Workbook wb = processReport(burst.report, ctx, null, burst);
+        try {
+            wb.write(out);
+        } catch (IOException e) {
+            throw new ReportProcessingException(e.getMessage(), e);
+        } finally {
+            if (wb instanceof SXSSFWorkbook)
+                ((SXSSFWorkbook) wb).dispose();
+        }
+    }
+
+    /**
+     * Делает активным первый видимый лист рабочей книги. Если видимых листов нет, то в книгу добавляется новый пустой лист.
+     */
+    private static void activateSheet(final Workbook wb) {
+        for (int i = 0, cnt = wb.getNumberOfSheets(); i < cnt; i++) {
+            if (!wb.isSheetHidden(i) && !wb.isSheetVeryHidden(i)) {
+                wb.setActiveSheet(i);
+                wb.setSelectedTab(i);
+                return;
+            }
         }
+        final Sheet sheet = wb.createSheet();
+        final int index = wb.getSheetIndex(sheet);
+        wb.setActiveSheet(index);
+        wb.setSelectedTab(index);
     }
 
     protected Workbook makeWorkbook(final Report report, final ELContext ctx) throws Exception {
@@ -128,7 +409,7 @@ public class ExcelReportProcessor implements ReportProcessor {
             case XSSF: {
                 final XSSFWorkbook wb;
                 if (report.getTemplate() != null) {
-                    final OPCPackage pkg = OPCPackage.open(new ByteArrayInputStream(report.getTemplate()));
+                    final OPCPackage pkg = WorkbookTemplate.openPackage(report.getTemplate());
                     wb = new XSSFWorkbook(pkg);
 //                    final CTSheets sheets = wb.getCTWorkbook().getSheets();
 //                    while (sheets.sizeOfSheetArray() > 0)
@@ -179,7 +460,15 @@ public class ExcelReportProcessor implements ReportProcessor {
                     wb.lockStructure();
                 }
                 if (report.getTarget() == Report.TargetType.SXSSF) {
-                    return new SXSSFWorkbook(wb, report.getStreamWindowSize(), report.getStreamUseCompression());
+                    switch (report.getStreamStrings()) {
+                        case SHARED:
+                            return new SXSSFWorkbook(wb, report.getStreamWindowSize(), report.getStreamUseCompression(), true);
+                        case BOUNDED:
+                            return new BoundedStringsWorkbook(wb, report.getStreamWindowSize(), report.getStreamUseCompression(), report.getStreamStringsLimit());
+                        case INLINE:
+                        default:
+                            return new SXSSFWorkbook(wb, report.getStreamWindowSize(), report.getStreamUseCompression());
+                    }
                 }
                 return wb;
             }
@@ -303,49 +592,73 @@ public class ExcelReportProcessor implements ReportProcessor {
 
     protected void processSheet(final ExecutionContext ectx, final SheetModel sheet) throws Exception {
         ectx.sheet = sheet;
+        final Object event = JfrEvents.beginSheet(ectx.report.getId(), sheet.getId());
         for (final ReportEventListener listener : ectx.listeners) {
             listener.beforeSheet(ectx);
         }
         if (ectx.sheet.isRendered()) {
-            final String title = sheet.getTitle() != null ? (String) sheet.getTitle().getValue(ectx.elctx) : sheet.getId();
-            ectx.wsheet = ectx.wb.getSheet(title);  // в случае использования сохраненного шаблона отчета ...
-            if (ectx.wsheet == null) {
-                ectx.wsheet = ectx.wb.createSheet(title);
-            }
             ectx.autoFilter = null;
-            ectx.wsheet.setRowSumsBelow(false);
-            //ectx.wsheet.setAlternativeExpression(false);  //мы использовали этот метод т.к. setRowSumBelow() не работал в должной мере, но судя по коду, в POI это исправили еще 4 года назад
-
-            final int sheetIdx = ectx.wb.getSheetIndex(ectx.wsheet);
-            ectx.wb.setSheetHidden(sheetIdx, sheet.isHidden());
-            final String password = ectx.report.getPassword() != null ? (String) ectx.report.getPassword().getValue(ectx.elctx) : null;
-            if (sheet.isProtected() && password != null /*&& ectx.wb.isWriteProtected()*/) {
-                ectx.wsheet.protectSheet(password);
-            }
-            for (final Section section : sheet.getSections()) {
-                processSection(ectx, section);
-            }
-            final int[] widths = sheet.getColumnWidths();
-            for (int i = 0; i < widths.length; i++) {
-                ectx.wsheet.setColumnWidth(i, widths[i]);
-            }
-            final boolean[] hidden = sheet.getColumnHidden();
-            for (int i = 0; i < hidden.length; i++) {
-                ectx.wsheet.setColumnHidden(i, hidden[i]);
-            }
-            for (TreeNode<String, ColumnGroupModel> grpNode : sheet.getColumnGroups().traverseNodes(false)) {
-                final ColumnGroupModel group = grpNode.getData();
-                ectx.wsheet.groupColumn(group.getFirstColumn(), group.getLastColumn());
+            ectx.resetRows();
+            if (ectx.sink != null) {
+                // в потоковом режиме листы рабочей книги не создаются ...
+                ectx.sink.beginSheet(ectx);
+                for (final Section section : sheet.getSections()) {
+                    processSection(ectx, section);
+                }
+                ectx.sink.endSheet(ectx);
+            } else {
+                final String title = getSheetTitle(ectx, sheet);
+                ectx.wsheet = ectx.wb.getSheet(title);  // в случае использования сохраненного шаблона отчета ...
+                if (ectx.wsheet == null) {
+                    ectx.wsheet = ectx.wb.createSheet(title);
+                }
+                ectx.wsheet.setRowSumsBelow(false);
+                //ectx.wsheet.setAlternativeExpression(false);  //мы использовали этот метод т.к. setRowSumBelow() не работал в должной мере, но судя по коду, в POI это исправили еще 4 года назад
+
+                final int sheetIdx = ectx.wb.getSheetIndex(ectx.wsheet);
+                ectx.wb.setSheetHidden(sheetIdx, sheet.isHidden());
+                final String password = ectx.report.getPassword() != null ? (String) ectx.report.getPassword().getValue(ectx.elctx) : null;
+                if (sheet.isProtected() && password != null /*&& ectx.wb.isWriteProtected()*/) {
+                    ectx.wsheet.protectSheet(password);
+                }
+                for (final Section section : sheet.getSections()) {
+                    processSection(ectx, section);
+                }
+                final int[] widths = sheet.getColumnWidths();
+                for (int i = 0; i < widths.length; i++) {
+                    ectx.wsheet.setColumnWidth(i, widths[i]);
+                }
+                final boolean[] hidden = sheet.getColumnHidden();
+                for (int i = 0; i < hidden.length; i++) {
+                    ectx.wsheet.setColumnHidden(i, hidden[i]);
+                }
+                for (TreeNode<String, ColumnGroupModel> grpNode : sheet.getColumnGroups().traverseNodes(false)) {
+                    final ColumnGroupModel group = grpNode.getData();
+                    ectx.wsheet.groupColumn(group.getFirstColumn(), group.getLastColumn());
+                }
+                processPageSettings(ectx.wsheet, sheet.getPageSettings());
             }
-            processPageSettings(ectx.wsheet, sheet.getPageSettings());
         }
         for (final ReportEventListener listener : ectx.listeners) {
             listener.afterSheet(ectx);
         }
+        JfrEvents.endSheet(event, sheet.isRendered() ? ectx.getLastRowNum() : -1);
         ectx.sheet = null;
         ectx.wsheet = null;
     }
 
+    /**
+     * Вычисляет наименование листа итогового отчета.
+     *
+     * @param ectx  контекст выполнения задачи.
+     * @param sheet модель листа.
+     * @return наименование листа.
+     * @throws Exception в случае ошибок при вычислении выражения.
+     */
+    protected static String getSheetTitle(final ExecutionContext ectx, final SheetModel sheet) throws Exception {
+        return sheet.getTitle() != null ? (String) sheet.getTitle().getValue(ectx.elctx) : sheet.getId();
+    }
+
     private void processPageSettings(final Sheet sheet, final PageSettingsModel pageSettings) {
         sheet.getHeader().setLeft(pageSettings.getHeader().getLeft());
         sheet.getHeader().setCenter(pageSettings.getHeader().getCenter());
@@ -391,47 +704,66 @@ public class ExcelReportProcessor implements ReportProcessor {
             return;
 
         final Object prevBean = ectx.elctx.getRowModel();
-        final Object prevRecord = ectx.elctx.getVariables().get(VAR_RECORD);
+        final boolean hasPrevRecord = ectx.elctx.hasSlotValue(SLOT_RECORD);
+        final int prevRecord = ectx.elctx.getSlotValue(SLOT_RECORD);
         final int firstRow = ectx.getNewRowNum();
-        ectx.sectionContext = new SectionContext(ectx.sectionContext, section, firstRow, ectx.elctx);
+        ectx.sectionContext = ectx.openSectionContext(section, firstRow);
+        final Object event = JfrEvents.beginSection(ectx.report.getId(), ectx.sheet.getId(), section.getId(), firstRow);
 
-        for (final SectionEventListener listener : ectx.sectionContext.sectionListeners) {
-            listener.beforeSection(ectx);
-        }
-        if (section.isRendered()) {
-            if (section instanceof CompositeSection) {
-                processCompositeSection(ectx);
-            } else if (section instanceof PlainSection) {
-                processPlainSection(ectx);
-            } else if (section instanceof GroupingSection) {
-                processGroupingSection(ectx);
-            } else
-                throw new RuntimeException("Unsupported section type: " + section.getClass());
+        final SectionContext sctx = ectx.sectionContext;
+        try {
+            for (final SectionEventListener listener : ectx.sectionContext.sectionListeners) {
+                listener.beforeSection(ectx);
+            }
+            if (section.isRendered()) {
+                if (section instanceof CompositeSection) {
+                    processCompositeSection(ectx);
+                } else if (section instanceof PlainSection) {
+                    processPlainSection(ectx);
+                } else if (section instanceof GroupingSection) {
+                    processGroupingSection(ectx);
+                } else
+                    throw new RuntimeException("Unsupported section type: " + section.getClass());
 
-            final int lastRow = ectx.getLastRowNum();
-            if (section.isHidden()) {
-                for (int i = firstRow; i <= lastRow; i++) {
-                    ectx.wsheet.getRow(i).setZeroHeight(true);
+                final int lastRow = ectx.getLastRowNum();
+                // в потоковом режиме строки уже переданы получателю содержимого отчета, который сам учитывает видимость секций ...
+                if (section.isHidden() && ectx.wsheet != null) {
+                    for (int i = firstRow; i <= lastRow; i++) {
+                        final Row row = ectx.wsheet.getRow(i);   // в потоковых документах строка может быть уже выгружена
+                        if (row != null)
+                            row.setZeroHeight(true);
+                    }
                 }
-            }
-            if (section.isCollapsible() && lastRow >= firstRow) {
-                ectx.wsheet.groupRow(firstRow, lastRow);
-                ectx.wsheet.setRowGroupCollapsed(firstRow, section.isCollapsed());
-            }
-            if (lastRow >= firstRow) {
-                for (NamedRegion namedRegion : section.getNamedRegions()) {
-                    POIUtils.makeName(ectx.wsheet, namedRegion, firstRow, lastRow);
+                if (ectx.wsheet != null && section.isCollapsible() && lastRow >= firstRow) {
+                    ectx.wsheet.groupRow(firstRow, lastRow);
+                    // новая группа строк изначально развернута, а SXSSF не поддерживает явное разворачивание групп
+                    // и не может свернуть группу, первые строки которой уже выгружены из памяти ...
+                    if (section.isCollapsed() && ectx.wsheet.getRow(firstRow) != null)
+                        ectx.wsheet.setRowGroupCollapsed(firstRow, true);
+                }
+                if (ectx.wsheet != null && lastRow >= firstRow) {
+                    for (NamedRegion namedRegion : section.getNamedRegions()) {
+                        POIUtils.makeName(ectx.wsheet, namedRegion, firstRow, lastRow);
+                    }
                 }
             }
+            for (final SectionEventListener listener : ectx.sectionContext.sectionListeners) {
+                listener.afterSection(ectx);
+            }
+            JfrEvents.endSection(event, ectx.sectionContext.record, ectx.getLastRowNum());
+        } finally {
+            // статистика обработки секции учитывается и в том случае если обработка секции была прервана ...
+            if (ectx.metrics != null)
+                ectx.metrics.exitSection(ectx, sctx);
         }
-        for (final SectionEventListener listener : ectx.sectionContext.sectionListeners) {
-            listener.afterSection(ectx);
-        }
-
-        ectx.history.put(ectx.sectionContext.section.getId(), ectx.sectionContext);
+        ectx.history.put(ectx.sectionContext.section.getId(), ectx.sectionContext.snapshot());
         ectx.sectionContext = ectx.sectionContext.parent;
         ectx.elctx.setRowModel(prevBean);
-        ectx.elctx.getVariables().put(VAR_RECORD, prevRecord);
+        if (hasPrevRecord) {
+            ectx.elctx.setSlotValue(SLOT_RECORD, prevRecord);
+        } else {
+            ectx.elctx.clearSlotValue(SLOT_RECORD);
+        }
     }
 
     protected void processPlainSection(final ExecutionContext ectx) throws Exception {
@@ -439,12 +771,12 @@ public class ExcelReportProcessor implements ReportProcessor {
         final PlainSection section = (PlainSection) sctx.section;
 
         if (section.getDataProvider() != null) {
-            sctx.issuer = section.getDataProvider().getIssuer(ectx.elctx);
+            sctx.issuer = openIssuer(ectx, section.getDataProvider());
             try {
-                while (sctx.issuer.hasNext()) {
+                while (sctx.issuer.hasNext() && !isLimitReached(ectx, sctx)) {
                     sctx.bean = sctx.issuer.next();
                     ectx.elctx.setRowModel(sctx.bean);
-                    ectx.elctx.getVariables().put(VAR_RECORD, sctx.record);
+                    ectx.elctx.setSlotValue(SLOT_RECORD, sctx.record);
                     for (SectionEventListener listener : sctx.sectionListeners) {
                         listener.beforeRecord(ectx);
                     }
@@ -466,7 +798,7 @@ public class ExcelReportProcessor implements ReportProcessor {
         if (section.isFiltering()) {
             final int firstRow = sctx.sectionFirstRow > 0 ? sctx.sectionFirstRow - 1 : sctx.sectionFirstRow;
             final int lastRow = ectx.getLastRowNum();
-            if (firstRow < lastRow) {
+            if (firstRow < lastRow && ectx.wsheet != null) {
                 final CellRangeAddress addr = new CellRangeAddress(firstRow, lastRow, 0, sctx.section.getTemplateColumnsCount() - 1);
                 ectx.wsheet.createRow(lastRow + 1).setZeroHeight(true);
                 ectx.autoFilter = ectx.wsheet.setAutoFilter(addr);
@@ -484,12 +816,12 @@ public class ExcelReportProcessor implements ReportProcessor {
                     renderGroup(ctx, getCurrentGroup());
                 }
             };
-            sctx.issuer = section.getDataProvider().getIssuer(ectx.elctx);
+            sctx.issuer = openIssuer(ectx, section.getDataProvider());
             try {
-                while (sctx.issuer.hasNext()) {
+                while (sctx.issuer.hasNext() && !isLimitReached(ectx, sctx)) {
                     sctx.bean = sctx.issuer.next();
                     ectx.elctx.setRowModel(sctx.bean);
-                    ectx.elctx.getVariables().put(VAR_RECORD, sctx.record);
+                    ectx.elctx.setSlotValue(SLOT_RECORD, sctx.record);
                     for (SectionEventListener listener : sctx.sectionListeners) {
                         listener.beforeRecord(ectx);
                     }
@@ -514,7 +846,7 @@ public class ExcelReportProcessor implements ReportProcessor {
         if (section.isFiltering()) {
             final int firstRow = sctx.sectionFirstRow > 0 ? sctx.sectionFirstRow - 1 : sctx.sectionFirstRow;
             final int lastRow = ectx.getLastRowNum();
-            if (firstRow < lastRow) {
+            if (firstRow < lastRow && ectx.wsheet != null) {
                 final CellRangeAddress addr = new CellRangeAddress(firstRow, lastRow, 0, sctx.section.getTemplateColumnsCount() - 1);
                 ectx.wsheet.createRow(lastRow + 1).setZeroHeight(true);
                 ectx.autoFilter = ectx.wsheet.setAutoFilter(addr);
@@ -534,12 +866,12 @@ public class ExcelReportProcessor implements ReportProcessor {
                     renderGroup(ctx, getCurrentGroup());
                 }
             };
-            sctx.issuer = provider.getIssuer(ectx.elctx);
+            sctx.issuer = openIssuer(ectx, provider);
             try {
-                while (sctx.issuer.hasNext()) {
+                while (sctx.issuer.hasNext() && !isLimitReached(ectx, sctx)) {
                     sctx.bean = ProviderUsage.PREFETCH_RECORDS == providerUsage ? sctx.issuer.readAhead() : sctx.issuer.next();
                     ectx.elctx.setRowModel(sctx.bean);
-                    ectx.elctx.getVariables().put(VAR_RECORD, sctx.record);
+                    ectx.elctx.setSlotValue(SLOT_RECORD, sctx.record);
                     for (SectionEventListener listener : sctx.sectionListeners) {
                         listener.beforeRecord(ectx);
                     }
@@ -561,7 +893,7 @@ public class ExcelReportProcessor implements ReportProcessor {
             }
             sctx.gm.finalizeAllGroups(ectx);
         } else {
-            sctx.issuer = provider != null ? provider.getIssuer(ectx.elctx) : null;
+            sctx.issuer = provider != null ? openIssuer(ectx, provider) : null;
             try {
                 for (final Section childSection : section.getSections()) {
                     processSection(ectx, childSection);
@@ -576,7 +908,7 @@ public class ExcelReportProcessor implements ReportProcessor {
         if (section.isFiltering()) {
             final int firstRow = sctx.sectionFirstRow > 0 ? sctx.sectionFirstRow - 1 : sctx.sectionFirstRow;
             final int lastRow = ectx.getLastRowNum();
-            if (firstRow < lastRow) {
+            if (firstRow < lastRow && ectx.wsheet != null) {
                 final CellRangeAddress addr = new CellRangeAddress(firstRow, lastRow, 0, sctx.section.getTemplateColumnsCount() - 1);
                 ectx.wsheet.createRow(lastRow + 1).setZeroHeight(true);
                 ectx.autoFilter = ectx.wsheet.setAutoFilter(addr);
@@ -598,15 +930,61 @@ public class ExcelReportProcessor implements ReportProcessor {
         final GroupStyle style = group.level != null ? group.model.getStyleByLevel(group.level) : group.model.getDefaultStyle();
         renderArea(ectx, style.getTemplate(), group.startRow);
 
-        final int firstRow = group.startRow + 1;
-        final int lastRow = ectx.wsheet.getLastRowNum();
-        if (group.model.isCollapsible() && lastRow >= firstRow) {
-            POIUtils.groupRows(ectx.wsheet, firstRow, lastRow, group.model.isCollapsed());
+        if (ectx.wsheet != null && group.model.isCollapsible()) {
+            POIUtils.groupRows(ectx.wsheet, group.startRow + 1, ectx.wsheet.getLastRowNum(), group.model.isCollapsed());
         }
 
         ectx.elctx.setRowModel(prevBean);
     }
 
+    /**
+     * Проверяет достигнуты ли ограничения на объем отчета (см. {@link ELContext#getMaxRecords()} и {@link ELContext#getMaxRows()}),
+     * после которых обработка записей от поставщика данных текущей секции должна быть прекращена.
+     * Кроме того, проверяет не было ли отменено построение отчета (см. {@link ExecutionControl}).
+     *
+     * @param ectx контекст выполнения задачи.
+     * @param sctx контекст обработки текущей секции.
+     * @return <code>true</code> если очередная запись от поставщика данных секции обрабатываться уже не должна.
+     * @throws ReportCancelledException если построение отчета было отменено или превышены установленные для него ограничения.
+     */
+    protected boolean isLimitReached(final ExecutionContext ectx, final SectionContext sctx) throws ReportCancelledException {
+        if (ectx.control != null)
+            ectx.control.check(ectx);
+        final int maxRecords = ectx.elctx.getMaxRecords();
+        if (maxRecords > 0 && sctx.record >= maxRecords)
+            return true;
+        final int maxRows = ectx.elctx.getMaxRows();
+        return maxRows > 0 && ectx.getNewRowNum() >= maxRows;
+    }
+
+    /**
+     * Получает данные от поставщика данных текущей секции. Если при построении отчета собирается статистика, то
+     * полученный итератор будет учитывать время получения данных. Поставщику данных сообщается какие свойства его записей
+     * используются при отрисовке секции (см. {@link SectionContext#properties}), а также предоставляются кэш подготовленных
+     * SQL выражений и объект управления построением отчета (см. {@link DataRequest}). Набор используемых свойств определяется
+     * с учетом обработчиков событий, зарегистрированных в контексте секции на момент обращения к поставщику данных.
+     *
+     * @param ectx     контекст выполнения задачи.
+     * @param provider поставщик данных.
+     * @return итератор с данными от поставщика.
+     * @throws Exception в случае каких-либо проблем.
+     */
+    protected ReadAheadIssuer openIssuer(final ExecutionContext ectx, final DataProvider provider) throws Exception {
+        final Object event = JfrEvents.beginProvider(ectx.report.getId(), ectx.sectionContext.section.getId(), provider.getId());
+        try {
+            final DataRequest request = new DataRequest(ectx.report.getId(), ectx.sheet != null ? ectx.sheet.getId() : null, ectx.sectionContext.section.getId());
+            request.properties = ectx.sectionContext.resolveProperties(ectx.report);
+            request.statements = ectx.statements;
+            request.monitor = ectx.control;
+            final DataProvider actual = ectx.burstRecords != null && provider.getId().equals(ectx.report.getBurstProvider())
+                    ? new BurstDataProvider(provider.getId(), ectx.burstRecords)
+                    : provider;
+            return ectx.metrics != null ? ectx.metrics.getIssuer(actual, ectx, request) : actual.getIssuer(ectx.elctx, request);
+        } finally {
+            JfrEvents.endProvider(event);
+        }
+    }
+
     /**
      * Отрисовывает группу строк на основе их шаблона в отчете.
      *
@@ -622,46 +1000,84 @@ public class ExcelReportProcessor implements ReportProcessor {
 
         if (startRow < 0) {
             // работаем в режиме добавления новых записей в конец листа...
-            startRow = ectx.wsheet.getPhysicalNumberOfRows() > 0 ? ectx.wsheet.getLastRowNum() + 1 : 0;
+            startRow = ectx.getNewRowNum();
         }
         int r = startRow;
-        final Map<String, Object> variables = ectx.elctx.getVariables();
+        final ELContext elctx = ectx.elctx;
         final boolean hidden = template.isHidden();
+        final CellEventListener[][][] dispatch = ectx.sectionContext.getCellListeners(template);
+        final ReportMetrics.SectionMetrics metrics = ectx.metrics != null ? ectx.sectionContext.metrics : null;
+        int ri = 0;
         for (final RowModel rm : template.getRows()) {
-            Row row = ectx.wsheet.getRow(r);
-            if (row == null) {
-                row = ectx.wsheet.createRow(r);
-            }
+            final CellEventListener[][] rowListeners = dispatch[ri++];
+            final List<CellModel> cells = rm.getCells();
+            final Row row = ectx.getRow(r, cells.size());
+            final StreamRow srow = row instanceof StreamRow ? (StreamRow) row : null;
             row.setHeight(rm.isAutoHeight() ? (short) -1 : rm.getHeight());
             if (hidden || rm.isHidden()) {
                 row.setZeroHeight(true);
             }
             r++;
-            variables.put(VAR_PREV_ROW, r - 1);
-            variables.put(VAR_ROW, r);
-            variables.put(VAR_NEXT_ROW, r + 1);
-            final List<CellModel> cells = rm.getCells();
+            if (metrics != null)
+                ectx.metrics.rowRendered(metrics);
+            elctx.setSlotValue(SLOT_PREV_ROW, r - 1);
+            elctx.setSlotValue(SLOT_ROW, r);
+            elctx.setSlotValue(SLOT_NEXT_ROW, r + 1);
+            int rendered = 0;
             for (int i = 0; i < cells.size(); i++) {
                 final CellModel cm = cells.get(i);
                 if (cm == null)
                     continue;
-                final CellStyle style = ectx.styles.get(cm.getStyle());
-                ectx.cell = row.createCell(i, CellType.BLANK);
-                if (style != null)
-                    ectx.cell.setCellStyle(style);
+                rendered++;
+                if (srow != null) {
+                    // в потоковом режиме стиль ячейки создается в рабочей книге только при явном обращении к нему ...
+                    ectx.cell = srow.createCell(i, cm.getStyle());
+                } else {
+                    final CellStyle style = ectx.styles.get(cm.getStyle());
+                    ectx.cell = row.createCell(i, CellType.BLANK);
+                    if (style != null)
+                        ectx.cell.setCellStyle(style);
+                }
                 event.setRendered(false);
                 event.setCellValue(cm.getExpression().getValue(ectx.elctx));
-                for (final CellEventListener listener : ectx.sectionContext.cellListeners) {
+                for (final CellEventListener listener : rowListeners[i]) {
                     listener.handle(event);
                 }
                 if (!event.isRendered())
                     renderCell(ectx, event.getCellValue());
+                if (metrics != null) {
+                    metrics.cells++;
+                    if (ectx.cell.getCellType() == CellType.FORMULA)
+                        metrics.formulas++;
+                }
             }
+            if (ectx.control != null)
+                ectx.control.rowRendered(rendered);
+            if (ectx.sink != null)
+                ectx.sink.row(ectx, row);
         }
+        if (ectx.sink != null) {
+            ectx.sink.area(ectx, template, startRow);
+        } else
+            renderRegions(ectx, template, startRow);
+        return r;
+    }
+
+    /**
+     * Объединяет ячейки отрисованной группы строк согласно регионам, описанным в ее шаблоне.
+     *
+     * @param ectx     контекст выполнения задачи.
+     * @param template шаблон группы строк.
+     * @param startRow номер первой строки отчета (начиная с 0) в которую был отрисован данный шаблон.
+     * @throws Exception в случае каких-либо проблем
+     */
+    protected void renderRegions(final ExecutionContext ectx, final AreaModel template, final int startRow) throws Exception {
+        final ReportMetrics.SectionMetrics metrics = ectx.metrics != null ? ectx.sectionContext.metrics : null;
         for (final CellRangeAddress range : template.makePOIRegions(startRow)) {
             ectx.wsheet.addMergedRegion(range);
+            if (metrics != null)
+                metrics.mergedRegions++;
         }
-        return r;
     }
 
     /**
@@ -673,19 +1089,7 @@ public class ExcelReportProcessor implements ReportProcessor {
     protected void renderCell(final ExecutionContext ectx, final Object value) {
         if (value == null) {
             ectx.cell.setBlank();
-        } else if (value instanceof Date) {
-            ectx.cell.setCellValue((Date) value);
-        } else if (value instanceof Calendar) {
-            ectx.cell.setCellValue((Calendar) value);
-        } else if (value instanceof Double) {
-            ectx.cell.setCellValue((Double) value);
-        } else if (value instanceof Number) {
-            ectx.cell.setCellValue(((Number) value).doubleValue());
-        } else if (value instanceof Boolean) {
-            ectx.cell.setCellValue((Boolean) value);
-        } else if (value instanceof RichTextString) {
-            ectx.cell.setCellValue((RichTextString) value);
-        } else {
+        } else if (!CellValueWriters.write(ectx.cell, value)) {
             final String text = value.toString();
             if (ectx.cell.getCellType() == CellType.FORMULA) {
                 ectx.cell.setCellFormula(text);
@@ -709,8 +1113,62 @@ public class ExcelReportProcessor implements ReportProcessor {
                     throw new IllegalArgumentException("Unable to find custom function [" + name + "] at row:" + ectx.cell.getRowIndex() + ", cell:" + ectx.cell.getColumnIndex());
                 func.call(ectx, args);
             } else {
-                ectx.cell.setCellValue(ectx.creationHelper.createRichTextString(text));
+                ectx.cell.setCellValue(text);
             }
         }
     }
+
+
+    /**
+     * Общее для всех экземпляров отчета состояние его построения в режиме разделения (см. {@link #processBurst(Report, ELContext, BurstOutput)}).
+     */
+    static final class BurstState {
+        /**
+         * Копия модели отчета, используемая при построении всех его экземпляров.
+         */
+        Report report;
+        /**
+         * Записи поставщика данных, включаемые в текущий экземпляр отчета.
+         */
+        List<?> records;
+        /**
+         * Рабочая книга со стилями палитры отчета и реестр ее производных стилей, общие для всех экземпляров отчета, строящихся в потоковом режиме.
+         */
+        Workbook wb;
+        Map<Short, CellStyle> styles;
+        StyleRegistry styleRegistry;
+        /**
+         * Контекст выполнения последнего из экземпляров отчета, к построению которых приступил построитель.
+         */
+        ExecutionContext ectx;
+    }
+
+    /**
+     * Подменяет поставщик данных, по записям которого отчет разделяется на отдельные экземпляры: возвращает только записи
+     * с текущим значением ключа (см. {@link #processBurst(Report, ELContext, BurstOutput)}).
+     */
+    private static final class BurstDataProvider implements DataProvider {
+        private final String id;
+        private final transient List<?> records;
+
+        private BurstDataProvider(final String id, final List<?> records) {
+            this.id = id;
+            this.records = records;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public ReadAheadIssuer getIssuer(final ELContext ctx) {
+            return new IteratorIssuer<>(records);
+        }
+
+        @Override
+        public Object clone() throws CloneNotSupportedException {
+            return super.clone();
+        }
+    }
 }
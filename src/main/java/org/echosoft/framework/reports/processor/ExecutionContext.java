@@ -9,14 +9,19 @@ import org.apache.poi.ss.usermodel.AutoFilter;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.CreationHelper;
+import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.echosoft.framework.reports.common.data.StatementCache;
 import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.model.Section;
 import org.echosoft.framework.reports.model.SheetModel;
 import org.echosoft.framework.reports.model.el.ELContext;
 import org.echosoft.framework.reports.model.events.ReportEventListener;
 import org.echosoft.framework.reports.model.events.ReportEventListenerHolder;
+import org.echosoft.framework.reports.model.providers.DataRequest;
 import org.echosoft.framework.reports.util.POIUtils;
+import org.echosoft.framework.reports.util.StyleRegistry;
 
 /**
  * Объединяет группу часто используемых при построении отчета объектов чтобы
@@ -55,10 +60,17 @@ public final class ExecutionContext {
      * Контексты секций которые были обработаны в этом отчете ранее.
      * Дает возможность сослаться к содержимому уже отрисованных секций из последующих секций.
      * Если какая-то секция была обработана более одного раза (если она была например вложена в какую-либо композитную секцию с источником данных)
-     * то в истории сохраняется контекст последнего ее вызова.
+     * то в истории сохраняется копия контекста последнего ее вызова (см. {@link SectionContext#snapshot()}).
      */
     public final Map<String, SectionContext> history;
 
+    /**
+     * Контексты всех секций, к обработке которых приступали в ходе построения данного отчета.
+     * Используются повторно при каждой новой обработке той же секции, благодаря чему обработчики событий секции,
+     * заданные постоянными экземплярами, не вычисляются повторно (см. {@link SectionContext#reset(int, ELContext)}).
+     */
+    private final Map<Section, SectionContext> sectionContexts;
+
     /**
      * Таблица трансляции номеров стилей ячеек шаблона в стили итогового отчета.
      */
@@ -69,13 +81,50 @@ public final class ExecutionContext {
      */
     public final Workbook wb;
 
+    /**
+     * Реестр производных стилей итогового отчета. Должен использоваться обработчиками событий, изменяющими оформление
+     * отдельных ячеек, вместо непосредственного создания новых стилей и шрифтов в документе.
+     */
+    public final StyleRegistry styleRegistry;
+
     /**
      * Фабрика, отвечающая за конструирование тех или иных объектов POI с учетом формата целевого документа (XLS/XLSX).
      */
     public final CreationHelper creationHelper;
 
     /**
-     * Обрабатываемый в настоящее время лист итогового отчета.
+     * Статистика построения отчета или <code>null</code> если сбор статистики для данного отчета не требуется.
+     */
+    public final ReportMetrics metrics;
+
+    /**
+     * Объект управления построением отчета (см. {@link ELContext#getControl()}) или <code>null</code> если построение отчета
+     * не может быть прервано и не имеет ограничений по времени и объему.
+     */
+    public final ExecutionControl control;
+
+    /**
+     * Получатель содержимого отчета по мере его построения или <code>null</code> если отчет формируется в виде рабочей книги.
+     * Если получатель указан, то отчет строится в потоковом режиме: листы рабочей книги не создаются, а каждая отрисованная строка
+     * передается получателю (см. {@link ReportSink}). Рабочая книга {@link #wb} в этом режиме используется только для стилей ячеек.
+     */
+    public ReportSink sink;
+
+    /**
+     * Кэш подготовленных SQL выражений, предоставляемый поставщикам данных на время построения данного экземпляра отчета
+     * (см. {@link DataRequest#statements}), или <code>null</code>.
+     */
+    public StatementCache statements;
+
+    /**
+     * Записи поставщика данных {@link Report#getBurstProvider()}, включаемые в текущий экземпляр отчета при его построении в режиме
+     * разделения (см. {@link ExcelReportProcessor#processBurst(Report, ELContext, BurstOutput)}), или <code>null</code>.
+     * Секции, использующие этот поставщик данных, получают только данные записи.
+     */
+    public List<?> burstRecords;
+
+    /**
+     * Обрабатываемый в настоящее время лист итогового отчета. При построении отчета в потоковом режиме всегда <code>null</code>.
      */
     public Sheet wsheet;
 
@@ -89,16 +138,37 @@ public final class ExecutionContext {
      */
     public Cell cell;
 
+    /**
+     * Количество строк на текущем листе при построении отчета в потоковом режиме (см. {@link #sink}).
+     */
+    private int streamRows;
+
 
 
     public ExecutionContext(final Report report, final ELContext ctx, final Workbook wb, final Map<Short,CellStyle> styles) {
+        this(report, ctx, wb, styles, null);
+    }
+
+    public ExecutionContext(final Report report, final ELContext ctx, final Workbook wb, final Map<Short,CellStyle> styles, final ReportMetrics metrics) {
+        this(report, ctx, wb, styles, new StyleRegistry(wb), metrics);
+    }
+
+    /**
+     * Используется при построении отчета в режиме разделения, когда несколько экземпляров отчета используют одну и ту же рабочую книгу
+     * и, соответственно, один и тот же реестр ее производных стилей.
+     */
+    ExecutionContext(final Report report, final ELContext ctx, final Workbook wb, final Map<Short,CellStyle> styles, final StyleRegistry styleRegistry, final ReportMetrics metrics) {
         this.elctx = ctx;
+        this.metrics = metrics;
+        this.control = ctx.getControl();
         this.report = report;
         this.sectionContext = null;
         this.wb = wb;
         this.creationHelper = wb.getCreationHelper();
+        this.styleRegistry = styleRegistry;
         this.styles = styles;
         this.history = new HashMap<>();
+        this.sectionContexts = new HashMap<>();
         this.listeners = new ArrayList<>();
         for (final ReportEventListenerHolder holder : report.getListeners()) {
             final ReportEventListener listener = holder.getListener(ctx);
@@ -107,12 +177,37 @@ public final class ExecutionContext {
         }
     }
 
+    /**
+     * Возвращает контекст для очередной обработки указанной секции. Если секция уже обрабатывалась ранее в рамках текущего
+     * отчета (и в том же родительском контексте), то будет возвращен ее прежний контекст в исходном состоянии
+     * (обработчики событий секции при этом вычисляются заново с учетом текущего контекста отчета).
+     * Иначе конструируется новый контекст секции.
+     *
+     * @param section  секция, к обработке которой приступает построитель отчета.
+     * @param firstRow индекс первой строки (начиная с 0) которую будет занимать секция в формируемом отчете.
+     * @return контекст обработки секции, дочерний по отношению к текущему контексту {@link #sectionContext}.
+     */
+    public SectionContext openSectionContext(final Section section, final int firstRow) {
+        SectionContext result = sectionContexts.get(section);
+        if (result != null && result.parent == sectionContext) {
+            result.reset(firstRow, elctx);
+        } else {
+            result = new SectionContext(sectionContext, section, firstRow, elctx);
+            sectionContexts.put(section, result);
+        }
+        if (metrics != null)
+            result.metrics = metrics.enterSection(result);
+        return result;
+    }
+
     /**
      * Возвращает индекс (начиная с 0) последней строки созданной на текущем листе.
      *
      * @return индекс последней строки или -1 если лист не имеет ни одной строчки.
      */
     public int getLastRowNum() {
+        if (sink != null)
+            return streamRows - 1;
         return wsheet.getPhysicalNumberOfRows() > 0 ? wsheet.getLastRowNum() : -1;
     }
 
@@ -123,9 +218,70 @@ public final class ExecutionContext {
      * @return индекс последней строки + 1.
      */
     public int getNewRowNum() {
+        if (sink != null)
+            return streamRows;
         return wsheet.getPhysicalNumberOfRows() > 0 ? wsheet.getLastRowNum() + 1 : 0;
     }
 
+    /**
+     * Возвращает строку текущего листа с указанным индексом, при необходимости создавая ее.
+     * При построении отчета в потоковом режиме каждый раз создается новая строка, не связанная с листом рабочей книги.
+     *
+     * @param rowNum  индекс строки (начиная с 0).
+     * @param columns предполагаемое количество ячеек в строке.
+     * @return строка текущего листа.
+     */
+    Row getRow(final int rowNum, final int columns) {
+        if (sink != null) {
+            streamRows = Math.max(streamRows, rowNum + 1);
+            return new StreamRow(this, rowNum, columns);
+        }
+        final Row row = wsheet.getRow(rowNum);
+        return row != null ? row : wsheet.createRow(rowNum);
+    }
+
+    /**
+     * Резервирует на текущем листе строки, которые будут отрисованы позднее (например, строки группировок).
+     *
+     * @param firstRow индекс первой резервируемой строки (начиная с 0).
+     * @param count    количество резервируемых строк.
+     */
+    void reserveRows(final int firstRow, final int count) {
+        if (sink != null) {
+            streamRows = Math.max(streamRows, firstRow + count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                wsheet.createRow(firstRow + i);
+            }
+        }
+    }
+
+    /**
+     * Вызывается построителем перед обработкой секций очередного листа отчета.
+     */
+    void resetRows() {
+        streamRows = 0;
+    }
+
+    /**
+     * Возвращает индекс (начиная с 0) первой строки текущего листа, содержимое которой еще может быть отрисовано.
+     * Все строки листа с меньшими индексами уже окончательно сформированы. Строки зарезервированные под еще не завершенные
+     * группировки (см. {@link GroupManager#getFirstPendingRowNum()}) отрисовываются только по окончании обработки всех записей группы.
+     *
+     * @return индекс первой строки листа которая еще может быть изменена.
+     */
+    public int getFirstPendingRowNum() {
+        int result = getNewRowNum();
+        for (SectionContext sctx = sectionContext; sctx != null; sctx = sctx.parent) {
+            if (sctx.gm != null) {
+                final int row = sctx.gm.getFirstPendingRowNum();
+                if (row >= 0 && row < result)
+                    result = row;
+            }
+        }
+        return result;
+    }
+
 
     @Override
     public String toString() {
@@ -0,0 +1,195 @@
+package org.echosoft.framework.reports.processor;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.echosoft.framework.reports.common.data.StatementMonitor;
+import org.echosoft.framework.reports.model.el.ELContext;
+
+/**
+ * <p>Позволяет прервать построение отчета из другого потока, а также ограничить время построения отчета и количество
+ * отрисованных в нем строк и ячеек. Экземпляр данного класса передается построителю отчета в контексте отчета
+ * (см. {@link ELContext#setControl(ExecutionControl)}) и доступен в ходе построения отчета в поле {@link ExecutionContext#control}.</p>
+ * <p>Состояние проверяется построителем перед обработкой каждой очередной записи от поставщиков данных секций. При отмене
+ * построения отчета или превышении ограничений поднимается исключение {@link ReportCancelledException}, в результате чего
+ * закрываются все открытые курсоры и соединения с базой данных, а временные файлы потоковых документов (SXSSF) удаляются.
+ * Кроме того, при отмене выполняющиеся в этот момент SQL запросы прерываются с помощью {@link Statement#cancel()},
+ * а для новых запросов с учетом ограничения на время построения отчета устанавливается таймаут.</p>
+ * <p>Каждый экземпляр предназначен для построения одного отчета (или одной серии отчетов в режиме разделения).
+ * Отсчет времени начинается с момента начала построения отчета.</p>
+ *
+ * @author Anton Sharapov
+ */
+public final class ExecutionControl implements StatementMonitor {
+
+    private final Set<Statement> statements;
+    private volatile boolean cancelled;
+    private volatile boolean started;
+    private volatile long timeout;
+    private volatile long deadline;
+    private volatile long maxRows;
+    private volatile long maxCells;
+    private volatile long rows;
+    private volatile long cells;
+
+    public ExecutionControl() {
+        statements = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * @return максимальное время построения отчета (в миллисекундах) или <code>0</code> если время не ограничено.
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Устанавливает максимальное время построения отчета. Должно быть указано до начала построения отчета.
+     *
+     * @param timeout максимальное время построения отчета (в миллисекундах) или <code>0</code> если время не ограничено.
+     */
+    public void setTimeout(final long timeout) {
+        this.timeout = Math.max(timeout, 0);
+    }
+
+    /**
+     * @return максимальное количество строк, которое может быть отрисовано в отчете, или <code>0</code> если количество не ограничено.
+     */
+    public long getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * Устанавливает максимальное количество строк (на всех листах отчета), которое может быть отрисовано в отчете.
+     * В отличие от {@link ELContext#getMaxRows()}, превышение данного ограничения прерывает построение отчета.
+     *
+     * @param maxRows максимальное количество строк или <code>0</code> если количество не ограничено.
+     */
+    public void setMaxRows(final long maxRows) {
+        this.maxRows = Math.max(maxRows, 0);
+    }
+
+    /**
+     * @return максимальное количество ячеек, которое может быть отрисовано в отчете, или <code>0</code> если количество не ограничено.
+     */
+    public long getMaxCells() {
+        return maxCells;
+    }
+
+    /**
+     * Устанавливает максимальное количество ячеек (на всех листах отчета), которое может быть отрисовано в отчете.
+     * Превышение данного ограничения прерывает построение отчета.
+     *
+     * @param maxCells максимальное количество ячеек или <code>0</code> если количество не ограничено.
+     */
+    public void setMaxCells(final long maxCells) {
+        this.maxCells = Math.max(maxCells, 0);
+    }
+
+    /**
+     * @return количество строк, отрисованных к настоящему моменту (включая строки заголовков и итогов секций).
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return количество ячеек, отрисованных к настоящему моменту.
+     */
+    public long getCells() {
+        return cells;
+    }
+
+    /**
+     * @return <code>true</code> если построение отчета было отменено.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Отменяет построение отчета. Может вызываться из любого потока. Выполняющиеся в настоящий момент SQL запросы отчета прерываются,
+     * построение отчета прекращается перед обработкой очередной записи от поставщика данных.
+     */
+    public void cancel() {
+        cancelled = true;
+        final List<Statement> active;
+        synchronized (statements) {
+            active = new ArrayList<>(statements);
+        }
+        for (Statement stmt : active) {
+            try {
+                stmt.cancel();
+            } catch (SQLException | RuntimeException e) {
+                // выражение уже могло быть закрыто ...
+            }
+        }
+    }
+
+    /**
+     * Регистрирует SQL выражение, используемое для получения данных отчета, чтобы иметь возможность прервать его выполнение
+     * при отмене построения отчета. Если время построения отчета ограничено, то для выражения устанавливается соответствующий таймаут.
+     * Метод должен вызываться перед выполнением выражения.
+     *
+     * @param stmt SQL выражение.
+     * @throws SQLException в случае ошибок при установке таймаута.
+     */
+    @Override
+    public void register(final Statement stmt) throws SQLException {
+        synchronized (statements) {
+            for (Iterator<Statement> it = statements.iterator(); it.hasNext(); ) {
+                if (it.next().isClosed())
+                    it.remove();
+            }
+            statements.add(stmt);
+        }
+        if (started && timeout > 0) {
+            final long remaining = TimeUnit.NANOSECONDS.toSeconds(deadline - System.nanoTime() + TimeUnit.SECONDS.toNanos(1) - 1);
+            stmt.setQueryTimeout((int) Math.min(Math.max(remaining, 1), Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Вызывается построителем в начале построения отчета, начинает отсчет времени построения отчета (если он еще не был начат).
+     */
+    synchronized void start() {
+        if (!started) {
+            deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            started = true;
+        }
+    }
+
+    /**
+     * Вызывается построителем после отрисовки очередной строки отчета.
+     *
+     * @param cells количество отрисованных в строке ячеек.
+     */
+    void rowRendered(final int cells) {
+        this.rows++;
+        this.cells += cells;
+    }
+
+    /**
+     * Проверяет не было ли отменено построение отчета и не превышены ли установленные для него ограничения.
+     *
+     * @param ectx контекст выполнения задачи.
+     * @throws ReportCancelledException если построение отчета должно быть прекращено.
+     */
+    void check(final ExecutionContext ectx) throws ReportCancelledException {
+        if (cancelled)
+            throw new ReportCancelledException("Report [" + ectx.report.getId() + "] was cancelled", ectx);
+        if (started && timeout > 0 && System.nanoTime() - deadline > 0)
+            throw new ReportCancelledException("Report [" + ectx.report.getId() + "] exceeded time limit of " + timeout + " ms", ectx);
+        if (maxRows > 0 && rows > maxRows)
+            throw new ReportCancelledException("Report [" + ectx.report.getId() + "] exceeded rows limit of " + maxRows, ectx);
+        if (maxCells > 0 && cells > maxCells)
+            throw new ReportCancelledException("Report [" + ectx.report.getId() + "] exceeded cells limit of " + maxCells, ectx);
+    }
+}
@@ -85,6 +85,16 @@ public abstract class GroupManager {
         return size > 0 ? groups.get(size - 1) : null;
     }
 
+    /**
+     * Возвращает индекс первой строки, зарезервированной под группировочные строки еще не завершенных групп.
+     * Содержимое таких строк формируется только по окончании обработки всех записей соответствующей группы.
+     *
+     * @return индекс строки (начиная с 0) или <code>-1</code> если в настоящий момент нет незавершенных групп.
+     */
+    public int getFirstPendingRowNum() {
+        return groups.isEmpty() ? -1 : groups.get(0).startRow;
+    }
+
     /**
      * Возвращает <code>true</code> если менеджер групп сейчас обрабатывает отрисовку группировочной строки.
      *
@@ -205,7 +215,7 @@ public abstract class GroupManager {
      * @throws Exception в случае каких-либо проблем.
      */
     protected boolean initGroup(final ExecutionContext ctx, final GroupModel model, final Object bean) throws Exception {
-        int row = ctx.wsheet.getPhysicalNumberOfRows() > 0 ? ctx.wsheet.getLastRowNum() + 1 : 0;
+        final int row = ctx.getNewRowNum();
         final Group parent = getCurrentGroup();
         final Group group = parent == null
                 ? new Group(model, bean, row, 0)
@@ -217,10 +227,7 @@ public abstract class GroupManager {
             parent.children.add(group);
         groups.add(group);
 
-        final int rowcnt = model.getRowsCount();
-        for (int i = 0; i < rowcnt; i++) {
-            ctx.wsheet.createRow(row++);
-        }
+        ctx.reserveRows(row, model.getRowsCount());
         return true;
     }
 
@@ -0,0 +1,504 @@
+package org.echosoft.framework.reports.processor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.DefaultIndexedColorMap;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.echosoft.framework.reports.model.AreaModel;
+import org.echosoft.framework.reports.model.CellStyleModel;
+import org.echosoft.framework.reports.model.ColorModel;
+import org.echosoft.framework.reports.model.FontModel;
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.model.el.ELContext;
+import org.echosoft.framework.reports.util.POIUtils;
+
+/**
+ * Построитель отчетов, выгружающий содержимое отчета в поток в виде документа HTML.
+ * <p>Используются те же модели отчетов что и для построения документов Excel, однако рабочая книга не создается
+ * (см. {@link BaseStreamingReportProcessor}): каждая полностью сформированная строка листа сразу же записывается в выходной поток
+ * (за исключением строк внутри еще не завершенных группировок, которые удерживаются до завершения группы).</p>
+ * <p>Правила выгрузки:</p>
+ * <ul>
+ *  <li>каждый лист отчета выгружается в виде отдельной таблицы, скрытые листы не выгружаются;</li>
+ *  <li>стили ячеек из палитры отчета выгружаются однократно, в виде CSS классов <code>s&lt;идентификатор стиля&gt;</code>;</li>
+ *  <li>производные стили, назначенные ячейкам обработчиками событий (см. {@link ExecutionContext#styleRegistry}), выгружаются
+ *      в атрибуте <code>style</code> соответствующих ячеек;</li>
+ *  <li>объединенные ячейки строятся по регионам из шаблонов секций (атрибуты <code>colspan</code> и <code>rowspan</code>);</li>
+ *  <li>значения ячеек форматируются согласно формату данных указанному в стиле ячейки шаблона;</li>
+ *  <li>ячейки с формулами выгружаются пустыми, так как значения формул в ходе построения отчета не вычисляются;</li>
+ *  <li>скрытые строки и строки скрытых секций выгружаются как невидимые строки таблицы.</li>
+ * </ul>
+ *
+ * @author Anton Sharapov
+ */
+public class HtmlReportProcessor extends BaseStreamingReportProcessor {
+
+    /**
+     * Ширина колонки листа по умолчанию (в 1/256 ширины символа).
+     */
+    private static final int DEFAULT_COLUMN_WIDTH = 8 * 256;
+
+    private final Charset charset;
+
+    public HtmlReportProcessor() {
+        this(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param charset кодировка выгружаемого документа.
+     */
+    public HtmlReportProcessor(final Charset charset) {
+        if (charset == null)
+            throw new IllegalArgumentException("Charset must be specified");
+        this.charset = charset;
+    }
+
+    /**
+     * @return кодировка выгружаемого документа.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    @Override
+    protected ReportSink makeSink(final OutputStream out) {
+        return new HtmlSink(new BufferedWriter(new OutputStreamWriter(out, charset), 65536));
+    }
+
+    /**
+     * Формирует отчет на основании его модели и указанных пользователем в контексте параметров и записывает его в указанный поток в виде документа HTML.
+     *
+     * @param report модель формируемого отчета.
+     * @param ctx    данные необходимые для формирования данного отчета.
+     * @param out    поток в который должен быть записан сформированный отчет. Поток не закрывается по окончании записи.
+     * @throws ReportProcessingException в случае каких-либо проблем.
+     */
+    public void process(final Report report, final ELContext ctx, final Writer out) throws ReportProcessingException {
+        processReport(report, ctx, new HtmlSink(out));
+    }
+
+    /**
+     * Формирует описание стиля ячейки в формате CSS.
+     *
+     * @param out   буфер в который выводится описание стиля.
+     * @param style модель стиля ячейки.
+     */
+    protected void writeStyle(final StringBuilder out, final CellStyleModel style) {
+        final FontModel font = style.getFont();
+        if (font != null) {
+            if (font.getFontName() != null)
+                out.append("font-family:'").append(font.getFontName()).append("',sans-serif;");
+            out.append("font-size:").append(font.getFontHeight() / 20f).append("pt;");
+            if (font.isBold())
+                out.append("font-weight:bold;");
+            if (font.isItalic())
+                out.append("font-style:italic;");
+            if (font.getUnderline() != Font.U_NONE || font.isStrikeout()) {
+                out.append("text-decoration:");
+                if (font.getUnderline() != Font.U_NONE)
+                    out.append(" underline");
+                if (font.isStrikeout())
+                    out.append(" line-through");
+                out.append(';');
+            }
+            if (font.getColor() != null)
+                out.append("color:#").append(font.getColor().toHexString()).append(';');
+        }
+        if (style.getFillPattern() != null && style.getFillPattern() != FillPatternType.NO_FILL && style.getFillForegroundColor() != null)
+            out.append("background-color:#").append(style.getFillForegroundColor().toHexString()).append(';');
+        if (style.getAlignment() != null) {
+            switch (style.getAlignment()) {
+                case LEFT:
+                case FILL:
+                    out.append("text-align:left;");
+                    break;
+                case CENTER:
+                case CENTER_SELECTION:
+                    out.append("text-align:center;");
+                    break;
+                case RIGHT:
+                    out.append("text-align:right;");
+                    break;
+                case JUSTIFY:
+                case DISTRIBUTED:
+                    out.append("text-align:justify;");
+                    break;
+                default:
+            }
+        }
+        if (style.getVerticalAlignment() != null) {
+            switch (style.getVerticalAlignment()) {
+                case TOP:
+                    out.append("vertical-align:top;");
+                    break;
+                case CENTER:
+                case JUSTIFY:
+                case DISTRIBUTED:
+                    out.append("vertical-align:middle;");
+                    break;
+                default:
+                    out.append("vertical-align:bottom;");
+            }
+        }
+        writeBorder(out, "border-top:", style.getBorderTop(), style.getTopBorderColor());
+        writeBorder(out, "border-right:", style.getBorderRight(), style.getRightBorderColor());
+        writeBorder(out, "border-bottom:", style.getBorderBottom(), style.getBottomBorderColor());
+        writeBorder(out, "border-left:", style.getBorderLeft(), style.getLeftBorderColor());
+        out.append(style.isWrapText() ? "white-space:pre-wrap;" : "white-space:pre;");
+        if (style.getIndention() > 0)
+            out.append("padding-left:").append(style.getIndention() * 12).append("px;");
+    }
+
+    /**
+     * Формирует модель стиля по стилю рабочей книги. Используется для стилей, назначенных ячейкам в ходе построения отчета.
+     *
+     * @param wb    рабочая книга, в которой зарегистрирован стиль.
+     * @param style стиль ячейки.
+     * @return модель стиля ячейки.
+     */
+    protected static CellStyleModel makeStyleModel(final Workbook wb, final CellStyle style) {
+        final CellStyleModel result = new CellStyleModel();
+        result.setId(style.getIndex());
+        result.setAlignment(style.getAlignment());
+        result.setVerticalAlignment(style.getVerticalAlignment());
+        result.setDataFormat(style.getDataFormatString());
+        result.setIndention(style.getIndention());
+        result.setWrapText(style.getWrapText());
+        result.setBorderTop(style.getBorderTop());
+        result.setBorderRight(style.getBorderRight());
+        result.setBorderBottom(style.getBorderBottom());
+        result.setBorderLeft(style.getBorderLeft());
+        result.setFillPattern(style.getFillPattern());
+        final Font f = wb.getFontAt(style.getFontIndex());
+        final FontModel font = new FontModel();
+        font.setId(f.getIndex());
+        font.setFontName(f.getFontName());
+        font.setFontHeight(f.getFontHeight());
+        font.setBold(f.getBold());
+        font.setItalic(f.getItalic());
+        font.setStrikeout(f.getStrikeout());
+        font.setUnderline(f.getUnderline());
+        result.setFont(font);
+        if (wb instanceof XSSFWorkbook && style instanceof XSSFCellStyle) {
+            final XSSFWorkbook xwb = (XSSFWorkbook) wb;
+            final XSSFCellStyle xstyle = (XSSFCellStyle) style;
+            result.setTopBorderColor(makeColorModel(xwb, xstyle.getTopBorderXSSFColor()));
+            result.setRightBorderColor(makeColorModel(xwb, xstyle.getRightBorderXSSFColor()));
+            result.setBottomBorderColor(makeColorModel(xwb, xstyle.getBottomBorderXSSFColor()));
+            result.setLeftBorderColor(makeColorModel(xwb, xstyle.getLeftBorderXSSFColor()));
+            result.setFillForegroundColor(makeColorModel(xwb, xstyle.getFillForegroundXSSFColor()));
+            font.setColor(makeColorModel(xwb, ((XSSFFont) f).getXSSFColor()));
+        }
+        return result;
+    }
+
+    private static ColorModel makeColorModel(final XSSFWorkbook wb, final XSSFColor color) {
+        if (color == null || color.isThemed() && wb.getTheme() == null)
+            return null;
+        // Font.setColor(short) и аналогичные методы стилей лишь добавляют к описанию цвета индекс, не удаляя ранее указанный цвет RGB ...
+        byte[] rgb = color.isIndexed() ? DefaultIndexedColorMap.getDefaultRGB(color.getIndex()) : null;
+        if (rgb == null)
+            rgb = POIUtils.decodeXSSFColor(wb, color);
+        return rgb != null ? new ColorModel((short) 0, rgb) : null;
+    }
+
+    private static void writeBorder(final StringBuilder out, final String property, final BorderStyle border, final ColorModel color) {
+        if (border == null || border == BorderStyle.NONE)
+            return;
+        out.append(property);
+        switch (border) {
+            case MEDIUM:
+                out.append("2px solid");
+                break;
+            case THICK:
+                out.append("3px solid");
+                break;
+            case DOUBLE:
+                out.append("3px double");
+                break;
+            case DOTTED:
+            case HAIR:
+                out.append("1px dotted");
+                break;
+            case DASHED:
+            case DASH_DOT:
+            case DASH_DOT_DOT:
+            case SLANTED_DASH_DOT:
+                out.append("1px dashed");
+                break;
+            case MEDIUM_DASHED:
+            case MEDIUM_DASH_DOT:
+            case MEDIUM_DASH_DOT_DOT:
+                out.append("2px dashed");
+                break;
+            default:
+                out.append("1px solid");
+        }
+        out.append(" #").append(color != null ? color.toHexString() : "000000").append(';');
+    }
+
+    /**
+     * Записывает текст в выходной поток, маскируя символы которые не допустимы в документах HTML.
+     *
+     * @param out   выходной поток.
+     * @param value записываемый текст.
+     * @throws IOException в случае ошибок ввода-вывода.
+     */
+    protected static void writeText(final Writer out, final String value) throws IOException {
+        for (int i = 0, len = value.length(); i < len; i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '<':
+                    out.write("&lt;");
+                    break;
+                case '>':
+                    out.write("&gt;");
+                    break;
+                case '&':
+                    out.write("&amp;");
+                    break;
+                case '"':
+                    out.write("&quot;");
+                    break;
+                default:
+                    out.write(c);
+            }
+        }
+    }
+
+
+    /**
+     * Ожидающая выгрузки строка листа.
+     */
+    private static final class PendingRow {
+        private final boolean hidden;
+        private final String[] values;
+        private final String[] classes;
+        private final String[] styles;
+        private final int[] colspans;
+        private final int[] rowspans;
+        private final BitSet covered;
+
+        private PendingRow(final boolean hidden, final int columns) {
+            this.hidden = hidden;
+            this.values = new String[columns];
+            this.classes = new String[columns];
+            this.styles = new String[columns];
+            this.colspans = new int[columns];
+            this.rowspans = new int[columns];
+            this.covered = new BitSet(columns);
+        }
+    }
+
+    /**
+     * Записывает строки отчета в выходной поток в порядке их следования на листе.
+     * Строки, которые были отрисованы раньше предшествующих им строк (т.е. строки внутри незавершенных группировок), удерживаются
+     * до тех пор пока не будут отрисованы все предшествующие им строки.
+     */
+    private final class HtmlSink implements ReportSink {
+        private final Writer out;
+        private final TreeMap<Integer, PendingRow> pending;
+        private final Map<Short, String[]> classes;
+        private final Map<Short, String> derivedStyles;
+        private DataFormatter formatter;
+        private boolean skipSheet;
+        private int columns;
+
+        private HtmlSink(final Writer out) {
+            this.out = out;
+            this.pending = new TreeMap<>();
+            this.classes = new HashMap<>();
+            this.derivedStyles = new HashMap<>();
+        }
+
+        @Override
+        public void beginReport(final ExecutionContext ectx) throws IOException {
+            formatter = new DataFormatter(ectx.elctx.getLocale());
+            final StringBuilder css = new StringBuilder(4096);
+            css.append("table{border-collapse:collapse;table-layout:fixed;margin-bottom:1em}\n");
+            css.append("td{padding:1px 3px;overflow:hidden}\n");
+            css.append("td.n{text-align:right}\n");
+            // стили ячеек шаблона транслируются в имена классов CSS по их идентификаторам в палитре отчета, стили в рабочей книге при этом не создаются.
+            // Числа в ячейках без явно указанного выравнивания выравниваются по правому краю ...
+            for (final CellStyleModel style : ectx.report.getPalette().getStyles().values()) {
+                final String cls = "s" + style.getId();
+                css.append('.').append(cls).append('{');
+                writeStyle(css, style);
+                css.append("}\n");
+                final boolean general = style.getAlignment() == null || style.getAlignment() == HorizontalAlignment.GENERAL;
+                classes.put(style.getId(), new String[]{cls, general ? cls + " n" : cls});
+            }
+
+            out.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"");
+            out.write(charset.name());
+            out.write("\">\n");
+            if (ectx.report.getTitle() != null) {
+                out.write("<title>");
+                writeText(out, ectx.report.getTitle());
+                out.write("</title>\n");
+            }
+            out.write("<style>\n");
+            out.write(css.toString());
+            out.write("</style>\n</head>\n<body>\n");
+        }
+
+        @Override
+        public void beginSheet(final ExecutionContext ectx) throws Exception {
+            skipSheet = ectx.sheet.isHidden();
+            if (skipSheet)
+                return;
+            columns = ectx.sheet.getColumnsCount();
+            final int[] widths = ectx.sheet.getColumnWidths();
+            out.write("<table data-sheet=\"");
+            writeText(out, ExcelReportProcessor.getSheetTitle(ectx, ectx.sheet));
+            out.write("\">\n<colgroup>");
+            for (int i = 0; i < columns; i++) {
+                final int width = i < widths.length && widths[i] >= 0 ? widths[i] : DEFAULT_COLUMN_WIDTH;
+                out.write("<col style=\"width:");
+                out.write(Integer.toString(width * 7 / 256 + 5));
+                out.write("px\">");
+            }
+            out.write("</colgroup>\n");
+        }
+
+        @Override
+        public void row(final ExecutionContext ectx, final Row row) {
+            if (skipSheet)
+                return;
+            boolean hidden = row.getZeroHeight();
+            for (SectionContext sctx = ectx.sectionContext; sctx != null && !hidden; sctx = sctx.parent) {
+                hidden = sctx.section.isHidden();
+            }
+            final int cells = Math.max(row.getLastCellNum(), 0);
+            final PendingRow result = new PendingRow(hidden, Math.max(cells, columns));
+            for (int i = 0; i < cells; i++) {
+                final Cell cell = row.getCell(i);
+                if (cell == null)
+                    continue;
+                final boolean numeric = cell.getCellType() == CellType.NUMERIC;
+                final CellStyleModel model = getStyleModel(ectx, cell);
+                final String[] cls = model != null ? classes.get(model.getId()) : null;
+                if (cls != null) {
+                    result.classes[i] = cls[numeric ? 1 : 0];
+                } else {
+                    final CellStyle style = model == null ? cell.getCellStyle() : null;
+                    result.styles[i] = style != null ? getDerivedStyle(ectx, style) : null;
+                    result.classes[i] = numeric && (style == null || style.getAlignment() == HorizontalAlignment.GENERAL) ? "n" : null;
+                }
+                result.values[i] = formatValue(ectx, formatter, cell);
+            }
+            pending.put(row.getRowNum(), result);
+        }
+
+        /**
+         * Возвращает описание в формате CSS стиля, назначенного ячейке в ходе ее отрисовки.
+         */
+        private String getDerivedStyle(final ExecutionContext ectx, final CellStyle style) {
+            String result = derivedStyles.get(style.getIndex());
+            if (result == null) {
+                final StringBuilder css = new StringBuilder(128);
+                writeStyle(css, makeStyleModel(ectx.wb, style));
+                result = css.toString();
+                derivedStyles.put(style.getIndex(), result);
+            }
+            return result;
+        }
+
+        /**
+         * Регистрирует объединенные ячейки только что отрисованной группы строк, после чего выгружает все окончательно сформированные строки листа.
+         */
+        @Override
+        public void area(final ExecutionContext ectx, final AreaModel template, final int startRow) throws IOException {
+            if (skipSheet)
+                return;
+            for (final AreaModel.Region region : template.getRegions()) {
+                final PendingRow first = pending.get(startRow + region.getFirstRow());
+                if (first == null)
+                    continue;
+                first.colspans[region.getFirstCol()] = region.getLastCol() - region.getFirstCol() + 1;
+                first.rowspans[region.getFirstCol()] = region.getLastRow() - region.getFirstRow() + 1;
+                first.covered.set(region.getFirstCol() + 1, region.getLastCol() + 1);
+                for (int r = region.getFirstRow() + 1; r <= region.getLastRow(); r++) {
+                    final PendingRow row = pending.get(startRow + r);
+                    if (row != null)
+                        row.covered.set(region.getFirstCol(), region.getLastCol() + 1);
+                }
+            }
+            flush(ectx.getFirstPendingRowNum());
+        }
+
+        @Override
+        public void endSheet(final ExecutionContext ectx) throws IOException {
+            if (skipSheet)
+                return;
+            flush(Integer.MAX_VALUE);
+            out.write("</table>\n");
+        }
+
+        @Override
+        public void endReport(final ExecutionContext ectx) throws IOException {
+            out.write("</body>\n</html>\n");
+            out.flush();
+        }
+
+        private void flush(final int limit) throws IOException {
+            while (!pending.isEmpty() && pending.firstKey() < limit) {
+                final PendingRow row = pending.pollFirstEntry().getValue();
+                out.write(row.hidden ? "<tr style=\"display:none\">" : "<tr>");
+                for (int i = 0; i < row.values.length; i++) {
+                    if (row.covered.get(i))
+                        continue;
+                    out.write("<td");
+                    if (row.classes[i] != null) {
+                        out.write(" class=\"");
+                        out.write(row.classes[i]);
+                        out.write('"');
+                    }
+                    if (row.styles[i] != null) {
+                        out.write(" style=\"");
+                        writeText(out, row.styles[i]);
+                        out.write('"');
+                    }
+                    if (row.colspans[i] > 1) {
+                        out.write(" colspan=\"");
+                        out.write(Integer.toString(row.colspans[i]));
+                        out.write('"');
+                    }
+                    if (row.rowspans[i] > 1) {
+                        out.write(" rowspan=\"");
+                        out.write(Integer.toString(row.rowspans[i]));
+                        out.write('"');
+                    }
+                    out.write('>');
+                    if (row.values[i] != null)
+                        writeText(out, row.values[i]);
+                    out.write("</td>");
+                }
+                out.write("</tr>\n");
+            }
+        }
+    }
+}
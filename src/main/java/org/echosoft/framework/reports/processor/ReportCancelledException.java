@@ -0,0 +1,18 @@
+package org.echosoft.framework.reports.processor;
+
+/**
+ * Данное исключение поднимается в случае если построение отчета было прервано: отменено по запросу пользователя
+ * или остановлено в связи с превышением установленных для него ограничений (см. {@link ExecutionControl}).
+ *
+ * @author Anton Sharapov
+ */
+public class ReportCancelledException extends ReportProcessingException {
+
+    public ReportCancelledException(final String message, final ExecutionContext ctx) {
+        super(message, ctx);
+    }
+
+    public ReportCancelledException(final String message, final Throwable cause, final ExecutionContext ctx) {
+        super(message, cause, ctx);
+    }
+}
@@ -0,0 +1,459 @@
+package org.echosoft.framework.reports.processor;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.echosoft.framework.reports.common.collections.issuers.ReadAheadIssuer;
+import org.echosoft.framework.reports.model.providers.DataProvider;
+import org.echosoft.framework.reports.model.providers.DataRequest;
+
+/**
+ * <p>Содержит статистику построения одного отчета: общее время построения и время до появления в отчете первой строки,
+ * а также для каждой секции и каждого поставщика данных время получения данных, время отрисовки, количество
+ * обработанных записей, строк, ячеек, формул, объединенных областей и созданных стилей.</p>
+ * <p>Статистика собирается только в том случае если построителю отчетов был указан получатель статистики
+ * (см. {@link ReportMetricsCollector}), в противном случае поле {@link ExecutionContext#metrics} равно <code>null</code>
+ * и построение отчета происходит без каких-либо дополнительных затрат. Все интервалы времени указываются в наносекундах.</p>
+ *
+ * @author Anton Sharapov
+ */
+public final class ReportMetrics {
+
+    private final String reportId;
+    private final long startTime;
+    private final Map<String, SectionMetrics> sections;
+    private final Map<String, ProviderMetrics> providers;
+    private long time;
+    private long timeToFirstRow = -1;
+    private int initialStyles;
+    private int styles;
+    private int initialDerivedStyles;
+    private int derivedStyles;
+    private boolean failed;
+
+    public ReportMetrics(final String reportId) {
+        this.reportId = reportId;
+        this.startTime = System.nanoTime();
+        this.sections = new LinkedHashMap<>();
+        this.providers = new LinkedHashMap<>();
+    }
+
+    /**
+     * @return идентификатор отчета.
+     */
+    public String getReportId() {
+        return reportId;
+    }
+
+    /**
+     * @return общее время построения отчета.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return время от начала построения отчета до отрисовки первой строки или <code>-1</code> если в отчет не было добавлено ни одной строки.
+     */
+    public long getTimeToFirstRow() {
+        return timeToFirstRow;
+    }
+
+    /**
+     * @return суммарное время получения данных от всех поставщиков данных отчета.
+     */
+    public long getFetchTime() {
+        long result = 0;
+        for (ProviderMetrics pm : providers.values()) {
+            result += pm.openTime + pm.fetchTime;
+        }
+        return result;
+    }
+
+    /**
+     * @return время построения отчета за вычетом времени получения данных.
+     */
+    public long getRenderTime() {
+        return time - getFetchTime();
+    }
+
+    /**
+     * @return суммарное количество записей полученных от всех поставщиков данных отчета.
+     */
+    public long getRecords() {
+        long result = 0;
+        for (ProviderMetrics pm : providers.values()) {
+            result += pm.records;
+        }
+        return result;
+    }
+
+    /**
+     * @return количество строк добавленных в отчет.
+     */
+    public long getRows() {
+        long result = 0;
+        for (SectionMetrics sm : sections.values()) {
+            result += sm.rows;
+        }
+        return result;
+    }
+
+    /**
+     * @return количество ячеек добавленных в отчет.
+     */
+    public long getCells() {
+        long result = 0;
+        for (SectionMetrics sm : sections.values()) {
+            result += sm.cells;
+        }
+        return result;
+    }
+
+    /**
+     * @return количество формул добавленных в отчет.
+     */
+    public long getFormulas() {
+        long result = 0;
+        for (SectionMetrics sm : sections.values()) {
+            result += sm.formulas;
+        }
+        return result;
+    }
+
+    /**
+     * @return количество объединенных областей ячеек добавленных в отчет.
+     */
+    public long getMergedRegions() {
+        long result = 0;
+        for (SectionMetrics sm : sections.values()) {
+            result += sm.mergedRegions;
+        }
+        return result;
+    }
+
+    /**
+     * @return количество стилей созданных в документе в ходе построения отчета.
+     */
+    public int getStylesCreated() {
+        return styles - initialStyles;
+    }
+
+    /**
+     * @return количество производных стилей созданных в документе через {@link ExecutionContext#styleRegistry}.
+     */
+    public int getDerivedStylesCreated() {
+        return derivedStyles;
+    }
+
+    /**
+     * @return <code>true</code> если построение отчета завершилось ошибкой.
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * @return статистика по всем обработанным секциям отчета (в порядке начала их обработки).
+     */
+    public Map<String, SectionMetrics> getSections() {
+        return Collections.unmodifiableMap(sections);
+    }
+
+    /**
+     * @return статистика по всем использованным поставщикам данных отчета (в порядке первого обращения к ним).
+     */
+    public Map<String, ProviderMetrics> getProviders() {
+        return Collections.unmodifiableMap(providers);
+    }
+
+
+    void start(final ExecutionContext ectx) {
+        initialStyles = ectx.wb.getNumCellStyles();
+        initialDerivedStyles = ectx.styleRegistry.getCreatedStylesCount();
+    }
+
+    void finish(final ExecutionContext ectx, final boolean failed) {
+        this.time = System.nanoTime() - startTime;
+        this.failed = failed;
+        if (ectx != null) {
+            this.styles = ectx.wb.getNumCellStyles();
+            this.derivedStyles = ectx.styleRegistry.getCreatedStylesCount() - initialDerivedStyles;
+        }
+    }
+
+    SectionMetrics enterSection(final SectionContext sctx) {
+        final String id = sctx.section.getId();
+        SectionMetrics result = sections.get(id);
+        if (result == null) {
+            result = new SectionMetrics(id);
+            sections.put(id, result);
+        }
+        result.executions++;
+        result.startedAt = System.nanoTime();
+        return result;
+    }
+
+    void exitSection(final ExecutionContext ectx, final SectionContext sctx) {
+        final SectionMetrics sm = sctx.metrics;
+        final long elapsed = System.nanoTime() - sm.startedAt;
+        sm.time += elapsed;
+        sm.records += sctx.record;
+        if (sctx.parent != null && sctx.parent.metrics != null) {
+            sctx.parent.metrics.nestedTime += elapsed;
+        }
+    }
+
+    void rowRendered(final SectionMetrics sm) {
+        if (timeToFirstRow < 0)
+            timeToFirstRow = System.nanoTime() - startTime;
+        if (sm.timeToFirstRow < 0)
+            sm.timeToFirstRow = System.nanoTime() - sm.startedAt;
+        sm.rows++;
+    }
+
+    ReadAheadIssuer getIssuer(final DataProvider provider, final ExecutionContext ectx, final DataRequest request) throws Exception {
+        final String id = provider.getId();
+        ProviderMetrics pm = providers.get(id);
+        if (pm == null) {
+            pm = new ProviderMetrics(id);
+            providers.put(id, pm);
+        }
+        final long started = System.nanoTime();
+        final ReadAheadIssuer issuer = provider.getIssuer(ectx.elctx, request);
+        final long elapsed = System.nanoTime() - started;
+        pm.executions++;
+        pm.openTime += elapsed;
+        if (ectx.sectionContext != null && ectx.sectionContext.metrics != null)
+            ectx.sectionContext.metrics.fetchTime += elapsed;
+        return issuer != null ? new MeteredIssuer(issuer, pm, ectx) : null;
+    }
+
+    @Override
+    public String toString() {
+        return "[ReportMetrics{report:" + reportId + ", time:" + time + ", ttfr:" + timeToFirstRow + ", fetch:" + getFetchTime() +
+                ", records:" + getRecords() + ", rows:" + getRows() + ", cells:" + getCells() + ", styles:" + getStylesCreated() + "}]";
+    }
+
+
+    /**
+     * Статистика обработки одной секции отчета. Если секция обрабатывалась несколько раз (например, будучи вложенной в композитную секцию
+     * с поставщиком данных) то статистика суммируется по всем ее обработкам.
+     */
+    public static final class SectionMetrics {
+        private final String id;
+        private int executions;
+        private long time;
+        private long nestedTime;
+        long fetchTime;
+        private long timeToFirstRow = -1;
+        private long records;
+        private long rows;
+        long cells;
+        long formulas;
+        long mergedRegions;
+        private long startedAt;
+
+        private SectionMetrics(final String id) {
+            this.id = id;
+        }
+
+        /**
+         * @return идентификатор секции.
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return сколько раз выполнялась обработка данной секции.
+         */
+        public int getExecutions() {
+            return executions;
+        }
+
+        /**
+         * @return общее время обработки секции, включая время обработки вложенных в нее секций.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return время получения данных при обработке секции (без учета вложенных секций).
+         */
+        public long getFetchTime() {
+            return fetchTime;
+        }
+
+        /**
+         * @return время обработки секции за вычетом времени получения данных и времени обработки вложенных в нее секций.
+         */
+        public long getRenderTime() {
+            return time - nestedTime - fetchTime;
+        }
+
+        /**
+         * @return время от начала первой обработки секции до отрисовки ее первой строки или <code>-1</code> если секция не добавила в отчет ни одной строки.
+         */
+        public long getTimeToFirstRow() {
+            return timeToFirstRow;
+        }
+
+        /**
+         * @return количество обработанных секцией записей.
+         */
+        public long getRecords() {
+            return records;
+        }
+
+        /**
+         * @return количество строк добавленных секцией в отчет.
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * @return количество ячеек добавленных секцией в отчет.
+         */
+        public long getCells() {
+            return cells;
+        }
+
+        /**
+         * @return количество формул добавленных секцией в отчет.
+         */
+        public long getFormulas() {
+            return formulas;
+        }
+
+        /**
+         * @return количество объединенных областей ячеек добавленных секцией в отчет.
+         */
+        public long getMergedRegions() {
+            return mergedRegions;
+        }
+
+        @Override
+        public String toString() {
+            return "[SectionMetrics{id:" + id + ", executions:" + executions + ", time:" + time + ", fetch:" + fetchTime +
+                    ", records:" + records + ", rows:" + rows + ", cells:" + cells + "}]";
+        }
+    }
+
+    /**
+     * Статистика использования одного поставщика данных отчета.
+     */
+    public static final class ProviderMetrics {
+        private final String id;
+        private int executions;
+        private long openTime;
+        private long fetchTime;
+        private long records;
+
+        private ProviderMetrics(final String id) {
+            this.id = id;
+        }
+
+        /**
+         * @return идентификатор поставщика данных.
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return сколько раз у поставщика запрашивались данные.
+         */
+        public int getExecutions() {
+            return executions;
+        }
+
+        /**
+         * @return суммарное время подготовки данных поставщиком (для SQL запросов - время выполнения запроса).
+         */
+        public long getOpenTime() {
+            return openTime;
+        }
+
+        /**
+         * @return суммарное время получения записей от поставщика данных.
+         */
+        public long getFetchTime() {
+            return fetchTime;
+        }
+
+        /**
+         * @return количество записей полученных от поставщика данных.
+         */
+        public long getRecords() {
+            return records;
+        }
+
+        @Override
+        public String toString() {
+            return "[ProviderMetrics{id:" + id + ", executions:" + executions + ", open:" + openTime + ", fetch:" + fetchTime + ", records:" + records + "}]";
+        }
+    }
+
+    /**
+     * Учитывает время получения записей от поставщика данных. Время относится к секции, обрабатываемой в момент обращения к итератору.
+     */
+    private static final class MeteredIssuer<T> implements ReadAheadIssuer<T> {
+        private final ReadAheadIssuer<T> issuer;
+        private final ProviderMetrics pm;
+        private final ExecutionContext ectx;
+
+        private MeteredIssuer(final ReadAheadIssuer<T> issuer, final ProviderMetrics pm, final ExecutionContext ectx) {
+            this.issuer = issuer;
+            this.pm = pm;
+            this.ectx = ectx;
+        }
+
+        @Override
+        public boolean hasNext() throws Exception {
+            final long started = System.nanoTime();
+            try {
+                return issuer.hasNext();
+            } finally {
+                elapsed(started);
+            }
+        }
+
+        @Override
+        public T next() throws Exception {
+            final long started = System.nanoTime();
+            try {
+                final T result = issuer.next();
+                pm.records++;
+                return result;
+            } finally {
+                elapsed(started);
+            }
+        }
+
+        @Override
+        public T readAhead() throws Exception {
+            final long started = System.nanoTime();
+            try {
+                return issuer.readAhead();
+            } finally {
+                elapsed(started);
+            }
+        }
+
+        @Override
+        public void close() throws Exception {
+            issuer.close();
+        }
+
+        private void elapsed(final long started) {
+            final long elapsed = System.nanoTime() - started;
+            pm.fetchTime += elapsed;
+            if (ectx.sectionContext != null && ectx.sectionContext.metrics != null)
+                ectx.sectionContext.metrics.fetchTime += elapsed;
+        }
+    }
+}
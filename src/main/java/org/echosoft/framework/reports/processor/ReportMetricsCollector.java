@@ -0,0 +1,19 @@
+package org.echosoft.framework.reports.processor;
+
+/**
+ * Получатель статистики построения отчетов. Позволяет передавать статистику (см. {@link ReportMetrics}) в используемую
+ * приложением систему мониторинга. Регистрируется в построителе отчетов (см. {@link ExcelReportProcessor#setMetricsCollector(ReportMetricsCollector)}).
+ * Один и тот же получатель может одновременно вызываться из разных потоков.
+ *
+ * @author Anton Sharapov
+ */
+public interface ReportMetricsCollector {
+
+    /**
+     * Вызывается по окончании построения очередного отчета (в том числе и в случае ошибки при его построении).
+     * Исключения, поднятые данным методом, не влияют на результат построения отчета.
+     *
+     * @param metrics статистика построения отчета.
+     */
+    public void collect(ReportMetrics metrics);
+}
@@ -1,15 +1,20 @@
 package org.echosoft.framework.reports.processor;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.echosoft.framework.reports.model.Report;
 import org.echosoft.framework.reports.model.el.ELContext;
 
 /**
  * Интерфейс который должен реализовывать построитель отчетов оформленных в виде электронных таблиц.
+ * Такой построитель может как вернуть сформированный отчет в виде рабочей книги, так и записать его в поток.
  *
  * @author Anton Sharapov
  */
-public interface ReportProcessor {
+public interface ReportProcessor extends StreamingReportProcessor {
 
     /**
      * Формирует отчет на основании его модели и указанных пользователем в контексте параметров.
@@ -20,4 +25,26 @@ public interface ReportProcessor {
      * @throws ReportProcessingException в случае каких-либо проблем.
      */
     public Workbook process(final Report report, final ELContext ctx) throws ReportProcessingException;
+
+    /**
+     * Формирует отчет на основании его модели и указанных пользователем в контексте параметров и записывает его в указанный поток.
+     * Формат записываемых данных определяется построителем отчетов, по умолчанию это документ Excel в формате, указанном в модели отчета.
+     *
+     * @param report модель формируемого отчета.
+     * @param ctx    данные необходимые для формирования данного отчета.
+     * @param out    поток в который должен быть записан сформированный отчет. Поток не закрывается по окончании записи.
+     * @throws ReportProcessingException в случае каких-либо проблем.
+     */
+    @Override
+    public default void process(final Report report, final ELContext ctx, final OutputStream out) throws ReportProcessingException {
+        final Workbook wb = process(report, ctx);
+        try {
+            wb.write(out);
+        } catch (IOException e) {
+            throw new ReportProcessingException(e.getMessage(), e);
+        } finally {
+            if (wb instanceof SXSSFWorkbook)
+                ((SXSSFWorkbook) wb).dispose();
+        }
+    }
 }
@@ -0,0 +1,75 @@
+package org.echosoft.framework.reports.processor;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.echosoft.framework.reports.model.AreaModel;
+
+/**
+ * Получатель содержимого отчета, формируемого в потоковом режиме.
+ * <p>В потоковом режиме (см. {@link ExcelReportProcessor#processReport(org.echosoft.framework.reports.model.Report, org.echosoft.framework.reports.model.el.ELContext, ReportSink)})
+ * построитель отчетов не создает листы рабочей книги: каждая строка, полностью отрисованная по шаблону секции или группировки,
+ * передается получателю и больше построителем не используется. Это позволяет выгружать содержимое отчета в другие форматы
+ * (см. {@link CsvReportProcessor}, {@link HtmlReportProcessor}) не дожидаясь окончания его построения и не удерживая его строки в памяти.
+ * Операции, имеющие смысл только для документов Excel (объединение ячеек, группировка строк, автофильтры, именованные регионы,
+ * ширина колонок и параметры печати), в этом режиме не выполняются - получатель при необходимости учитывает их сам по моделям листов и секций.</p>
+ * <p><strong>Внимание!</strong> Строки группировок отрисовываются после всех входящих в эти группировки записей, поэтому
+ * строки поступают к получателю не обязательно в порядке возрастания их номеров. Номер первой строки листа, которая
+ * еще может быть отрисована, возвращает метод {@link ExecutionContext#getFirstPendingRowNum()}.</p>
+ * <p>Для каждого построения отчета используется отдельный экземпляр получателя (см. {@link ExecutionContext#sink}).</p>
+ *
+ * @author Anton Sharapov
+ */
+public interface ReportSink {
+
+    /**
+     * Вызывается в начале построения отчета, перед обработкой его листов.
+     *
+     * @param ectx контекст выполнения с описанием текущего состояния обработки отчета.
+     * @throws Exception в случае каких-либо проблем. Поднятое исключение прекращает формирование отчета.
+     */
+    public void beginReport(ExecutionContext ectx) throws Exception;
+
+    /**
+     * Вызывается перед обработкой секций очередного листа отчета. Контекст выполнения уже содержит ссылку на модель листа.
+     *
+     * @param ectx контекст выполнения с описанием текущего состояния обработки отчета.
+     * @throws Exception в случае каких-либо проблем. Поднятое исключение прекращает формирование отчета.
+     */
+    public void beginSheet(ExecutionContext ectx) throws Exception;
+
+    /**
+     * Вызывается после того как в строке листа были отрисованы все ячейки, описанные в соответствующей строке шаблона.
+     * Строка не принадлежит никакому листу рабочей книги и после этого вызова построителем больше не используется.
+     *
+     * @param ectx контекст выполнения с описанием текущего состояния обработки отчета.
+     * @param row  отрисованная строка листа.
+     * @throws Exception в случае каких-либо проблем. Поднятое исключение прекращает формирование отчета.
+     */
+    public void row(ExecutionContext ectx, Row row) throws Exception;
+
+    /**
+     * Вызывается после того как были отрисованы все строки очередного шаблона секции или группировки.
+     * Регионы шаблона (см. {@link AreaModel#getRegions()}) описывают объединенные ячейки этой группы строк.
+     *
+     * @param ectx     контекст выполнения с описанием текущего состояния обработки отчета.
+     * @param template шаблон отрисованной группы строк.
+     * @param startRow номер первой строки листа (начиная с 0) в которую был отрисован данный шаблон.
+     * @throws Exception в случае каких-либо проблем. Поднятое исключение прекращает формирование отчета.
+     */
+    public void area(ExecutionContext ectx, AreaModel template, int startRow) throws Exception;
+
+    /**
+     * Вызывается по окончании обработки всех секций очередного листа отчета. После этого вызова строки данного листа больше не изменяются.
+     *
+     * @param ectx контекст выполнения с описанием текущего состояния обработки отчета.
+     * @throws Exception в случае каких-либо проблем. Поднятое исключение прекращает формирование отчета.
+     */
+    public void endSheet(ExecutionContext ectx) throws Exception;
+
+    /**
+     * Вызывается по окончании обработки последнего листа отчета.
+     *
+     * @param ectx контекст выполнения с описанием текущего состояния обработки отчета.
+     * @throws Exception в случае каких-либо проблем. Поднятое исключение прекращает формирование отчета.
+     */
+    public void endReport(ExecutionContext ectx) throws Exception;
+}
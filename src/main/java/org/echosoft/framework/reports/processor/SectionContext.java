@@ -2,10 +2,16 @@ package org.echosoft.framework.reports.processor;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.echosoft.framework.reports.common.collections.issuers.ReadAheadIssuer;
+import org.echosoft.framework.reports.model.AreaModel;
+import org.echosoft.framework.reports.model.CellModel;
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.model.RowModel;
 import org.echosoft.framework.reports.model.Section;
 import org.echosoft.framework.reports.model.el.ELContext;
 import org.echosoft.framework.reports.model.events.CellEventListener;
@@ -31,7 +37,7 @@ public final class SectionContext {
     public final Section section;
 
     /**
-     * Ассоциированный с текущей секцией список подписчиков на событие "отрисовка ячейки".
+     * Ассоциированный с текущей секцией список подписчиков на события секции.
      */
     public final List<SectionEventListener> sectionListeners;
 
@@ -60,7 +66,7 @@ public final class SectionContext {
     /**
      * Индекс первой строки (начиная с 0) которую занимает данная секция в формируемом отчете.
      */
-    public final int sectionFirstRow;
+    public int sectionFirstRow;
 
     /**
      * Индекс первой строки (начиная с 0) которую занимает текущая запись из источника данных в формируемом отчете.
@@ -75,29 +81,207 @@ public final class SectionContext {
      */
     public int record;
 
+    /**
+     * Имена свойств записей поставщика данных секции, которые используются при ее отрисовке, или <code>null</code> если
+     * секции могут потребоваться любые свойства записей (см. {@link SectionProjection}).
+     * Вычисляются при каждом обращении к поставщику данных секции, если с момента предыдущего вычисления изменились
+     * списки обработчиков событий секции (см. {@link #resolveProperties(Report)}).
+     */
+    public Set<String> properties;
+
+    /**
+     * Статистика обработки данной секции или <code>null</code> если сбор статистики при построении отчета не требуется.
+     */
+    public ReportMetrics.SectionMetrics metrics;
+
     /**
      * Переменные окружения время жизни которых ограничено временем обработки данной секции.
      */
     private Map<String, Object> env;
 
+    /**
+     * Обработчики событий секции, заданные в модели секции постоянными экземплярами (см. {@link SectionEventListenerHolder#isConstant()}).
+     * Индекс в массиве соответствует порядковому номеру описания обработчика в модели секции.
+     */
+    private final SectionEventListener[] constantSectionListeners;
+
+    /**
+     * Обработчики события "отрисовка ячейки", заданные в модели секции постоянными экземплярами (см. {@link CellEventListenerHolder#isConstant()}).
+     * Индекс в массиве соответствует порядковому номеру описания обработчика в модели секции.
+     */
+    private final CellEventListener[] constantCellListeners;
+
+    /**
+     * Описания обработчиков из {@link #cellListeners}, сконструированных на основе модели секции. Определяют для каких ячеек
+     * секции должен вызываться тот или иной обработчик. Обработчики, добавленные в {@link #cellListeners} непосредственно
+     * во время формирования отчета, в данной таблице отсутствуют.
+     */
+    private final Map<CellEventListener, CellEventListenerHolder> cellListenerTargets;
+
+    /**
+     * Таблицы обработчиков события "отрисовка ячейки" для каждой ячейки областей шаблона секции.
+     */
+    private final Map<AreaModel, CellEventListener[][][]> cellDispatch;
+
+    /**
+     * Значение счетчика изменений списка {@link #cellListeners} на момент построения таблиц {@link #cellDispatch}.
+     */
+    private int cellDispatchVersion;
+
+    /**
+     * Значения счетчиков изменений списков {@link #sectionListeners} и {@link #cellListeners} на момент вычисления {@link #properties}
+     * или <code>-1</code> если набор используемых свойств записей еще не вычислялся.
+     */
+    private int propertiesSectionVersion;
+    private int propertiesCellVersion;
+
 
     public SectionContext(final SectionContext parent, final Section section, final int firstRow, final ELContext elctx) {
         this.parent = parent;
         this.section = section;
-        this.sectionListeners = new ArrayList<SectionEventListener>();
-        for (SectionEventListenerHolder holder : section.getSectionListeners()) {
-            final SectionEventListener listener = holder.getListener(elctx);
-            if (listener != null)
-                this.sectionListeners.add(listener);
-        }
-        this.cellListeners = new ArrayList<CellEventListener>();
-        for (CellEventListenerHolder holder : section.getCellListeners()) {
-            final CellEventListener listener = holder.getListener(elctx);
-            if (listener != null)
-                this.cellListeners.add(listener);
-        }
+        this.sectionListeners = new ListenersList<SectionEventListener>();
+        this.cellListeners = new ListenersList<CellEventListener>();
+        this.constantSectionListeners = new SectionEventListener[section.getSectionListeners().size()];
+        this.constantCellListeners = new CellEventListener[section.getCellListeners().size()];
+        this.cellListenerTargets = new IdentityHashMap<CellEventListener, CellEventListenerHolder>();
+        this.cellDispatch = new HashMap<AreaModel, CellEventListener[][][]>();
+        this.cellDispatchVersion = -1;
+        this.propertiesSectionVersion = -1;
+        this.propertiesCellVersion = -1;
+        this.sectionFirstRow = firstRow;
+        this.recordFirstRow = firstRow;
+        resolveListeners(elctx);
+    }
+
+    /**
+     * Конструирует копию контекста секции, отражающую его текущее состояние (см. {@link #snapshot()}).
+     * Списки обработчиков событий и построенные по ним таблицы не копируются: копия ссылается на те же объекты, что и исходный контекст.
+     */
+    private SectionContext(final SectionContext src) {
+        this.parent = src.parent;
+        this.section = src.section;
+        this.sectionListeners = src.sectionListeners;
+        this.cellListeners = src.cellListeners;
+        this.constantSectionListeners = src.constantSectionListeners;
+        this.constantCellListeners = src.constantCellListeners;
+        this.cellListenerTargets = src.cellListenerTargets;
+        this.cellDispatch = src.cellDispatch;
+        this.cellDispatchVersion = src.cellDispatchVersion;
+        this.propertiesSectionVersion = src.propertiesSectionVersion;
+        this.propertiesCellVersion = src.propertiesCellVersion;
+        this.issuer = src.issuer;
+        this.bean = src.bean;
+        this.gm = src.gm;
+        this.sectionFirstRow = src.sectionFirstRow;
+        this.recordFirstRow = src.recordFirstRow;
+        this.record = src.record;
+        this.properties = src.properties;
+        this.metrics = src.metrics;
+        this.env = src.env;     // при повторной обработке секции исходный контекст получает новую таблицу переменных (см. reset)
+    }
+
+    /**
+     * Подготавливает контекст к повторной обработке той же секции (например, при обработке дочерних секций композитной секции
+     * для очередной записи ее поставщика данных). Состояние, накопленное при предыдущей обработке секции, сбрасывается.
+     * Повторно используются только обработчики, заданные в модели секции постоянными экземплярами или классами без собственного
+     * состояния (см. {@link SectionEventListenerHolder#isConstant()}), все прочие обработчики
+     * конструируются заново с учетом текущего контекста отчета (так же как и при первой обработке секции).
+     * Обработчики, добавленные в списки обработчиков непосредственно во время предыдущей обработки секции, удаляются.
+     *
+     * @param firstRow индекс первой строки (начиная с 0) которую будет занимать секция в формируемом отчете.
+     * @param elctx    контекст вычисления выражений.
+     */
+    void reset(final int firstRow, final ELContext elctx) {
+        this.issuer = null;
+        this.bean = null;
+        this.gm = null;
         this.sectionFirstRow = firstRow;
         this.recordFirstRow = firstRow;
+        this.record = 0;
+        this.env = null;
+        resolveListeners(elctx);
+    }
+
+    /**
+     * Возвращает имена свойств записей поставщика данных, которые используются при отрисовке секции (см. {@link #properties}).
+     * Набор свойств вычисляется заново если с момента его предыдущего вычисления изменился состав обработчиков событий секции
+     * (например, при повторной обработке секции или если обработчики были добавлены непосредственно во время формирования отчета),
+     * поскольку записи, передаваемые обработчикам, не должны быть урезаны.
+     *
+     * @param report модель отчета.
+     * @return имена используемых свойств записей или <code>null</code> если секции могут потребоваться любые свойства записей.
+     */
+    Set<String> resolveProperties(final Report report) {
+        final int sectionVersion = ((ListenersList<?>) sectionListeners).version();
+        final int cellVersion = ((ListenersList<?>) cellListeners).version();
+        if (propertiesSectionVersion != sectionVersion || propertiesCellVersion != cellVersion) {
+            properties = SectionProjection.getRequiredProperties(report, this);
+            propertiesSectionVersion = sectionVersion;
+            propertiesCellVersion = cellVersion;
+        }
+        return properties;
+    }
+
+    /**
+     * Возвращает копию контекста, отражающую его текущее состояние. Используется для сохранения контекста уже обработанной секции
+     * в истории (см. {@link ExecutionContext#history}), поскольку сам контекст может быть повторно использован при очередной обработке той же секции.
+     * Копируются только сведения о результатах обработки секции (запись, номера строк, группировки, переменные секции),
+     * которые и используются при обращении к истории. Списки обработчиков событий копия разделяет с исходным контекстом,
+     * поэтому при повторной обработке секции они могут измениться.
+     *
+     * @return копия контекста секции.
+     */
+    SectionContext snapshot() {
+        return new SectionContext(this);
+    }
+
+    /**
+     * Возвращает таблицу обработчиков события "отрисовка ячейки" для указанной области шаблона секции.
+     * Элемент таблицы <code>[r][c]</code> содержит (в порядке их регистрации) обработчики, которые должны быть вызваны
+     * для ячейки в колонке <code>c</code> строки <code>r</code> области шаблона. Таблица строится один раз для каждой
+     * области и используется при всех последующих ее отрисовках, пока не изменится список {@link #cellListeners}.
+     * Обработчики, добавленные в {@link #cellListeners} непосредственно во время формирования отчета, вызываются для всех ячеек секции.
+     *
+     * @param area область шаблона секции.
+     * @return таблица обработчиков для каждой ячейки области.
+     */
+    public CellEventListener[][][] getCellListeners(final AreaModel area) {
+        final List<RowModel> rows = area.getRows();
+        final int version = ((ListenersList<?>) cellListeners).version();
+        if (cellDispatchVersion != version) {
+            cellDispatch.clear();
+            cellDispatchVersion = version;
+        }
+        CellEventListener[][][] result = cellDispatch.get(area);
+        if (result == null || result.length != rows.size()) {
+            result = new CellEventListener[rows.size()][][];
+            final CellEventListener[] all = cellListeners.toArray(new CellEventListener[cellListeners.size()]);
+            final CellEventListenerHolder[] targets = new CellEventListenerHolder[all.length];
+            boolean targeted = false;
+            for (int i = 0; i < all.length; i++) {
+                targets[i] = cellListenerTargets.get(all[i]);
+                targeted |= targets[i] != null && targets[i].isTargeted();
+            }
+            for (int r = 0; r < result.length; r++) {
+                final List<CellModel> cells = rows.get(r).getCells();
+                final CellEventListener[][] row = new CellEventListener[cells.size()][];
+                for (int c = 0; c < row.length; c++) {
+                    if (!targeted) {
+                        row[c] = all;
+                        continue;
+                    }
+                    final List<CellEventListener> listeners = new ArrayList<CellEventListener>(all.length);
+                    for (int i = 0; i < all.length; i++) {
+                        if (targets[i] == null || targets[i].accepts(r, c, cells.get(c)))
+                            listeners.add(all[i]);
+                    }
+                    row[c] = listeners.toArray(new CellEventListener[listeners.size()]);
+                }
+                result[r] = row;
+            }
+            cellDispatch.put(area, result);
+        }
+        return result;
     }
 
     /**
@@ -122,4 +306,77 @@ public final class SectionContext {
             env = new HashMap<String, Object>();
         env.put(name, value);
     }
+
+    /**
+     * Вычисляет обработчики событий секции по их описаниям в модели секции. Списки обработчиков изменяются только в том случае,
+     * если полученные обработчики отличаются от уже имеющихся в списках.
+     */
+    private void resolveListeners(final ELContext elctx) {
+        final List<SectionEventListenerHolder> sectionHolders = section.getSectionListeners();
+        final List<SectionEventListener> sectionResult = new ArrayList<SectionEventListener>(sectionHolders.size());
+        for (int i = 0; i < sectionHolders.size(); i++) {
+            SectionEventListener listener = constantSectionListeners[i];
+            if (listener == null) {
+                final SectionEventListenerHolder holder = sectionHolders.get(i);
+                listener = holder.getListener(elctx);
+                if (holder.isConstant())
+                    constantSectionListeners[i] = listener;
+            }
+            if (listener != null)
+                sectionResult.add(listener);
+        }
+        if (!sameListeners(sectionListeners, sectionResult)) {
+            sectionListeners.clear();
+            sectionListeners.addAll(sectionResult);
+        }
+
+        final List<CellEventListenerHolder> cellHolders = section.getCellListeners();
+        final List<CellEventListener> cellResult = new ArrayList<CellEventListener>(cellHolders.size());
+        final Map<CellEventListener, CellEventListenerHolder> targets = new IdentityHashMap<CellEventListener, CellEventListenerHolder>();
+        for (int i = 0; i < cellHolders.size(); i++) {
+            final CellEventListenerHolder holder = cellHolders.get(i);
+            CellEventListener listener = constantCellListeners[i];
+            if (listener == null) {
+                listener = holder.getListener(elctx);
+                if (holder.isConstant())
+                    constantCellListeners[i] = listener;
+            }
+            if (listener != null) {
+                cellResult.add(listener);
+                targets.put(listener, holder);
+            }
+        }
+        if (!sameListeners(cellListeners, cellResult) || !targets.equals(cellListenerTargets)) {
+            cellListeners.clear();
+            cellListeners.addAll(cellResult);
+            cellListenerTargets.clear();
+            cellListenerTargets.putAll(targets);
+        }
+    }
+
+    private static boolean sameListeners(final List<?> current, final List<?> required) {
+        if (current.size() != required.size())
+            return false;
+        for (int i = 0; i < current.size(); i++) {
+            if (current.get(i) != required.get(i))
+                return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Список обработчиков событий, ведущий учет всех своих изменений.
+     */
+    private static final class ListenersList<T> extends ArrayList<T> {
+        @Override
+        public T set(final int index, final T element) {
+            modCount++;
+            return super.set(index, element);
+        }
+
+        int version() {
+            return modCount;
+        }
+    }
 }
@@ -0,0 +1,99 @@
+package org.echosoft.framework.reports.processor;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.echosoft.framework.reports.macros.Macros;
+import org.echosoft.framework.reports.model.AreaModel;
+import org.echosoft.framework.reports.model.CellModel;
+import org.echosoft.framework.reports.model.GroupModel;
+import org.echosoft.framework.reports.model.GroupStyle;
+import org.echosoft.framework.reports.model.GroupingSection;
+import org.echosoft.framework.reports.model.PlainSection;
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.model.RowModel;
+import org.echosoft.framework.reports.model.el.BaseExpression;
+import org.echosoft.framework.reports.model.el.Expression;
+
+/**
+ * Определяет какие свойства записей, получаемых секцией от ее поставщика данных, действительно используются при отрисовке секции.
+ * Эта информация передается поставщику данных (см. {@link org.echosoft.framework.reports.model.providers.DataRequest#properties})
+ * чтобы он мог не загружать остальные свойства записей (например, неиспользуемые колонки результата SQL запроса).
+ * <p>Анализ выполняется консервативно: если записи секции могут попасть в произвольный пользовательский код (обработчики событий
+ * секции или ее ячеек, пользовательские макросы) или в другие секции (композитные секции), то ограничения на набор свойств не накладываются.</p>
+ *
+ * @author Anton Sharapov
+ */
+final class SectionProjection {
+
+    private SectionProjection() {
+    }
+
+    /**
+     * Возвращает имена всех свойств записей поставщика данных, на которые ссылаются шаблоны секции и описания ее группировок.
+     *
+     * @param report модель отчета.
+     * @param sctx   контекст обработки секции.
+     * @return имена используемых свойств записей или <code>null</code> если набор используемых свойств не может быть определен.
+     */
+    static Set<String> getRequiredProperties(final Report report, final SectionContext sctx) {
+        if (!sctx.sectionListeners.isEmpty() || !sctx.cellListeners.isEmpty())
+            return null;
+        final Set<String> result = new HashSet<>();
+        if (sctx.section instanceof PlainSection) {
+            return collect(report, ((PlainSection) sctx.section).getTemplate(), result) ? result : null;
+        } else
+        if (sctx.section instanceof GroupingSection) {
+            final GroupingSection section = (GroupingSection) sctx.section;
+            if (!collect(report, section.getRowTemplate(), result))
+                return null;
+            for (GroupModel group : section.getGroups()) {
+                addProperty(group.getDiscriminatorField(), result);
+                addProperty(group.getLevelField(), result);
+                for (GroupStyle style : group.getStyles()) {
+                    if (!collect(report, style.getTemplate(), result))
+                        return null;
+                }
+            }
+            return result;
+        } else
+            return null;
+    }
+
+    private static boolean collect(final Report report, final AreaModel area, final Set<String> properties) {
+        if (area == null)
+            return true;
+        for (RowModel row : area.getRows()) {
+            for (CellModel cell : row.getCells()) {
+                if (cell == null)
+                    continue;
+                final Expression expr = cell.getExpression();
+                if (!(expr instanceof BaseExpression))
+                    return false;
+                final BaseExpression bexpr = (BaseExpression) expr;
+                final Object raw = bexpr.getRawValue();
+                if (raw instanceof String && ((String) raw).startsWith(ExcelReportProcessor.MACROS) && !isBuiltinMacros(report, (String) raw))
+                    return false;
+                bexpr.collectRowProperties(properties);
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBuiltinMacros(final Report report, final String text) {
+        final int si = text.indexOf('(', ExcelReportProcessor.MACROS.length());
+        final String name = si > 0 ? text.substring(ExcelReportProcessor.MACROS.length(), si) : text.substring(ExcelReportProcessor.MACROS.length());
+        final Macros func = report.getMacros(name);
+        return func != null && func.getClass().getPackage() == Macros.class.getPackage();
+    }
+
+    private static void addProperty(final String expr, final Set<String> properties) {
+        if (expr == null)
+            return;
+        int i = 0;
+        while (i < expr.length() && expr.charAt(i) != '.' && expr.charAt(i) != '[') {
+            i++;
+        }
+        properties.add(expr.substring(0, i));
+    }
+}
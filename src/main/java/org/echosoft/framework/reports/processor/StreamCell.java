@@ -0,0 +1,319 @@
+package org.echosoft.framework.reports.processor;
+
+import java.time.LocalDateTime;
+import java.util.Calendar;
+import java.util.Date;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.CellBase;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Hyperlink;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+
+/**
+ * Ячейка строки отчета, формируемого в потоковом режиме (см. {@link StreamRow}).
+ * <p>Хранит только значение ячейки и ссылку на стиль шаблона (из палитры отчета). Стиль рабочей книги, соответствующий стилю шаблона,
+ * создается только если к нему явно обратились (см. {@link #getCellStyle()}), например из обработчиков событий ячеек.
+ * Стиль, явно назначенный ячейке с помощью {@link #setCellStyle(CellStyle)}, доступен получателю содержимого отчета
+ * в методе {@link #getAssignedStyle()}.</p>
+ * <p>Даты хранятся в виде чисел в формате Excel, значения формул не вычисляются.</p>
+ *
+ * @author Anton Sharapov
+ */
+final class StreamCell extends CellBase {
+
+    private final ExecutionContext ectx;
+    private final StreamRow row;
+    private final int column;
+    private final short templateStyle;
+    private CellStyle style;
+    private CellType type;
+    private double number;
+    private boolean bool;
+    private byte error;
+    private String text;
+    private RichTextString richText;
+    private String formula;
+    private Hyperlink hyperlink;
+    private Comment comment;
+
+    StreamCell(final ExecutionContext ectx, final StreamRow row, final int column, final short templateStyle) {
+        this.ectx = ectx;
+        this.row = row;
+        this.column = column;
+        this.templateStyle = templateStyle;
+        this.type = CellType.BLANK;
+    }
+
+    /**
+     * @return идентификатор стиля ячейки в палитре отчета (см. {@link org.echosoft.framework.reports.model.StylePalette})
+     * или <code>-1</code> если стиль шаблоном не определен.
+     */
+    short getTemplateStyle() {
+        return templateStyle;
+    }
+
+    /**
+     * @return стиль, явно назначенный ячейке в ходе ее отрисовки, или <code>null</code> если ячейка оформляется по стилю шаблона.
+     */
+    CellStyle getAssignedStyle() {
+        return style;
+    }
+
+    @Override
+    public int getColumnIndex() {
+        return column;
+    }
+
+    @Override
+    public int getRowIndex() {
+        return row.getRowNum();
+    }
+
+    /**
+     * @return всегда <code>null</code>, так как в потоковом режиме листы рабочей книги не создаются.
+     */
+    @Override
+    public Sheet getSheet() {
+        return null;
+    }
+
+    @Override
+    public Row getRow() {
+        return row;
+    }
+
+    @Override
+    public CellType getCellType() {
+        return type;
+    }
+
+    @Override
+    public CellType getCachedFormulaResultType() {
+        if (type != CellType.FORMULA)
+            throw new IllegalStateException("Only formula cells have cached results");
+        return CellType.BLANK;
+    }
+
+    @Override
+    public String getCellFormula() {
+        if (type != CellType.FORMULA)
+            throw new IllegalStateException("Cell is not a formula cell: " + type);
+        return formula;
+    }
+
+    @Override
+    public double getNumericCellValue() {
+        return type == CellType.NUMERIC ? number : 0;
+    }
+
+    @Override
+    public Date getDateCellValue() {
+        return type == CellType.NUMERIC ? DateUtil.getJavaDate(number) : null;
+    }
+
+    @Override
+    public LocalDateTime getLocalDateTimeCellValue() {
+        return type == CellType.NUMERIC ? DateUtil.getLocalDateTime(number) : null;
+    }
+
+    @Override
+    public RichTextString getRichStringCellValue() {
+        if (richText == null)
+            richText = new XSSFRichTextString(getStringCellValue());
+        return richText;
+    }
+
+    @Override
+    public String getStringCellValue() {
+        if (text == null && richText != null)
+            text = richText.getString();
+        return type == CellType.STRING && text != null ? text : "";
+    }
+
+    @Override
+    public boolean getBooleanCellValue() {
+        return type == CellType.BOOLEAN && bool;
+    }
+
+    @Override
+    public byte getErrorCellValue() {
+        return type == CellType.ERROR ? error : 0;
+    }
+
+    @Override
+    public void setCellValue(final boolean value) {
+        clear();
+        type = CellType.BOOLEAN;
+        bool = value;
+    }
+
+    @Override
+    public void setCellErrorValue(final byte value) {
+        clear();
+        type = CellType.ERROR;
+        error = value;
+    }
+
+    /**
+     * Возвращает стиль ячейки. Если стиль не был явно назначен ячейке, то возвращается стиль рабочей книги, соответствующий стилю шаблона
+     * (при первом обращении этот стиль создается в рабочей книге).
+     */
+    @Override
+    public CellStyle getCellStyle() {
+        if (style != null)
+            return style;
+        final CellStyle result = templateStyle >= 0 ? ectx.styles.get(templateStyle) : null;
+        return result != null ? result : ectx.wb.getCellStyleAt(0);
+    }
+
+    @Override
+    public void setCellStyle(final CellStyle style) {
+        this.style = style;
+    }
+
+    @Override
+    public void setAsActiveCell() {
+    }
+
+    @Override
+    public void setCellComment(final Comment comment) {
+        this.comment = comment;
+    }
+
+    @Override
+    public Comment getCellComment() {
+        return comment;
+    }
+
+    @Override
+    public void removeCellComment() {
+        comment = null;
+    }
+
+    @Override
+    public Hyperlink getHyperlink() {
+        return hyperlink;
+    }
+
+    @Override
+    public void setHyperlink(final Hyperlink link) {
+        this.hyperlink = link;
+    }
+
+    @Override
+    public void removeHyperlink() {
+        hyperlink = null;
+    }
+
+    @Override
+    public CellRangeAddress getArrayFormulaRange() {
+        throw new IllegalStateException("Cell " + getAddress() + " is not part of an array formula");
+    }
+
+    @Override
+    public boolean isPartOfArrayFormulaGroup() {
+        return false;
+    }
+
+    @Override
+    protected void setCellTypeImpl(final CellType cellType) {
+        if (cellType == CellType.BLANK) {
+            clear();
+        } else if (cellType == CellType.STRING && type != CellType.STRING) {
+            final String value = type == CellType.BLANK ? "" : toString();
+            clear();
+            text = value;
+        }
+        type = cellType;
+    }
+
+    @Override
+    protected void setCellFormulaImpl(final String formula) {
+        clear();
+        this.type = CellType.FORMULA;
+        this.formula = formula;
+    }
+
+    @Override
+    protected void removeFormulaImpl() {
+        clear();
+        type = CellType.BLANK;
+    }
+
+    @Override
+    protected void setCellValueImpl(final double value) {
+        clear();
+        type = CellType.NUMERIC;
+        number = value;
+    }
+
+    @Override
+    protected void setCellValueImpl(final Date value) {
+        setCellValueImpl(DateUtil.getExcelDate(value));
+    }
+
+    @Override
+    protected void setCellValueImpl(final LocalDateTime value) {
+        setCellValueImpl(DateUtil.getExcelDate(value));
+    }
+
+    @Override
+    protected void setCellValueImpl(final Calendar value) {
+        setCellValueImpl(DateUtil.getExcelDate(value, false));
+    }
+
+    @Override
+    protected void setCellValueImpl(final String value) {
+        clear();
+        type = CellType.STRING;
+        text = value;
+    }
+
+    @Override
+    protected void setCellValueImpl(final RichTextString value) {
+        clear();
+        type = CellType.STRING;
+        richText = value;
+    }
+
+    @Override
+    protected SpreadsheetVersion getSpreadsheetVersion() {
+        return SpreadsheetVersion.EXCEL2007;
+    }
+
+    private void clear() {
+        number = 0;
+        bool = false;
+        error = 0;
+        text = null;
+        richText = null;
+        formula = null;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case NUMERIC:
+                return Double.toString(number);
+            case STRING:
+                return getStringCellValue();
+            case BOOLEAN:
+                return bool ? "TRUE" : "FALSE";
+            case ERROR:
+                return FormulaError.forInt(error).getString();
+            case FORMULA:
+                return formula;
+            default:
+                return "";
+        }
+    }
+}
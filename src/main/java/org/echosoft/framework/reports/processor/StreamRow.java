@@ -0,0 +1,208 @@
+package org.echosoft.framework.reports.processor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+/**
+ * Строка отчета, формируемого в потоковом режиме (т.е. без создания листов рабочей книги, см. {@link ReportSink}).
+ * Строка не принадлежит никакому листу и после передачи ее получателю содержимого отчета построителем больше не используется.
+ *
+ * @author Anton Sharapov
+ */
+final class StreamRow implements Row {
+
+    private final ExecutionContext ectx;
+    private int rowNum;
+    private StreamCell[] cells;
+    private short height;
+    private boolean zeroHeight;
+
+    StreamRow(final ExecutionContext ectx, final int rowNum, final int columns) {
+        this.ectx = ectx;
+        this.rowNum = rowNum;
+        this.cells = new StreamCell[Math.max(columns, 0)];
+        this.height = -1;
+    }
+
+    /**
+     * Создает ячейку строки, оформленную по указанному стилю шаблона.
+     *
+     * @param column        индекс колонки (начиная с 0).
+     * @param templateStyle идентификатор стиля ячейки в палитре отчета или <code>-1</code>.
+     * @return созданная ячейка.
+     */
+    StreamCell createCell(final int column, final short templateStyle) {
+        if (column < 0)
+            throw new IllegalArgumentException("Invalid column index: " + column);
+        if (column >= cells.length)
+            cells = Arrays.copyOf(cells, Math.max(column + 1, cells.length * 2));
+        final StreamCell cell = new StreamCell(ectx, this, column, templateStyle);
+        cells[column] = cell;
+        return cell;
+    }
+
+    @Override
+    public Cell createCell(final int column) {
+        return createCell(column, (short) -1);
+    }
+
+    @Override
+    public Cell createCell(final int column, final CellType type) {
+        final Cell cell = createCell(column, (short) -1);
+        cell.setCellType(type);
+        return cell;
+    }
+
+    @Override
+    public void removeCell(final Cell cell) {
+        final int column = cell.getColumnIndex();
+        if (column < cells.length && cells[column] == cell)
+            cells[column] = null;
+    }
+
+    @Override
+    public void setRowNum(final int rowNum) {
+        this.rowNum = rowNum;
+    }
+
+    @Override
+    public int getRowNum() {
+        return rowNum;
+    }
+
+    @Override
+    public StreamCell getCell(final int column) {
+        return column >= 0 && column < cells.length ? cells[column] : null;
+    }
+
+    @Override
+    public Cell getCell(final int column, final MissingCellPolicy policy) {
+        final Cell cell = getCell(column);
+        switch (policy) {
+            case RETURN_BLANK_AS_NULL:
+                return cell != null && cell.getCellType() == CellType.BLANK ? null : cell;
+            case CREATE_NULL_AS_BLANK:
+                return cell != null ? cell : createCell(column, CellType.BLANK);
+            default:
+                return cell;
+        }
+    }
+
+    @Override
+    public short getFirstCellNum() {
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] != null)
+                return (short) i;
+        }
+        return -1;
+    }
+
+    @Override
+    public short getLastCellNum() {
+        for (int i = cells.length - 1; i >= 0; i--) {
+            if (cells[i] != null)
+                return (short) (i + 1);
+        }
+        return -1;
+    }
+
+    @Override
+    public int getPhysicalNumberOfCells() {
+        int result = 0;
+        for (StreamCell cell : cells) {
+            if (cell != null)
+                result++;
+        }
+        return result;
+    }
+
+    @Override
+    public void setHeight(final short height) {
+        this.height = height;
+    }
+
+    @Override
+    public void setZeroHeight(final boolean zeroHeight) {
+        this.zeroHeight = zeroHeight;
+    }
+
+    @Override
+    public boolean getZeroHeight() {
+        return zeroHeight;
+    }
+
+    @Override
+    public void setHeightInPoints(final float height) {
+        this.height = height == -1 ? -1 : (short) (height * 20);
+    }
+
+    @Override
+    public short getHeight() {
+        return height;
+    }
+
+    @Override
+    public float getHeightInPoints() {
+        return height == -1 ? -1 : height / 20f;
+    }
+
+    @Override
+    public boolean isFormatted() {
+        return false;
+    }
+
+    @Override
+    public CellStyle getRowStyle() {
+        return null;
+    }
+
+    @Override
+    public void setRowStyle(final CellStyle style) {
+    }
+
+    @Override
+    public Iterator<Cell> cellIterator() {
+        final List<Cell> result = new ArrayList<>(cells.length);
+        for (StreamCell cell : cells) {
+            if (cell != null)
+                result.add(cell);
+        }
+        return result.iterator();
+    }
+
+    @Override
+    public Iterator<Cell> iterator() {
+        return cellIterator();
+    }
+
+    /**
+     * @return всегда <code>null</code>, так как в потоковом режиме листы рабочей книги не создаются.
+     */
+    @Override
+    public Sheet getSheet() {
+        return null;
+    }
+
+    @Override
+    public int getOutlineLevel() {
+        return 0;
+    }
+
+    @Override
+    public void shiftCellsRight(final int firstShiftColumnIndex, final int lastShiftColumnIndex, final int step) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void shiftCellsLeft(final int firstShiftColumnIndex, final int lastShiftColumnIndex, final int step) {
+        throw new UnsupportedOperationException();
+    }
+}
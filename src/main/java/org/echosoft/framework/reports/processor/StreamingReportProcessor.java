@@ -0,0 +1,28 @@
+package org.echosoft.framework.reports.processor;
+
+import java.io.OutputStream;
+
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.model.el.ELContext;
+
+/**
+ * Интерфейс который должен реализовывать построитель отчетов, записывающий сформированный отчет непосредственно в поток.
+ * <p>В отличие от {@link ReportProcessor}, такой построитель не обязан уметь формировать отчет в виде рабочей книги Excel:
+ * например, построители выгружающие отчет в текстовых форматах (см. {@link CsvReportProcessor}, {@link HtmlReportProcessor})
+ * записывают каждую строку отчета в поток по мере ее построения и рабочую книгу не создают вовсе.</p>
+ *
+ * @author Anton Sharapov
+ */
+public interface StreamingReportProcessor {
+
+    /**
+     * Формирует отчет на основании его модели и указанных пользователем в контексте параметров и записывает его в указанный поток.
+     * Формат записываемых данных определяется построителем отчетов.
+     *
+     * @param report модель формируемого отчета.
+     * @param ctx    данные необходимые для формирования данного отчета.
+     * @param out    поток в который должен быть записан сформированный отчет. Поток не закрывается по окончании записи.
+     * @throws ReportProcessingException в случае каких-либо проблем.
+     */
+    public void process(final Report report, final ELContext ctx, final OutputStream out) throws ReportProcessingException;
+}
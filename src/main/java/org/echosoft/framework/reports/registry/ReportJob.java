@@ -0,0 +1,212 @@
+package org.echosoft.framework.reports.registry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.model.el.ELContext;
+import org.echosoft.framework.reports.processor.ExecutionControl;
+import org.echosoft.framework.reports.processor.ReportProcessingException;
+import org.echosoft.framework.reports.processor.StreamingReportProcessor;
+
+/**
+ * Задание на построение отчета, поставленное в очередь с помощью {@link ReportJobExecutor}.
+ * Позволяет дождаться окончания построения отчета, отменить его, а также узнать текущее состояние задания.
+ *
+ * @author Anton Sharapov
+ */
+public final class ReportJob implements Future<Void> {
+
+    /**
+     * Приоритет задания. Задания с приоритетом {@link #INTERACTIVE} (отчеты, которых ожидает пользователь) запускаются
+     * раньше всех ожидающих в очереди заданий с приоритетом {@link #BATCH} (фоновые выгрузки).
+     */
+    public static enum Priority {
+        INTERACTIVE, BATCH
+    }
+
+    /**
+     * Состояние задания.
+     */
+    public static enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+
+    final FutureTask<Void> task;
+    private final ReportJobExecutor executor;
+    private final Report report;
+    private final StreamingReportProcessor processor;
+    private final ELContext ctx;
+    private final ExecutionControl control;
+    private final OutputStream out;
+    private final Priority priority;
+    private final long memoryCost;
+    private final long submitTime;
+    private volatile State state;
+    private volatile long startTime;
+    private volatile long finishTime;
+    private volatile long bytesWritten;
+    boolean released;
+
+    ReportJob(final ReportJobExecutor executor, final Report report, final StreamingReportProcessor processor, final ELContext ctx,
+              final OutputStream out, final Priority priority, final long memoryCost) {
+        this.executor = executor;
+        this.report = report;
+        this.processor = processor;
+        this.ctx = ctx;
+        this.control = new ExecutionControl();
+        this.ctx.setControl(control);
+        this.out = out;
+        this.priority = priority;
+        this.memoryCost = memoryCost;
+        this.submitTime = System.currentTimeMillis();
+        this.state = State.QUEUED;
+        this.task = new FutureTask<>(this::execute);
+    }
+
+    /**
+     * @return модель формируемого отчета.
+     */
+    public Report getReport() {
+        return report;
+    }
+
+    /**
+     * @return приоритет задания.
+     */
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return оценка объема памяти (в байтах), необходимого для построения отчета (см. {@link ReportJobExecutor#setMemoryCost(Report.TargetType, long)}).
+     */
+    public long getMemoryCost() {
+        return memoryCost;
+    }
+
+    /**
+     * @return текущее состояние задания.
+     */
+    public State getState() {
+        return task.isCancelled() ? State.CANCELLED : state;
+    }
+
+    /**
+     * @return время постановки задания в очередь (в миллисекундах).
+     */
+    public long getSubmitTime() {
+        return submitTime;
+    }
+
+    /**
+     * @return время начала построения отчета (в миллисекундах) или <code>0</code> если задание еще ожидает своей очереди.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return время окончания построения отчета (в миллисекундах) или <code>0</code> если построение отчета еще не завершено.
+     */
+    public long getFinishTime() {
+        return finishTime;
+    }
+
+    /**
+     * Возвращает объект управления построением отчета, позволяющий ограничить время построения отчета и его объем.
+     * Ограничения должны быть установлены до того как задание будет запущено.
+     *
+     * @return объект управления построением отчета.
+     */
+    public ExecutionControl getControl() {
+        return control;
+    }
+
+    /**
+     * @return количество строк отчета, отрисованных к настоящему моменту.
+     */
+    public long getRows() {
+        return control.getRows();
+    }
+
+    /**
+     * @return количество байт, записанных к настоящему моменту в выходной поток задания.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Отменяет задание. Задание, ожидающее своей очереди, удаляется из очереди и никогда не будет запущено.
+     * Построение отчета уже запущенного задания прерывается (см. {@link ExecutionControl#cancel()}), при <code>mayInterruptIfRunning = true</code>
+     * прерывается также и выполняющий его поток. Ресурсы исполнителя, занятые заданием, освобождаются после того как построение отчета будет фактически прекращено.
+     */
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        final boolean result = task.cancel(mayInterruptIfRunning);
+        if (result) {
+            executor.dequeue(this);
+            control.cancel();
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return task.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return task.isDone();
+    }
+
+    @Override
+    public Void get() throws InterruptedException, ExecutionException {
+        return task.get();
+    }
+
+    @Override
+    public Void get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return task.get(timeout, unit);
+    }
+
+    private Void execute() throws ReportProcessingException {
+        startTime = System.currentTimeMillis();
+        state = State.RUNNING;
+        try {
+            processor.process(report, ctx, new OutputStream() {
+                public void write(final int b) throws IOException {
+                    out.write(b);
+                    bytesWritten++;
+                }
+                public void write(final byte[] b, final int off, final int len) throws IOException {
+                    out.write(b, off, len);
+                    bytesWritten += len;
+                }
+                public void flush() throws IOException {
+                    out.flush();
+                }
+            });
+            state = State.COMPLETED;
+            return null;
+        } catch (ReportProcessingException | RuntimeException | Error e) {
+            state = State.FAILED;
+            throw e;
+        } finally {
+            finishTime = System.currentTimeMillis();
+            executor.release(this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[ReportJob{report:" + report.getId() + ", priority:" + priority + ", state:" + getState() + ", rows:" + control.getRows() + ", bytes:" + bytesWritten + "}]";
+    }
+}
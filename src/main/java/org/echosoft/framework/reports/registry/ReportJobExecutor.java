@@ -0,0 +1,359 @@
+package org.echosoft.framework.reports.registry;
+
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.model.el.ELContext;
+import org.echosoft.framework.reports.processor.ReportProcessor;
+import org.echosoft.framework.reports.processor.StreamingReportProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Выполняет построение зарегистрированных в {@link ReportsRegistry} отчетов в фоновых потоках с учетом ограничений на:
+ * <ul>
+ * <li> общее количество одновременно строящихся отчетов;
+ * <li> количество одновременно строящихся экземпляров одного и того же отчета (см. {@link #setReportConcurrency(String, int)});
+ * <li> суммарный объем памяти, необходимый для построения одновременно строящихся отчетов. Объем памяти оценивается
+ * по целевому формату отчета (см. {@link #setMemoryCost(Report.TargetType, long)}).
+ * </ul>
+ * Задания, которые не могут быть запущены немедленно, ожидают в очереди. Задания с приоритетом {@link ReportJob.Priority#INTERACTIVE}
+ * запускаются раньше заданий с приоритетом {@link ReportJob.Priority#BATCH}, в пределах одного приоритета задания запускаются
+ * в порядке их поступления. Задание, которому не хватает памяти, не пропускает вперед себя другие задания (чтобы крупные отчеты
+ * не ожидали бесконечно), а если других строящихся отчетов нет, то запускается даже при превышении установленного лимита.</p>
+ * <p>Каждое задание выполняется в отдельном потоке. Если это поддерживается JVM (Java 21+) и было указано при создании исполнителя,
+ * используются виртуальные потоки, что позволяет не занимать потоки платформы на время ожидания ответов от поставщиков данных.</p>
+ *
+ * @author Anton Sharapov
+ */
+public class ReportJobExecutor implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReportJobExecutor.class);
+    private static final long MB = 1024 * 1024;
+
+    private final int maxConcurrency;
+    private final long memoryBudget;
+    private final ThreadFactory threadFactory;
+    private final boolean virtualThreads;
+    private final Map<Report.TargetType, Long> memoryCosts;
+    private final Map<String, Integer> reportLimits;
+    private final Map<ReportJob.Priority, Deque<ReportJob>> queues;
+    private final Map<String, Integer> running;
+    private int defaultReportLimit;
+    private int runningCount;
+    private long memoryInUse;
+    private boolean shutdown;
+
+    /**
+     * @param maxConcurrency максимальное количество одновременно строящихся отчетов.
+     */
+    public ReportJobExecutor(final int maxConcurrency) {
+        this(maxConcurrency, 0, false);
+    }
+
+    /**
+     * @param maxConcurrency максимальное количество одновременно строящихся отчетов.
+     * @param memoryBudget   максимальный суммарный объем памяти (в байтах), необходимый для построения одновременно строящихся отчетов,
+     *                       или <code>0</code> если объем памяти не ограничен.
+     * @param virtualThreads <code>true</code> если задания следует выполнять в виртуальных потоках (если они поддерживаются JVM).
+     */
+    public ReportJobExecutor(final int maxConcurrency, final long memoryBudget, final boolean virtualThreads) {
+        if (maxConcurrency <= 0)
+            throw new IllegalArgumentException("Max concurrency must be positive");
+        this.maxConcurrency = maxConcurrency;
+        this.memoryBudget = Math.max(memoryBudget, 0);
+        final ThreadFactory factory = virtualThreads ? makeVirtualThreadFactory() : null;
+        this.virtualThreads = factory != null;
+        this.threadFactory = factory != null ? factory : makePlatformThreadFactory();
+        this.memoryCosts = new EnumMap<>(Report.TargetType.class);
+        this.memoryCosts.put(Report.TargetType.HSSF, 64 * MB);
+        this.memoryCosts.put(Report.TargetType.XSSF, 256 * MB);
+        this.memoryCosts.put(Report.TargetType.SXSSF, 16 * MB);
+        this.reportLimits = new HashMap<>();
+        this.queues = new EnumMap<>(ReportJob.Priority.class);
+        for (ReportJob.Priority priority : ReportJob.Priority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+        }
+        this.running = new HashMap<>();
+    }
+
+    /**
+     * @return максимальное количество одновременно строящихся отчетов.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @return максимальный суммарный объем памяти для одновременно строящихся отчетов или <code>0</code> если объем памяти не ограничен.
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * @return <code>true</code> если задания выполняются в виртуальных потоках.
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Возвращает оценку объема памяти, необходимого для построения одного отчета в указанном формате.
+     *
+     * @param target целевой формат отчета.
+     * @return оценка объема памяти в байтах.
+     */
+    public synchronized long getMemoryCost(final Report.TargetType target) {
+        return memoryCosts.get(target);
+    }
+
+    /**
+     * Устанавливает оценку объема памяти, необходимого для построения одного отчета в указанном формате.
+     * По умолчанию используются оценки 64Мб для {@link Report.TargetType#HSSF}, 256Мб для {@link Report.TargetType#XSSF}
+     * и 16Мб для {@link Report.TargetType#SXSSF} (а также для выгрузки отчетов в текстовых форматах).
+     *
+     * @param target целевой формат отчета. Не может быть <code>null</code>.
+     * @param cost   оценка объема памяти в байтах.
+     */
+    public synchronized void setMemoryCost(final Report.TargetType target, final long cost) {
+        if (target == null)
+            throw new IllegalArgumentException("Target type must be specified");
+        memoryCosts.put(target, Math.max(cost, 0));
+        dispatch();
+    }
+
+    /**
+     * @return максимальное количество одновременно строящихся экземпляров одного отчета, используемое для отчетов
+     * без индивидуального ограничения, или <code>0</code> если количество не ограничено.
+     */
+    public synchronized int getDefaultReportConcurrency() {
+        return defaultReportLimit;
+    }
+
+    /**
+     * Устанавливает максимальное количество одновременно строящихся экземпляров одного отчета для отчетов без индивидуального ограничения.
+     *
+     * @param limit максимальное количество экземпляров или <code>0</code> если количество не ограничено.
+     */
+    public synchronized void setDefaultReportConcurrency(final int limit) {
+        defaultReportLimit = Math.max(limit, 0);
+        dispatch();
+    }
+
+    /**
+     * Устанавливает максимальное количество одновременно строящихся экземпляров указанного отчета.
+     *
+     * @param reportId идентификатор отчета.
+     * @param limit    максимальное количество экземпляров или <code>0</code> если следует использовать ограничение по умолчанию
+     *                 (см. {@link #setDefaultReportConcurrency(int)}).
+     */
+    public synchronized void setReportConcurrency(final String reportId, final int limit) {
+        if (limit > 0) {
+            reportLimits.put(reportId, limit);
+        } else
+            reportLimits.remove(reportId);
+        dispatch();
+    }
+
+    /**
+     * @return количество строящихся в настоящий момент отчетов.
+     */
+    public synchronized int getRunningCount() {
+        return runningCount;
+    }
+
+    /**
+     * @return количество заданий, ожидающих своей очереди.
+     */
+    public synchronized int getQueuedCount() {
+        int result = 0;
+        for (Deque<ReportJob> queue : queues.values()) {
+            result += queue.size();
+        }
+        return result;
+    }
+
+    /**
+     * @return суммарная оценка объема памяти, необходимого для построения строящихся в настоящий момент отчетов.
+     */
+    public synchronized long getMemoryInUse() {
+        return memoryInUse;
+    }
+
+    /**
+     * Ставит в очередь задание на построение отчета построителем по умолчанию (см. {@link ReportsRegistry#getDefaultProcessor()}).
+     *
+     * @param reportId идентификатор зарегистрированного в {@link ReportsRegistry} отчета.
+     * @param env      переменные окружения, используемые при построении отчета. Может быть <code>null</code>.
+     * @param out      поток в который должен быть записан сформированный отчет. Поток не закрывается по окончании записи.
+     * @param priority приоритет задания.
+     * @return задание на построение отчета.
+     */
+    public ReportJob submit(final String reportId, final Map<String, Object> env, final OutputStream out, final ReportJob.Priority priority) {
+        return submit(reportId, null, env, out, priority);
+    }
+
+    /**
+     * Ставит в очередь задание на построение отчета.
+     *
+     * @param reportId    идентификатор зарегистрированного в {@link ReportsRegistry} отчета.
+     * @param processorId идентификатор зарегистрированного в {@link ReportsRegistry} построителя отчетов
+     *                    или <code>null</code> для использования построителя по умолчанию.
+     * @param env         переменные окружения, используемые при построении отчета. Может быть <code>null</code>.
+     * @param out         поток в который должен быть записан сформированный отчет. Поток не закрывается по окончании записи.
+     * @param priority    приоритет задания.
+     * @return задание на построение отчета.
+     * @throws RejectedExecutionException если исполнитель уже остановлен.
+     */
+    public ReportJob submit(final String reportId, final String processorId, final Map<String, Object> env, final OutputStream out, final ReportJob.Priority priority) {
+        final Report report = ReportsRegistry.getReport(reportId);
+        if (report == null)
+            throw new IllegalArgumentException("Unknown report [" + reportId + "]");
+        final StreamingReportProcessor processor = processorId != null ? ReportsRegistry.getStreamingProcessor(processorId) : ReportsRegistry.getDefaultProcessor();
+        if (processor == null)
+            throw new IllegalArgumentException("Unknown report processor [" + processorId + "]");
+        if (out == null || priority == null)
+            throw new IllegalArgumentException("Output stream and priority must be specified");
+
+        final ELContext ctx = new ELContext(null, env);
+        synchronized (this) {
+            if (shutdown)
+                throw new RejectedExecutionException("Report job executor is already shut down");
+            final ReportJob job = new ReportJob(this, report, processor, ctx, out, priority, estimateMemoryCost(report, processor));
+            queues.get(priority).addLast(job);
+            dispatch();
+            return job;
+        }
+    }
+
+    /**
+     * Прекращает прием новых заданий и отменяет все ожидающие своей очереди задания. Уже строящиеся отчеты продолжают строиться.
+     */
+    public void shutdown() {
+        final List<ReportJob> pending = new ArrayList<>();
+        synchronized (this) {
+            shutdown = true;
+            for (Deque<ReportJob> queue : queues.values()) {
+                pending.addAll(queue);
+            }
+        }
+        for (ReportJob job : pending) {
+            job.cancel(false);
+        }
+    }
+
+    @Override
+    public void close() {
+        shutdown();
+    }
+
+    /**
+     * Возвращает оценку объема памяти, необходимого для построения отчета. Для построителей, не создающих рабочих книг
+     * (выгрузка отчета в текстовых форматах), используется оценка для формата {@link Report.TargetType#SXSSF}, для остальных построителей - оценка для целевого формата отчета.
+     *
+     * @param report    модель отчета.
+     * @param processor построитель отчета.
+     * @return оценка объема памяти в байтах.
+     */
+    protected synchronized long estimateMemoryCost(final Report report, final StreamingReportProcessor processor) {
+        if (!(processor instanceof ReportProcessor))
+            return memoryCosts.get(Report.TargetType.SXSSF);
+        return memoryCosts.get(report.getTarget());
+    }
+
+    synchronized void dequeue(final ReportJob job) {
+        queues.get(job.getPriority()).remove(job);
+    }
+
+    private synchronized void dispatch() {
+        for (ReportJob.Priority priority : ReportJob.Priority.values()) {
+            for (Iterator<ReportJob> it = queues.get(priority).iterator(); it.hasNext(); ) {
+                if (runningCount >= maxConcurrency)
+                    return;
+                final ReportJob job = it.next();
+                final String reportId = job.getReport().getId();
+                final Integer limit = reportLimits.get(reportId);
+                final int maxInstances = limit != null ? limit : defaultReportLimit;
+                if (maxInstances > 0 && running.getOrDefault(reportId, 0) >= maxInstances)
+                    continue;
+                if (memoryBudget > 0 && runningCount > 0 && memoryInUse + job.getMemoryCost() > memoryBudget)
+                    return;
+                it.remove();
+                runningCount++;
+                memoryInUse += job.getMemoryCost();
+                running.merge(reportId, 1, Integer::sum);
+                try {
+                    threadFactory.newThread(() -> {
+                        try {
+                            job.task.run();
+                        } finally {
+                            release(job);
+                        }
+                    }).start();
+                } catch (RuntimeException | Error e) {
+                    unregister(job);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Освобождает ресурсы исполнителя, занятые заданием, и запускает очередные задания. Вызывается по окончании построения отчета
+     * (еще до того как задание будет отмечено как выполненное), а также по окончании работы потока задания.
+     */
+    synchronized void release(final ReportJob job) {
+        if (job.released)
+            return;
+        job.released = true;
+        unregister(job);
+        if (job.getState() == ReportJob.State.FAILED)
+            log.debug("report job {} failed", job);
+        dispatch();
+    }
+
+    private void unregister(final ReportJob job) {
+        runningCount--;
+        memoryInUse -= job.getMemoryCost();
+        running.computeIfPresent(job.getReport().getId(), (k, v) -> v > 1 ? v - 1 : null);
+    }
+
+    private static ThreadFactory makePlatformThreadFactory() {
+        final AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            final Thread thread = new Thread(task, "report-job-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Получает фабрику виртуальных потоков (<code>Thread.ofVirtual().name("report-job-", 1).factory()</code>) с помощью reflection,
+     * т.к. библиотека компилируется для Java 8.
+     *
+     * @return фабрика виртуальных потоков или <code>null</code> если виртуальные потоки не поддерживаются используемой JVM.
+     */
+    private static ThreadFactory makeVirtualThreadFactory() {
+        try {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "report-job-", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (Exception e) {
+            log.debug("virtual threads are not supported: {}", e.toString());
+            return null;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -14,8 +15,11 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import org.echosoft.framework.reports.model.Report;
 import org.echosoft.framework.reports.parser.ReportExtension;
 import org.echosoft.framework.reports.parser.ReportModelParser;
+import org.echosoft.framework.reports.processor.CsvReportProcessor;
 import org.echosoft.framework.reports.processor.ExcelReportProcessor;
+import org.echosoft.framework.reports.processor.HtmlReportProcessor;
 import org.echosoft.framework.reports.processor.ReportProcessor;
+import org.echosoft.framework.reports.processor.StreamingReportProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,7 +32,7 @@ public class ReportsRegistry {
 
     private static final Logger log = LoggerFactory.getLogger(ReportsRegistry.class);
     private static final ReportProcessor defaultProcessor;
-    private static final Map<String, ReportProcessor> processors = new HashMap<>();
+    private static final Map<String, StreamingReportProcessor> processors = new HashMap<>();
     private static final Map<String, Report> reports = new HashMap<>();
     private static final List<ReportExtension> extensions = new CopyOnWriteArrayList<>();
 
@@ -36,6 +40,9 @@ public class ReportsRegistry {
         defaultProcessor = new ExcelReportProcessor();
         processors.put("excel2003", defaultProcessor);
         processors.put("excel2007", defaultProcessor);
+        processors.put("csv", new CsvReportProcessor(',', StandardCharsets.UTF_8));
+        processors.put("tsv", new CsvReportProcessor('\t', StandardCharsets.UTF_8));
+        processors.put("html", new HtmlReportProcessor(StandardCharsets.UTF_8));
     }
 
     /**
@@ -48,12 +55,26 @@ public class ReportsRegistry {
     }
 
     /**
-     * Возвращает построитель отчетов идентификатору, под которым он был зарегистрирован в данном реестре.
+     * Возвращает построитель отчетов, способный формировать отчеты в виде рабочих книг Excel, по идентификатору под которым он был
+     * зарегистрирован в данном реестре. Построители, умеющие только записывать отчеты в поток (см. {@link #getStreamingProcessor(String)}),
+     * данным методом не возвращаются.
      *
      * @param processorId идентификатор построителя отчетов.
-     * @return построитель отчетов или <code>null</code> если в реестре отсутствует зарегистрированный под таким именем построитель.
+     * @return построитель отчетов или <code>null</code> если в реестре отсутствует зарегистрированный под таким именем построитель
+     * или он не умеет формировать рабочие книги.
      */
     public static ReportProcessor getProcessor(final String processorId) {
+        final StreamingReportProcessor processor = processors.get(processorId);
+        return processor instanceof ReportProcessor ? (ReportProcessor) processor : null;
+    }
+
+    /**
+     * Возвращает построитель отчетов, записывающий отчеты в поток, по идентификатору под которым он был зарегистрирован в данном реестре.
+     *
+     * @param processorId идентификатор построителя отчетов.
+     * @return построитель отчетов или <code>null</code> если в реестре отсутствует зарегистрированный под таким именем построитель.
+     */
+    public static StreamingReportProcessor getStreamingProcessor(final String processorId) {
         return processors.get(processorId);
     }
 
@@ -63,7 +84,7 @@ public class ReportsRegistry {
      * @param processorId идентификатор построителя отчетов. Не может быть <code>null</code>.
      * @param processor   регистрируемый построитель отчетов. Не может быть <code>null</code>.
      */
-    public static void registerProcessor(final String processorId, final ReportProcessor processor) {
+    public static void registerProcessor(final String processorId, final StreamingReportProcessor processor) {
         if (processorId == null || processor == null)
             throw new IllegalArgumentException("Valid processor and processor id must be specified");
         processors.put(processorId.toLowerCase(), processor);
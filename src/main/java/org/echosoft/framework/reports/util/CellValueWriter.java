@@ -0,0 +1,22 @@
+package org.echosoft.framework.reports.util;
+
+import org.apache.poi.ss.usermodel.Cell;
+
+/**
+ * Записывает в ячейку Excel значение определенного типа.
+ * Реализации данного интерфейса регистрируются в {@link CellValueWriters} и должны быть потокобезопасными.
+ *
+ * @author Anton Sharapov
+ */
+@FunctionalInterface
+public interface CellValueWriter<T> {
+
+    /**
+     * Устанавливает значение ячейки.
+     *
+     * @param cell  ячейка в которую надо установить значение.
+     * @param value значение, не может быть <code>null</code>.
+     */
+    void write(Cell cell, T value);
+
+}
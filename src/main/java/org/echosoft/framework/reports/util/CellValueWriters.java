@@ -0,0 +1,133 @@
+package org.echosoft.framework.reports.util;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.RichTextString;
+
+/**
+ * Реестр обработчиков, отвечающих за запись в ячейки Excel значений определенных типов (дат, чисел, логических значений и т.д.).
+ * Значения, для типов которых обработчик не зарегистрирован, записываются в ячейку в виде строки (см. {@link Object#toString()}).
+ * <p>Обработчик для конкретного класса значений определяется однократно: сначала ищется обработчик, зарегистрированный
+ * для самого класса или ближайшего из его родительских классов, а затем - для реализуемых им интерфейсов.</p>
+ * <p>Значения типов из пакета <code>java.time</code> записываются в ячейки в виде дат Excel (числа), как и {@link Date}.
+ * Для {@link Instant} используется часовой пояс по умолчанию, для {@link OffsetDateTime} и {@link ZonedDateTime} -
+ * местные дата и время в их собственном часовом поясе.</p>
+ *
+ * @author Anton Sharapov
+ */
+public final class CellValueWriters {
+
+    private static final double NANOS_PER_DAY = 86400L * 1000000000L;
+
+    /**
+     * Используется в кэше как признак того что для класса нет подходящего обработчика.
+     */
+    private static final CellValueWriter<Object> NONE = (cell, value) -> {
+        throw new UnsupportedOperationException();
+    };
+
+    private static volatile Map<Class<?>, CellValueWriter<?>> writers = Collections.emptyMap();
+    private static final ConcurrentHashMap<Class<?>, CellValueWriter<Object>> resolved = new ConcurrentHashMap<>();
+    static {
+        CellValueWriters.register(Date.class, Cell::setCellValue);
+        CellValueWriters.register(Calendar.class, Cell::setCellValue);
+        CellValueWriters.register(Double.class, Cell::setCellValue);
+        CellValueWriters.register(Number.class, (cell, value) -> cell.setCellValue(value.doubleValue()));
+        CellValueWriters.register(Boolean.class, Cell::setCellValue);
+        CellValueWriters.register(RichTextString.class, Cell::setCellValue);
+        CellValueWriters.register(LocalDate.class, Cell::setCellValue);
+        CellValueWriters.register(LocalDateTime.class, Cell::setCellValue);
+        CellValueWriters.register(LocalTime.class, (cell, value) -> cell.setCellValue(value.toNanoOfDay() / NANOS_PER_DAY));
+        CellValueWriters.register(OffsetDateTime.class, (cell, value) -> cell.setCellValue(value.toLocalDateTime()));
+        CellValueWriters.register(ZonedDateTime.class, (cell, value) -> cell.setCellValue(value.toLocalDateTime()));
+        CellValueWriters.register(Instant.class, (cell, value) -> cell.setCellValue(LocalDateTime.ofInstant(value, ZoneId.systemDefault())));
+    }
+
+    private CellValueWriters() {
+    }
+
+    /**
+     * Регистрирует обработчик для значений указанного класса (а также его наследников или реализаций, если для них нет собственного обработчика).
+     * Ранее зарегистрированный для этого класса обработчик заменяется новым.
+     * <p>Регистрация обработчиков для строк отключает обработку формул и вызовов макрофункций в ячейках отчета,
+     * поэтому для строк обработчики регистрировать не рекомендуется.</p>
+     *
+     * @param cls    класс значений. Не может быть <code>null</code>.
+     * @param writer обработчик значений. Не может быть <code>null</code>.
+     */
+    public static synchronized <T> void register(final Class<T> cls, final CellValueWriter<? super T> writer) {
+        if (cls == null || writer == null)
+            throw new IllegalArgumentException("All arguments must be specified");
+        final HashMap<Class<?>, CellValueWriter<?>> map = new HashMap<>(writers);
+        map.put(cls, writer);
+        writers = map;
+        resolved.clear();
+    }
+
+    /**
+     * Возвращает обработчик для значений указанного класса.
+     *
+     * @param cls класс значения.
+     * @return соответствующий обработчик или <code>null</code> если значения данного класса должны записываться в ячейку в виде строки.
+     */
+    public static CellValueWriter<Object> getWriter(final Class<?> cls) {
+        CellValueWriter<Object> result = resolved.get(cls);
+        if (result == null) {
+            result = resolve(cls);
+            resolved.put(cls, result);
+        }
+        return result != NONE ? result : null;
+    }
+
+    /**
+     * Устанавливает значение ячейки с помощью зарегистрированного для класса значения обработчика.
+     *
+     * @param cell  ячейка в которую надо установить значение.
+     * @param value значение, не может быть <code>null</code>.
+     * @return <code>true</code> если значение было записано в ячейку, <code>false</code> если для класса значения нет обработчика.
+     */
+    public static boolean write(final Cell cell, final Object value) {
+        final CellValueWriter<Object> writer = getWriter(value.getClass());
+        if (writer == null)
+            return false;
+        writer.write(cell, value);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CellValueWriter<Object> resolve(final Class<?> cls) {
+        final Map<Class<?>, CellValueWriter<?>> writers = CellValueWriters.writers;
+        for (Class<?> c = cls; c != null; c = c.getSuperclass()) {
+            final CellValueWriter<?> writer = writers.get(c);
+            if (writer != null)
+                return (CellValueWriter<Object>) writer;
+        }
+        final Deque<Class<?>> queue = new ArrayDeque<>();
+        for (Class<?> c = cls; c != null; c = c.getSuperclass()) {
+            Collections.addAll(queue, c.getInterfaces());
+        }
+        while (!queue.isEmpty()) {
+            final Class<?> c = queue.poll();
+            final CellValueWriter<?> writer = writers.get(c);
+            if (writer != null)
+                return (CellValueWriter<Object>) writer;
+            Collections.addAll(queue, c.getInterfaces());
+        }
+        return NONE;
+    }
+}
@@ -1,15 +1,19 @@
 package org.echosoft.framework.reports.util;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -39,7 +43,7 @@ import org.echosoft.framework.reports.common.utils.StringUtil;
 public final class ConvertExcelToHTML {
 
     private static final ConvertExcelToHTML instance = new ConvertExcelToHTML();
-    private static final Locale LOCALE = new Locale("ru", "RU");
+    static final Locale LOCALE = new Locale("ru", "RU");
 
     public static ConvertExcelToHTML getInstance() {
         return instance;
@@ -81,205 +85,220 @@ public final class ConvertExcelToHTML {
      * @return HTML representation of workbook
      */
     public String process(final Workbook workbook, final Charset charset) {
-        //get first  sheet
-        final Sheet sheet = workbook.getSheetAt(0);
         final StringBuilder sb = new StringBuilder(1024);
+        try {
+            process(workbook, charset, sb, 0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);   // StringBuilder never throws IOException
+        }
+        return sb.toString();
+    }
 
-        //load merged cells
-        final List<CellRangeAddress> regions = new ArrayList<>(sheet.getNumMergedRegions());
-        for (int k = 0; k < sheet.getNumMergedRegions(); k++) {
-            regions.add(sheet.getMergedRegion(k));
+    /**
+     * Converts Excel into HTML and writes it into the given stream.
+     * The stream is flushed but not closed when conversion completes.
+     *
+     * @param workbook Excel workbook
+     * @param charset  HTML document charset. If <code>null</code> then UTF-8 will be used.
+     * @param out      target stream
+     * @param sheets   indexes of the sheets which should be converted. If omitted then all visible sheets will be converted.
+     * @throws IOException in case of any I/O errors
+     */
+    public void process(final Workbook workbook, final Charset charset, final OutputStream out, final int... sheets) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(out, charset != null ? charset : StandardCharsets.UTF_8), 65536);
+        process(workbook, charset != null ? charset : StandardCharsets.UTF_8, writer, sheets);
+        writer.flush();
+    }
+
+    /**
+     * Converts Excel into HTML. Content is appended to the target incrementally, row by row,
+     * so conversion of large workbooks does not require to keep the whole HTML document in memory.
+     * Source workbook is not modified.
+     *
+     * @param workbook Excel workbook
+     * @param charset  HTML document charset (optional)
+     * @param out      target for HTML content
+     * @param sheets   indexes of the sheets which should be converted. If omitted then all visible sheets will be converted.
+     * @throws IOException in case of any I/O errors
+     */
+    public void process(final Workbook workbook, final Charset charset, final Appendable out, int... sheets) throws IOException {
+        if (sheets == null || sheets.length == 0) {
+            final List<Integer> visible = new ArrayList<>(workbook.getNumberOfSheets());
+            for (int i = 0, cnt = workbook.getNumberOfSheets(); i < cnt; i++) {
+                if (!workbook.isSheetHidden(i) && !workbook.isSheetVeryHidden(i))
+                    visible.add(i);
+            }
+            sheets = new int[visible.size()];
+            for (int i = 0; i < sheets.length; i++) {
+                sheets[i] = visible.get(i);
+            }
         }
 
-        sb.append("<html>\n");
-        sb.append("<head>\n");
+        out.append("<html>\n");
+        out.append("<head>\n");
         if (charset != null) {
-            sb.append(" <meta http-equiv=\"Content-Type\" content=\"text/html; charset=").append(charset.name()).append("\">\n");
+            out.append(" <meta http-equiv=\"Content-Type\" content=\"text/html; charset=").append(charset.name()).append("\">\n");
         } else {
-            sb.append(" <meta http-equiv=\"Content-Type\" content=\"text/html\">\n");
+            out.append(" <meta http-equiv=\"Content-Type\" content=\"text/html\">\n");
+        }
+        final Map<Integer,String> styles = styleGenerator(out, workbook);
+        out.append("</head>\n");
+        out.append("<body>\n");
+        final Formats formats = new Formats(workbook.createDataFormat());
+        for (int sheet : sheets) {
+            processSheet(workbook.getSheetAt(sheet), styles, formats, out);
+        }
+        out.append("</body>\n");
+        out.append("</html>\n");
+    }
+
+    private void processSheet(final Sheet sheet, final Map<Integer,String> styles, final Formats formats, final Appendable out) throws IOException {
+        final MergedRegions regions = new MergedRegions(sheet);
+        out.append("<table  border=\"0\">\n");
+
+        // before <tr> write special tag <col>. Количество колонок определяется по всем строкам листа и объединенным регионам ...
+        final int columns = getColumnsCount(sheet);
+        for (int j = 0; j < columns; j++) {
+            out.append(" <col style=\"width:");
+            out.append(Integer.toString(getHTMLWidth(j, sheet)));
+            out.append("px;\"/>\n");
         }
-        final Map<Integer,String> styles = styleGenerator(sb, workbook);
-        sb.append("</head>\n");
-        sb.append("<body>\n");
-        sb.append("<table  border=\"0\">\n");
 
         final int lastRowNum = sheet.getLastRowNum();
         for (int i = 0; i <= lastRowNum; i++) {
-            Row row = sheet.getRow(i);
+            final Row row = sheet.getRow(i);
             if (row == null) {
-                row = sheet.createRow(i);
-            }
-            final int lastColNum = row.getPhysicalNumberOfCells();
-
-            // before <tr> write special tag <col>
-            if (i == 0) {
-                for (short j = 0; j < lastColNum; j++) {
-                    sb.append(" <col style=\"width:");
-                    sb.append(getHTMLWidth(j, sheet));
-                    sb.append("px;\"/>\n");
+                // отсутствующая на листе строка выводится как строка пустых ячеек (за исключением ячеек, занятых объединенными регионами) ...
+                out.append("<tr>\n");
+                for (int j = 0; j < columns; j++) {
+                    final String msg = regions.getMergedString(j, i);
+                    if (msg != null) {
+                        out.append(" <td").append(msg).append(">&nbsp;</td>\n");
+                    }
                 }
+                out.append("</tr>\n");
+                continue;
             }
+            final int lastColNum = row.getPhysicalNumberOfCells();
 
             // skip hidden rows
             if (row.getZeroHeight() || row.getHeight() == 0) {
                 continue;
             }
 
-            sb.append("<tr>\n");
+            out.append("<tr>\n");
             for (int j = 0; j < lastColNum; j++) {
                 final Cell cell = row.getCell(j);
                 if (cell == null) {
-                    sb.append("<td></td>\n");
+                    out.append("<td></td>\n");
                     continue;
                 }
-                final String msg = getMergedString(sheet, cell, i, regions);
-                if ("_FALSE_".equals(msg)) {  //skip cells which belonged to merged regions
+                final String msg = regions.getMergedString(cell.getColumnIndex(), i);
+                if (msg == null) {  //skip cells which belonged to merged regions
                     continue;
                 }
 
-                sb.append(" <td");
-                sb.append(" class=\"");
-                sb.append(styles.get((int)cell.getCellStyle().getIndex()));
-                sb.append("\"");
+                out.append(" <td");
+                out.append(" class=\"");
+                out.append(styles.get((int)cell.getCellStyle().getIndex()));
+                out.append("\"");
                 if ("".equals(msg)) {
-                    sb.append(" style=\"min-width:");
-                    sb.append(getHTMLWidth(j, sheet));
-                    sb.append("px;\"");
+                    out.append(" style=\"min-width:");
+                    out.append(Integer.toString(getHTMLWidth(j, sheet)));
+                    out.append("px;\"");
                 }
-                sb.append(msg);
-                sb.append(">");
+                out.append(msg);
+                out.append(">");
 
-                final DataFormat dataFormat = workbook.createDataFormat();
-                final String format = dataFormat.getFormat(cell.getCellStyle().getDataFormat());
+                final short formatIndex = cell.getCellStyle().getDataFormat();
                 final boolean isWrap = cell.getCellStyle().getWrapText();
                 switch (cell.getCellType()) {
                     case NUMERIC:
                         if (DateUtil.isCellDateFormatted(cell)) {
-                            sb.append(mask(getFormattedDate(format, cell.getDateCellValue()), isWrap));
+                            mask(out, formats.getDateFormat(formatIndex).format(cell.getDateCellValue()), isWrap);
                         } else {
-                            sb.append(mask(getFormattedNumber(format, cell.getNumericCellValue()), isWrap));
+                            mask(out, formats.getNumberFormat(formatIndex).format(cell.getNumericCellValue()), isWrap);
                         }
                         break;
                     case STRING:
-                        sb.append(mask(cell.getRichStringCellValue().getString(), isWrap));
+                        mask(out, cell.getRichStringCellValue().getString(), isWrap);
                         break;
                     case FORMULA:
-                        sb.append(mask(getFormattedNumber(format, cell.getNumericCellValue()), isWrap));
+                        mask(out, formats.getNumberFormat(formatIndex).format(cell.getNumericCellValue()), isWrap);
                         break;
                     case BLANK:
-                        sb.append("&nbsp;");
+                        out.append("&nbsp;");
                         break;
                 }
-                sb.append("</td>\n");
+                out.append("</td>\n");
             }
-            sb.append("</tr>\n");
+            out.append("</tr>\n");
         }
-        sb.append("</table>\n");
-        sb.append("</body>\n");
-        sb.append("</html>\n");
-        return sb.toString();
+        out.append("</table>\n");
     }
 
 
-    private String getFormattedNumber(final String format, final double num) {
-        final DecimalFormat df = (DecimalFormat) DecimalFormat.getInstance(LOCALE);
-        df.applyPattern(FormatConstants.getJavaFormatString(FormatConstants.NUMBER, format));
-        return df.format(num);
-    }
-
-    private String getFormattedDate(final String format, final Date date) {
-        final DateFormat df = new SimpleDateFormat(FormatConstants.getJavaFormatString(FormatConstants.DATE, format), LOCALE);
-        return df.format(date);
-    }
-
-    private String getMergedString(final Sheet sheet, final Cell cell, final int rowNum, final List<CellRangeAddress> regions) {
-        final StringBuilder sb = new StringBuilder();
-        int colNum = cell.getColumnIndex();
-        for (CellRangeAddress region : regions) {
-            final int startCol = region.getFirstColumn();
-            final int finishCol = region.getLastColumn();
-            final int startRow = region.getFirstRow();
-            final int finishRow = region.getLastRow();
-
-            if (colNum == startCol && rowNum == startRow) {
-                final int colspan = finishCol - startCol;
-                final int rowspan = finishRow - startRow;
-                //right and bottom border for colspan cells
-                final Cell cellRight = sheet.getRow(startRow).getCell(finishCol);
-                final Cell cellBottom = sheet.getRow(finishRow).getCell(startCol);
-                sb.append(" style=\"");
-                addBorder(sb, "border-right:", cellRight.getCellStyle().getBorderRight(), cellRight.getCellStyle().getRightBorderColor());
-                addBorder(sb, "border-bottom:", cellBottom.getCellStyle().getBorderBottom(), cellBottom.getCellStyle().getBottomBorderColor());
-                sb.append("\"");
-                sb.append(" width=\"*\"");
-                if (colspan == 0 && rowspan != 0) {
-                    sb.append(" rowspan=\"").append(rowspan + 1).append("\"");
-                    return sb.toString();
-                } else
-                if (colspan != 0 && rowspan == 0) {
-                    sb.append(" colspan=\"").append(colspan + 1).append("\"");
-                    return sb.toString();
-                } else
-                if (colspan != 0) {
-                    sb.append(" colspan=\"").append(colspan + 1).append("\" rowspan=\"").append(rowspan + 1).append("\"");
-                    return sb.toString();
-                } else {
-                    return "";
-                }
-            } else
-            if (colNum >= startCol && colNum <= finishCol && rowNum >= startRow && rowNum <= finishRow) {
-                return "_FALSE_";
-            }
-        }
-        return "";
-    }
-
-    private Map<Integer,String> styleGenerator(final StringBuilder sb, final Workbook book) {
+    private Map<Integer,String> styleGenerator(final Appendable out, final Workbook book) throws IOException {
         final Map<Integer,String> styles = new HashMap<>(book.getNumCellStyles());
-        sb.append(" <style type=\"text/css\">\n");
-        sb.append(" table {\n");
-        sb.append("   empty-cell: show;\n");
-        sb.append("   border-collapse:collapse;\n");
-        sb.append(" }\n");
+        final StringBuilder sb = new StringBuilder(256);
+        out.append(" <style type=\"text/css\">\n");
+        out.append(" table {\n");
+        out.append("   empty-cell: show;\n");
+        out.append("   border-collapse:collapse;\n");
+        out.append(" }\n");
         for (short i = 0; i < book.getNumCellStyles(); i++) {
             final CellStyle style = book.getCellStyleAt(i);
-            sb.append(" .class_").append(i).append(" {\n");
-            //border
-            addBorder(sb, "  border-top:", style.getBorderTop(), style.getTopBorderColor());
-            sb.append(";\n");
-            addBorder(sb, "  border-left:", style.getBorderLeft(), style.getLeftBorderColor());
-            sb.append(";\n");
-            addBorder(sb, "  border-right:", style.getBorderRight(), style.getRightBorderColor());
-            sb.append(";\n");
-            addBorder(sb, "  border-bottom:", style.getBorderBottom(), style.getBottomBorderColor());
-            sb.append(";\n");
-            //alignment
-            addHorizontalAlignment(sb, style.getAlignment());
-            addVerticalAlignment(sb, style.getVerticalAlignment());
-            //bg color
-            sb.append("  background-color:").
-                    append(getHEXColor(style.getFillForegroundColor(), "white")).
-                    append(";\n");
-            //font
-            final Font font = book.getFontAt(style.getFontIndex());
-            sb.append("  font-size:").append(font.getFontHeightInPoints()).append(".0pt;\n");
-            sb.append("  font-family:").append(font.getFontName()).append(", sans-serif;\n");
-
-            sb.append("  font-weight:").append(font.getBold() ? "bold": "normal").append(";\n");
-            sb.append("  color:").append(getHEXColor(font.getColor())).append(";\n");
-            //wrap
-            sb.append("  white-spacing:").append(style.getWrapText() ? "normal;" : "nowrap;\n");
-            //indent
-            sb.append("  padding-left:").append(style.getIndention() * 12).append("px;\n");
-            sb.append(" }\n");
+            sb.setLength(0);
+            appendStyle(sb, i, style, book.getFontAt(style.getFontIndex()));
+            out.append(sb);
             styles.put((int)style.getIndex(), "class_"+i);
         }
-        sb.append(" </style>\n");
+        out.append(" </style>\n");
         return styles;
     }
 
 
-    private void addBorder(final StringBuilder sb, final String cssKey, final BorderStyle thickness, short color) {
+    /**
+     * Формирует описание CSS класса <code>class_&lt;index&gt;</code> для указанного стиля ячеек.
+     *
+     * @param sb     буфер в который выводится описание стиля.
+     * @param index  порядковый номер стиля в документе.
+     * @param style  стиль ячеек.
+     * @param font   шрифт, используемый в данном стиле.
+     */
+    static void appendStyle(final StringBuilder sb, final int index, final CellStyle style, final Font font) {
+        sb.append(" .class_").append(index).append(" {\n");
+        //border
+        addBorder(sb, "  border-top:", style.getBorderTop(), style.getTopBorderColor());
+        sb.append(";\n");
+        addBorder(sb, "  border-left:", style.getBorderLeft(), style.getLeftBorderColor());
+        sb.append(";\n");
+        addBorder(sb, "  border-right:", style.getBorderRight(), style.getRightBorderColor());
+        sb.append(";\n");
+        addBorder(sb, "  border-bottom:", style.getBorderBottom(), style.getBottomBorderColor());
+        sb.append(";\n");
+        //alignment
+        addHorizontalAlignment(sb, style.getAlignment());
+        addVerticalAlignment(sb, style.getVerticalAlignment());
+        //bg color
+        sb.append("  background-color:").
+                append(getHEXColor(style.getFillForegroundColor(), "white")).
+                append(";\n");
+        //font
+        sb.append("  font-size:").append(font.getFontHeightInPoints()).append(".0pt;\n");
+        sb.append("  font-family:").append(font.getFontName()).append(", sans-serif;\n");
+
+        sb.append("  font-weight:").append(font.getBold() ? "bold": "normal").append(";\n");
+        sb.append("  color:").append(getHEXColor(font.getColor())).append(";\n");
+        //wrap
+        sb.append("  white-spacing:").append(style.getWrapText() ? "normal;" : "nowrap;\n");
+        //indent
+        sb.append("  padding-left:").append(style.getIndention() * 12).append("px;\n");
+        sb.append(" }\n");
+    }
+
+
+    private static void addBorder(final StringBuilder sb, final String cssKey, final BorderStyle thickness, short color) {
         sb.append(cssKey);
         switch (thickness) {
             case NONE:
@@ -312,6 +331,23 @@ public final class ConvertExcelToHTML {
     }
 
 
+    /**
+     * Returns the number of table columns: the widest row of the sheet or merged region, whichever is wider.
+     *
+     * @param sheet current Excel sheet
+     * @return number of columns
+     */
+    private static int getColumnsCount(final Sheet sheet) {
+        int result = 0;
+        for (Row row : sheet) {
+            result = Math.max(result, row.getLastCellNum());
+        }
+        for (CellRangeAddress region : sheet.getMergedRegions()) {
+            result = Math.max(result, region.getLastColumn() + 1);
+        }
+        return result;
+    }
+
     /**
      * Returns cell width. Used in tag width in HTML format
      *
@@ -320,11 +356,21 @@ public final class ConvertExcelToHTML {
      * @return cell width
      */
     private int getHTMLWidth(int colNum, Sheet sheet) {
-        int calcWidth = 0;
         int width = sheet.getColumnWidth(colNum);
         if (width != sheet.getDefaultColumnWidth()) {
             width /= 256;
         }
+        return getHTMLWidth(width);
+    }
+
+    /**
+     * Returns cell width in pixels. Used in tag width in HTML format
+     *
+     * @param width column width in characters
+     * @return cell width
+     */
+    static int getHTMLWidth(final int width) {
+        int calcWidth = 0;
         switch (width) {
             case 0:
                 break;
@@ -367,7 +413,7 @@ public final class ConvertExcelToHTML {
      * @param sb        result StringBuffer
      * @param alignment This is POI horizontal alignment presentation
      */
-    private void addHorizontalAlignment(final StringBuilder sb, final HorizontalAlignment alignment) {
+    private static void addHorizontalAlignment(final StringBuilder sb, final HorizontalAlignment alignment) {
         sb.append("  text-align:");
         switch (alignment) {
             case CENTER:
@@ -400,7 +446,7 @@ public final class ConvertExcelToHTML {
      * @param sb        result StringBuffer
      * @param alignment This is POI vertical alignment presentation
      */
-    private void addVerticalAlignment(final StringBuilder sb, final VerticalAlignment alignment) {
+    private static void addVerticalAlignment(final StringBuilder sb, final VerticalAlignment alignment) {
         sb.append("  vertical-align:");
         switch (alignment) {
             case TOP:
@@ -422,35 +468,31 @@ public final class ConvertExcelToHTML {
 
     /**
      * Маскирует символы которые не допустимы в документах XML.
+     * @param out  куда выводится маскированное значение.
      * @param value  текстовое значение.
      * @param wrap  допускается ли перевод строк.
-     * @return маскированное значение.
+     * @throws IOException  в случае ошибок ввода-вывода.
      */
-    private static String mask(String value, boolean wrap) {
+    static void mask(final Appendable out, final String value, final boolean wrap) throws IOException {
         if (value == null) {
-            return ""; // to hide "null" string
+            return; // to hide "null" string
         }
-        final char[] content = new char[value.length()];
-        value.getChars(0, value.length(), content, 0);
-        final StringBuilder result = new StringBuilder(content.length + 50);
-        for (char c : content) {
+        for (int i = 0, len = value.length(); i < len; i++) {
+            final char c = value.charAt(i);
             switch (c) {
-                case '\n': result.append("\n"); break;
-                case '\r': result.append("\r"); break;
-                case '<': result.append("&lt;"); break;
-                case '>': result.append("&gt;"); break;
-                case '&': result.append("&amp;"); break;
-                case '"': result.append("&quot;"); break;
-//                case '©': result.append("&copy;"); break;
+                case '<': out.append("&lt;"); break;
+                case '>': out.append("&gt;"); break;
+                case '&': out.append("&amp;"); break;
+                case '"': out.append("&quot;"); break;
+//                case '©': out.append("&copy;"); break;
                 case ' ':
                     if (!wrap) {
-                        result.append("&nbsp;");
+                        out.append("&nbsp;");
                         break;
                     }
-                default: result.append(c);
+                default: out.append(c);
             }
         }
-        return (result.toString());
     }
 
 
@@ -481,4 +523,109 @@ public final class ConvertExcelToHTML {
                 + StringUtil.leadLeft(Integer.toHexString(cl.getTriplet()[2]), '0', 2));
     }
 
+
+    /**
+     * Форматы отображения чисел и дат, используемые при преобразовании одного документа.
+     * Для каждого формата данных документа соответствующий ему формат Java создается однократно.
+     */
+    private static final class Formats {
+        private final DataFormat dataFormat;
+        private final Map<Short, DecimalFormat> numberFormats;
+        private final Map<Short, DateFormat> dateFormats;
+
+        private Formats(final DataFormat dataFormat) {
+            this.dataFormat = dataFormat;
+            this.numberFormats = new HashMap<>();
+            this.dateFormats = new HashMap<>();
+        }
+
+        private DecimalFormat getNumberFormat(final short formatIndex) {
+            DecimalFormat result = numberFormats.get(formatIndex);
+            if (result == null) {
+                result = (DecimalFormat) DecimalFormat.getInstance(LOCALE);
+                result.applyPattern(FormatConstants.getJavaFormatString(FormatConstants.NUMBER, dataFormat.getFormat(formatIndex)));
+                numberFormats.put(formatIndex, result);
+            }
+            return result;
+        }
+
+        private DateFormat getDateFormat(final short formatIndex) {
+            DateFormat result = dateFormats.get(formatIndex);
+            if (result == null) {
+                result = new SimpleDateFormat(FormatConstants.getJavaFormatString(FormatConstants.DATE, dataFormat.getFormat(formatIndex)), LOCALE);
+                dateFormats.put(formatIndex, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Индекс объединенных ячеек листа: для каждой строки листа хранится список пересекающих ее регионов
+     * (в том же порядке, в котором регионы перечислены на листе).
+     */
+    private static final class MergedRegions {
+        private final Sheet sheet;
+        private final Map<Integer, List<CellRangeAddress>> rows;
+
+        private MergedRegions(final Sheet sheet) {
+            this.sheet = sheet;
+            this.rows = new HashMap<>();
+            for (CellRangeAddress region : sheet.getMergedRegions()) {
+                for (int row = region.getFirstRow(); row <= region.getLastRow(); row++) {
+                    rows.computeIfAbsent(row, k -> new ArrayList<>(2)).add(region);
+                }
+            }
+        }
+
+        /**
+         * @return дополнительные атрибуты ячейки, пустая строка для обычных ячеек или <code>null</code> если ячейка входит в состав региона, но не является его первой ячейкой.
+         */
+        private String getMergedString(final int colNum, final int rowNum) {
+            final List<CellRangeAddress> regions = rows.get(rowNum);
+            if (regions == null)
+                return "";
+            for (CellRangeAddress region : regions) {
+                final int startCol = region.getFirstColumn();
+                final int finishCol = region.getLastColumn();
+                final int startRow = region.getFirstRow();
+                final int finishRow = region.getLastRow();
+
+                if (colNum == startCol && rowNum == startRow) {
+                    final int colspan = finishCol - startCol;
+                    final int rowspan = finishRow - startRow;
+                    //right and bottom border for colspan cells
+                    final Row rowRight = sheet.getRow(startRow);
+                    final Row rowBottom = sheet.getRow(finishRow);
+                    final Cell cellRight = rowRight != null ? rowRight.getCell(finishCol) : null;
+                    final Cell cellBottom = rowBottom != null ? rowBottom.getCell(startCol) : null;
+                    final StringBuilder sb = new StringBuilder(64);
+                    sb.append(" style=\"");
+                    if (cellRight != null)
+                        addBorder(sb, "border-right:", cellRight.getCellStyle().getBorderRight(), cellRight.getCellStyle().getRightBorderColor());
+                    if (cellBottom != null)
+                        addBorder(sb, "border-bottom:", cellBottom.getCellStyle().getBorderBottom(), cellBottom.getCellStyle().getBottomBorderColor());
+                    sb.append("\"");
+                    sb.append(" width=\"*\"");
+                    if (colspan == 0 && rowspan != 0) {
+                        sb.append(" rowspan=\"").append(rowspan + 1).append("\"");
+                        return sb.toString();
+                    } else
+                    if (colspan != 0 && rowspan == 0) {
+                        sb.append(" colspan=\"").append(colspan + 1).append("\"");
+                        return sb.toString();
+                    } else
+                    if (colspan != 0) {
+                        sb.append(" colspan=\"").append(colspan + 1).append("\" rowspan=\"").append(rowspan + 1).append("\"");
+                        return sb.toString();
+                    } else {
+                        return "";
+                    }
+                } else
+                if (colNum >= startCol && colNum <= finishCol) {
+                    return null;
+                }
+            }
+            return "";
+        }
+    }
 }
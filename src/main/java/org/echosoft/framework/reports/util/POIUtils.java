@@ -1,7 +1,5 @@
 package org.echosoft.framework.reports.util;
 
-import java.util.Calendar;
-import java.util.Date;
 import java.util.List;
 
 import org.apache.poi.hssf.usermodel.HSSFCellStyle;
@@ -12,9 +10,7 @@ import org.apache.poi.hssf.util.HSSFColor;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.CellType;
-import org.apache.poi.ss.usermodel.CreationHelper;
 import org.apache.poi.ss.usermodel.DateUtil;
-import org.apache.poi.ss.usermodel.FillPatternType;
 import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.IndexedColors;
 import org.apache.poi.ss.usermodel.Name;
@@ -36,7 +32,6 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.echosoft.framework.reports.model.ColorModel;
 import org.echosoft.framework.reports.model.FontModel;
 import org.echosoft.framework.reports.model.NamedRegion;
-import org.echosoft.framework.reports.model.el.ELContext;
 import org.echosoft.framework.reports.processor.ExecutionContext;
 import org.echosoft.framework.reports.processor.Group;
 import org.echosoft.framework.reports.processor.GroupManager;
@@ -91,24 +86,7 @@ public class POIUtils {
         if (value == null) {
             cell.setBlank();
         } else
-        if (value instanceof Date) {
-            cell.setCellValue((Date) value);
-        } else
-        if (value instanceof Calendar) {
-            cell.setCellValue((Calendar) value);
-        } else
-        if (value instanceof Double) {
-            cell.setCellValue((Double) value);
-        } else
-        if (value instanceof Number) {
-            cell.setCellValue(((Number) value).doubleValue());
-        } else
-        if (value instanceof Boolean) {
-            cell.setCellValue((Boolean) value);
-        } else
-        if (value instanceof RichTextString) {
-            cell.setCellValue((RichTextString) value);
-        } else {
+        if (!CellValueWriters.write(cell, value)) {
             final String text = value.toString();
             if (cell.getCellType() == CellType.FORMULA) {
                 cell.setCellFormula(text);
@@ -116,8 +94,7 @@ public class POIUtils {
             if (text.startsWith(FORMULA)) {
                 cell.setCellFormula(text.substring(FORMULA_LENGTH));
             } else {
-                final CreationHelper helper = cell.getSheet().getWorkbook().getCreationHelper();
-                cell.setCellValue(helper.createRichTextString(text));
+                cell.setCellValue(text);
             }
         }
     }
@@ -578,9 +555,9 @@ public class POIUtils {
 
     /**
      * Находит или создает новый стиль на основе исходного стиля примененного к текущей обрабатываемой ячейке в котором были изменены цвета шрифта и/или фона.
-     * Информация о всех созданных данным методом стилях сохраняется в контексте выполнения в пространстве имен {@link ELContext.Scope#VAR}.
+     * Все созданные данным методом стили регистрируются в реестре производных стилей {@link ExecutionContext#styleRegistry}.
      *
-     * @param ectx    контекст выполнения. Используется для получения информации о текущей ячейке и для кэширования информации о вновь созданных в документе стилях.
+     * @param ectx    контекст выполнения. Используется для получения информации о текущей ячейке и реестра производных стилей документа.
      * @param fnColor Определяет цвет шрифта в данной ячейке. Аргумент содержит идентификатор цвета в документе или <code>-1</code> если цвет шрифта должен остаться без изменений.
      * @param bgColor Определяет цвет фона в данной ячейке. Аргумент содержит идентификатор цвета в документе или <code>-1</code> если цвет шрифта должен остаться без изменений.
      * @return копия оригинального стиля указанной ячейки с измененными цветами фона и шрифта. Этот стиль уже зарегистрирован в рабочей книге.
@@ -591,36 +568,16 @@ public class POIUtils {
 
     /**
      * Находит или создает новый стиль на основе указанного в аргументе исходного стиля в котором были изменены цвета шрифта и/или фона.
-     * Информация о всех созданных данным методом стилях сохраняется в контексте выполнения в пространстве имен {@link ELContext.Scope#VAR}.
+     * Все созданные данным методом стили регистрируются в реестре производных стилей {@link ExecutionContext#styleRegistry}.
      *
-     * @param ectx           контекст выполнения. Используется для получения информации о текущей ячейке и для кэширования информации о вновь созданных в документе стилях.
+     * @param ectx           контекст выполнения. Используется для получения реестра производных стилей документа.
      * @param cellStyleIndex исходный стиль, который должен послужить основой для создаваемого стиля.
      * @param fnColor        Определяет цвет шрифта в данной ячейке. Аргумент содержит идентификатор цвета в документе или <code>-1</code> если цвет шрифта должен остаться без изменений.
      * @param bgColor        Определяет цвет фона в данной ячейке. Аргумент содержит идентификатор цвета в документе или <code>-1</code> если цвет шрифта должен остаться без изменений.
      * @return копия оригинального стиля указанной ячейки с измененными цветами фона и шрифта. Этот стиль уже зарегистрирован в рабочей книге.
      */
     public static CellStyle getAltColorStyle(final ExecutionContext ectx, final short cellStyleIndex, final short fnColor, final short bgColor) {
-        final String styleName = "alt.color.style." + cellStyleIndex + ':' + fnColor + '/' + bgColor;
-        CellStyle dst = (CellStyle) ectx.elctx.getVariables().get(styleName);
-        if (dst == null) {
-            dst = POIUtils.copyStyle(ectx.wb, cellStyleIndex);
-            if (fnColor >= 0) {
-                final Font of = ectx.wb.getFontAt(dst.getFontIndex());
-                Font nf = ectx.wb.findFont(of.getBold(), fnColor, of.getFontHeight(),
-                        of.getFontName(), of.getItalic(), of.getStrikeout(), of.getTypeOffset(), of.getUnderline());
-                if (nf == null) {
-                    nf = POIUtils.copyFont(ectx.wb, of.getIndex());
-                    nf.setColor(fnColor);
-                }
-                dst.setFont(nf);
-            }
-            if (bgColor >= 0) {
-                dst.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-                dst.setFillForegroundColor(bgColor);
-            }
-            ectx.elctx.getVariables().put(styleName, dst);
-        }
-        return dst;
+        return ectx.styleRegistry.getAltColorStyle(cellStyleIndex, fnColor, bgColor);
     }
 
     public static void groupRows(final Sheet sheet, final int firstRow, final int lastRow, final boolean collapsed) {
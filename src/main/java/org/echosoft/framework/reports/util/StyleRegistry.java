@@ -0,0 +1,356 @@
+package org.echosoft.framework.reports.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Реестр производных стилей ячеек одного документа Excel.
+ * <p>Производный стиль описывается исходным стилем документа и набором изменяемых в нем характеристик (шрифт, заливка, границы).
+ * Для каждого уникального набора таких характеристик в документе создается не более одного стиля, повторные запросы
+ * возвращают ранее созданный стиль. Аналогичным образом реестр устраняет дублирование шрифтов, при этом поиск шрифта
+ * выполняется по хэш-таблице а не перебором всех шрифтов документа.</p>
+ * <p>Количество стилей в документе ограничено форматом документа (4000 для XLS и 64000 для XLSX). При достижении этого
+ * ограничения реестр перестает создавать новые стили и вместо них возвращает исходные стили.</p>
+ *
+ * @author Anton Sharapov
+ */
+public final class StyleRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(StyleRegistry.class);
+
+    private final Workbook wb;
+    private final int maxStyles;
+    private final Map<StyleKey, CellStyle> styles;
+    private final AltColorStyles altColorStyles;
+    private Map<FontKey, Font> fonts;
+    private int requests;
+    private int createdStyles;
+    private int createdFonts;
+    private boolean exhausted;
+
+    public StyleRegistry(final Workbook wb) {
+        if (wb == null)
+            throw new IllegalArgumentException("Workbook must be specified");
+        this.wb = wb;
+        this.maxStyles = wb.getSpreadsheetVersion().getMaxCellStyles();
+        this.styles = new HashMap<>();
+        this.altColorStyles = new AltColorStyles();
+    }
+
+    /**
+     * Находит или создает новый стиль на основе указанного исходного стиля в котором были изменены цвета шрифта и/или фона.
+     * Повторные запросы с теми же аргументами обслуживаются по таблице с примитивными ключами, без обращения к шрифтам документа.
+     *
+     * @param baseStyle исходный стиль, который должен послужить основой для создаваемого стиля.
+     * @param fnColor   идентификатор цвета шрифта в документе или <code>-1</code> если цвет шрифта должен остаться без изменений.
+     * @param bgColor   идентификатор цвета фона в документе или <code>-1</code> если цвет фона должен остаться без изменений.
+     * @return стиль с требуемыми характеристиками, зарегистрированный в рабочей книге.
+     */
+    public CellStyle getAltColorStyle(final short baseStyle, final short fnColor, final short bgColor) {
+        final long key = ((baseStyle & 0xFFFFL) << 32) | ((fnColor < 0 ? 0xFFFFL : fnColor) << 16) | (bgColor < 0 ? 0xFFFFL : bgColor);
+        CellStyle result = altColorStyles.get(key);
+        if (result != null) {
+            requests++;
+            return result;
+        }
+        int fontIndex = -1;
+        if (fnColor >= 0) {
+            final Font of = wb.getFontAt(wb.getCellStyleAt(baseStyle).getFontIndex());
+            if (of.getColor() != fnColor)
+                fontIndex = getFont(of, fnColor).getIndex();
+        }
+        result = getStyle(baseStyle, fontIndex, bgColor, null, (short) -1);
+        altColorStyles.put(key, result);
+        return result;
+    }
+
+    /**
+     * Находит или создает новый стиль на основе указанного исходного стиля в котором были изменены указанные характеристики.
+     *
+     * @param baseStyle   исходный стиль, который должен послужить основой для создаваемого стиля.
+     * @param fontIndex   индекс шрифта в документе или <code>-1</code> если шрифт должен остаться без изменений.
+     * @param fillColor   идентификатор цвета сплошной заливки ячейки или <code>-1</code> если заливка должна остаться без изменений.
+     * @param border      тип всех четырех границ ячейки или <code>null</code> если границы должны остаться без изменений.
+     * @param borderColor идентификатор цвета всех четырех границ ячейки или <code>-1</code> если цвет границ должен остаться без изменений.
+     * @return стиль с требуемыми характеристиками, зарегистрированный в рабочей книге.
+     */
+    public CellStyle getStyle(final short baseStyle, final int fontIndex, final short fillColor, final BorderStyle border, final short borderColor) {
+        requests++;
+        final StyleKey key = new StyleKey(baseStyle, fontIndex, fillColor, border, borderColor);
+        CellStyle result = styles.get(key);
+        if (result == null) {
+            if (key.isIdentity())
+                return wb.getCellStyleAt(baseStyle);
+            if (wb.getNumCellStyles() >= maxStyles) {
+                if (!exhausted) {
+                    exhausted = true;
+                    log.warn("Maximum number of cell styles (" + maxStyles + ") has been reached. Derived styles will be replaced by their base styles.");
+                }
+                return wb.getCellStyleAt(baseStyle);
+            }
+            result = POIUtils.copyStyle(wb, baseStyle);
+            if (fontIndex >= 0) {
+                result.setFont(wb.getFontAt(fontIndex));
+            }
+            if (fillColor >= 0) {
+                result.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+                result.setFillForegroundColor(fillColor);
+            }
+            if (border != null) {
+                result.setBorderTop(border);
+                result.setBorderRight(border);
+                result.setBorderBottom(border);
+                result.setBorderLeft(border);
+            }
+            if (borderColor >= 0) {
+                result.setTopBorderColor(borderColor);
+                result.setRightBorderColor(borderColor);
+                result.setBottomBorderColor(borderColor);
+                result.setLeftBorderColor(borderColor);
+            }
+            styles.put(key, result);
+            createdStyles++;
+        }
+        return result;
+    }
+
+    /**
+     * Находит или создает в документе шрифт, все характеристики которого, за исключением цвета, совпадают с характеристиками указанного шрифта.
+     *
+     * @param proto шрифт, характеристики которого должны быть скопированы.
+     * @param color идентификатор цвета требуемого шрифта в документе.
+     * @return зарегистрированный в рабочей книге шрифт с требуемыми характеристиками.
+     */
+    public Font getFont(final Font proto, final short color) {
+        final FontKey key = new FontKey(proto.getBold(), color, proto.getFontHeight(), proto.getFontName(), proto.getItalic(),
+                proto.getStrikeout(), proto.getTypeOffset(), proto.getUnderline());
+        final Map<FontKey, Font> fonts = getFonts();
+        Font result = fonts.get(key);
+        if (result == null) {
+            result = POIUtils.copyFont(wb, proto.getIndex());
+            result.setColor(color);
+            fonts.put(key, result);
+            createdFonts++;
+        }
+        return result;
+    }
+
+    /**
+     * @return общее количество стилей в документе.
+     */
+    public int getStylesCount() {
+        return wb.getNumCellStyles();
+    }
+
+    /**
+     * @return общее количество шрифтов в документе.
+     */
+    public int getFontsCount() {
+        return wb.getNumberOfFontsAsInt();
+    }
+
+    /**
+     * @return количество стилей созданных данным реестром.
+     */
+    public int getCreatedStylesCount() {
+        return createdStyles;
+    }
+
+    /**
+     * @return количество шрифтов созданных данным реестром.
+     */
+    public int getCreatedFontsCount() {
+        return createdFonts;
+    }
+
+    /**
+     * @return количество обращений к реестру за производными стилями.
+     */
+    public int getRequestsCount() {
+        return requests;
+    }
+
+    /**
+     * @return <code>true</code> если было достигнуто максимально допустимое количество стилей в документе.
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    private Map<FontKey, Font> getFonts() {
+        if (fonts == null) {
+            fonts = new HashMap<>();
+            // в XLS документах шрифт с индексом 4 отсутствует (см. HSSFWorkbook.getFontAt())
+            final boolean hssf = wb instanceof HSSFWorkbook;
+            final int count = wb.getNumberOfFontsAsInt() + (hssf ? 1 : 0);
+            for (int i = 0; i < count; i++) {
+                if (hssf && i == 4)
+                    continue;
+                final Font f = wb.getFontAt(i);
+                fonts.putIfAbsent(new FontKey(f.getBold(), f.getColor(), f.getFontHeight(), f.getFontName(), f.getItalic(),
+                        f.getStrikeout(), f.getTypeOffset(), f.getUnderline()), f);
+            }
+        }
+        return fonts;
+    }
+
+    @Override
+    public String toString() {
+        return "[StyleRegistry{styles:" + getStylesCount() + ", created:" + createdStyles + ", fonts:" + createdFonts + ", requests:" + requests + "}]";
+    }
+
+
+    private static final class StyleKey {
+        private final short baseStyle;
+        private final int fontIndex;
+        private final short fillColor;
+        private final BorderStyle border;
+        private final short borderColor;
+        private final int hash;
+
+        private StyleKey(final short baseStyle, final int fontIndex, final short fillColor, final BorderStyle border, final short borderColor) {
+            this.baseStyle = baseStyle;
+            this.fontIndex = fontIndex < 0 ? -1 : fontIndex;
+            this.fillColor = fillColor < 0 ? -1 : fillColor;
+            this.border = border;
+            this.borderColor = borderColor < 0 ? -1 : borderColor;
+            int h = baseStyle;
+            h = 31 * h + this.fontIndex;
+            h = 31 * h + this.fillColor;
+            h = 31 * h + (border != null ? border.ordinal() : -1);
+            h = 31 * h + this.borderColor;
+            this.hash = h;
+        }
+
+        private boolean isIdentity() {
+            return fontIndex < 0 && fillColor < 0 && border == null && borderColor < 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof StyleKey))
+                return false;
+            final StyleKey other = (StyleKey) obj;
+            return hash == other.hash && baseStyle == other.baseStyle && fontIndex == other.fontIndex &&
+                    fillColor == other.fillColor && border == other.border && borderColor == other.borderColor;
+        }
+    }
+
+    /**
+     * Хэш-таблица с открытой адресацией, сопоставляющая набору аргументов метода {@link #getAltColorStyle(short, short, short)},
+     * упакованному в одно число, возвращенный им стиль. Поиск в таблице не требует создания объектов.
+     */
+    private static final class AltColorStyles {
+        private long[] keys = new long[64];
+        private CellStyle[] values = new CellStyle[64];
+        private int size;
+
+        private CellStyle get(final long key) {
+            final int mask = keys.length - 1;
+            for (int i = indexOf(key, mask); values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key)
+                    return values[i];
+            }
+            return null;
+        }
+
+        private void put(final long key, final CellStyle value) {
+            if ((size + 1) * 2 > keys.length)
+                resize();
+            final int mask = keys.length - 1;
+            int i = indexOf(key, mask);
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+
+        private void resize() {
+            final long[] oldKeys = keys;
+            final CellStyle[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new CellStyle[oldValues.length * 2];
+            final int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] == null)
+                    continue;
+                int i = indexOf(oldKeys[j], mask);
+                while (values[i] != null)
+                    i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+
+        private static int indexOf(final long key, final int mask) {
+            final long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+
+    private static final class FontKey {
+        private final boolean bold;
+        private final short color;
+        private final short height;
+        private final String name;
+        private final boolean italic;
+        private final boolean strikeout;
+        private final short typeOffset;
+        private final byte underline;
+        private final int hash;
+
+        private FontKey(final boolean bold, final short color, final short height, final String name, final boolean italic,
+                        final boolean strikeout, final short typeOffset, final byte underline) {
+            this.bold = bold;
+            this.color = color;
+            this.height = height;
+            this.name = name;
+            this.italic = italic;
+            this.strikeout = strikeout;
+            this.typeOffset = typeOffset;
+            this.underline = underline;
+            int h = name != null ? name.hashCode() : 0;
+            h = 31 * h + color;
+            h = 31 * h + height;
+            h = 31 * h + typeOffset;
+            h = 31 * h + underline;
+            h = 31 * h + (bold ? 1 : 0) + (italic ? 2 : 0) + (strikeout ? 4 : 0);
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof FontKey))
+                return false;
+            final FontKey other = (FontKey) obj;
+            return hash == other.hash && bold == other.bold && color == other.color && height == other.height &&
+                    italic == other.italic && strikeout == other.strikeout && typeOffset == other.typeOffset &&
+                    underline == other.underline && (name != null ? name.equals(other.name) : other.name == null);
+        }
+    }
+}
@@ -0,0 +1,875 @@
+package org.echosoft.framework.reports.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.TempFile;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Постраничный просмотр листа документа Excel в формате HTML.
+ * <p>При открытии листа однократно строится индекс его строк, после чего любая страница (диапазон видимых строк листа)
+ * может быть преобразована в HTML за время, пропорциональное размеру страницы. Объединенные ячейки, выходящие за границы страницы,
+ * обрезаются по этим границам.</p>
+ * <p>Для документов XLSX на диске (см. {@link #open(File, int)}) документ целиком в память не загружается: содержимое листа
+ * однократно прочитывается в потоковом режиме и сохраняется во временный файл, а в памяти остаются только смещения строк
+ * листа в этом файле, разделяемые строки и стили документа. Поэтому по окончании работы с ним экземпляр данного класса
+ * должен быть закрыт (см. {@link #close()}).</p>
+ * <p>Стили ячеек оформляются так же как в {@link ConvertExcelToHTML}, в виде CSS классов <code>class_&lt;индекс стиля&gt;</code>
+ * (см. {@link #writeStyles(Appendable)}).</p>
+ * <p>Экземпляры данного класса не являются потокобезопасными.</p>
+ *
+ * @author Anton Sharapov
+ */
+public abstract class WorkbookPreview implements Closeable {
+
+    /**
+     * Открывает для просмотра лист документа, находящегося в памяти. Документ не изменяется.
+     *
+     * @param wb    документ Excel.
+     * @param sheet порядковый номер листа в документе (начиная с 0).
+     * @return постраничное представление листа.
+     */
+    public static WorkbookPreview open(final Workbook wb, final int sheet) {
+        return new WorkbookSheetPreview(wb, wb.getSheetAt(sheet));
+    }
+
+    /**
+     * Открывает для просмотра лист документа Excel, находящегося на диске. Документы в формате XLSX читаются в потоковом режиме,
+     * документы в формате XLS загружаются в память целиком.
+     *
+     * @param file  файл с документом Excel.
+     * @param sheet порядковый номер листа в документе (начиная с 0).
+     * @return постраничное представление листа. Должно быть закрыто по окончании работы с ним.
+     * @throws IOException в случае ошибок чтения документа.
+     */
+    public static WorkbookPreview open(final File file, final int sheet) throws IOException {
+        final boolean xlsx;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+            final byte[] header = new byte[2];
+            xlsx = in.read(header) == 2 && header[0] == 'P' && header[1] == 'K';
+        }
+        if (xlsx)
+            return new StreamingSheetPreview(file, sheet);
+        final Workbook wb = WorkbookFactory.create(file, null, true);
+        return new WorkbookSheetPreview(wb, wb.getSheetAt(sheet)) {
+            @Override
+            public void close() throws IOException {
+                wb.close();
+            }
+        };
+    }
+
+
+    protected final DataFormatter formatter;
+    private int[] rowNums;          // номера всех физически присутствующих на листе строк, по возрастанию
+    private int[] visible;          // индексы (в rowNums) видимых строк листа
+    private Map<Integer, List<CellRangeAddress>> regions;
+    private int[] columnWidths;     // ширина колонок в символах
+
+    protected WorkbookPreview() {
+        this.formatter = new DataFormatter(ConvertExcelToHTML.LOCALE);
+    }
+
+    /**
+     * Инициализирует индекс строк листа. Вызывается реализациями по окончании разбора листа.
+     *
+     * @param rowNums      номера всех физически присутствующих на листе строк, по возрастанию.
+     * @param hidden       индексы (в <code>rowNums</code>) скрытых строк листа.
+     * @param mergedRegions объединенные ячейки листа.
+     * @param columnWidths ширина колонок листа в символах.
+     */
+    protected void init(final int[] rowNums, final BitSet hidden, final List<CellRangeAddress> mergedRegions, final int[] columnWidths) {
+        this.rowNums = rowNums;
+        this.visible = new int[rowNums.length - hidden.cardinality()];
+        for (int i = 0, v = 0; i < rowNums.length; i++) {
+            if (!hidden.get(i))
+                visible[v++] = i;
+        }
+        this.regions = new HashMap<>();
+        for (CellRangeAddress region : mergedRegions) {
+            for (int row = region.getFirstRow(); row <= region.getLastRow(); row++) {
+                regions.computeIfAbsent(row, k -> new ArrayList<>(2)).add(region);
+            }
+        }
+        this.columnWidths = columnWidths;
+    }
+
+    /**
+     * @return количество видимых строк на листе.
+     */
+    public int getRowsCount() {
+        return visible.length;
+    }
+
+    /**
+     * @param pageSize количество строк на странице.
+     * @return количество страниц заданного размера.
+     */
+    public int getPagesCount(final int pageSize) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("Invalid page size: " + pageSize);
+        return (visible.length + pageSize - 1) / pageSize;
+    }
+
+    /**
+     * Выводит описания CSS классов для всех используемых в документе стилей ячеек.
+     *
+     * @param out куда выводится описание стилей.
+     * @throws IOException в случае ошибок ввода-вывода.
+     */
+    public void writeStyles(final Appendable out) throws IOException {
+        final StringBuilder sb = new StringBuilder(256);
+        out.append(" <style type=\"text/css\">\n");
+        out.append(" table {\n");
+        out.append("   empty-cell: show;\n");
+        out.append("   border-collapse:collapse;\n");
+        out.append(" }\n");
+        for (int i = 0, cnt = getStylesCount(); i < cnt; i++) {
+            final CellStyle style = getStyle(i);
+            sb.setLength(0);
+            ConvertExcelToHTML.appendStyle(sb, i, style, getFont(style));
+            out.append(sb);
+        }
+        out.append(" </style>\n");
+    }
+
+    /**
+     * Выводит в виде таблицы HTML заданный диапазон видимых строк листа.
+     *
+     * @param firstRow порядковый номер первой видимой строки листа на странице (начиная с 0).
+     * @param rowsCount максимальное количество строк на странице.
+     * @param out      куда выводится страница.
+     * @throws IOException в случае ошибок ввода-вывода.
+     */
+    public void writePage(final int firstRow, final int rowsCount, final Appendable out) throws IOException {
+        if (firstRow < 0 || rowsCount < 0)
+            throw new IllegalArgumentException("Invalid page: " + firstRow + ", " + rowsCount);
+        final int last = Math.min(firstRow + rowsCount, visible.length);
+        final List<PreviewRow> rows = new ArrayList<>(Math.max(last - firstRow, 0));
+        if (firstRow < last) {
+            for (PreviewRow row : loadRows(visible[firstRow], visible[last - 1])) {
+                if (!row.hidden)
+                    rows.add(row);
+            }
+        }
+
+        // определяем объединенные ячейки, пересекающиеся со строками страницы, и обрезаем их по границам страницы ...
+        int columns = 0;
+        final Set<CellRangeAddress> pageRegions = new LinkedHashSet<>();
+        for (PreviewRow row : rows) {
+            columns = Math.max(columns, row.values.length);
+            pageRegions.addAll(regions.getOrDefault(row.rowNum, Collections.emptyList()));
+        }
+        final BitSet[] covered = new BitSet[rows.size()];
+        final Map<Long, int[]> spans = new HashMap<>();
+        for (int p = 0; p < covered.length; p++) {
+            covered[p] = new BitSet();
+        }
+        for (CellRangeAddress region : pageRegions) {
+            columns = Math.max(columns, region.getLastColumn() + 1);
+            int anchor = -1, height = 0;
+            for (int p = 0; p < rows.size(); p++) {
+                final int rowNum = rows.get(p).rowNum;
+                if (rowNum >= region.getFirstRow() && rowNum <= region.getLastRow()) {
+                    if (anchor < 0) {
+                        anchor = p;
+                    } else
+                        covered[p].set(region.getFirstColumn(), region.getLastColumn() + 1);
+                    height++;
+                }
+            }
+            if (anchor < 0)
+                continue;
+            covered[anchor].set(region.getFirstColumn() + 1, region.getLastColumn() + 1);
+            spans.put(((long) anchor << 32) | region.getFirstColumn(), new int[]{region.getLastColumn() - region.getFirstColumn() + 1, height});
+            final PreviewRow anchorRow = rows.get(anchor);
+            if (anchorRow.rowNum != region.getFirstRow()) {
+                // регион начинается выше страницы: в его первой видимой ячейке отображаем содержимое его левой верхней ячейки ...
+                final int index = Arrays.binarySearch(rowNums, region.getFirstRow());
+                final PreviewRow top = index >= 0 ? loadRows(index, index).get(0) : null;
+                anchorRow.set(region.getFirstColumn(),
+                        top != null && region.getFirstColumn() < top.values.length ? top.values[region.getFirstColumn()] : null,
+                        top != null && region.getFirstColumn() < top.styles.length ? top.styles[region.getFirstColumn()] : -1);
+            }
+        }
+
+        out.append("<table border=\"0\">\n");
+        for (int j = 0; j < columns; j++) {
+            out.append(" <col style=\"width:");
+            out.append(Integer.toString(ConvertExcelToHTML.getHTMLWidth(j < columnWidths.length ? columnWidths[j] : 8)));
+            out.append("px;\"/>\n");
+        }
+        for (int p = 0; p < rows.size(); p++) {
+            final PreviewRow row = rows.get(p);
+            out.append("<tr data-row=\"").append(Integer.toString(row.rowNum + 1)).append("\">\n");
+            for (int j = 0; j < columns; j++) {
+                if (covered[p].get(j))
+                    continue;
+                final int style = j < row.styles.length ? row.styles[j] : -1;
+                out.append(" <td");
+                if (style >= 0)
+                    out.append(" class=\"class_").append(Integer.toString(style)).append('"');
+                final int[] span = spans.get(((long) p << 32) | j);
+                if (span != null) {
+                    if (span[0] > 1)
+                        out.append(" colspan=\"").append(Integer.toString(span[0])).append('"');
+                    if (span[1] > 1)
+                        out.append(" rowspan=\"").append(Integer.toString(span[1])).append('"');
+                }
+                out.append('>');
+                if (j < row.values.length && row.values[j] != null)
+                    ConvertExcelToHTML.mask(out, row.values[j], style >= 0 && getStyle(style).getWrapText());
+                out.append("</td>\n");
+            }
+            out.append("</tr>\n");
+        }
+        out.append("</table>\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    /**
+     * Загружает содержимое физически присутствующих на листе строк в заданном диапазоне индексов.
+     *
+     * @param first индекс первой строки диапазона.
+     * @param last  индекс последней строки диапазона (включительно).
+     * @return содержимое строк в порядке их следования на листе.
+     * @throws IOException в случае ошибок чтения листа.
+     */
+    protected abstract List<PreviewRow> loadRows(int first, int last) throws IOException;
+
+    protected abstract int getStylesCount();
+
+    protected abstract CellStyle getStyle(int index);
+
+    protected abstract Font getFont(CellStyle style);
+
+    protected int getRowNum(final int index) {
+        return rowNums[index];
+    }
+
+    /**
+     * Форматирует числовое значение ячейки согласно формату данных указанного стиля.
+     */
+    protected String formatNumber(final double value, final int style) {
+        final CellStyle cs = style >= 0 && style < getStylesCount() ? getStyle(style) : null;
+        return cs != null
+                ? formatter.formatRawCellContents(value, cs.getDataFormat(), cs.getDataFormatString())
+                : formatter.formatRawCellContents(value, 0, "General");
+    }
+
+
+    /**
+     * Содержимое одной строки листа, подготовленное для вывода в HTML.
+     */
+    protected static final class PreviewRow {
+        private final int rowNum;
+        private final boolean hidden;
+        private String[] values;
+        private int[] styles;
+
+        protected PreviewRow(final int rowNum, final boolean hidden) {
+            this.rowNum = rowNum;
+            this.hidden = hidden;
+            this.values = new String[0];
+            this.styles = new int[0];
+        }
+
+        protected void set(final int col, final String value, final int style) {
+            if (col >= values.length) {
+                final int len = col + 1;
+                values = Arrays.copyOf(values, len);
+                final int from = styles.length;
+                styles = Arrays.copyOf(styles, len);
+                Arrays.fill(styles, from, len, -1);
+            }
+            values[col] = value;
+            styles[col] = style;
+        }
+    }
+
+
+    /**
+     * Просмотр листа документа, полностью загруженного в память.
+     */
+    private static class WorkbookSheetPreview extends WorkbookPreview {
+        private final Workbook wb;
+        private final Sheet sheet;
+
+        private WorkbookSheetPreview(final Workbook wb, final Sheet sheet) {
+            this.wb = wb;
+            this.sheet = sheet;
+            final int[] rowNums = new int[sheet.getPhysicalNumberOfRows()];
+            final BitSet hidden = new BitSet();
+            int i = 0;
+            int lastCol = 0;
+            for (Row row : sheet) {
+                if (row.getZeroHeight() || row.getHeight() == 0)
+                    hidden.set(i);
+                rowNums[i++] = row.getRowNum();
+                lastCol = Math.max(lastCol, row.getLastCellNum());
+            }
+            final int[] widths = new int[lastCol];
+            for (int j = 0; j < lastCol; j++) {
+                widths[j] = sheet.getColumnWidth(j) / 256;
+            }
+            init(Arrays.copyOf(rowNums, i), hidden, sheet.getMergedRegions(), widths);
+        }
+
+        @Override
+        protected List<PreviewRow> loadRows(final int first, final int last) {
+            final List<PreviewRow> result = new ArrayList<>(last - first + 1);
+            for (int i = first; i <= last; i++) {
+                final Row row = sheet.getRow(getRowNum(i));
+                final PreviewRow prow = new PreviewRow(row.getRowNum(), row.getZeroHeight() || row.getHeight() == 0);
+                for (Cell cell : row) {
+                    prow.set(cell.getColumnIndex(), format(cell), cell.getCellStyle().getIndex());
+                }
+                result.add(prow);
+            }
+            return result;
+        }
+
+        private String format(final Cell cell) {
+            final CellType type = cell.getCellType() == CellType.FORMULA ? cell.getCachedFormulaResultType() : cell.getCellType();
+            switch (type) {
+                case NUMERIC:
+                    return formatNumber(cell.getNumericCellValue(), cell.getCellStyle().getIndex());
+                case STRING:
+                    return cell.getRichStringCellValue().getString();
+                case BOOLEAN:
+                    return cell.getBooleanCellValue() ? "TRUE" : "FALSE";
+                case ERROR:
+                    return cell.getCellType() == CellType.FORMULA ? "#ERROR" : formatter.formatCellValue(cell);
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        protected int getStylesCount() {
+            return wb.getNumCellStyles();
+        }
+
+        @Override
+        protected CellStyle getStyle(final int index) {
+            return wb.getCellStyleAt(index);
+        }
+
+        @Override
+        protected Font getFont(final CellStyle style) {
+            return wb.getFontAt(style.getFontIndex());
+        }
+    }
+
+
+    /**
+     * Просмотр листа документа XLSX без загрузки документа в память.
+     * Содержимое листа (фрагмент <code>sheetData</code>) однократно копируется во временный файл, в процессе копирования запоминаются
+     * смещения начала каждой строки листа. Для вывода страницы читается и разбирается только соответствующий ей фрагмент временного файла.
+     */
+    private static final class StreamingSheetPreview extends WorkbookPreview {
+        private static final String NS_MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+        private final ReadOnlySharedStringsTable strings;
+        private final StylesTable styles;
+        private final File data;
+        private final RandomAccessFile in;
+        private long[] offsets;     // смещения строк во временном файле; последний элемент - размер фрагмента
+        private String root;        // открывающий тег корневого элемента листа (с объявлениями пространств имен)
+        private String rootName;    // полное (с префиксом пространства имен) имя корневого элемента листа
+        private String dataName;    // полное (с префиксом пространства имен) имя элемента sheetData
+
+        private StreamingSheetPreview(final File file, final int sheet) throws IOException {
+            File tmp = null;
+            try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+                final XSSFReader reader = new XSSFReader(pkg);
+                strings = new ReadOnlySharedStringsTable(pkg, false);
+                styles = reader.getStylesTable();
+                final XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) reader.getSheetsData();
+                for (int i = 0; i < sheet && it.hasNext(); i++) {
+                    it.next().close();
+                }
+                if (!it.hasNext())
+                    throw new IllegalArgumentException("Sheet index (" + sheet + ") is out of range");
+                tmp = TempFile.createTempFile("preview-", ".xml");
+                try (InputStream src = it.next(); OutputStream dst = Files.newOutputStream(tmp.toPath())) {
+                    new SheetScanner(this).scan(src, dst);
+                }
+            } catch (OpenXML4JException | SAXException e) {
+                if (tmp != null)
+                    tmp.delete();
+                throw new IOException(e.getMessage(), e);
+            } catch (IOException | RuntimeException e) {
+                if (tmp != null)
+                    tmp.delete();
+                throw e;
+            }
+            this.data = tmp;
+            this.in = new RandomAccessFile(tmp, "r");
+        }
+
+        @Override
+        protected List<PreviewRow> loadRows(final int first, final int last) throws IOException {
+            final byte[] buf = new byte[(int) (offsets[last + 1] - offsets[first])];
+            in.seek(offsets[first]);
+            in.readFully(buf);
+            final RowsHandler handler = new RowsHandler(last - first + 1);
+            final InputStream src = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                    new ByteArrayInputStream((root + '<' + dataName + '>').getBytes(StandardCharsets.UTF_8)),
+                    new ByteArrayInputStream(buf),
+                    new ByteArrayInputStream(("</" + dataName + "></" + rootName + '>').getBytes(StandardCharsets.UTF_8)))));
+            try {
+                final XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(handler);
+                parser.parse(new InputSource(src));
+            } catch (SAXException | javax.xml.parsers.ParserConfigurationException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            return handler.rows;
+        }
+
+        @Override
+        protected int getStylesCount() {
+            return styles.getNumCellStyles();
+        }
+
+        @Override
+        protected CellStyle getStyle(final int index) {
+            return styles.getStyleAt(index);
+        }
+
+        @Override
+        protected Font getFont(final CellStyle style) {
+            return ((XSSFCellStyle) style).getFont();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                in.close();
+            } finally {
+                data.delete();
+            }
+        }
+
+
+        /**
+         * Разбирает фрагмент листа с заданными строками.
+         */
+        private final class RowsHandler extends DefaultHandler {
+            private final List<PreviewRow> rows;
+            private final StringBuilder text;
+            private PreviewRow row;
+            private int nextRowNum;
+            private int col;
+            private int style;
+            private String type;
+            private boolean value;
+            private boolean inlineText;
+
+            private RowsHandler(final int capacity) {
+                this.rows = new ArrayList<>(capacity);
+                this.text = new StringBuilder(64);
+            }
+
+            @Override
+            public void startElement(final String uri, final String localName, final String qName, final Attributes attrs) {
+                if (!NS_MAIN.equals(uri))
+                    return;
+                switch (localName) {
+                    case "row": {
+                        final String r = attrs.getValue("r");
+                        final int rowNum = r != null ? Integer.parseInt(r) - 1 : nextRowNum;
+                        row = new PreviewRow(rowNum, "1".equals(attrs.getValue("hidden")) || "true".equals(attrs.getValue("hidden")));
+                        nextRowNum = rowNum + 1;
+                        col = -1;
+                        break;
+                    }
+                    case "c": {
+                        final String r = attrs.getValue("r");
+                        col = r != null ? new CellReference(r).getCol() : col + 1;
+                        final String s = attrs.getValue("s");
+                        style = s != null ? Integer.parseInt(s) : 0;
+                        type = attrs.getValue("t");
+                        text.setLength(0);
+                        row.set(col, null, style);
+                        break;
+                    }
+                    case "v":
+                        value = true;
+                        text.setLength(0);
+                        break;
+                    case "t":
+                        if ("inlineStr".equals(type))
+                            inlineText = true;
+                        break;
+                    default:
+                }
+            }
+
+            @Override
+            public void endElement(final String uri, final String localName, final String qName) {
+                if (!NS_MAIN.equals(uri))
+                    return;
+                switch (localName) {
+                    case "row":
+                        rows.add(row);
+                        row = null;
+                        break;
+                    case "v":
+                        value = false;
+                        row.set(col, format(text.toString()), style);
+                        break;
+                    case "t":
+                        inlineText = false;
+                        break;
+                    case "c":
+                        if ("inlineStr".equals(type))
+                            row.set(col, text.toString(), style);
+                        break;
+                    default:
+                }
+            }
+
+            @Override
+            public void characters(final char[] ch, final int start, final int length) {
+                if (value || inlineText)
+                    text.append(ch, start, length);
+            }
+
+            private String format(final String raw) {
+                if (type == null || "n".equals(type)) {
+                    try {
+                        return formatNumber(Double.parseDouble(raw), style);
+                    } catch (NumberFormatException e) {
+                        return raw;
+                    }
+                }
+                switch (type) {
+                    case "s":
+                        return strings.getItemAt(Integer.parseInt(raw)).getString();
+                    case "b":
+                        return "1".equals(raw) ? "TRUE" : "FALSE";
+                    default:    // str, e
+                        return raw;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Копирует содержимое элемента <code>sheetData</code> листа во временный файл, запоминая смещения всех строк листа
+     * и попутно извлекая из листа сведения о ширине колонок и объединенных ячейках.
+     * Разбор выполняется непосредственно по байтам документа: разбираются только открывающие теги <code>row</code>,
+     * <code>col</code> и <code>mergeCell</code>, что позволяет однократно просмотреть лист произвольного размера без создания
+     * промежуточных объектов для каждой его ячейки. Комментарии XML пропускаются и во временный файл не копируются.
+     */
+    private static final class SheetScanner {
+        private final StreamingSheetPreview owner;
+        private final TagBuffer tag;
+        private long[] offsets;
+        private int[] rowNums;
+        private int rows;
+        private final BitSet hidden;
+        private final List<CellRangeAddress> regions;
+        private int[] widths;
+
+        private SheetScanner(final StreamingSheetPreview owner) {
+            this.owner = owner;
+            this.tag = new TagBuffer();
+            this.offsets = new long[1024];
+            this.rowNums = new int[1024];
+            this.hidden = new BitSet();
+            this.regions = new ArrayList<>();
+            this.widths = new int[0];
+        }
+
+        private void scan(final InputStream src, final OutputStream dst) throws IOException {
+            final InputStream in = new BufferedInputStream(src, 65536);
+            final byte[] out = new byte[65536];
+            int outlen = 0;
+            long written = 0;
+            boolean inData = false;
+            int c;
+            while ((c = in.read()) >= 0) {
+                if (c != '<') {
+                    if (inData) {
+                        if (outlen == out.length) {
+                            dst.write(out, 0, outlen);
+                            outlen = 0;
+                        }
+                        out[outlen++] = (byte) c;
+                        written++;
+                    }
+                    continue;
+                }
+                // читаем тег целиком (значения атрибутов могут быть заключены как в двойные, так и в одинарные кавычки) ...
+                tag.reset();
+                tag.append('<');
+                int quote = 0;
+                boolean comment = false;
+                while ((c = in.read()) >= 0) {
+                    tag.append(c);
+                    if (quote != 0) {
+                        if (c == quote)
+                            quote = 0;
+                    } else
+                    if (c == '"' || c == '\'') {
+                        quote = c;
+                    } else
+                    if (c == '>') {
+                        break;
+                    } else
+                    if (c == '-' && tag.isCommentStart()) {
+                        comment = true;
+                        skipComment(in);
+                        break;
+                    }
+                }
+                if (comment)
+                    continue;
+                final String name = tag.getName();
+                if (!inData) {
+                    if ("worksheet".equals(name)) {
+                        owner.root = tag.toString();
+                        owner.rootName = tag.getQName();
+                    } else
+                    if ("sheetData".equals(name)) {
+                        owner.dataName = tag.getQName();
+                        inData = !tag.isEmptyElement();
+                    } else
+                    if ("col".equals(name)) {
+                        final int min = Integer.parseInt(tag.getAttribute("min"));
+                        final int max = Integer.parseInt(tag.getAttribute("max"));
+                        final String width = tag.getAttribute("width");
+                        if (max <= 16384 && width != null) {
+                            if (widths.length < max)
+                                widths = Arrays.copyOf(widths, max);
+                            Arrays.fill(widths, min - 1, max, "1".equals(tag.getAttribute("hidden")) ? 0 : (int) Double.parseDouble(width));
+                        }
+                    } else
+                    if ("mergeCell".equals(name)) {
+                        regions.add(CellRangeAddress.valueOf(tag.getAttribute("ref")));
+                    }
+                    continue;
+                }
+                if ("/sheetData".equals(name)) {
+                    inData = false;
+                    continue;
+                }
+                if ("row".equals(name)) {
+                    if (rows == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, rows * 2);
+                        rowNums = Arrays.copyOf(rowNums, rows * 2);
+                    }
+                    final String r = tag.getAttribute("r");
+                    rowNums[rows] = r != null ? Integer.parseInt(r) - 1 : (rows > 0 ? rowNums[rows - 1] + 1 : 0);
+                    final String h = tag.getAttribute("hidden");
+                    if ("1".equals(h) || "true".equals(h))
+                        hidden.set(rows);
+                    offsets[rows++] = written;
+                }
+                if (outlen + tag.length() > out.length) {
+                    dst.write(out, 0, outlen);
+                    outlen = 0;
+                }
+                if (tag.length() > out.length) {
+                    dst.write(tag.buf, 0, tag.length());
+                } else {
+                    System.arraycopy(tag.buf, 0, out, outlen, tag.length());
+                    outlen += tag.length();
+                }
+                written += tag.length();
+            }
+            dst.write(out, 0, outlen);
+            if (owner.root == null) {
+                owner.root = "<worksheet xmlns=\"" + StreamingSheetPreview.NS_MAIN + "\">";
+                owner.rootName = "worksheet";
+            }
+            if (owner.dataName == null) {
+                final int p = owner.rootName.indexOf(':');
+                owner.dataName = p > 0 ? owner.rootName.substring(0, p + 1) + "sheetData" : "sheetData";
+            }
+            owner.offsets = Arrays.copyOf(offsets, rows + 1);
+            owner.offsets[rows] = written;
+            owner.init(Arrays.copyOf(rowNums, rows), hidden, regions, widths);
+        }
+
+        /**
+         * Пропускает оставшуюся часть комментария XML (до последовательности <code>--&gt;</code> включительно).
+         */
+        private static void skipComment(final InputStream in) throws IOException {
+            int dashes = 0;
+            for (int c = in.read(); c >= 0; c = in.read()) {
+                if (c == '>' && dashes >= 2)
+                    return;
+                dashes = c == '-' ? dashes + 1 : 0;
+            }
+        }
+    }
+
+    /**
+     * Буфер для разбора тегов XML в кодировке UTF-8.
+     */
+    private static final class TagBuffer {
+        private byte[] buf = new byte[256];
+        private int len;
+
+        private void reset() {
+            len = 0;
+        }
+
+        private void append(final int c) {
+            if (len == buf.length)
+                buf = Arrays.copyOf(buf, len * 2);
+            buf[len++] = (byte) c;
+        }
+
+        private int length() {
+            return len;
+        }
+
+        private boolean isEmptyElement() {
+            return len > 1 && buf[len - 2] == '/';
+        }
+
+        /**
+         * @return <code>true</code> если буфер содержит начало комментария XML (<code>&lt;!--</code>).
+         */
+        private boolean isCommentStart() {
+            return len == 4 && buf[1] == '!' && buf[2] == '-' && buf[3] == '-';
+        }
+
+        /**
+         * @return полное имя тега (вместе с префиксом пространства имен, если он есть).
+         */
+        private String getQName() {
+            final int start = len > 1 && buf[1] == '/' ? 2 : 1;
+            int end = start;
+            while (end < len && !isNameEnd(buf[end]))
+                end++;
+            return new String(buf, start, end - start, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return имя тега (без префикса пространства имен). Для закрывающих тегов имя начинается с символа '/'.
+         */
+        private String getName() {
+            int start = 1, end = 1;
+            final boolean closing = len > 1 && buf[1] == '/';
+            if (closing)
+                start = end = 2;
+            while (end < len && !isNameEnd(buf[end])) {
+                if (buf[end] == ':')
+                    start = end + 1;
+                end++;
+            }
+            final String name = new String(buf, start, end - start, StandardCharsets.US_ASCII);
+            return closing ? "/" + name : name;
+        }
+
+        /**
+         * @return значение атрибута (без префикса пространства имен) или <code>null</code>.
+         * Значение может быть заключено как в двойные, так и в одинарные кавычки.
+         */
+        private String getAttribute(final String name) {
+            final byte[] key = name.getBytes(StandardCharsets.US_ASCII);
+            int quote = 0;
+            outer:
+            for (int i = 1; i + key.length < len; i++) {
+                final byte b = buf[i];
+                if (quote != 0) {
+                    if (b == quote)
+                        quote = 0;
+                    continue;
+                }
+                if (b == '"' || b == '\'') {
+                    quote = b;
+                    continue;
+                }
+                if (!isSpace(b))
+                    continue;
+                for (int j = 0; j < key.length; j++) {
+                    if (buf[i + 1 + j] != key[j])
+                        continue outer;
+                }
+                int pos = i + 1 + key.length;
+                while (pos < len && isSpace(buf[pos]))
+                    pos++;
+                if (pos >= len || buf[pos] != '=')
+                    continue;
+                pos++;
+                while (pos < len && isSpace(buf[pos]))
+                    pos++;
+                if (pos >= len || (buf[pos] != '"' && buf[pos] != '\''))
+                    continue;
+                final byte q = buf[pos];
+                final int start = pos + 1;
+                int end = start;
+                while (end < len && buf[end] != q)
+                    end++;
+                return new String(buf, start, end - start, StandardCharsets.UTF_8);
+            }
+            return null;
+        }
+
+        private static boolean isSpace(final byte b) {
+            return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+        }
+
+        private static boolean isNameEnd(final byte b) {
+            return b == '>' || b == '/' || isSpace(b);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buf, 0, len, StandardCharsets.UTF_8);
+        }
+    }
+}
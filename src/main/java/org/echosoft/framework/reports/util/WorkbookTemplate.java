@@ -0,0 +1,164 @@
+package org.echosoft.framework.reports.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.zip.CRC32;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.util.ZipArchiveThresholdInputStream;
+import org.apache.poi.openxml4j.util.ZipInputStreamZipEntrySource;
+import org.apache.poi.openxml4j.util.ZipSecureFile;
+
+/**
+ * Заранее распакованный шаблон документа Excel в формате XLSX.
+ * <p>Содержимое всех частей пакета извлекается из архива шаблона однократно (при первом обращении к шаблону) и сохраняется
+ * в архиве без сжатия, после чего каждый новый документ на основе этого шаблона открывается из несжатого архива
+ * штатными средствами POI ({@link OPCPackage#open(InputStream)}), без повторной распаковки частей шаблона.
+ * Экономится только распаковка (inflate) частей: архив по-прежнему прочитывается, а XML каждой части разбирается заново
+ * при каждом открытии документа.
+ * Распаковка шаблона выполняется с теми же ограничениями на размер и степень сжатия частей пакета, что и при обычном
+ * открытии документов (см. {@link ZipSecureFile}).</p>
+ * <p>Экземпляры данного класса кэшируются для каждого массива байт с содержимым шаблона (см. {@link #getInstance(byte[])})
+ * и удаляются из кэша вместе с моделью отчета которой принадлежит этот массив. Сам экземпляр ссылается на этот массив
+ * только через слабую ссылку, чтобы не препятствовать его удалению из кэша.</p>
+ *
+ * @author Anton Sharapov
+ */
+public final class WorkbookTemplate {
+
+    private static final Map<byte[], WorkbookTemplate> cache = new WeakHashMap<>();
+
+    /**
+     * Открывает новый пакет документа Excel в формате XLSX на основе указанного шаблона.
+     * При возможности используется ранее распакованное содержимое этого шаблона.
+     *
+     * @param template содержимое шаблона отчета. Данный массив не должен изменяться после первого вызова этого метода.
+     * @return новый пакет документа с содержимым шаблона.
+     * @throws Exception в случае ошибок при открытии пакета.
+     */
+    public static OPCPackage openPackage(final byte[] template) throws Exception {
+        return getInstance(template).open();
+    }
+
+    /**
+     * Возвращает распакованный шаблон для указанного содержимого шаблона документа Excel в формате XLSX.
+     * Сама распаковка выполняется при первом открытии пакета на основе этого шаблона (см. {@link #open()}).
+     *
+     * @param template содержимое шаблона отчета. Данный массив не должен изменяться после первого вызова этого метода.
+     * @return распакованный шаблон.
+     */
+    public static WorkbookTemplate getInstance(final byte[] template) {
+        synchronized (cache) {
+            WorkbookTemplate result = cache.get(template);
+            if (result == null) {
+                result = new WorkbookTemplate(template);
+                cache.put(template, result);
+            }
+            return result;
+        }
+    }
+
+
+    private final WeakReference<byte[]> template;
+    private final int size;
+    private volatile byte[] unpacked;
+    private int partsCount;
+
+    private WorkbookTemplate(final byte[] template) {
+        this.template = new WeakReference<>(template);
+        this.size = template.length;
+    }
+
+    /**
+     * Открывает новый пакет документа на основе данного шаблона. Изменения в открытом пакете не затрагивают шаблон.
+     *
+     * @return новый пакет документа с содержимым шаблона.
+     * @throws Exception в случае ошибок при открытии пакета.
+     */
+    public OPCPackage open() throws Exception {
+        return OPCPackage.open(new ByteArrayInputStream(getUnpacked()));
+    }
+
+    /**
+     * @return количество частей в пакете шаблона.
+     * @throws IOException в случае ошибок при распаковке шаблона.
+     */
+    public int getPartsCount() throws IOException {
+        getUnpacked();
+        return partsCount;
+    }
+
+    /**
+     * Возвращает содержимое шаблона в виде архива без сжатия. При первом обращении распаковывает шаблон.
+     * Распаковка разных шаблонов выполняется независимо друг от друга.
+     */
+    private byte[] getUnpacked() throws IOException {
+        byte[] result = unpacked;
+        if (result == null) {
+            synchronized (this) {
+                result = unpacked;
+                if (result == null) {
+                    final byte[] template = this.template.get();
+                    if (template == null)
+                        throw new IllegalStateException("Workbook template was already released");
+                    result = unpack(template);
+                    unpacked = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private byte[] unpack(final byte[] template) throws IOException {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream(template.length * 4);
+        int count = 0;
+        try (ZipInputStreamZipEntrySource source = new ZipInputStreamZipEntrySource(new ZipArchiveThresholdInputStream(new ZipArchiveInputStream(new ByteArrayInputStream(template))));
+             ZipArchiveOutputStream out = new ZipArchiveOutputStream(buf)) {
+            out.setMethod(ZipArchiveOutputStream.STORED);
+            for (Enumeration<? extends ZipArchiveEntry> en = source.getEntries(); en.hasMoreElements(); ) {
+                final ZipArchiveEntry entry = en.nextElement();
+                if (entry.isDirectory())
+                    continue;
+                final byte[] data;
+                try (InputStream in = source.getInputStream(entry)) {
+                    data = readAll(in);
+                }
+                final CRC32 crc = new CRC32();
+                crc.update(data, 0, data.length);
+                final ZipArchiveEntry part = new ZipArchiveEntry(entry.getName());
+                part.setMethod(ZipArchiveEntry.STORED);
+                part.setSize(data.length);
+                part.setCrc(crc.getValue());
+                out.putArchiveEntry(part);
+                out.write(data);
+                out.closeArchiveEntry();
+                count++;
+            }
+        }
+        partsCount = count;
+        return buf.toByteArray();
+    }
+
+    private static byte[] readAll(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        final byte[] buf = new byte[8192];
+        for (int len = in.read(buf); len >= 0; len = in.read(buf)) {
+            out.write(buf, 0, len);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public String toString() {
+        return "[WorkbookTemplate{size:" + size + ", unpacked:" + (unpacked != null) + "}]";
+    }
+}
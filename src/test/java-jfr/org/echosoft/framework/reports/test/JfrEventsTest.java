@@ -0,0 +1,73 @@
+package org.echosoft.framework.reports.test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.echosoft.framework.reports.common.utils.JfrEvents;
+import org.echosoft.framework.reports.processor.ExcelReportProcessor;
+import org.echosoft.framework.reports.test.model.Repository;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тестирование регистрации событий JDK Flight Recorder при построении отчетов.
+ *
+ * @author Anton Sharapov
+ */
+public class JfrEventsTest {
+
+    @Test
+    void testEvents() throws Exception {
+        assertTrue(JfrEvents.isSupported());
+        // пока события не записываются, они и не создаются ...
+        assertNull(JfrEvents.beginFetch("report", "sheet", "section"));
+
+        final List<Repository> repos = SyntheticData.makeRepositories(100, 5, 2, 10);
+        final JdbcDataSource ds = SyntheticData.makeDataSource("jfr-events");
+        SyntheticData.populate(ds, repos);
+        final Path file = Files.createTempFile("reports-", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable("org.echosoft.reports.Report").withoutThreshold();
+                recording.enable("org.echosoft.reports.Sheet").withoutThreshold();
+                recording.enable("org.echosoft.reports.Section").withoutThreshold();
+                recording.enable("org.echosoft.reports.JdbcFetch").withoutThreshold();
+                recording.start();
+                new ExcelReportProcessor().process(SyntheticData.loadReport("excel-01"), SyntheticData.makeContext(repos, ds), new ByteArrayOutputStream());
+                recording.stop();
+                recording.dump(file);
+            }
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            final List<RecordedEvent> reports = filter(events, "org.echosoft.reports.Report");
+            assertEquals(1, reports.size());
+            assertEquals("excel-01", reports.get(0).getString("reportId"));
+            assertFalse(filter(events, "org.echosoft.reports.Sheet").isEmpty());
+            assertFalse(filter(events, "org.echosoft.reports.Section").isEmpty());
+
+            // события чтения записей из курсора должны быть привязаны к отчету, листу и секции ...
+            final List<RecordedEvent> fetches = filter(events, "org.echosoft.reports.JdbcFetch");
+            assertFalse(fetches.isEmpty());
+            for (RecordedEvent event : fetches) {
+                assertEquals("excel-01", event.getString("reportId"));
+                assertTrue(event.getString("sheetId") != null && event.getString("sectionId") != null, event.toString());
+                assertTrue(event.getLong("records") > 0, event.toString());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<RecordedEvent> filter(final List<RecordedEvent> events, final String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,100 @@
+package org.echosoft.framework.reports.test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.echosoft.framework.reports.util.ConvertExcelToHTML;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Anton Sharapov
+ */
+public class ConvertExcelToHTMLTest {
+
+    @Test
+    void testSheets() throws Exception {
+        try (Workbook wb = new XSSFWorkbook()) {
+            for (int s = 0; s < 3; s++) {
+                final Sheet sheet = wb.createSheet("sheet-" + s);
+                for (int r = 0; r < 10; r += 2) {   // нечетные строки на листе отсутствуют
+                    final Row row = sheet.createRow(r);
+                    row.createCell(0).setCellValue("s" + s + "r" + r);
+                    row.createCell(1).setCellValue(r);
+                    row.createCell(2);
+                }
+                sheet.addMergedRegion(new CellRangeAddress(0, 0, 1, 2));
+            }
+            wb.setSheetHidden(1, true);
+
+            final String first = ConvertExcelToHTML.getInstance().process(wb, StandardCharsets.UTF_8);
+            assertEquals(1, count(first, "<table"));
+            assertTrue(first.contains(">s0r8<"));
+            assertEquals(1, count(first, "colspan=\"2\""));
+            assertEquals(9, count(first, "<tr>"));
+            assertNull(wb.getSheetAt(0).getRow(1));   // исходный документ не изменяется
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ConvertExcelToHTML.getInstance().process(wb, StandardCharsets.UTF_8, out);
+            final String all = new String(out.toByteArray(), StandardCharsets.UTF_8);
+            assertEquals(2, count(all, "<table"));
+            assertTrue(all.contains(">s2r8<"));
+            assertFalse(all.contains(">s1r8<"));
+
+            final StringBuilder selected = new StringBuilder();
+            ConvertExcelToHTML.getInstance().process(wb, null, selected, 1);
+            assertEquals(1, count(selected.toString(), "<table"));
+            assertTrue(selected.toString().contains(">s1r8<"));
+        }
+    }
+
+    @Test
+    void testMissingRows() throws Exception {
+        try (Workbook wb = new XSSFWorkbook()) {
+            final Sheet sheet = wb.createSheet("sheet");
+            sheet.setColumnWidth(3, 40 * 256);
+            for (int r = 2; r < 5; r++) {    // первые две строки на листе отсутствуют
+                final Row row = sheet.createRow(r);
+                for (int c = 0; c < 4; c++) {
+                    row.createCell(c).setCellValue("r" + r + "c" + c);
+                }
+            }
+            sheet.addMergedRegion(new CellRangeAddress(0, 1, 0, 1));
+
+            final String html = ConvertExcelToHTML.getInstance().process(wb, StandardCharsets.UTF_8);
+            // ширины колонок определяются по всему листу, а не только по его первой строке ...
+            final Matcher widths = Pattern.compile("<col style=\"width:(\\d+)px;").matcher(html);
+            final List<String> values = new ArrayList<>();
+            while (widths.find()) {
+                values.add(widths.group(1));
+            }
+            assertEquals(4, values.size());
+            assertTrue(Integer.parseInt(values.get(3)) > Integer.parseInt(values.get(0)), values.toString());
+            assertEquals(5, count(html, "<tr>"));
+            assertFalse(html.contains("<tr>\n</tr>"), html);
+            // первая отсутствующая строка содержит объединенную ячейку и две пустые ячейки, вторая - только две пустые ячейки ...
+            assertEquals(1, count(html, "colspan=\"2\" rowspan=\"2\""));
+            assertEquals(5, count(html, ">&nbsp;</td>"));
+        }
+    }
+
+    private static int count(final String text, final String token) {
+        int result = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + token.length())) {
+            result++;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,161 @@
+package org.echosoft.framework.reports.test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.model.el.ELContext;
+import org.echosoft.framework.reports.processor.CsvReportProcessor;
+import org.echosoft.framework.reports.processor.ExecutionControl;
+import org.echosoft.framework.reports.processor.ReportCancelledException;
+import org.echosoft.framework.reports.processor.ReportProcessingException;
+import org.echosoft.framework.reports.processor.StreamingReportProcessor;
+import org.echosoft.framework.reports.registry.ReportsRegistry;
+import org.echosoft.framework.reports.test.model.Repository;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тестирование выгрузки отчетов в текстовом формате с разделителями.
+ *
+ * @author Anton Sharapov
+ */
+public class CsvTest {
+
+    @Test
+    void testPlain() throws Exception {
+        final List<Repository> repos = SyntheticData.makeRepositories(300, 6, 3, 20);
+        final List<String> lines = process("excel-01", "csv", repos);
+        final long records = lines.stream().filter(line -> line.matches("^[^,]*,owner-\\d+,repo-\\d+,.*")).count();
+        // первый лист содержит все записи, остальные листы - только их часть ...
+        assertTrue(records > repos.size());
+        assertEquals(repos.size(), lines.stream().filter(line -> line.startsWith("records count:,")).mapToInt(line -> Integer.parseInt(line.split(",")[1])).sum());
+        // построитель не умеет формировать рабочие книги и поэтому не может быть получен как ReportProcessor ...
+        assertNull(ReportsRegistry.getProcessor("csv"));
+    }
+
+    @Test
+    void testGrouping() throws Exception {
+        final List<Repository> repos = SyntheticData.makeRepositories(300, 6, 3, 20);
+        final List<String> lines = process("excel-02", "tsv", repos);
+        int groups = 0, records = 0;
+        String group = null;
+        for (String line : lines) {
+            final String[] values = line.split("\t", -1);
+            if (values.length < 4 || !values[1].startsWith("owner-") || values[2].isEmpty())
+                continue;
+            if (values[3].startsWith("repo-")) {
+                // строка группировки предшествует всем записям группы ...
+                assertEquals(values[1] + '\t' + values[2], group);
+                records++;
+            } else {
+                group = values[1] + '\t' + values[2];
+                groups++;
+            }
+        }
+        assertEquals(6 * 3, groups);
+        assertEquals(repos.size(), records);
+    }
+
+    @Test
+    void testComposite() throws Exception {
+        final List<Repository> repos = SyntheticData.makeRepositories(300, 6, 3, 20);
+        final List<String> lines = process("excel-03", "csv", repos);
+        assertTrue(lines.stream().anyMatch(line -> line.contains(",repo-299,")));
+    }
+
+    @Test
+    void testLimits() throws Exception {
+        final List<Repository> repos = SyntheticData.makeRepositories(300, 6, 3, 20);
+        List<String> lines = process("excel-02", "tsv", repos, 10, 0);
+        assertEquals(10, lines.stream().map(line -> line.split("\t", -1)).filter(values -> values.length > 3 && values[1].startsWith("owner-") && values[3].startsWith("repo-")).count());
+
+        lines = process("excel-01", "csv", repos, 0, 50);
+        final long records = lines.stream().filter(line -> line.matches("^[^,]*,owner-\\d+,repo-\\d+,.*")).count();
+        assertTrue(records > 0 && records < 50 * 4, Long.toString(records));
+    }
+
+    @Test
+    void testBurst() throws Exception {
+        final List<Repository> repos = SyntheticData.makeRepositories(300, 6, 3, 20);
+        final Map<String, Integer> expected = new LinkedHashMap<>();
+        for (Repository repo : repos) {
+            expected.merge(repo.getOwnerName(), 1, Integer::sum);
+        }
+        final Report report = SyntheticData.loadReport("excel-02");
+        report.setBurstProvider("ds1");
+        report.setBurstKey("ownerName");
+        final CsvReportProcessor processor = (CsvReportProcessor) ReportsRegistry.getStreamingProcessor("tsv");
+        final Map<Object, ByteArrayOutputStream> outputs = new LinkedHashMap<>();
+        final int count = processor.processBurst(report, SyntheticData.makeContext(repos, null), key -> {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            outputs.put(key, out);
+            return out;
+        });
+        assertEquals(expected.size(), count);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(outputs.keySet()));
+        for (Map.Entry<Object, ByteArrayOutputStream> entry : outputs.entrySet()) {
+            final String[] lines = new String(entry.getValue().toByteArray(), StandardCharsets.UTF_8).split("\r\n");
+            int records = 0;
+            for (String line : lines) {
+                final String[] values = line.split("\t", -1);
+                if (values.length > 3 && values[1].startsWith("owner-") && values[3].startsWith("repo-")) {
+                    assertEquals(entry.getKey(), values[1]);
+                    records++;
+                }
+            }
+            assertEquals(expected.get(entry.getKey()).intValue(), records, String.valueOf(entry.getKey()));
+        }
+
+        // по умолчанию записи поставщика должны быть упорядочены по значениям ключа ...
+        final List<Repository> shuffled = new ArrayList<>(repos);
+        Collections.shuffle(shuffled, new Random(1));
+        assertThrows(ReportProcessingException.class, () -> processor.processBurst(report, SyntheticData.makeContext(shuffled, null), key -> new ByteArrayOutputStream()));
+        // ... если только не был явно указан режим с предварительной группировкой записей
+        final Set<Object> keys = new HashSet<>();
+        assertEquals(expected.size(), processor.processBurst(report, SyntheticData.makeContext(shuffled, null), key -> {
+            assertTrue(keys.add(key), String.valueOf(key));
+            return new ByteArrayOutputStream();
+        }, true));
+        assertEquals(expected.keySet(), keys);
+
+        // отмена построения отчета в режиме разделения сопровождается контекстом выполнения прерванного экземпляра отчета ...
+        final ELContext cctx = SyntheticData.makeContext(repos, null);
+        final ExecutionControl control = new ExecutionControl();
+        control.cancel();
+        cctx.setControl(control);
+        final ReportCancelledException e = assertThrows(ReportCancelledException.class, () -> processor.processBurst(report, cctx, key -> new ByteArrayOutputStream()));
+        assertNotNull(e.getContext());
+    }
+
+    private static List<String> process(final String reportName, final String format, final List<Repository> repos) throws Exception {
+        return process(reportName, format, repos, 0, 0);
+    }
+
+    private static List<String> process(final String reportName, final String format, final List<Repository> repos, final int maxRecords, final int maxRows) throws Exception {
+        final JdbcDataSource ds = SyntheticData.makeDataSource("csv-" + reportName);
+        SyntheticData.populate(ds, repos);
+        final Report report = SyntheticData.loadReport(reportName);
+        final StreamingReportProcessor processor = ReportsRegistry.getStreamingProcessor(format);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ELContext ctx = SyntheticData.makeContext(repos, ds);
+        ctx.setMaxRecords(maxRecords);
+        ctx.setMaxRows(maxRows);
+        processor.process(report, ctx, out);
+        return Arrays.asList(new String(out.toByteArray(), StandardCharsets.UTF_8).split("\r\n"));
+    }
+}
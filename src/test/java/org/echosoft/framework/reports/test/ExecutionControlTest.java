@@ -0,0 +1,121 @@
+package org.echosoft.framework.reports.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.AbstractList;
+import java.util.List;
+
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.model.el.ELContext;
+import org.echosoft.framework.reports.processor.ExcelReportProcessor;
+import org.echosoft.framework.reports.processor.ExecutionControl;
+import org.echosoft.framework.reports.processor.ReportCancelledException;
+import org.echosoft.framework.reports.test.model.Repository;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тестирование прерывания построения отчетов и ограничений на время и объем построения отчетов (см. {@link ExecutionControl}).
+ *
+ * @author Anton Sharapov
+ */
+public class ExecutionControlTest {
+
+    @Test
+    void testBudgets() throws Exception {
+        final List<Repository> repos = SyntheticData.makeRepositories(300, 6, 3, 20);
+        final Report report = SyntheticData.loadReport("excel-02");
+        final ExcelReportProcessor processor = new ExcelReportProcessor();
+
+        ExecutionControl control = new ExecutionControl();
+        processor.process(report, makeContext(repos, control), new ByteArrayOutputStream());
+        final long rows = control.getRows();
+        final long cells = control.getCells();
+        assertTrue(rows > repos.size() && cells > rows, rows + " / " + cells);
+
+        control = new ExecutionControl();
+        control.setMaxRows(100);
+        final ELContext ctx1 = makeContext(repos, control);
+        assertThrows(ReportCancelledException.class, () -> processor.process(report, ctx1, new ByteArrayOutputStream()));
+        assertTrue(control.getRows() > 100 && control.getRows() < 120, Long.toString(control.getRows()));
+
+        control = new ExecutionControl();
+        control.setMaxCells(cells / 2);
+        final ELContext ctx2 = makeContext(repos, control);
+        assertThrows(ReportCancelledException.class, () -> processor.process(report, ctx2, new ByteArrayOutputStream()));
+        assertTrue(control.getCells() < cells, Long.toString(control.getCells()));
+
+        control = new ExecutionControl();
+        control.setTimeout(50);
+        final ELContext ctx3 = makeContext(new SlowList(repos, 10, control), control);
+        assertThrows(ReportCancelledException.class, () -> processor.process(report, ctx3, new ByteArrayOutputStream()));
+        assertTrue(control.getRows() < rows, Long.toString(control.getRows()));
+    }
+
+    @Test
+    void testCancel() throws Exception {
+        final List<Repository> repos = SyntheticData.makeRepositories(300, 6, 3, 20);
+        final Report report = SyntheticData.loadReport("excel-02");
+        report.setTarget(Report.TargetType.SXSSF);
+        final File tmpdir = new File(System.getProperty("java.io.tmpdir"), "poifiles");
+        final int tmpfiles = countFiles(tmpdir);
+
+        final ExecutionControl control = new ExecutionControl();
+        final ELContext ctx = makeContext(new SlowList(repos, 0, control), control);
+        final ReportCancelledException e = assertThrows(ReportCancelledException.class, () -> new ExcelReportProcessor().process(report, ctx, new ByteArrayOutputStream()));
+        assertTrue(control.isCancelled());
+        assertTrue(e.getContext() != null, e.getMessage());
+        assertTrue(control.getRows() < repos.size(), Long.toString(control.getRows()));
+        // временные файлы недостроенного отчета удалены ...
+        assertEquals(tmpfiles, countFiles(tmpdir));
+    }
+
+    private static ELContext makeContext(final List<Repository> repos, final ExecutionControl control) {
+        final ELContext ctx = SyntheticData.makeContext(repos, null);
+        ctx.setControl(control);
+        return ctx;
+    }
+
+    private static int countFiles(final File dir) {
+        final String[] names = dir.list();
+        return names != null ? names.length : 0;
+    }
+
+    /**
+     * Список записей, обращение к которым после первой сотни записей замедлено (при <code>delay > 0</code>)
+     * или приводит к отмене построения отчета (при <code>delay = 0</code>).
+     */
+    private static final class SlowList extends AbstractList<Repository> {
+        private final List<Repository> repos;
+        private final long delay;
+        private final ExecutionControl control;
+
+        private SlowList(final List<Repository> repos, final long delay, final ExecutionControl control) {
+            this.repos = repos;
+            this.delay = delay;
+            this.control = control;
+        }
+
+        @Override
+        public Repository get(final int index) {
+            if (index >= 100) {
+                if (delay > 0) {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e.getMessage(), e);
+                    }
+                } else
+                    control.cancel();
+            }
+            return repos.get(index);
+        }
+
+        @Override
+        public int size() {
+            return repos.size();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.echosoft.framework.reports.test;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.model.el.BaseExpression;
+import org.echosoft.framework.reports.model.events.CellEvent;
+import org.echosoft.framework.reports.model.events.CellEventListener;
+import org.echosoft.framework.reports.model.events.CellEventListenerHolder;
+import org.echosoft.framework.reports.processor.ExecutionContext;
+import org.echosoft.framework.reports.processor.HtmlReportProcessor;
+import org.echosoft.framework.reports.test.model.Repository;
+import org.echosoft.framework.reports.util.POIUtils;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тестирование выгрузки отчетов в формате HTML.
+ *
+ * @author Anton Sharapov
+ */
+public class HtmlTest {
+
+    private static final Pattern TABLE = Pattern.compile("<table[^>]*>.*?</table>", Pattern.DOTALL);
+    private static final Pattern ROW = Pattern.compile("<tr[^>]*>(.*?)</tr>");
+    private static final Pattern CELL = Pattern.compile("<td([^>]*)>");
+    private static final Pattern COLSPAN = Pattern.compile("colspan=\"(\\d+)\"");
+    private static final Pattern ROWSPAN = Pattern.compile("rowspan=\"(\\d+)\"");
+
+    @Test
+    void test() throws Exception {
+        final List<Repository> repos = SyntheticData.makeRepositories(300, 6, 3, 20);
+        for (String reportName : SyntheticData.getReportNames()) {
+            final String html = process(reportName, repos);
+            assertTrue(html.startsWith("<!DOCTYPE html>"));
+            assertTrue(html.endsWith("</html>\n"));
+            assertTrue(html.contains(">repo-299<"), reportName);
+            final Matcher tables = TABLE.matcher(html);
+            while (tables.find()) {
+                assertTableWidth(reportName, tables.group());
+            }
+        }
+    }
+
+    @Test
+    void testDerivedStyles() throws Exception {
+        final List<Repository> repos = SyntheticData.makeRepositories(20, 2, 2, 5);
+        final Report report = SyntheticData.loadReport("excel-02");
+        final CellEventListener listener = (CellEvent event) -> {
+            final ExecutionContext ectx = event.getContext();
+            if ("repo-7".equals(event.getCellValue()))
+                ectx.cell.setCellStyle(POIUtils.getAltColorStyle(ectx, IndexedColors.RED.getIndex(), (short) -1));
+        };
+        report.findSectionById("s12").getCellListeners().add(new CellEventListenerHolder(null, new BaseExpression(listener)));
+        final String html = process(report, repos);
+        // ячейке с производным стилем назначается описание стиля в формате CSS вместо класса из палитры отчета ...
+        final Matcher cell = Pattern.compile("<td([^>]*)>repo-7<").matcher(html);
+        assertTrue(cell.find(), html);
+        assertTrue(cell.group(1).contains("style=\"") && cell.group(1).contains("color:#FF0000;"), cell.group(1));
+        assertTrue(!cell.group(1).contains("class=\"s"), cell.group(1));
+        // остальные ячейки той же колонки оформляются классами палитры ...
+        final Matcher other = Pattern.compile("<td([^>]*)>repo-8<").matcher(html);
+        assertTrue(other.find() && other.group(1).contains("class=\"s") && !other.group(1).contains("style="), html);
+    }
+
+    /**
+     * С учетом объединенных по горизонтали и вертикали ячеек все строки таблицы должны содержать одинаковое количество колонок.
+     */
+    private static void assertTableWidth(final String reportName, final String table) {
+        int columns = 0;
+        final Matcher cols = Pattern.compile("<col ").matcher(table);
+        while (cols.find()) {
+            columns++;
+        }
+        int[] spans = new int[columns];     // для каждой колонки - сколько еще строк занимает объединенная ячейка из предыдущих строк
+        int rowNum = 0;
+        final Matcher rows = ROW.matcher(table);
+        while (rows.find()) {
+            int col = 0;
+            final Matcher cells = CELL.matcher(rows.group(1));
+            while (cells.find()) {
+                while (col < columns && spans[col] > 0)
+                    col++;
+                final Matcher colspan = COLSPAN.matcher(cells.group(1));
+                final Matcher rowspan = ROWSPAN.matcher(cells.group(1));
+                final int width = colspan.find() ? Integer.parseInt(colspan.group(1)) : 1;
+                final int height = rowspan.find() ? Integer.parseInt(rowspan.group(1)) : 1;
+                assertTrue(col + width <= columns, reportName + ": row " + rowNum + " is too wide");
+                for (int i = col; i < col + width; i++) {
+                    assertEquals(0, spans[i], reportName + ": overlapped cell at row " + rowNum + ", column " + i);
+                    spans[i] = height;
+                }
+                col += width;
+            }
+            for (int i = 0; i < columns; i++) {
+                assertTrue(spans[i] > 0, reportName + ": missed cell at row " + rowNum + ", column " + i);
+                spans[i]--;
+            }
+            rowNum++;
+        }
+        for (int i = 0; i < columns; i++) {
+            assertEquals(0, spans[i], reportName + ": rowspan exceeds table at column " + i);
+        }
+    }
+
+    private static String process(final String reportName, final List<Repository> repos) throws Exception {
+        final JdbcDataSource ds = SyntheticData.makeDataSource("html-" + reportName);
+        SyntheticData.populate(ds, repos);
+        final StringWriter out = new StringWriter();
+        new HtmlReportProcessor().process(SyntheticData.loadReport(reportName), SyntheticData.makeContext(repos, ds), out);
+        return out.toString();
+    }
+
+    private static String process(final Report report, final List<Repository> repos) throws Exception {
+        final StringWriter out = new StringWriter();
+        new HtmlReportProcessor().process(report, SyntheticData.makeContext(repos, null), out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,219 @@
+package org.echosoft.framework.reports.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.util.DefaultTempFileCreationStrategy;
+import org.apache.poi.util.TempFile;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.processor.ExcelReportProcessor;
+import org.echosoft.framework.reports.processor.ReportMetrics;
+import org.echosoft.framework.reports.test.model.Repository;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * <p>Нагрузочное тестирование построения отчетов <code>excel-01</code> .. <code>excel-03</code> на синтетических наборах данных
+ * (см. {@link SyntheticData}) для каждого из поддерживаемых форматов документа. Данные передаются в отчеты как в виде списков в памяти,
+ * так и через встроенную базу данных H2.</p>
+ * <p>Для каждого отчета выводятся: время построения, скорость (записей и строк листа в секунду), пиковый объем кучи,
+ * объем выделенной потоком памяти, пиковый объем временных файлов и размер итогового документа. Результаты также сохраняются
+ * в файл <code>target/reports/load-test.csv</code>.</p>
+ * <p>Тест выполняется только если указано системное свойство <code>load.rows</code>, например:</p>
+ * <pre>
+ * mvn test -Dtest=LoadTest -Dload.rows=10000,100000 -Dload.targets=XSSF,SXSSF -Dload.owners=50 -Dload.width=200
+ * </pre>
+ * <p>Поддерживаемые свойства:</p>
+ * <ul>
+ *  <li><code>load.rows</code> - количество записей в наборах данных (через запятую);</li>
+ *  <li><code>load.reports</code> - отчеты (по умолчанию все);</li>
+ *  <li><code>load.targets</code> - форматы документа (по умолчанию все);</li>
+ *  <li><code>load.owners</code> - количество групп верхнего уровня (по умолчанию 20);</li>
+ *  <li><code>load.languages</code> - количество вложенных групп в каждой группе верхнего уровня (по умолчанию 5);</li>
+ *  <li><code>load.width</code> - длина текстового описания каждой записи в символах (по умолчанию 40);</li>
+ *  <li><code>load.strings</code> - способ записи строк для формата SXSSF (по умолчанию INLINE).</li>
+ * </ul>
+ *
+ * @author Anton Sharapov
+ */
+@EnabledIfSystemProperty(named = "load.rows", matches = "\\d+(\\s*,\\s*\\d+)*")
+public class LoadTest {
+
+    @Test
+    void test() throws Exception {
+        final int[] sizes = Stream.of(System.getProperty("load.rows").split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+        final String[] reports = System.getProperty("load.reports", String.join(",", SyntheticData.getReportNames())).split(",");
+        final String[] targets = System.getProperty("load.targets", "HSSF,XSSF,SXSSF").split(",");
+        final int owners = Integer.getInteger("load.owners", 20);
+        final int languages = Integer.getInteger("load.languages", 5);
+        final int width = Integer.getInteger("load.width", 40);
+
+        final Path dir = Paths.get("target/reports");
+        final Path tmpDir = dir.resolve("load-tmp");
+        Files.createDirectories(tmpDir);
+        TempFile.setTempFileCreationStrategy(new DefaultTempFileCreationStrategy(tmpDir.toFile()));
+
+        final List<Result> results = new ArrayList<>();
+        try {
+            for (int size : sizes) {
+                final List<Repository> repos = SyntheticData.makeRepositories(size, owners, languages, width);
+                final JdbcDataSource ds = SyntheticData.makeDataSource("load");
+                SyntheticData.populate(ds, repos);
+                for (String report : reports) {
+                    for (String target : targets) {
+                        final Result result = run(report.trim(), Report.TargetType.valueOf(target.trim()), repos, ds, tmpDir);
+                        System.out.println(result);
+                        results.add(result);
+                    }
+                }
+            }
+        } finally {
+            TempFile.setTempFileCreationStrategy(new DefaultTempFileCreationStrategy());
+        }
+
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(dir.resolve("load-test.csv"), StandardCharsets.UTF_8))) {
+            out.println(Result.CSV_HEADER);
+            for (Result result : results) {
+                out.println(result.toCSV());
+            }
+        }
+    }
+
+    private Result run(final String reportName, final Report.TargetType target, final List<Repository> repos, final JdbcDataSource ds, final Path tmpDir) throws Exception {
+        final Report report = SyntheticData.loadReport(reportName);
+        report.setTarget(target);
+        report.setStreamStrings(Report.StringsStrategy.valueOf(System.getProperty("load.strings", "INLINE")));
+        final Result result = new Result(reportName, target, repos.size());
+        final ExcelReportProcessor processor = new ExcelReportProcessor();
+        final ReportMetrics[] metrics = new ReportMetrics[1];
+        processor.setMetricsCollector(m -> metrics[0] = m);
+
+        clearDirectory(tmpDir);
+        System.gc();
+        final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        final long allocatedBefore = getAllocatedBytes();
+        final long started = System.nanoTime();
+        try {
+            final Workbook wb = processor.process(report, SyntheticData.makeContext(repos, ds));
+            try {
+                final CountingOutputStream out = new CountingOutputStream();
+                wb.write(out);
+                result.outputSize = out.count;
+                result.tempFilesSize = getDirectorySize(tmpDir);
+            } finally {
+                if (wb instanceof SXSSFWorkbook)
+                    ((SXSSFWorkbook) wb).dispose();
+                wb.close();
+            }
+        } catch (Exception e) {
+            result.error = e.getMessage() != null ? e.getMessage().split("\n")[0] : e.getClass().getName();
+        }
+        result.time = System.nanoTime() - started;
+        result.allocated = allocatedBefore >= 0 ? getAllocatedBytes() - allocatedBefore : -1;
+        for (MemoryPoolMXBean pool : heapPools) {
+            result.peakHeap += pool.getPeakUsage().getUsed();
+        }
+        if (metrics[0] != null) {
+            result.records = metrics[0].getRecords();
+            result.rows = metrics[0].getRows();
+        }
+        return result;
+    }
+
+    private static long getAllocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static void clearDirectory(final Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.map(Path::toFile).filter(File::isFile).forEach(File::delete);
+        }
+    }
+
+    private static long getDirectorySize(final Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.map(Path::toFile).filter(File::isFile).mapToLong(File::length).sum();
+        }
+    }
+
+
+    private static final class Result {
+        private static final String CSV_HEADER = "report;target;dataset;records;rows;time_ms;records_per_sec;rows_per_sec;peak_heap;allocated;temp_files;output;error";
+        private final String report;
+        private final Report.TargetType target;
+        private final int dataset;
+        private long records;
+        private long rows;
+        private long time;
+        private long peakHeap;
+        private long allocated;
+        private long tempFilesSize;
+        private long outputSize;
+        private String error;
+
+        private Result(final String report, final Report.TargetType target, final int dataset) {
+            this.report = report;
+            this.target = target;
+            this.dataset = dataset;
+        }
+
+        private long perSecond(final long count) {
+            return time > 0 ? count * 1000000000L / time : 0;
+        }
+
+        private String toCSV() {
+            return report + ';' + target + ';' + dataset + ';' + records + ';' + rows + ';' + time / 1000000 + ';' +
+                    perSecond(records) + ';' + perSecond(rows) + ';' + peakHeap + ';' + allocated + ';' + tempFilesSize + ';' + outputSize + ';' +
+                    (error != null ? error.replace(';', ',') : "");
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-9s %-6s %9d records: %7d ms, %8d rec/s, %8d rows/s, heap %6d MB, allocated %7d MB, temp %6d KB, output %7d KB%s",
+                    report, target, dataset, time / 1000000, perSecond(records), perSecond(rows), peakHeap >> 20, allocated >> 20,
+                    tempFilesSize >> 10, outputSize >> 10, error != null ? ", FAILED: " + error : "");
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(final int b) {
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            count += len;
+        }
+    }
+}
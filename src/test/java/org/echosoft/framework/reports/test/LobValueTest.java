@@ -0,0 +1,94 @@
+package org.echosoft.framework.reports.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.echosoft.framework.reports.common.data.JdbcBeanLoader;
+import org.echosoft.framework.reports.common.data.JdbcIssuer;
+import org.echosoft.framework.reports.common.data.LobValue;
+import org.echosoft.framework.reports.common.utils.StreamUtil;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тестирование отложенной загрузки содержимого колонок типа BLOB и CLOB.
+ *
+ * @author Anton Sharapov
+ */
+public class LobValueTest {
+
+    @Test
+    void test() throws Exception {
+        final JdbcDataSource ds = SyntheticData.makeDataSource("lobs");
+        try (Connection conn = ds.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("create table attachments (id int primary key, data blob, note clob)");
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement("insert into attachments (id, data, note) values (?, ?, ?)")) {
+                for (int i = 1; i <= 3; i++) {
+                    final byte[] data = new byte[i * 100];
+                    Arrays.fill(data, (byte) i);
+                    pstmt.setInt(1, i);
+                    pstmt.setBytes(2, i < 3 ? data : null);
+                    pstmt.setString(3, i < 3 ? repeat("note-" + i + ' ', i * 15) : null);
+                    pstmt.executeUpdate();
+                }
+            }
+        }
+
+        final Connection conn = ds.getConnection();
+        final PreparedStatement pstmt = conn.prepareStatement("select id, data, note from attachments order by id");
+        final ResultSet rs = pstmt.executeQuery();
+        try (JdbcIssuer<Map<String, Object>> it = new JdbcIssuer<>(conn, pstmt, rs, new JdbcBeanLoader<>(rs, null, 150))) {
+            Map<String, Object> row = it.next();
+            assertTrue(it.hasNext());   // курсор уже переместился на следующую запись ...
+            LobValue data = (LobValue) row.get("DATA");
+            LobValue note = (LobValue) row.get("NOTE");
+            assertTrue(data.isBinary());
+            assertFalse(note.isBinary());
+            assertEquals(100, data.getLength());
+            assertEquals(100, data.getBytes().length);
+            assertEquals(1, data.getBytes()[99]);
+            assertEquals(repeat("note-1 ", 15).trim(), note.toString().trim());
+            assertEquals("BLOB[100 bytes]", data.toString());
+
+            row = it.next();
+            data = (LobValue) row.get("DATA");
+            note = (LobValue) row.get("NOTE");
+            // содержимое превышает лимит: доступно только в виде потока ...
+            assertThrows(IOException.class, data::getBytes);
+            assertThrows(IOException.class, note::getString);
+            try (InputStream in = data.getBinaryStream()) {
+                final byte[] buf = StreamUtil.streamToBytes(in);
+                assertEquals(200, buf.length);
+                assertArrayEquals(new byte[]{2, 2}, Arrays.copyOf(buf, 2));
+            }
+            assertEquals(150, note.toString().length());
+
+            row = it.next();
+            assertNull(row.get("DATA"));
+            assertNull(row.get("NOTE"));
+            assertFalse(it.hasNext());
+        }
+    }
+
+    private static String repeat(final String text, final int count) {
+        final StringBuilder buf = new StringBuilder(text.length() * count);
+        for (int i = 0; i < count; i++) {
+            buf.append(text);
+        }
+        return buf.toString();
+    }
+}
@@ -1,8 +1,31 @@
 package org.echosoft.framework.reports.test;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.echosoft.framework.reports.util.CellValueWriters;
 import org.echosoft.framework.reports.util.POIUtils;
+import org.echosoft.framework.reports.util.StyleRegistry;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 /**
  * @author Anton Sharapov
@@ -39,4 +62,77 @@ public class POIUtilsTest {
         assertEquals(-1, POIUtils.getColumnNumber("b2"));
     }
 
+    @Test
+    void testStyleRegistry() {
+        for (Workbook wb : new Workbook[]{new HSSFWorkbook(), new XSSFWorkbook()}) {
+            final CellStyle base = wb.createCellStyle();
+            final StyleRegistry registry = new StyleRegistry(wb);
+            final short red = IndexedColors.RED.getIndex();
+            final short yellow = IndexedColors.YELLOW.getIndex();
+            final int styles = wb.getNumCellStyles();
+            final int fonts = wb.getNumberOfFontsAsInt();
+            final CellStyle s1 = registry.getAltColorStyle(base.getIndex(), red, yellow);
+            assertNotSame(base, s1);
+            assertEquals(red, wb.getFontAt(s1.getFontIndex()).getColor());
+            assertEquals(yellow, s1.getFillForegroundColor());
+            for (int i = 0; i < 100; i++) {
+                assertSame(s1, registry.getAltColorStyle(base.getIndex(), red, yellow));
+            }
+            registry.getAltColorStyle(base.getIndex(), red, (short) -1);
+            assertEquals(styles + 2, wb.getNumCellStyles());
+            assertEquals(fonts + 1, wb.getNumberOfFontsAsInt());
+            assertEquals(2, registry.getCreatedStylesCount());
+            assertEquals(1, registry.getCreatedFontsCount());
+            assertEquals(base.getIndex(), registry.getAltColorStyle(base.getIndex(), (short) -1, (short) -1).getIndex());
+
+            // повторные запросы возвращают ранее созданные стили и после роста внутренней таблицы реестра ...
+            final CellStyle[] alt = new CellStyle[40];
+            for (int i = 0; i < alt.length; i++) {
+                alt[i] = registry.getAltColorStyle(base.getIndex(), (short) -1, (short) (8 + i));
+            }
+            final int created = registry.getCreatedStylesCount();
+            for (int i = 0; i < alt.length; i++) {
+                assertSame(alt[i], registry.getAltColorStyle(base.getIndex(), (short) -1, (short) (8 + i)));
+            }
+            assertSame(s1, registry.getAltColorStyle(base.getIndex(), red, yellow));
+            assertEquals(created, registry.getCreatedStylesCount());
+        }
+    }
+
+    @Test
+    void testCellValueWriters() throws Exception {
+        try (Workbook wb = new XSSFWorkbook()) {
+            final Cell cell = wb.createSheet().createRow(0).createCell(0);
+            final LocalDateTime ldt = LocalDateTime.of(2021, 3, 14, 15, 9, 26);
+
+            POIUtils.setCellValue(cell, ldt.toLocalDate());
+            assertEquals(CellType.NUMERIC, cell.getCellType());
+            assertEquals(DateUtil.getExcelDate(ldt.toLocalDate()), cell.getNumericCellValue());
+            POIUtils.setCellValue(cell, ldt);
+            assertEquals(ldt, DateUtil.getLocalDateTime(cell.getNumericCellValue()));
+            POIUtils.setCellValue(cell, OffsetDateTime.of(ldt, ZoneOffset.ofHours(3)));
+            assertEquals(ldt, DateUtil.getLocalDateTime(cell.getNumericCellValue()));
+            POIUtils.setCellValue(cell, ldt.atZone(ZoneId.systemDefault()).toInstant());
+            assertEquals(ldt, DateUtil.getLocalDateTime(cell.getNumericCellValue()));
+            POIUtils.setCellValue(cell, LocalTime.NOON);
+            assertEquals(0.5, cell.getNumericCellValue());
+
+            POIUtils.setCellValue(cell, new BigDecimal("1234.5"));
+            assertEquals(1234.5, cell.getNumericCellValue());
+            POIUtils.setCellValue(cell, 42L);
+            assertEquals(42, cell.getNumericCellValue());
+
+            // значения без зарегистрированного обработчика записываются в виде строки ...
+            assertNull(CellValueWriters.getWriter(ChronoUnit.class));
+            POIUtils.setCellValue(cell, ChronoUnit.DAYS);
+            assertEquals(CellType.STRING, cell.getCellType());
+            assertEquals("Days", cell.getStringCellValue());
+
+            CellValueWriters.register(TimeUnit.class, (c, value) -> c.setCellValue(value.ordinal()));
+            POIUtils.setCellValue(cell, TimeUnit.SECONDS);
+            assertEquals(CellType.NUMERIC, cell.getCellType());
+            assertEquals(TimeUnit.SECONDS.ordinal(), cell.getNumericCellValue());
+        }
+    }
+
 }
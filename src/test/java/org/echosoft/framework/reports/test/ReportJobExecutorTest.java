@@ -0,0 +1,135 @@
+package org.echosoft.framework.reports.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.registry.ReportJob;
+import org.echosoft.framework.reports.registry.ReportJobExecutor;
+import org.echosoft.framework.reports.registry.ReportsRegistry;
+import org.echosoft.framework.reports.test.model.Repository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тестирование построения отчетов в фоновом режиме с помощью {@link ReportJobExecutor}.
+ *
+ * @author Anton Sharapov
+ */
+public class ReportJobExecutorTest {
+
+    private static final String REPORT_ID = "excel-02";
+    private static Map<String, Object> env;
+
+    @BeforeAll
+    static void init() throws Exception {
+        final Report report = SyntheticData.loadReport(REPORT_ID);
+        ReportsRegistry.registerReport(report);
+        final List<Repository> repos = SyntheticData.makeRepositories(300, 6, 3, 20);
+        env = SyntheticData.makeContext(repos, null).getEnvironment();
+    }
+
+    @Test
+    void testPriorities() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<String> order = Collections.synchronizedList(new ArrayList<>());
+        try (ReportJobExecutor executor = new ReportJobExecutor(1)) {
+            final ReportJob blocker = executor.submit(REPORT_ID, "tsv", env, new BlockingStream("blocker", order, latch), ReportJob.Priority.BATCH);
+            final ReportJob batch = executor.submit(REPORT_ID, "tsv", env, new BlockingStream("batch", order, null), ReportJob.Priority.BATCH);
+            final ReportJob interactive = executor.submit(REPORT_ID, "tsv", env, new BlockingStream("interactive", order, null), ReportJob.Priority.INTERACTIVE);
+            assertEquals(1, executor.getRunningCount());
+            assertEquals(2, executor.getQueuedCount());
+            assertEquals(ReportJob.State.QUEUED, interactive.getState());
+            latch.countDown();
+            for (ReportJob job : new ReportJob[]{blocker, batch, interactive}) {
+                job.get(30, TimeUnit.SECONDS);
+                assertEquals(ReportJob.State.COMPLETED, job.getState());
+                assertTrue(job.getBytesWritten() > 0);
+            }
+            assertEquals(Arrays.asList("blocker", "interactive", "batch"), order);
+        }
+    }
+
+    @Test
+    void testLimits() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<String> order = Collections.synchronizedList(new ArrayList<>());
+        try (ReportJobExecutor executor = new ReportJobExecutor(4, 40 * 1024 * 1024, true)) {
+            // текстовые выгрузки оцениваются в 16Мб: одновременно могут строиться только два отчета ...
+            final List<ReportJob> jobs = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                jobs.add(executor.submit(REPORT_ID, "csv", env, new BlockingStream("job-" + i, order, latch), ReportJob.Priority.BATCH));
+            }
+            assertEquals(2, executor.getRunningCount());
+            assertEquals(1, executor.getQueuedCount());
+            assertEquals(32 * 1024 * 1024, executor.getMemoryInUse());
+            assertTrue(jobs.get(2).cancel(false));
+            assertEquals(ReportJob.State.CANCELLED, jobs.get(2).getState());
+            assertEquals(0, executor.getQueuedCount());
+            latch.countDown();
+            jobs.get(0).get(30, TimeUnit.SECONDS);
+            jobs.get(1).get(30, TimeUnit.SECONDS);
+            assertEquals(0, executor.getRunningCount());
+            assertEquals(0, executor.getMemoryInUse());
+
+            // одновременно может строиться только один экземпляр отчета ...
+            executor.setReportConcurrency(REPORT_ID, 1);
+            final ByteArrayOutputStream out1 = new ByteArrayOutputStream(), out2 = new ByteArrayOutputStream();
+            final ReportJob job1 = executor.submit(REPORT_ID, "csv", env, out1, ReportJob.Priority.INTERACTIVE);
+            final ReportJob job2 = executor.submit(REPORT_ID, "csv", env, out2, ReportJob.Priority.INTERACTIVE);
+            assertTrue(executor.getRunningCount() <= 1);
+            job1.get(30, TimeUnit.SECONDS);
+            job2.get(30, TimeUnit.SECONDS);
+            assertEquals(out1.size(), job1.getBytesWritten());
+            assertEquals(out2.size(), job2.getBytesWritten());
+            assertEquals(out1.size(), out2.size());
+            assertTrue(job1.getFinishTime() <= job2.getStartTime());
+        }
+    }
+
+    /**
+     * Запоминает порядок, в котором задания начинают запись отчетов, и при необходимости задерживает запись до открытия защелки.
+     */
+    private static class BlockingStream extends OutputStream {
+        private final String name;
+        private final List<String> order;
+        private final CountDownLatch latch;
+        private boolean started;
+
+        private BlockingStream(final String name, final List<String> order, final CountDownLatch latch) {
+            this.name = name;
+            this.order = order;
+            this.latch = latch;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (started)
+                return;
+            started = true;
+            order.add(name);
+            try {
+                if (latch != null && !latch.await(30, TimeUnit.SECONDS))
+                    throw new IOException("Timeout");
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.echosoft.framework.reports.test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.AbstractList;
+import java.util.List;
+
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.processor.ExcelReportProcessor;
+import org.echosoft.framework.reports.processor.ReportMetrics;
+import org.echosoft.framework.reports.processor.ReportProcessingException;
+import org.echosoft.framework.reports.test.model.Repository;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тестирование сбора статистики построения отчетов (см. {@link ReportMetrics}).
+ *
+ * @author Anton Sharapov
+ */
+public class ReportMetricsTest {
+
+    @Test
+    void testCompositeSections() throws Exception {
+        final List<Repository> repos = SyntheticData.makeRepositories(60, 4, 3, 10);
+        final Report report = SyntheticData.loadReport("excel-03");
+        final ExcelReportProcessor processor = new ExcelReportProcessor();
+        final ReportMetrics[] metrics = new ReportMetrics[1];
+        processor.setMetricsCollector(m -> metrics[0] = m);
+        processor.process(report, SyntheticData.makeContext(repos, null), new ByteArrayOutputStream());
+
+        final ReportMetrics m = metrics[0];
+        assertNotNull(m);
+        assertFalse(m.isFailed());
+        final ReportMetrics.SectionMetrics parent = m.getSections().get("s12");
+        final ReportMetrics.SectionMetrics child = m.getSections().get("s12-data");
+        assertEquals(1, parent.getExecutions());
+        assertEquals(4, child.getExecutions());
+        assertEquals(repos.size(), child.getRecords());
+        assertEquals(repos.size(), child.getRows());
+        assertTrue(child.getTime() > 0 && child.getTime() <= parent.getTime());
+        assertTrue(parent.getRenderTime() < parent.getTime());
+    }
+
+    @Test
+    void testFailedSection() throws Exception {
+        final List<Repository> repos = SyntheticData.makeRepositories(200, 4, 3, 10);
+        final Report report = SyntheticData.loadReport("excel-02");
+        final ExcelReportProcessor processor = new ExcelReportProcessor();
+        final ReportMetrics[] metrics = new ReportMetrics[1];
+        processor.setMetricsCollector(m -> metrics[0] = m);
+        assertThrows(ReportProcessingException.class, () -> processor.process(report, SyntheticData.makeContext(new FailingList(repos, 50), null), new ByteArrayOutputStream()));
+
+        final ReportMetrics m = metrics[0];
+        assertNotNull(m);
+        assertTrue(m.isFailed());
+        // статистика секции, обработка которой была прервана ошибкой, также учитывается ...
+        final ReportMetrics.SectionMetrics sm = m.getSections().get("s12");
+        assertEquals(1, sm.getExecutions());
+        assertTrue(sm.getRecords() > 0 && sm.getRecords() <= 50, Long.toString(sm.getRecords()));
+        assertTrue(sm.getTime() > 0);
+        assertTrue(sm.getRows() > 0);
+    }
+
+    /**
+     * Список записей, обращение к которым начиная с указанной позиции приводит к ошибке.
+     */
+    private static final class FailingList extends AbstractList<Repository> {
+        private final List<Repository> repos;
+        private final int failAt;
+
+        private FailingList(final List<Repository> repos, final int failAt) {
+            this.repos = repos;
+            this.failAt = failAt;
+        }
+
+        @Override
+        public Repository get(final int index) {
+            if (index >= failAt)
+                throw new IllegalStateException("Record " + index + " is not available");
+            return repos.get(index);
+        }
+
+        @Override
+        public int size() {
+            return repos.size();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package org.echosoft.framework.reports.test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.echosoft.framework.reports.common.collections.issuers.ReadAheadIssuer;
+import org.echosoft.framework.reports.common.collections.issuers.SimpleReadAheadIssuer;
+import org.echosoft.framework.reports.common.collections.issuers.TransformedIssuer;
+import org.echosoft.framework.reports.common.data.StatementCache;
+import org.echosoft.framework.reports.model.AreaModel;
+import org.echosoft.framework.reports.model.GroupModel;
+import org.echosoft.framework.reports.model.GroupStyle;
+import org.echosoft.framework.reports.model.GroupingSection;
+import org.echosoft.framework.reports.model.PlainSection;
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.model.Section;
+import org.echosoft.framework.reports.model.SheetModel;
+import org.echosoft.framework.reports.model.el.BaseExpression;
+import org.echosoft.framework.reports.model.el.ELContext;
+import org.echosoft.framework.reports.model.providers.DataProvider;
+import org.echosoft.framework.reports.model.providers.DataRequest;
+import org.echosoft.framework.reports.model.providers.SQLDataProvider;
+import org.echosoft.framework.reports.processor.ExcelReportProcessor;
+import org.echosoft.framework.reports.test.model.Repository;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тестирование повторного использования подготовленных SQL выражений поставщиком данных {@link SQLDataProvider}.
+ *
+ * @author Anton Sharapov
+ */
+public class SQLDataProviderTest {
+
+    @Test
+    void testReuseStatements() throws Exception {
+        final List<Repository> repos = SyntheticData.makeRepositories(100, 5, 2, 10);
+        final JdbcDataSource ds = SyntheticData.makeDataSource("sql-provider");
+        SyntheticData.populate(ds, repos);
+        final Map<String, Integer> expected = new HashMap<>();
+        for (Repository repo : repos) {
+            expected.merge(repo.getOwnerName(), 1, Integer::sum);
+        }
+
+        final SQLDataProvider provider = new SQLDataProvider("ds");
+        provider.setDataSource(new BaseExpression("${env:ds}"));
+        provider.setSQL(new BaseExpression("SELECT r.id, r.name FROM repository r JOIN subject s ON r.owner_id = s.id WHERE s.login = :owner"));
+        provider.addParam(new BaseExpression("owner"), new BaseExpression("${env:owner}"));
+        provider.setReuseStatements(true);
+
+        final SQLDataProvider other = new SQLDataProvider("ds2");
+        other.setDataSource(new BaseExpression("${env:ds}"));
+        other.setSQL(new BaseExpression("SELECT s.login FROM subject s WHERE s.login = :owner"));
+        other.addParam(new BaseExpression("owner"), new BaseExpression("${env:owner}"));
+        other.setReuseStatements(true);
+
+        final ELContext ctx = new ELContext();
+        ctx.getEnvironment().put("ds", ds);
+        try (StatementCache statements = new StatementCache(1)) {
+            final DataRequest request = new DataRequest("test", null, null);
+            request.statements = statements;
+            for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+                ctx.getEnvironment().put("owner", entry.getKey());
+                assertEquals(entry.getValue().intValue(), count(provider.getIssuer(ctx, request)), entry.getKey());
+            }
+            assertEquals(1, statements.getPreparedCount());
+            assertEquals(expected.size() - 1, statements.getReusedCount());
+
+            // пока курсор открыт, то же выражение (как и другие выражения в том же соединении) не может быть использовано повторно,
+            // а новое соединение сверх ограничения не открывается ...
+            final String owner = expected.keySet().iterator().next();
+            ctx.getEnvironment().put("owner", owner);
+            try (ReadAheadIssuer outer = provider.getIssuer(ctx, request)) {
+                assertEquals(expected.get(owner).intValue(), count(provider.getIssuer(ctx, request)));
+                assertEquals(1, count(other.getIssuer(ctx, request)));
+                assertEquals(expected.get(owner).intValue(), count(outer));
+            }
+            assertEquals(1, statements.getPreparedCount());
+            assertEquals(expected.size(), statements.getReusedCount());
+
+            // после закрытия курсора новое выражение готовится в том же соединении ...
+            assertEquals(1, count(other.getIssuer(ctx, request)));
+            assertEquals(2, statements.getPreparedCount());
+            assertEquals(1, statements.getConnectionsCount(ds));
+        }
+    }
+
+    /**
+     * Поля, по которым группируются записи секции, и аргументы макросов в шаблонах группировочных строк должны загружаться
+     * из результата SQL запроса наравне с полями, на которые ссылается шаблон строк секции.
+     */
+    @Test
+    void testRequiredColumns() throws Exception {
+        final List<Repository> repos = SyntheticData.makeRepositories(100, 5, 2, 10);
+        final JdbcDataSource ds = SyntheticData.makeDataSource("sql-projection");
+        SyntheticData.populate(ds, repos);
+
+        final Report report = SyntheticData.loadReport("excel-01");
+        final PlainSection plain = (PlainSection) report.findSectionById("s32");
+        final GroupingSection section = new GroupingSection("s32");
+        section.setRowTemplate(plain.getTemplate());
+        section.getNamedRegions().addAll(plain.getNamedRegions());
+        final RecordingProvider provider = new RecordingProvider(plain.getDataProvider());
+        section.setDataProvider(provider);
+        report.getProviders().put(provider.getId(), provider);
+        final GroupModel group = new GroupModel();
+        group.setDiscriminatorField("LIC_ID");
+        group.setLevelField("FORKS");
+        final AreaModel template = (AreaModel) plain.getTemplate().clone();
+        assertNotNull(template.getCell(0, 0));
+        template.getCell(0, 0).setExpression(new BaseExpression("$M=link(${row:LIC_URL}, ${row:LIC_NAME})"));
+        final GroupStyle style = new GroupStyle();
+        style.setDefault(true);
+        style.setTemplate(template);
+        group.addStyle(style);
+        section.getGroups().add(group);
+        for (SheetModel sheet : report.getSheets()) {
+            final List<Section> sections = sheet.getSections();
+            if (sections.contains(plain))
+                sections.set(sections.indexOf(plain), section);
+        }
+
+        new ExcelReportProcessor().process(report, SyntheticData.makeContext(repos, ds), new ByteArrayOutputStream());
+        for (String column : Arrays.asList("NAME", "LIC_ID", "FORKS", "LIC_URL", "LIC_NAME")) {
+            assertTrue(provider.columns.contains(column), column + " not loaded: " + provider.columns);
+        }
+        assertFalse(provider.columns.contains("SUBJ_AVATAR_URL"), provider.columns.toString());
+    }
+
+    /**
+     * Запоминает какие колонки SQL запроса были загружены поставщиком данных. Копии поставщика, создаваемые вместе с копией
+     * модели отчета, используют общий перечень загруженных колонок.
+     */
+    private static final class RecordingProvider implements DataProvider {
+        private final DataProvider target;
+        private final Set<String> columns = new TreeSet<>();
+
+        private RecordingProvider(final DataProvider target) {
+            this.target = target;
+        }
+
+        @Override
+        public String getId() {
+            return target.getId();
+        }
+
+        @Override
+        public ReadAheadIssuer getIssuer(final ELContext ctx) throws Exception {
+            return getIssuer(ctx, null);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ReadAheadIssuer getIssuer(final ELContext ctx, final DataRequest request) throws Exception {
+            return new SimpleReadAheadIssuer<Object>(new TransformedIssuer<Object, Object>(target.getIssuer(ctx, request), bean -> {
+                for (Object key : ((Map<?, ?>) bean).keySet()) {
+                    columns.add(key.toString().toUpperCase());
+                }
+                return bean;
+            }));
+        }
+
+        @Override
+        public Object clone() throws CloneNotSupportedException {
+            return super.clone();
+        }
+    }
+
+    private static int count(final ReadAheadIssuer<?> issuer) throws Exception {
+        try {
+            int result = 0;
+            while (issuer.hasNext()) {
+                issuer.next();
+                result++;
+            }
+            return result;
+        } finally {
+            issuer.close();
+        }
+    }
+}
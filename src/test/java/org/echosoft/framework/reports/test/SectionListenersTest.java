@@ -0,0 +1,274 @@
+package org.echosoft.framework.reports.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import java.util.TreeSet;
+
+import org.echosoft.framework.reports.model.CompositeSection;
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.model.Section;
+import org.echosoft.framework.reports.model.el.BaseExpression;
+import org.echosoft.framework.reports.model.el.ELContext;
+import org.echosoft.framework.reports.model.el.Expression;
+import org.echosoft.framework.reports.model.events.CellEvent;
+import org.echosoft.framework.reports.model.events.CellEventListener;
+import org.echosoft.framework.reports.model.events.CellEventListenerHolder;
+import org.echosoft.framework.reports.model.events.SectionEventListener;
+import org.echosoft.framework.reports.model.events.SectionEventListenerHolder;
+import org.echosoft.framework.reports.parser.ReportModelParser;
+import org.echosoft.framework.reports.processor.ExcelReportProcessor;
+import org.echosoft.framework.reports.processor.ExecutionContext;
+import org.echosoft.framework.reports.processor.SectionContext;
+import org.echosoft.framework.reports.test.model.Repository;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тестирование обработчиков событий секций, которые обрабатываются многократно в ходе построения отчета
+ * (дочерние секции композитных секций).
+ *
+ * @author Anton Sharapov
+ */
+public class SectionListenersTest {
+
+    private static final List<int[]> runs = new ArrayList<>();
+    private static final List<SectionContext> snapshots = new ArrayList<>();
+    private static final List<String> mismatches = new ArrayList<>();
+    private static final List<SectionEventListener> statelessRuns = new ArrayList<>();
+
+    @Test
+    void testNestedCompositeSections() throws Exception {
+        final List<Repository> repos = SyntheticData.makeRepositories(60, 4, 3, 10);
+        final Report report = SyntheticData.loadReport("excel-03");
+        // секции s12-header .. s12-footer переносятся во вложенную композитную секцию без поставщика данных ...
+        final CompositeSection outer = (CompositeSection) report.findSectionById("s12");
+        final CompositeSection inner = new CompositeSection("s12-inner");
+        inner.getSections().addAll(outer.getSections());
+        outer.getSections().clear();
+        outer.getSections().add(inner);
+
+        final Section data = report.findSectionById("s12-data");
+        data.getSectionListeners().add(new SectionEventListenerHolder(new BaseExpression(RecordsCounter.class.getName()), null));
+        data.getSectionListeners().add(new SectionEventListenerHolder(new BaseExpression(StatelessListener.class.getName()), null));
+        data.getCellListeners().add(new CellEventListenerHolder(null, new ParentBoundListenerExpression()));
+        report.findSectionById("s12-footer").getSectionListeners().add(new SectionEventListenerHolder(null, new BaseExpression(new HistoryCollector())));
+
+        runs.clear();
+        snapshots.clear();
+        mismatches.clear();
+        statelessRuns.clear();
+        new ExcelReportProcessor().process(report, SyntheticData.makeContext(repos, null), new ByteArrayOutputStream());
+
+        // по одному обработчику (со своим состоянием) на каждую запись родительской секции (на каждого владельца репозиториев) ...
+        assertEquals(4, runs.size());
+        int total = 0;
+        for (int[] run : runs) {
+            assertTrue(run[0] > 0);
+            assertEquals(run[1], run[0]);
+            total += run[1];
+        }
+        assertEquals(repos.size(), total);
+        // обработчик без собственного состояния, заданный именем класса, конструируется однократно ...
+        assertEquals(runs.size(), statelessRuns.size());
+        for (SectionEventListener listener : statelessRuns) {
+            assertSame(statelessRuns.get(0), listener);
+        }
+        // обработчики, зависящие от текущей записи родительской секции, вычисляются для каждой ее записи ...
+        assertTrue(mismatches.isEmpty(), mismatches.toString());
+        // история содержит копии контекстов, не затрагиваемые повторной обработкой секции ...
+        assertEquals(runs.size(), snapshots.size());
+        for (int i = 0; i < runs.size(); i++) {
+            assertEquals(runs.get(i)[1], snapshots.get(i).record);
+            if (i > 0)
+                assertNotSame(snapshots.get(i - 1), snapshots.get(i));
+        }
+    }
+
+
+    @Test
+    void testCellListenerTargets() throws Exception {
+        final String path = "org/echosoft/framework/reports/test/excel-01";
+        final ClassLoader cl = getClass().getClassLoader();
+        String xml;
+        try (InputStream in = cl.getResourceAsStream(path + ".xml"); Scanner scanner = new Scanner(in, "UTF-8")) {
+            xml = scanner.useDelimiter("\\A").next();
+        }
+        xml = xml.replace("<plain-section id=\"s12\" height=\"1\" provider=\"ds1\"/>",
+                "<plain-section id=\"s12\" height=\"1\" provider=\"ds1\">" +
+                "<cell-listener instance=\"${env:byColumns}\" columns=\"B, 3\"/>" +
+                "<cell-listener instance=\"${env:byCells}\" cells=\"C1,E1\"/>" +
+                "<cell-listener instance=\"${env:byMarker}\" marker=\"At}\"/>" +
+                "<cell-listener instance=\"${env:all}\"/>" +
+                "</plain-section>");
+        final Report report;
+        try (InputStream xlsInput = cl.getResourceAsStream(path + ".xlsx")) {
+            report = ReportModelParser.parse(xlsInput, new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), null);
+        }
+        report.getSheets().get(2).setRendered(false);   // лист с данными из БД
+
+        final Section section = report.findSectionById("s12");
+        final List<CellEventListenerHolder> holders = section.getCellListeners();
+        assertEquals(4, holders.size());
+        assertArrayEquals(new int[]{1, 3}, holders.get(0).getColumns());
+        assertArrayEquals(new int[][]{{0, 2}, {0, 4}}, holders.get(1).getCells());
+        assertEquals("At}", holders.get(2).getMarker());
+        assertNull(holders.get(3).getColumns());
+        assertNull(holders.get(3).getCells());
+        assertNull(holders.get(3).getMarker());
+
+        final ColumnsRecorder byColumns = new ColumnsRecorder();
+        final ColumnsRecorder byCells = new ColumnsRecorder();
+        final ColumnsRecorder byMarker = new ColumnsRecorder();
+        final ColumnsRecorder all = new ColumnsRecorder();
+        final ColumnsRecorder runtime = new ColumnsRecorder();
+        // после обработки первых записей секции один из обработчиков заменяется другим непосредственно в ходе построения отчета ...
+        section.getSectionListeners().add(new SectionEventListenerHolder(null, new BaseExpression(new SectionEventListener() {
+            public void beforeSection(final ExecutionContext ectx) {
+            }
+            public void beforeRecord(final ExecutionContext ectx) {
+                if (ectx.sectionContext.record == 10) {
+                    ectx.sectionContext.cellListeners.remove(byColumns);
+                    ectx.sectionContext.cellListeners.add(runtime);
+                }
+            }
+            public void afterRecord(final ExecutionContext ectx) {
+            }
+            public void afterSection(final ExecutionContext ectx) {
+            }
+        })));
+
+        final List<Repository> repos = SyntheticData.makeRepositories(40, 4, 3, 10);
+        final ELContext ctx = SyntheticData.makeContext(repos, null);
+        ctx.getEnvironment().put("byColumns", byColumns);
+        ctx.getEnvironment().put("byCells", byCells);
+        ctx.getEnvironment().put("byMarker", byMarker);
+        ctx.getEnvironment().put("all", all);
+        new ExcelReportProcessor().process(report, ctx, new ByteArrayOutputStream());
+
+        assertEquals(Arrays.asList(1, 3), new ArrayList<>(byColumns.columns));
+        assertEquals(10 * 2, byColumns.count);
+        assertEquals(Arrays.asList(2, 4), new ArrayList<>(byCells.columns));
+        assertEquals(repos.size() * 2, byCells.count);
+        assertEquals(Arrays.asList(5, 6), new ArrayList<>(byMarker.columns));
+        assertEquals(repos.size() * 2, byMarker.count);
+        assertEquals(10, all.columns.size());
+        assertEquals(repos.size() * 10, all.count);
+        assertEquals(10, runtime.columns.size());
+        assertEquals((repos.size() - 10) * 10, runtime.count);
+    }
+
+
+    /**
+     * Обработчик, подсчитывающий количество записей секции в своем внутреннем состоянии.
+     */
+    public static final class RecordsCounter implements SectionEventListener {
+        private int records;
+
+        @Override
+        public void beforeSection(final ExecutionContext ectx) {
+        }
+
+        @Override
+        public void beforeRecord(final ExecutionContext ectx) {
+        }
+
+        @Override
+        public void afterRecord(final ExecutionContext ectx) {
+            records++;
+        }
+
+        @Override
+        public void afterSection(final ExecutionContext ectx) {
+            runs.add(new int[]{records, ectx.sectionContext.record});
+        }
+    }
+
+    /**
+     * Обработчик без собственного состояния, запоминающий свои экземпляры по окончании обработки секции.
+     */
+    public static final class StatelessListener implements SectionEventListener {
+        @Override
+        public void beforeSection(final ExecutionContext ectx) {
+        }
+
+        @Override
+        public void beforeRecord(final ExecutionContext ectx) {
+        }
+
+        @Override
+        public void afterRecord(final ExecutionContext ectx) {
+        }
+
+        @Override
+        public void afterSection(final ExecutionContext ectx) {
+            statelessRuns.add(this);
+        }
+    }
+
+    /**
+     * Сохраняет контексты ранее обработанной секции <code>s12-data</code> из истории отчета.
+     */
+    private static final class HistoryCollector implements SectionEventListener {
+        @Override
+        public void beforeSection(final ExecutionContext ectx) {
+            snapshots.add(ectx.history.get("s12-data"));
+        }
+
+        @Override
+        public void beforeRecord(final ExecutionContext ectx) {
+        }
+
+        @Override
+        public void afterRecord(final ExecutionContext ectx) {
+        }
+
+        @Override
+        public void afterSection(final ExecutionContext ectx) {
+        }
+    }
+
+    /**
+     * Выражение, возвращающее новый обработчик для каждой записи родительской секции.
+     */
+    private static final class ParentBoundListenerExpression implements Expression {
+        @Override
+        public boolean isStatic() {
+            return false;
+        }
+
+        @Override
+        public Object getValue(final ELContext context) {
+            final Repository parent = (Repository) context.getRowModel();
+            return (CellEventListener) (CellEvent event) -> {
+                final Object current = event.getContext().sectionContext.parent.parent.bean;
+                if (current != parent)
+                    mismatches.add(parent.name + " != " + current);
+            };
+        }
+    }
+
+    /**
+     * Запоминает колонки ячеек, для которых был вызван обработчик.
+     */
+    private static final class ColumnsRecorder implements CellEventListener {
+        private final TreeSet<Integer> columns = new TreeSet<>();
+        private int count;
+
+        @Override
+        public void handle(final CellEvent event) {
+            columns.add(event.getContext().cell.getColumnIndex());
+            count++;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.echosoft.framework.reports.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.processor.ExcelReportProcessor;
+import org.echosoft.framework.reports.test.model.Repository;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тестирование различных способов записи строк при построении отчетов в формате {@link Report.TargetType#SXSSF}.
+ *
+ * @author Anton Sharapov
+ */
+public class StreamStringsTest {
+
+    @Test
+    void test() throws Exception {
+        final List<Repository> repos = SyntheticData.makeRepositories(300, 6, 3, 20);
+        final JdbcDataSource ds = SyntheticData.makeDataSource("stream-strings");
+        SyntheticData.populate(ds, repos);
+
+        final Result inline = process(repos, ds, Report.StringsStrategy.INLINE, 0);
+        final Result shared = process(repos, ds, Report.StringsStrategy.SHARED, 0);
+        final Result bounded = process(repos, ds, Report.StringsStrategy.BOUNDED, 0);
+        final Result limited = process(repos, ds, Report.StringsStrategy.BOUNDED, 5);
+
+        // содержимое ячеек не зависит от способа записи строк ...
+        assertEquals(inline.values, shared.values);
+        assertEquals(inline.values, bounded.values);
+        assertEquals(inline.values, limited.values);
+
+        assertTrue(shared.sharedStrings > bounded.sharedStrings, shared.sharedStrings + " <= " + bounded.sharedStrings);
+        assertTrue(bounded.sharedStrings > inline.sharedStrings, bounded.sharedStrings + " <= " + inline.sharedStrings);
+        assertTrue(limited.sharedStrings <= inline.sharedStrings + 5, Integer.toString(limited.sharedStrings));
+        assertTrue(bounded.size < inline.size, bounded.size + " >= " + inline.size);
+    }
+
+    private static Result process(final List<Repository> repos, final JdbcDataSource ds, final Report.StringsStrategy strategy, final int limit) throws Exception {
+        final Report report = SyntheticData.loadReport("excel-02");
+        report.setTarget(Report.TargetType.SXSSF);
+        report.setStreamStrings(strategy);
+        report.setStreamStringsLimit(limit);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Workbook wb = new ExcelReportProcessor().process(report, SyntheticData.makeContext(repos, ds));
+        try {
+            wb.write(out);
+        } finally {
+            ((SXSSFWorkbook) wb).dispose();
+            wb.close();
+        }
+
+        final Result result = new Result();
+        result.size = out.size();
+        try (XSSFWorkbook xwb = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            result.sharedStrings = xwb.getSharedStringSource().getUniqueCount();
+            for (Sheet sheet : xwb) {
+                for (Row row : sheet) {
+                    for (Cell cell : row) {
+                        if (cell.getCellType() == CellType.STRING)
+                            result.values.add(sheet.getSheetName() + '!' + cell.getAddress() + '=' + cell.getStringCellValue());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static final class Result {
+        private final List<String> values = new ArrayList<>();
+        private int sharedStrings;
+        private int size;
+    }
+}
@@ -0,0 +1,47 @@
+package org.echosoft.framework.reports.test;
+
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.echosoft.framework.reports.model.StylePalette;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тестирование переноса стилей из палитры отчета в рабочую книгу.
+ *
+ * @author Anton Sharapov
+ */
+public class StylePaletteTest {
+
+    @Test
+    void testLazyStyles() throws Exception {
+        final StylePalette palette = SyntheticData.loadReport("excel-01").getPalette();
+        assertTrue(palette.getStyles().size() > 1);
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            final int initial = wb.getNumCellStyles();
+            final Map<Short, CellStyle> styles = palette.applyTo(wb);
+            assertEquals(palette.getStyles().size(), styles.size());
+
+            // перебор ключей и пар таблицы трансляции не должен создавать стили в документе ...
+            int count = 0;
+            for (Map.Entry<Short, CellStyle> entry : styles.entrySet()) {
+                assertTrue(palette.getStyles().containsKey(entry.getKey()));
+                count++;
+            }
+            assertEquals(styles.size(), count);
+            assertEquals(palette.getStyles().keySet(), styles.keySet());
+            assertEquals(initial, wb.getNumCellStyles());
+
+            // стиль создается только при обращении к значению пары, причем однократно ...
+            final Map.Entry<Short, CellStyle> first = styles.entrySet().iterator().next();
+            final CellStyle style = first.getValue();
+            assertEquals(initial + 1, wb.getNumCellStyles());
+            assertSame(style, styles.get(first.getKey()));
+            assertEquals(initial + 1, wb.getNumCellStyles());
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package org.echosoft.framework.reports.test;
+
+import javax.sql.DataSource;
+import java.io.InputStream;
+import java.net.URL;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.model.el.ELContext;
+import org.echosoft.framework.reports.model.providers.ComparablePredicate;
+import org.echosoft.framework.reports.parser.ReportModelParser;
+import org.echosoft.framework.reports.test.model.License;
+import org.echosoft.framework.reports.test.model.Repository;
+import org.echosoft.framework.reports.test.model.Subject;
+import org.h2.jdbcx.JdbcDataSource;
+
+/**
+ * Формирует синтетические наборы данных произвольного объема для шаблонов отчетов <code>excel-01</code> .. <code>excel-03</code>.
+ * В отличие от {@link AbstractTest} не требует доступа к внешним сервисам, поэтому используется для измерения производительности
+ * построения отчетов. Все данные генерируются детерминированно: одинаковые параметры всегда дают одинаковый набор данных.
+ *
+ * @author Anton Sharapov
+ */
+public final class SyntheticData {
+
+    public static final Comparator<Repository> REPO_COMPARATOR =
+            Comparator.comparing(Repository::getOwnerType)
+                    .thenComparing(Repository::getOwnerName)
+                    .thenComparing(Repository::getLang)
+                    .thenComparingInt(Repository::getStars)
+                    .thenComparing(Repository::getName);
+
+    private static final String[] LANGUAGES = {"Java", "Kotlin", "Scala", "Go", "Rust", "C", "C++", "Python", "JavaScript", "TypeScript", "Ruby", "Shell"};
+    private static final License[] LICENSES = {
+            new License("mit", "MIT License", "https://api.github.com/licenses/mit"),
+            new License("apache-2.0", "Apache License 2.0", "https://api.github.com/licenses/apache-2.0"),
+            new License("gpl-3.0", "GNU General Public License v3.0", "https://api.github.com/licenses/gpl-3.0")
+    };
+    private static final long BASE_TIME = 1262304000000L;   // 2010-01-01 00:00:00 UTC
+
+    /**
+     * Формирует список репозиториев упорядоченный так же как и данные используемые в тестах отчетов.
+     *
+     * @param count     количество репозиториев.
+     * @param owners    количество владельцев репозиториев (определяет количество групп верхнего уровня).
+     * @param languages количество языков программирования у каждого владельца (определяет количество вложенных групп, не более 12).
+     * @param textWidth длина описания каждого репозитория в символах.
+     * @return список сгенерированных репозиториев.
+     */
+    public static List<Repository> makeRepositories(final int count, final int owners, final int languages, final int textWidth) {
+        if (count < 0 || owners <= 0 || languages <= 0)
+            throw new IllegalArgumentException("Invalid dataset dimensions");
+        final Random rnd = new Random(count * 31L + owners);
+        final Subject[] subjects = new Subject[owners];
+        for (int i = 0; i < owners; i++) {
+            final String login = "owner-" + i;
+            subjects[i] = new Subject(i + 1, login, "https://github.com/" + login, "https://avatars.githubusercontent.com/u/" + (i + 1),
+                    i % 3 == 2 ? Subject.Type.USER : Subject.Type.ORGAINZATION);
+        }
+        final char[] text = new char[Math.max(textWidth, 0)];
+        final List<Repository> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final Repository r = new Repository();
+            r.id = i + 1;
+            r.owner = subjects[i % owners];
+            r.name = "repo-" + i;
+            r.fullName = r.owner.login + '/' + r.name;
+            r.url = "https://github.com/" + r.fullName;
+            for (int j = 0; j < text.length; j++) {
+                text[j] = j % 6 == 5 ? ' ' : (char) ('a' + rnd.nextInt(26));
+            }
+            r.description = new String(text);
+            r.createdAt = new Date(BASE_TIME + (long) rnd.nextInt(3000) * 86400000L);
+            r.updatedAt = new Date(r.createdAt.getTime() + (long) rnd.nextInt(600) * 86400000L);
+            r.pushedAt = r.updatedAt;
+            r.lang = LANGUAGES[(i / owners) % Math.min(languages, LANGUAGES.length)];
+            r.size = rnd.nextInt(100000);
+            r.stars = rnd.nextInt(5000);
+            r.forks = rnd.nextInt(1000);
+            r.watchers = r.stars;
+            r.openIssues = rnd.nextInt(200);
+            r.archived = rnd.nextInt(10) == 0;
+            r.isFork = rnd.nextInt(5) == 0;
+            r.defaultBranch = "main";
+            r.license = LICENSES[i % LICENSES.length];
+            result.add(r);
+        }
+        result.sort(REPO_COMPARATOR);
+        return result;
+    }
+
+    /**
+     * Создает новую базу данных H2 в памяти.
+     *
+     * @param name название базы данных.
+     * @return источник соединений с базой данных.
+     */
+    public static JdbcDataSource makeDataSource(final String name) {
+        final JdbcDataSource ds = new JdbcDataSource();
+        ds.setUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        ds.setPassword("");
+        return ds;
+    }
+
+    /**
+     * Пересоздает в указанной базе данных таблицы <code>subject</code>, <code>license</code>, <code>repository</code>
+     * и заполняет их указанными данными.
+     *
+     * @param ds    база данных.
+     * @param repos данные для заполнения таблиц.
+     * @throws SQLException в случае ошибок при работе с базой данных.
+     */
+    public static void populate(final DataSource ds, final List<Repository> repos) throws SQLException {
+        try (Connection conn = ds.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("DROP TABLE IF EXISTS repository");
+                stmt.execute("DROP TABLE IF EXISTS license");
+                stmt.execute("DROP TABLE IF EXISTS subject");
+                stmt.execute("CREATE TABLE subject (id BIGINT PRIMARY KEY, type VARCHAR(20) NOT NULL, login VARCHAR(255) NOT NULL, " +
+                        "url VARCHAR(255) NOT NULL, avatar_url VARCHAR(255) NOT NULL)");
+                stmt.execute("CREATE TABLE license (id VARCHAR(255) PRIMARY KEY, name VARCHAR(255), url VARCHAR(255))");
+                stmt.execute("CREATE TABLE repository (id BIGINT PRIMARY KEY, name VARCHAR(255) NOT NULL, full_name VARCHAR(255) NOT NULL, " +
+                        "is_private BOOLEAN NOT NULL, is_fork BOOLEAN NOT NULL, url VARCHAR(255) NOT NULL, description VARCHAR(1000000), " +
+                        "created_at TIMESTAMP NOT NULL, updated_at TIMESTAMP NOT NULL, pushed_at TIMESTAMP NOT NULL, homepage VARCHAR(255), " +
+                        "lang VARCHAR(255), size INT NOT NULL, stars INT NOT NULL, forks INT NOT NULL, watchers INT NOT NULL, open_issues INT NOT NULL, " +
+                        "archived BOOLEAN NOT NULL, disabled BOOLEAN NOT NULL, default_branch VARCHAR(255), owner_id BIGINT NOT NULL, license_id VARCHAR(255))");
+                stmt.execute("CREATE INDEX repository_owner ON repository(owner_id)");
+            }
+            final Set<Subject> subjects = new HashSet<>();
+            final Set<String> licenses = new HashSet<>();
+            try (PreparedStatement subjStmt = conn.prepareStatement("INSERT INTO subject VALUES (?,?,?,?,?)");
+                 PreparedStatement licStmt = conn.prepareStatement("INSERT INTO license VALUES (?,?,?)");
+                 PreparedStatement repoStmt = conn.prepareStatement("INSERT INTO repository VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)")) {
+                int batch = 0;
+                for (Repository r : repos) {
+                    if (subjects.add(r.owner)) {
+                        subjStmt.setLong(1, r.owner.id);
+                        subjStmt.setString(2, r.owner.type.name());
+                        subjStmt.setString(3, r.owner.login);
+                        subjStmt.setString(4, r.owner.url);
+                        subjStmt.setString(5, r.owner.avatarUrl);
+                        subjStmt.executeUpdate();
+                    }
+                    if (r.license != null && licenses.add(r.license.key)) {
+                        licStmt.setString(1, r.license.key);
+                        licStmt.setString(2, r.license.name);
+                        licStmt.setString(3, r.license.url);
+                        licStmt.executeUpdate();
+                    }
+                    int i = 1;
+                    repoStmt.setLong(i++, r.id);
+                    repoStmt.setString(i++, r.name);
+                    repoStmt.setString(i++, r.fullName);
+                    repoStmt.setBoolean(i++, r.isPrivate);
+                    repoStmt.setBoolean(i++, r.isFork);
+                    repoStmt.setString(i++, r.url);
+                    repoStmt.setString(i++, r.description);
+                    repoStmt.setTimestamp(i++, new Timestamp(r.createdAt.getTime()));
+                    repoStmt.setTimestamp(i++, new Timestamp(r.updatedAt.getTime()));
+                    repoStmt.setTimestamp(i++, new Timestamp(r.pushedAt.getTime()));
+                    repoStmt.setString(i++, r.homepage);
+                    repoStmt.setString(i++, r.lang);
+                    repoStmt.setInt(i++, r.size);
+                    repoStmt.setInt(i++, r.stars);
+                    repoStmt.setInt(i++, r.forks);
+                    repoStmt.setInt(i++, r.watchers);
+                    repoStmt.setInt(i++, r.openIssues);
+                    repoStmt.setBoolean(i++, r.archived);
+                    repoStmt.setBoolean(i++, r.disabled);
+                    repoStmt.setString(i++, r.defaultBranch);
+                    repoStmt.setLong(i++, r.owner.id);
+                    repoStmt.setString(i, r.license != null ? r.license.key : null);
+                    repoStmt.addBatch();
+                    if (++batch % 1000 == 0)
+                        repoStmt.executeBatch();
+                }
+                repoStmt.executeBatch();
+            }
+            conn.commit();
+        }
+    }
+
+    /**
+     * Загружает модель одного из отчетов, используемых в тестах.
+     *
+     * @param name название отчета (<code>excel-01</code>, <code>excel-02</code>, ...).
+     * @return модель отчета.
+     * @throws Exception в случае ошибок при разборе отчета.
+     */
+    public static Report loadReport(final String name) throws Exception {
+        final String path = "org/echosoft/framework/reports/test/";
+        final ClassLoader cl = SyntheticData.class.getClassLoader();
+        final URL xmlUrl = cl.getResource(path + name + ".xml");
+        URL xlsUrl = cl.getResource(path + name + ".xlsx");
+        if (xlsUrl == null)
+            xlsUrl = cl.getResource(path + name + ".xls");
+        if (xmlUrl == null || xlsUrl == null)
+            throw new IllegalArgumentException("Report '" + name + "' not found");
+        try (InputStream xlsInput = xlsUrl.openStream(); InputStream xmlInput = xmlUrl.openStream()) {
+            return ReportModelParser.parse(xlsInput, xmlInput, null);
+        }
+    }
+
+    /**
+     * Формирует контекст со всеми параметрами, которые требуются отчетам <code>excel-01</code> .. <code>excel-03</code>.
+     *
+     * @param repos список репозиториев, упорядоченный с помощью {@link #REPO_COMPARATOR}.
+     * @param ds    база данных, заполненная с помощью {@link #populate(DataSource, List)}, или <code>null</code>.
+     * @return контекст для построения отчета.
+     */
+    public static ELContext makeContext(final List<Repository> repos, final DataSource ds) {
+        final ELContext ctx = new ELContext();
+        ctx.getEnvironment().put("now", new Date(BASE_TIME));
+        ctx.getEnvironment().put("repositories", repos);
+        ctx.getEnvironment().put("netflix-repos", repos.subList(0, repos.size() / 3));
+        ctx.getEnvironment().put("linkedin-repos", repos.subList(repos.size() / 3, repos.size() / 2));
+        ctx.getEnvironment().put("ds", ds);
+        ctx.getEnvironment().put("p31", repos.isEmpty() ? "owner-0" : repos.get(0).owner.login);
+        ctx.getEnvironment().put("ds1-predicate", new ComparablePredicate<Repository>() {
+            public boolean evaluate(final Repository parent, final Repository current) {
+                return parent.owner.login.equals(current.owner.login);
+            }
+        });
+        return ctx;
+    }
+
+    /**
+     * @return список названий отчетов, для которых данный класс может сформировать данные.
+     */
+    public static List<String> getReportNames() {
+        return Arrays.asList("excel-01", "excel-02", "excel-03");
+    }
+
+    private SyntheticData() {
+    }
+}
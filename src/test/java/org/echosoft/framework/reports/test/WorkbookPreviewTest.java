@@ -0,0 +1,150 @@
+package org.echosoft.framework.reports.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.echosoft.framework.reports.util.WorkbookPreview;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Anton Sharapov
+ */
+public class WorkbookPreviewTest {
+
+    @Test
+    void test() throws Exception {
+        final File file = File.createTempFile("preview-test-", ".xlsx");
+        try (Workbook wb = new XSSFWorkbook()) {
+            wb.createSheet("empty");
+            final Sheet sheet = wb.createSheet("data");
+            for (int r = 0; r < 100; r++) {
+                final Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue("row-" + r);
+                row.createCell(1).setCellValue(r);
+                row.createCell(2);
+                if (r == 50)
+                    row.setZeroHeight(true);
+            }
+            sheet.addMergedRegion(new CellRangeAddress(8, 12, 0, 0));   // строки 9..13 в первой колонке
+            sheet.addMergedRegion(new CellRangeAddress(20, 20, 1, 2));
+            try (OutputStream out = Files.newOutputStream(file.toPath())) {
+                wb.write(out);
+            }
+
+            check(WorkbookPreview.open(wb, 1));
+            try (WorkbookPreview preview = WorkbookPreview.open(file, 1)) {
+                check(preview);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Лист, записанный сторонним приложением: элементы с префиксом пространства имен, атрибуты в одинарных кавычках и комментарии.
+     */
+    @Test
+    void testPrefixedSheet() throws Exception {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (Workbook wb = new XSSFWorkbook()) {
+            wb.createSheet("data");
+            wb.write(buf);
+        }
+        final String xml =
+                "<?xml version='1.0' encoding='UTF-8' standalone='yes'?>\n" +
+                "<!-- exported by <x:sheetData> \"tool\" -->\n" +
+                "<x:worksheet xmlns:x='http://schemas.openxmlformats.org/spreadsheetml/2006/main'>\n" +
+                "<x:cols><x:col min='1' max='1' width='30' customWidth='1'/></x:cols>\n" +
+                "<x:sheetData>\n" +
+                "<x:row r='1'><x:c r='A1' t='inlineStr'><x:is><x:t>first</x:t></x:is></x:c><x:c r='B1'><x:v>1</x:v></x:c></x:row>\n" +
+                "<!-- <x:row r='99'><x:c r='A99' t='inlineStr'><x:is><x:t>comment</x:t></x:is></x:c></x:row> -->\n" +
+                "<x:row r = '2' hidden='1'><x:c r='A2' t='inlineStr'><x:is><x:t>hidden</x:t></x:is></x:c></x:row>\n" +
+                "<x:row r=\"3\" spans='1:2'><x:c r='A3' t='inlineStr'><x:is><x:t>third</x:t></x:is></x:c></x:row>\n" +
+                "</x:sheetData>\n" +
+                "<x:mergeCells count='1'><x:mergeCell ref='A3:B3'/></x:mergeCells>\n" +
+                "</x:worksheet>";
+
+        final File file = File.createTempFile("preview-test-", ".xlsx");
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(buf.toByteArray()));
+             ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(file.toPath()))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                if ("xl/worksheets/sheet1.xml".equals(entry.getName())) {
+                    out.write(xml.getBytes(StandardCharsets.UTF_8));
+                } else {
+                    final byte[] data = new byte[8192];
+                    for (int len = in.read(data); len >= 0; len = in.read(data)) {
+                        out.write(data, 0, len);
+                    }
+                }
+                out.closeEntry();
+            }
+        }
+        try (WorkbookPreview preview = WorkbookPreview.open(file, 0)) {
+            assertEquals(2, preview.getRowsCount());
+            final StringBuilder page = new StringBuilder();
+            preview.writePage(0, 10, page);
+            final String html = page.toString();
+            assertEquals(2, count(html, "<tr"));
+            assertTrue(html.contains(">first<"));
+            assertTrue(html.contains("colspan=\"2\">third<"));
+            assertFalse(html.contains("comment"));
+            assertFalse(html.contains("hidden"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void check(final WorkbookPreview preview) throws Exception {
+        assertEquals(99, preview.getRowsCount());
+        assertEquals(10, preview.getPagesCount(10));
+
+        // регион 9..13 обрезается сверху: на странице остаются строки 10..12, значение берется из строки 9 ...
+        final StringBuilder page = new StringBuilder();
+        preview.writePage(10, 11, page);
+        final String html = page.toString();
+        assertEquals(11, count(html, "<tr"));
+        assertTrue(html.contains("data-row=\"11\""));
+        assertTrue(html.contains("rowspan=\"3\">row-8<"));
+        assertFalse(html.contains(">row-10<"));
+        assertTrue(html.contains(">row-13<"));
+        assertTrue(html.contains("colspan=\"2\">20<"));
+        assertEquals(11 * 3 - 2 - 1, count(html, "<td"));
+
+        // скрытая строка 51 пропускается ...
+        page.setLength(0);
+        preview.writePage(50, 1, page);
+        assertTrue(page.toString().contains(">row-51<"));
+
+        page.setLength(0);
+        preview.writePage(95, 10, page);
+        assertEquals(4, count(page.toString(), "<tr"));
+
+        page.setLength(0);
+        preview.writeStyles(page);
+        assertTrue(page.toString().contains(".class_0"));
+    }
+
+    private static int count(final String text, final String token) {
+        int result = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + token.length())) {
+            result++;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,123 @@
+package org.echosoft.framework.reports.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.internal.PackagePropertiesPart;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.echosoft.framework.reports.model.Report;
+import org.echosoft.framework.reports.util.WorkbookTemplate;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тестирование открытия документов на основе распакованных шаблонов.
+ *
+ * @author Anton Sharapov
+ */
+public class WorkbookTemplateTest {
+
+    @Test
+    void testSamePackage() throws Exception {
+        final byte[] template;
+        try (InputStream in = WorkbookTemplateTest.class.getResourceAsStream("excel-01.xlsx")) {
+            template = readAll(in);
+        }
+        assertSame(WorkbookTemplate.getInstance(template), WorkbookTemplate.getInstance(template));
+        for (int i = 0; i < 2; i++) {
+            try (OPCPackage expected = OPCPackage.open(new ByteArrayInputStream(template));
+                 OPCPackage actual = WorkbookTemplate.openPackage(template)) {
+                final List<PackagePart> expectedParts = expected.getParts();
+                final List<PackagePart> actualParts = actual.getParts();
+                assertEquals(names(expectedParts), names(actualParts));
+                for (int p = 0; p < expectedParts.size(); p++) {
+                    assertEquals(expectedParts.get(p).getContentType(), actualParts.get(p).getContentType());
+                    if (!expectedParts.get(p).isRelationshipPart() && !(expectedParts.get(p) instanceof PackagePropertiesPart))
+                        assertArrayEquals(read(expectedParts.get(p)), read(actualParts.get(p)), expectedParts.get(p).getPartName().getName());
+                }
+                assertEquals(expected.getPackageProperties().getCreatorProperty(), actual.getPackageProperties().getCreatorProperty());
+            }
+        }
+        assertTrue(WorkbookTemplate.getInstance(template).getPartsCount() > 0);
+
+        // открытый из шаблона документ должен быть доступен для изменения и записи ...
+        try (XSSFWorkbook wb = new XSSFWorkbook(WorkbookTemplate.openPackage(template))) {
+            wb.createSheet("test-sheet");
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            wb.write(out);
+            try (XSSFWorkbook copy = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+                assertTrue(copy.getSheetIndex("test-sheet") >= 0);
+            }
+        }
+    }
+
+    @Test
+    void testRelease() throws Exception {
+        // распакованный шаблон удаляется из кэша вместе с моделью отчета, которой принадлежит шаблон ...
+        Report report = SyntheticData.loadReport("excel-01");
+        try (InputStream in = WorkbookTemplateTest.class.getResourceAsStream("excel-01.xlsx")) {
+            report.setTemplate(readAll(in));
+        }
+        try (OPCPackage pkg = WorkbookTemplate.openPackage(report.getTemplate())) {
+            assertTrue(pkg.getParts().size() > 0);
+        }
+        final WeakReference<WorkbookTemplate> ref = new WeakReference<>(WorkbookTemplate.getInstance(report.getTemplate()));
+        report = null;
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+            WorkbookTemplate.getInstance(new byte[0]);   // удаляет из кэша записи с уже собранными ключами
+        }
+        assertNull(ref.get());
+    }
+
+    @Test
+    void testZipBomb() throws Exception {
+        // при распаковке шаблона действуют те же ограничения на степень сжатия частей пакета, что и при обычном открытии документа ...
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(buf)) {
+            out.putNextEntry(new ZipEntry("[Content_Types].xml"));
+            out.write(new byte[4 * 1024 * 1024]);
+            out.closeEntry();
+        }
+        final IOException e = assertThrows(IOException.class, () -> WorkbookTemplate.openPackage(buf.toByteArray()));
+        assertTrue(e.getMessage().contains("Zip bomb"), e.getMessage());
+    }
+
+    private static List<String> names(final List<PackagePart> parts) {
+        final List<String> result = new ArrayList<>(parts.size());
+        for (PackagePart part : parts) {
+            result.add(part.getPartName().getName());
+        }
+        return result;
+    }
+
+    private static byte[] read(final PackagePart part) throws IOException {
+        try (InputStream in = part.getInputStream()) {
+            return readAll(in);
+        }
+    }
+
+    private static byte[] readAll(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buf = new byte[8192];
+        for (int len = in.read(buf); len >= 0; len = in.read(buf)) {
+            out.write(buf, 0, len);
+        }
+        return out.toByteArray();
+    }
+}
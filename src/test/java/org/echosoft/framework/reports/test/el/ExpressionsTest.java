@@ -1,8 +1,21 @@
 package org.echosoft.framework.reports.test.el;
 
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.echosoft.framework.reports.common.utils.StringUtil;
 import org.echosoft.framework.reports.model.el.BaseExpression;
@@ -11,6 +24,9 @@ import org.echosoft.framework.reports.model.el.Expression;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 /**
@@ -86,6 +102,112 @@ public class ExpressionsTest {
         }
     }
 
+    @Test
+    void testUnscopedBinding() throws Exception {
+        // пространство имен атрибута определяется заново при смене класса модели данных строки ...
+        final Expression expr = new BaseExpression("${row}");
+        assertEquals(1, expr.getValue(context));
+        context.setRowModel(Collections.singletonMap("row", "map"));
+        assertEquals("map", expr.getValue(context));
+        context.setRowModel(Collections.emptyMap());
+        assertNull(expr.getValue(context));
+        context.setRowModel(COMPANIES[1]);
+        assertEquals(1, expr.getValue(context));
+        context.setRowModel(null);
+        assertNull(expr.getValue(context));
+    }
+
+    @Test
+    void testSlots() throws Exception {
+        final int slot = ELContext.registerSlot("test-slot");
+        assertEquals(slot, ELContext.registerSlot("test-slot"));
+        assertEquals(slot, ELContext.getSlot("test-slot"));
+        final Expression expr = new BaseExpression("${var:test-slot}");
+        context.getVariables().put("test-slot", "text");
+        assertEquals("text", expr.getValue(context));
+        context.setSlotValue(slot, 5);
+        assertEquals(5, expr.getValue(context));
+        assertEquals(5, context.getVariables().get("test-slot"));
+        assertEquals(5, context.cloneContext().getVariables().get("test-slot"));
+        context.getVariables().put("test-slot", 7);
+        assertEquals(7, context.getSlotValue(slot));
+        context.getVariables().remove("test-slot");
+        assertFalse(context.hasSlotValue(slot));
+        assertNull(expr.getValue(context));
+
+        // наборы ключей, значений и элементов таблицы переменных отражают ее текущее состояние и поддерживают удаление ...
+        final Map<String, Object> vars = context.getVariables();
+        final Set<Map.Entry<String, Object>> entries = vars.entrySet();
+        final int size = entries.size();
+        vars.put("test-other", "text");
+        context.setSlotValue(slot, 9);
+        assertEquals(size + 2, entries.size());
+        assertTrue(vars.keySet().contains("test-slot"));
+        assertTrue(vars.keySet().remove("test-slot"));
+        assertFalse(context.hasSlotValue(slot));
+        context.setSlotValue(slot, 9);
+        assertTrue(vars.values().remove(9));
+        assertFalse(context.hasSlotValue(slot));
+        context.setSlotValue(slot, 9);
+        for (Iterator<Map.Entry<String, Object>> it = entries.iterator(); it.hasNext(); ) {
+            final Map.Entry<String, Object> entry = it.next();
+            if ("test-other".equals(entry.getKey()))
+                it.remove();
+        }
+        assertFalse(vars.containsKey("test-other"));
+        assertEquals(9, context.getSlotValue(slot));
+        context.clearSlotValue(slot);
+        assertEquals(size, entries.size());
+    }
+
+    @Test
+    void testFormatLocale() throws Exception {
+        final Expression expr = new BaseExpression("${(number,#,##0.00)env:amount}");
+        context.getEnvironment().put("amount", 1234.5);
+        assertEquals("1\u00a0234,50", expr.getValue(context));
+        final ELContext en = new ELContext(Locale.US, context.getEnvironment());
+        assertEquals("1,234.50", expr.getValue(en));
+    }
+
+    @Test
+    void testFormatConcurrency() throws Exception {
+        // одно и то же выражение может одновременно вычисляться в разных потоках ...
+        final Expression expr = new BaseExpression("${(date,dd.MM.yyyy HH:mm)env:date} ${(number,#,##0.000)env:amount}");
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int base = t;
+                results.add(executor.submit(() -> {
+                    final ELContext ctx = new ELContext(Locale.US, null);
+                    for (int i = 0; i < 2000; i++) {
+                        final Calendar cal = new GregorianCalendar(2000 + base, i % 12, 1 + i % 28, i % 24, i % 60);
+                        ctx.getEnvironment().put("date", cal.getTime());
+                        ctx.getEnvironment().put("amount", base * 1000 + i / 1000.0);
+                        final String expected = String.format(Locale.US, "%02d.%02d.%d %02d:%02d %,.3f", 1 + i % 28, 1 + i % 12, 2000 + base, i % 24, i % 60, base * 1000 + i / 1000.0);
+                        if (!expected.equals(expr.getValue(ctx)))
+                            return false;
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testRowProperties() {
+        final Set<String> properties = new HashSet<>();
+        new BaseExpression("${var:row}:${env:host}:${row:name}:${const:forever!}").collectRowProperties(properties);
+        new BaseExpression("${(date,dd.MM.yyyy)row:employee[2].born} ${title | row:city | const:<unknown>}").collectRowProperties(properties);
+        new BaseExpression("static").collectRowProperties(properties);
+        assertEquals(new HashSet<>(Arrays.asList("name", "employee", "title", "city")), properties);
+    }
+
     @Test
     void testInvalidTests() throws Exception {
         for (String pattern : INVALID_TESTS) {